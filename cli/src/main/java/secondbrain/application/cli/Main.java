@@ -1,8 +1,10 @@
 package secondbrain.application.cli;
 
 import io.vavr.control.Try;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.weld.environment.se.Weld;
 import org.jboss.weld.environment.se.WeldContainer;
@@ -15,14 +17,24 @@ import secondbrain.domain.handler.PromptHandler;
 import secondbrain.domain.handler.PromptHandlerOutput;
 import secondbrain.domain.handler.PromptHandlerResponse;
 import secondbrain.domain.injection.Preferred;
+import secondbrain.domain.persist.CacheHitStatistics;
+import secondbrain.domain.persist.CacheUsage;
+import secondbrain.domain.persist.CosmosLocalStorage;
 import secondbrain.domain.persist.LocalStorage;
+import secondbrain.domain.persist.LocalStorageMaintenance;
+import secondbrain.domain.persist.LocalStorageStatistics;
 import secondbrain.domain.toolbuilder.ToolSelector;
+import secondbrain.domain.zip.ZstdDictionaries;
 
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 
 public class Main {
@@ -56,6 +68,27 @@ public class Main {
     @Preferred
     private LocalStorage localStorage;
 
+    @Inject
+    @Preferred
+    private LocalStorageMaintenance localStorageMaintenance;
+
+    @Inject
+    @Preferred
+    private LocalStorageStatistics localStorageStatistics;
+
+    @Inject
+    private CacheHitStatistics cacheHitStatistics;
+
+    @Inject
+    private Instance<CosmosLocalStorage> cosmosLocalStorage;
+
+    @Inject
+    private ZstdDictionaries zstdDictionaries;
+
+    @Inject
+    @ConfigProperty(name = "sb.zstd.dictionarysamples", defaultValue = "1000")
+    private Integer dictionarySamples;
+
     public static Try.WithResources1<WeldContainer> getContainer() {
         final Weld weld = new Weld();
         return Try.withResources(() -> weld.addBeanClass(Main.class).addPackages(true, Marker.class).initialize());
@@ -81,6 +114,43 @@ public class Main {
             return null;
         }
 
+        if ("--train-dictionaries".equals(command)) {
+            trainDictionaries(args.length > 1 ? args[1] : "");
+            return null;
+        }
+
+        if ("--export-cache".equals(command)) {
+            exportCache(args.length > 1 ? args[1] : "", args.length > 2 ? args[2] : "", args.length > 3 ? args[3] : "");
+            return null;
+        }
+
+        if ("--import-cache".equals(command)) {
+            importCache(args.length > 1 ? args[1] : "");
+            return null;
+        }
+
+        if ("--cache-stats".equals(command)) {
+            printCacheStatistics(args.length > 1 ? args[1] : "");
+            return null;
+        }
+
+        if ("--purge-cache".equals(command)) {
+            purgeCache(args.length > 1 ? args[1] : "", args.length > 2 ? args[2] : "");
+            return null;
+        }
+
+        if ("--migrate-cosmos".equals(command)) {
+            migrateCosmos(args.length > 1 ? args[1] : "");
+            return null;
+        }
+
+        if ("--compact-cache".equals(command)) {
+            Try.run(localStorageStatistics::compact)
+                    .onSuccess(v -> System.out.println("Compacted the cache"))
+                    .onFailure(e -> System.err.println("Failed to compact cache: " + e.getMessage()));
+            return null;
+        }
+
         final String format = args.length > 1 ? args[1] : "no-op";
 
         return entry(List.of(getPrompt(args)), format, Map.of());
@@ -123,8 +193,154 @@ public class Main {
         throw new RuntimeException("No prompt specified");
     }
 
+    /**
+     * Train a zstd dictionary for each tool from the values it has saved in the local cache.
+     *
+     * @param tools A comma separated list of tools, or an empty string to train a dictionary for every tool
+     */
+    private void trainDictionaries(final String tools) {
+        final Try<List<String>> toolNames = StringUtils.isBlank(tools)
+                ? Try.of(localStorageMaintenance::getTools)
+                : Try.success(Arrays.stream(tools.split(",")).map(String::trim).filter(StringUtils::isNotBlank).toList());
+
+        if (toolNames.isFailure()) {
+            System.err.println("Failed to train dictionaries: " + toolNames.getCause().getMessage());
+            return;
+        }
+
+        for (final String tool : toolNames.get()) {
+            Try.of(() -> localStorageMaintenance.sampleValues(tool, dictionarySamples))
+                    .mapTry(samples -> zstdDictionaries.train(tool, samples))
+                    .onSuccess(id -> System.out.println("Trained dictionary " + id + " for " + tool))
+                    .onFailure(e -> System.err.println("Failed to train dictionary for " + tool + ": " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Export cached values to a snapshot archive that can be imported on another machine.
+     *
+     * @param file     The archive to write
+     * @param tools    A comma separated list of tools, or an empty string to export every tool
+     * @param ageRange The age of the values to export in seconds, like "0-86400", or an empty string to export
+     *                 values of any age. Either end of the range can be left empty.
+     */
+    private void exportCache(final String file, final String tools, final String ageRange) {
+        if (StringUtils.isBlank(file)) {
+            System.err.println("The snapshot file must be specified");
+            return;
+        }
+
+        final List<String> toolNames = Arrays.stream(tools.split(","))
+                .map(String::trim)
+                .filter(StringUtils::isNotBlank)
+                .toList();
+        final String minAge = StringUtils.substringBefore(ageRange, "-");
+        final String maxAge = StringUtils.substringAfter(ageRange, "-");
+        final Instant now = Instant.now();
+
+        Try.of(() -> localStorageMaintenance.exportSnapshot(
+                        Path.of(file),
+                        toolNames,
+                        StringUtils.isBlank(maxAge) ? null : now.minusSeconds(NumberUtils.toLong(maxAge.trim())),
+                        StringUtils.isBlank(minAge) ? null : now.minusSeconds(NumberUtils.toLong(minAge.trim()))))
+                .onSuccess(count -> System.out.println("Exported " + count + " cache values to " + file))
+                .onFailure(e -> System.err.println("Failed to export cache: " + e.getMessage()));
+    }
+
+    /**
+     * Import a snapshot archive created by exportCache.
+     */
+    private void importCache(final String file) {
+        if (StringUtils.isBlank(file)) {
+            System.err.println("The snapshot file must be specified");
+            return;
+        }
+
+        Try.of(() -> localStorageMaintenance.importSnapshot(Path.of(file)))
+                .onSuccess(count -> System.out.println("Imported " + count + " cache values from " + file))
+                .onFailure(e -> System.err.println("Failed to import cache: " + e.getMessage()));
+    }
+
+    /**
+     * Print the size, age, and hit ratio of the values cached for each tool and source. The hit ratio is from
+     * the previous run that read from the cache.
+     *
+     * @param tools A comma separated list of tools, or an empty string to report every tool
+     */
+    private void printCacheStatistics(final String tools) {
+        final List<String> toolNames = Arrays.stream(tools.split(","))
+                .map(String::trim)
+                .filter(StringUtils::isNotBlank)
+                .toList();
+        final Map<String, CacheHitStatistics.CacheHitCount> hitCounts = cacheHitStatistics.getPreviousRun().stream()
+                .collect(Collectors.toMap(count -> count.tool() + "\u0000" + count.source(), count -> count, (a, b) -> a));
+
+        Try.of(() -> localStorageStatistics.getUsage(toolNames))
+                .onSuccess(usage -> {
+                    System.out.println("tool\tsource\tentries\tbytes\t<1h\t<1d\t<7d\t>7d\tunknown age\thits\tmisses\thit %");
+                    for (final CacheUsage row : usage) {
+                        final CacheHitStatistics.CacheHitCount hits = hitCounts.get(row.tool() + "\u0000" + row.source());
+                        System.out.println(String.join("\t",
+                                row.tool(),
+                                row.source(),
+                                String.valueOf(row.count()),
+                                String.valueOf(row.bytes()),
+                                String.valueOf(row.lastHour()),
+                                String.valueOf(row.lastDay()),
+                                String.valueOf(row.lastWeek()),
+                                String.valueOf(row.older()),
+                                String.valueOf(row.unknownAge()),
+                                hits == null ? "-" : String.valueOf(hits.hits()),
+                                hits == null ? "-" : String.valueOf(hits.misses()),
+                                hits == null ? "-" : String.format("%.1f", hits.hitPercentage())));
+                    }
+                })
+                .onFailure(e -> System.err.println("Failed to get cache statistics: " + e.getMessage()));
+    }
+
+    /**
+     * Delete the values cached for a tool.
+     *
+     * @param tool   The name of the tool
+     * @param source The source to delete values for, or an empty string to delete every value for the tool
+     */
+    private void purgeCache(final String tool, final String source) {
+        if (StringUtils.isBlank(tool)) {
+            System.err.println("The tool must be specified");
+            return;
+        }
+
+        Try.of(() -> localStorageStatistics.purge(tool, StringUtils.isBlank(source) ? null : source))
+                .onSuccess(count -> System.out.println("Purged " + count + " cache values for " + tool))
+                .onFailure(e -> System.err.println("Failed to purge cache: " + e.getMessage()));
+    }
+
+    /**
+     * Copy the items from an existing Cosmos DB container into the configured container. This is used to move
+     * to a container with hierarchical partition keys.
+     *
+     * @param sourceContainer The container to copy items from
+     */
+    private void migrateCosmos(final String sourceContainer) {
+        if (StringUtils.isBlank(sourceContainer)) {
+            System.err.println("The source container must be specified");
+            return;
+        }
+
+        Try.of(() -> cosmosLocalStorage.get().migrateFrom(sourceContainer))
+                .onSuccess(count -> System.out.println("Copied " + count + " items from " + sourceContainer))
+                .onFailure(e -> System.err.println("Failed to migrate Cosmos DB items: " + e.getMessage()));
+    }
+
     private void printHelp() {
         System.out.println("Force the use of a specific tool with the environment variable SB_TOOLS_FORCE, e.g. 'SB_TOOLS_FORCE=MyTool java -jar sb.jar \"My prompt\"'");
+        System.out.println("Train zstd dictionaries for cached values with 'java -jar sb.jar --train-dictionaries [tool1,tool2]'");
+        System.out.println("Export cached values with 'java -jar sb.jar --export-cache snapshot.zst [tool1,tool2] [minAgeSeconds-maxAgeSeconds]'");
+        System.out.println("Import cached values with 'java -jar sb.jar --import-cache snapshot.zst'");
+        System.out.println("Print cache statistics with 'java -jar sb.jar --cache-stats [tool1,tool2]'");
+        System.out.println("Delete cached values with 'java -jar sb.jar --purge-cache tool [source]'");
+        System.out.println("Compact the cache with 'java -jar sb.jar --compact-cache'");
+        System.out.println("Copy Cosmos DB items to a container with hierarchical partition keys with 'SB_COSMOS_PARTITIONBUCKETS=16 java -jar sb.jar --migrate-cosmos localstoragezipped'");
         System.out.println("Available tools:");
         toolSelector.getAvailableTools().stream()
                 .map(tool -> tool.getName() + ": " + tool.getDescription())
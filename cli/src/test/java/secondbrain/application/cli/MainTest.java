@@ -30,16 +30,22 @@ import secondbrain.domain.handler.PromptHandlerResponse;
 import secondbrain.domain.handler.PromptResponseSimple;
 import secondbrain.domain.json.JsonDeserializer;
 import secondbrain.domain.objects.SecretGetterGenerator;
+import secondbrain.domain.persist.CacheHitStatistics;
 import secondbrain.domain.persist.CosmosLocalStorage;
 import secondbrain.domain.persist.H2LocalStorage;
 import secondbrain.domain.persist.LocalStorageProducer;
 import secondbrain.domain.persist.LocalStorageReadWrite;
+import secondbrain.domain.persist.MVStoreLocalStorage;
+import secondbrain.domain.persist.NegativeCache;
+import secondbrain.domain.persist.PrefetchManifest;
+import secondbrain.domain.persist.StaleWhileRevalidate;
 import secondbrain.domain.persist.config.*;
 import secondbrain.domain.sanitize.FinancialLocationContactRedaction;
 import secondbrain.domain.toolbuilder.ToolSelector;
 import secondbrain.domain.tooldefs.IntermediateResult;
 import secondbrain.domain.validate.ValidateStringBlank;
 import secondbrain.domain.zip.ApacheCommonsZStdZipper;
+import secondbrain.domain.zip.ZstdDictionaries;
 
 import java.nio.file.Path;
 import java.util.List;
@@ -94,6 +100,7 @@ class MainTest {
                             MockBeans.class,
                             DefaultPromptHandlerOutput.class,
                             H2LocalStorage.class,
+                            MVStoreLocalStorage.class,
                             CosmosLocalStorage.class,
                             LocalStorageCacheDisable.class,
                             LocalStorageDisableTool.class,
@@ -107,6 +114,14 @@ class MainTest {
                             LocalStorageWriteOnlyTool.class,
                             SharedVirtualThreadExecutor.class,
                             ApacheCommonsZStdZipper.class,
+                            ZstdDictionaries.class,
+                            LocalStorageCacheDirectory.class,
+                            LocalStorageStaleWhileRevalidateTool.class,
+                            StaleWhileRevalidate.class,
+                            LocalStorageNegativeCacheTtl.class,
+                            NegativeCache.class,
+                            PrefetchManifest.class,
+                            CacheHitStatistics.class,
                             AesEncryptor.class)
                     .addExtension(new ConfigExtension()))
             .activate(ApplicationScoped.class)
@@ -0,0 +1,27 @@
+package secondbrain.domain.concurrency;
+
+/**
+ * Represents a resource borrowed from a {@link ResourcePool} that is returned using try-with-resources.
+ */
+public class PooledResource<T extends AutoCloseable> implements AutoCloseable {
+    private final ResourcePool<T> pool;
+    private final T resource;
+    private boolean returned = false;
+
+    PooledResource(final ResourcePool<T> pool, final T resource) {
+        this.pool = pool;
+        this.resource = resource;
+    }
+
+    public T get() {
+        return resource;
+    }
+
+    @Override
+    public void close() {
+        if (!returned) {
+            pool.release(resource);
+            returned = true;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package secondbrain.domain.concurrency;
+
+import io.vavr.CheckedFunction0;
+import io.vavr.control.Try;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of resources that are not thread safe, like DJL predictors. Each thread borrows a resource
+ * for the duration of a try-with-resources block, so at most one thread uses a resource at a time. Resources
+ * are created as they are needed, up to the size of the pool, and threads wait for a resource to be returned
+ * once the pool is exhausted. The time spent waiting is recorded, which shows whether the pool is too small.
+ */
+public class ResourcePool<T extends AutoCloseable> implements AutoCloseable {
+    private final Semaphore semaphore;
+    private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+    private final List<T> created = new CopyOnWriteArrayList<>();
+    private final CheckedFunction0<T> factory;
+    private final int size;
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ResourcePool(final int size, final CheckedFunction0<T> factory) {
+        this.size = Math.max(1, size);
+        this.semaphore = new Semaphore(this.size);
+        this.factory = factory;
+    }
+
+    /**
+     * Borrow a resource, waiting for another thread to return one if they are all in use.
+     */
+    public PooledResource<T> lend() throws InterruptedException {
+        acquire();
+        borrowed.increment();
+
+        final T idleResource = idle.poll();
+        if (idleResource != null) {
+            return new PooledResource<>(this, idleResource);
+        }
+
+        // Holding a permit means there is room in the pool for a new resource
+        final T resource = Try.of(factory)
+                .onFailure(ex -> semaphore.release())
+                .get();
+        created.add(resource);
+        return new PooledResource<>(this, resource);
+    }
+
+    /**
+     * Borrow a resource in a vavr try-with-resources block.
+     */
+    public Try.WithResources1<PooledResource<T>> lendAutoClose() {
+        return Try.withResources(this::lend);
+    }
+
+    void release(final T resource) {
+        idle.offer(resource);
+        semaphore.release();
+    }
+
+    private void acquire() throws InterruptedException {
+        // Most requests find a free resource, so only time the requests that have to wait
+        if (semaphore.tryAcquire()) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        semaphore.acquire();
+        final long waited = System.nanoTime() - start;
+        waits.increment();
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCreated() {
+        return created.size();
+    }
+
+    public long getBorrowed() {
+        return borrowed.sum();
+    }
+
+    public long getWaits() {
+        return waits.sum();
+    }
+
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum());
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    /**
+     * Describe how the pool was used.
+     */
+    public String getReport() {
+        return "Pool of " + size + " created " + getCreated() + " resources and lent them " + getBorrowed() + " times. "
+                + getWaits() + " requests waited for a resource for a total of " + getTotalWaitMillis()
+                + " ms, with the longest wait taking " + getMaxWaitMillis() + " ms";
+    }
+
+    /**
+     * Close every resource the pool created. Resources must not be borrowed after the pool is closed.
+     */
+    @Override
+    public void close() throws Exception {
+        Exception failure = null;
+        for (final T resource : created) {
+            try {
+                resource.close();
+            } catch (final Exception ex) {
+                failure = ex;
+            }
+        }
+        created.clear();
+        idle.clear();
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.PriorityQueue;
+import java.util.stream.IntStream;
 
 import static java.util.Comparator.comparing;
 
@@ -101,6 +102,49 @@ public record RagDocumentContext<T>(String tool,
         return new RagDocumentContext<>(tool, contextLabel, trimResult.document(), sentences, id, source, metadata, intermediateResults, link, trimResult.keywordMatches());
     }
 
+    /**
+     * Calculate the vectors of any sentences that were split from the document without being vectorized.
+     *
+     * @return A new copy of this object with vectorized sentences, or this object if there was nothing to vectorize
+     */
+    public RagDocumentContext<T> vectorizeSentences(final SentenceVectorizer sentenceVectorizer) {
+        if (sentences == null || sentences.stream().allMatch(RagStringContext::isVectorized)) {
+            return this;
+        }
+
+        final List<RagStringContext> vectorized = sentences.stream()
+                .map(sentence -> sentence.vectorize(sentenceVectorizer))
+                .toList();
+        return new RagDocumentContext<>(tool, contextLabel, document, vectorized, id, source, metadata, intermediateResults, link, keywordMatches);
+    }
+
+    /**
+     * Replaces the vectors of the sentences, for example with vectors that were read from the cache.
+     *
+     * @param vectors One vector for each sentence, in the same order as the sentences
+     * @return A new copy of this object with vectorized sentences
+     */
+    public RagDocumentContext<T> updateSentenceVectors(final List<Vector> vectors) {
+        final List<RagStringContext> currentSentences = Objects.requireNonNullElse(sentences, List.of());
+        if (vectors.size() != currentSentences.size()) {
+            throw new IllegalArgumentException("Expected " + currentSentences.size() + " vectors, but got " + vectors.size());
+        }
+
+        final List<RagStringContext> vectorized = IntStream.range(0, currentSentences.size())
+                .mapToObj(i -> new RagStringContext(currentSentences.get(i).context(), vectors.get(i)))
+                .toList();
+        return new RagDocumentContext<>(tool, contextLabel, document, vectorized, id, source, metadata, intermediateResults, link, keywordMatches);
+    }
+
+    @JsonIgnore
+    public int countUnvectorizedSentences() {
+        if (sentences == null) {
+            return 0;
+        }
+
+        return (int) sentences.stream().filter(sentence -> !sentence.isVectorized()).count();
+    }
+
     public RagDocumentContext<T> updateSource(final T source) {
         return new RagDocumentContext<>(tool, contextLabel, document, sentences, id, source, metadata, intermediateResults, link, keywordMatches);
     }
@@ -211,7 +255,13 @@ public record RagDocumentContext<T>(String tool,
         var vectorToSimilarityPq = new PriorityQueue<Pair<RagStringContext, Double>>(comparing(Pair::getRight));
 
         for (var candidate : sentences) {
-            var similarity = similarityCalculator.calculateSimilarity(vector, candidate.vector());
+            // Sentences that failed to vectorize have no vector to compare
+            final Vector candidateVector = candidate.vector();
+            if (candidateVector == null) {
+                continue;
+            }
+
+            var similarity = similarityCalculator.calculateSimilarity(vector, candidateVector);
             vectorToSimilarityPq.offer(Pair.of(candidate, similarity));
 
             if (vectorToSimilarityPq.size() > 1) {
@@ -116,6 +116,10 @@ public record RagMultiDocumentContext<T>(@Nullable List<String> prompts,
         return new RagMultiDocumentContext<T>(prompts, instructions, individualContexts, debug, annotationPrefix, metadata, responses);
     }
 
+    public RagMultiDocumentContext<T> updateIndividualContexts(@Nullable final List<RagDocumentContext<T>> individualContexts) {
+        return new RagMultiDocumentContext<T>(prompts, instructions, individualContexts, debug, annotationPrefix, metadata, responses);
+    }
+
     public RagMultiDocumentContext<T> updatePrompts(@Nullable final List<String> prompts) {
         return new RagMultiDocumentContext<T>(prompts, instructions, individualContexts, debug, annotationPrefix, metadata, responses);
     }
@@ -224,30 +228,58 @@ public record RagMultiDocumentContext<T>(@Nullable List<String> prompts,
                                                            final SimilarityCalculator similarityCalculator,
                                                            final SentenceVectorizer sentenceVectorizer) {
 
-        return sentenceSplitter.splitDocument(getResponse(), minWords)
+        // Sentences split without being vectorized are vectorized now that the final context is known
+        final List<RagDocumentContext<T>> contexts = vectorizeSentences(sentenceVectorizer).getIndividualContexts();
+
+        final List<String> sentences = sentenceSplitter.splitDocument(getResponse(), minWords)
                 .stream()
                 .filter(sentence -> !StringUtils.isBlank(sentence))
-                // find the best match in each context, or no match at all
-                .flatMap(sentence -> getIndividualContexts().stream()
-                        .map(rag ->
-                                // Ignore any failures to vectorize the sentence
-                                Try.of(() -> rag.getClosestSentence(
-                                                sentence,
-                                                sentenceVectorizer.vectorize(sentence).vector(),
-                                                similarityCalculator,
-                                                minSimilarity))
-                                        .onFailure(throwable -> System.err.println("Failed to vectorize output sentences: " + ExceptionUtils.getRootCauseMessage(throwable)))
-                                        .getOrNull()
-                        )
-                        .filter(Objects::nonNull)
-                        .sorted(Comparator.comparingDouble(RagMatchedStringContext::match).reversed())
-                        .limit(1))
+                .toList();
+
+        return sentences
+                .stream()
+                // Ignore any failures to vectorize the sentence. Each sentence is vectorized once and compared to every context.
+                .flatMap(sentence -> Try.of(() -> sentenceVectorizer.vectorize(sentence).vector())
+                        .onFailure(throwable -> System.err.println("Failed to vectorize output sentences: " + ExceptionUtils.getRootCauseMessage(throwable)))
+                        .toJavaStream()
+                        // find the best match in each context, or no match at all
+                        .flatMap(vector -> contexts.stream()
+                                .map(rag -> Try.of(() -> rag.getClosestSentence(sentence, vector, similarityCalculator, minSimilarity))
+                                        .onFailure(throwable -> System.err.println("Failed to match output sentences: " + ExceptionUtils.getRootCauseMessage(throwable)))
+                                        .getOrNull())
+                                .filter(Objects::nonNull)
+                                .sorted(Comparator.comparingDouble(RagMatchedStringContext::match).reversed())
+                                .limit(1)))
                 // Once we have the closest match, the match value is no longer relevant
                 .map(RagMatchedStringContext::toRagSentenceAndOriginal)
                 // Getting a set ensures that we don't have duplicates
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * Sentences are split from documents without being vectorized, because many documents are filtered out
+     * before they reach the final context. This calculates the vectors of the sentences in the remaining documents.
+     *
+     * @return A new copy of this object with vectorized sentences
+     */
+    public RagMultiDocumentContext<T> vectorizeSentences(final SentenceVectorizer sentenceVectorizer) {
+        if (countUnvectorizedSentences() == 0) {
+            return this;
+        }
+
+        final List<RagDocumentContext<T>> vectorized = getIndividualContexts().stream()
+                .map(rag -> rag.vectorizeSentences(sentenceVectorizer))
+                .toList();
+        return new RagMultiDocumentContext<T>(prompts, instructions, vectorized, debug, annotationPrefix, metadata, responses);
+    }
+
+    @JsonIgnore
+    public int countUnvectorizedSentences() {
+        return getIndividualContexts().stream()
+                .mapToInt(RagDocumentContext::countUnvectorizedSentences)
+                .sum();
+    }
+
     @JsonIgnore
     public List<MetaObjectResults> generateMetaObjectResults() {
 
@@ -1,10 +1,51 @@
 package secondbrain.domain.context;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.vavr.control.Try;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Objects;
+
 /**
- * Represents a single string and it's associated vector.
+ * Represents a single string and it's associated vector. Sentences can be split from a document
+ * without being vectorized, in which case the vector is calculated when it is first needed.
  *
- * @param context The context string
- * @param vector  The context vector
+ * @param context    The context string
+ * @param vector     The context vector, or null if the sentence has not been vectorized yet
+ * @param hiddenText The hidden text to embed into the vector when it is calculated
  */
-public record RagStringContext(String context, Vector vector) {
+public record RagStringContext(String context, @Nullable Vector vector, @Nullable String hiddenText) {
+    public RagStringContext(final String context, final Vector vector) {
+        this(context, vector, null);
+    }
+
+    /**
+     * Create a sentence whose vector is calculated later by {@link #vectorize(SentenceVectorizer)}.
+     */
+    public static RagStringContext deferred(final String context, @Nullable final String hiddenText) {
+        return new RagStringContext(context, null, hiddenText);
+    }
+
+    @JsonIgnore
+    public boolean isVectorized() {
+        return vector != null;
+    }
+
+    /**
+     * Calculate the vector if it has not been calculated already.
+     *
+     * @return A sentence with a vector, or this sentence if vectorization failed
+     */
+    public RagStringContext vectorize(final SentenceVectorizer sentenceVectorizer) {
+        if (vector != null) {
+            return this;
+        }
+
+        return Try.of(() -> hiddenText == null
+                        ? sentenceVectorizer.vectorize(context)
+                        : sentenceVectorizer.vectorize(context, hiddenText))
+                .filter(Objects::nonNull)
+                .filter(RagStringContext::isVectorized)
+                .getOrElse(this);
+    }
 }
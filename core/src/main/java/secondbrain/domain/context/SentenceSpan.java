@@ -0,0 +1,17 @@
+package secondbrain.domain.context;
+
+/**
+ * A sentence found in a document.
+ *
+ * @param sentence The cleaned up sentence, as returned by {@link SentenceSplitter#splitDocument(String, int)}
+ * @param start    The index of the first character of the sentence in the document
+ * @param end      The index after the last character of the sentence in the document
+ */
+public record SentenceSpan(String sentence, int start, int end) {
+    /**
+     * Returns the sentence as it was written in the document.
+     */
+    public String originalText(final String document) {
+        return document.substring(start, end);
+    }
+}
@@ -7,4 +7,10 @@ import java.util.List;
  */
 public interface SentenceSplitter {
     List<String> splitDocument(String document, final int minWords);
+
+    /**
+     * Splits a document into the same sentences as {@link #splitDocument(String, int)}, along with
+     * where each sentence appears in the document.
+     */
+    List<SentenceSpan> splitDocumentSpans(String document, final int minWords);
 }
@@ -0,0 +1,154 @@
+package secondbrain.domain.context;
+
+import io.vavr.control.Try;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import secondbrain.domain.concurrency.SharedVirtualThreadExecutor;
+import secondbrain.domain.exceptions.InternalFailure;
+import secondbrain.domain.injection.Preferred;
+import secondbrain.domain.persist.LocalStorage;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static com.pivovarit.collectors.ParallelCollectors.parallelToOrderedStream;
+
+/**
+ * Sentences are vectorized after the tools have returned their documents, and the tools usually read those
+ * documents from the cache. The cached documents hold sentences without vectors, so the vectors of each
+ * document are saved in the local storage, keyed by a hash of the sentences. A document that is read from
+ * the cache again reuses its vectors rather than being embedded again. Each document has its own entry,
+ * because the same document is returned in many different contexts.
+ * <p>
+ * Documents are vectorized in parallel, with no more documents at once than there are predictors in the
+ * sentence vectorizer's pool. Each document is read from and written to the cache on its own thread, so the
+ * cache access of one document overlaps the embedding of the others.
+ */
+@ApplicationScoped
+public class SentenceVectorCache {
+    private static final String CACHE_TOOL = SentenceVectorCache.class.getSimpleName();
+    private static final String CACHE_SOURCE = "SentenceVectors";
+    private static final int TTL_SECONDS = 60 * 60 * 24 * 90;
+
+    @Inject
+    @Preferred
+    private LocalStorage localStorage;
+
+    @Inject
+    private SentenceVectorizationStatistics sentenceVectorizationStatistics;
+
+    @Inject
+    private SharedVirtualThreadExecutor sharedVirtualThreadExecutor;
+
+    /**
+     * The number of documents that are vectorized at once, which defaults to the number of CPU cores.
+     * This is the same setting as the size of the predictor pool in JdlSentenceVectorizer.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.vectorizer.poolsize")
+    private Optional<Integer> poolSize;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Vectorizes the sentences of every individual context, reading the vectors from the cache where possible.
+     *
+     * @return A new copy of the context with vectorized sentences
+     */
+    public <T> RagMultiDocumentContext<T> vectorizeSentences(final RagMultiDocumentContext<T> context,
+                                                             final SentenceVectorizer sentenceVectorizer) {
+        if (context.countUnvectorizedSentences() == 0) {
+            return context;
+        }
+
+        return context.updateIndividualContexts(context.getIndividualContexts()
+                .stream()
+                .collect(parallelToOrderedStream(
+                        rag -> vectorizeSentences(rag, sentenceVectorizer),
+                        sharedVirtualThreadExecutor.getExecutor(),
+                        Math.max(1, poolSize.orElse(Runtime.getRuntime().availableProcessors()))))
+                .toList());
+    }
+
+    /**
+     * Vectorizes the sentences of a document, reading the vectors from the cache where possible.
+     *
+     * @return A new copy of the document with vectorized sentences
+     */
+    public <T> RagDocumentContext<T> vectorizeSentences(final RagDocumentContext<T> rag,
+                                                        final SentenceVectorizer sentenceVectorizer) {
+        final List<RagStringContext> sentences = rag.sentences();
+        if (sentences == null || rag.countUnvectorizedSentences() == 0) {
+            return rag;
+        }
+
+        // Keeps the embedded document if it could not be cached, so it isn't embedded twice
+        final AtomicReference<RagDocumentContext<T>> embedded = new AtomicReference<>();
+
+        // The vectors are saved as one object, which is much faster to serialize than an array of vectors
+        return Try.of(() -> localStorage.getOrPutObject(
+                                CACHE_TOOL,
+                                CACHE_SOURCE,
+                                getKey(sentences),
+                                TTL_SECONDS,
+                                SentenceVectors.class,
+                                () -> {
+                                    final RagDocumentContext<T> vectorized = embed(rag, sentenceVectorizer);
+                                    embedded.set(vectorized);
+                                    return getVectors(vectorized);
+                                })
+                        .result())
+                .filter(Objects::nonNull)
+                .map(vectors -> rag.updateSentenceVectors(vectors.vectors()))
+                .onSuccess(vectorized -> {
+                    if (embedded.get() == null) {
+                        sentenceVectorizationStatistics.recordCached(sentences.size());
+                    }
+                })
+                .onFailure(ex -> logger.fine("Failed to cache sentence vectors: " + ExceptionUtils.getRootCauseMessage(ex)))
+                .getOrElse(() -> Objects.requireNonNullElseGet(embedded.get(), () -> embed(rag, sentenceVectorizer)));
+    }
+
+    private <T> RagDocumentContext<T> embed(final RagDocumentContext<T> rag, final SentenceVectorizer sentenceVectorizer) {
+        final RagDocumentContext<T> vectorized = rag.vectorizeSentences(sentenceVectorizer);
+        sentenceVectorizationStatistics.recordEmbedded(rag.countUnvectorizedSentences() - vectorized.countUnvectorizedSentences());
+        return vectorized;
+    }
+
+    /**
+     * Documents with sentences that failed to vectorize are not cached, so they are tried again next time.
+     */
+    private static SentenceVectors getVectors(final RagDocumentContext<?> rag) {
+        if (rag.countUnvectorizedSentences() != 0) {
+            throw new InternalFailure("Failed to vectorize " + rag.countUnvectorizedSentences() + " sentences");
+        }
+
+        return new SentenceVectors(Objects.requireNonNullElse(rag.sentences(), List.<RagStringContext>of())
+                .stream()
+                .map(RagStringContext::vector)
+                .toList());
+    }
+
+    /**
+     * The hidden text is embedded into the vector, so it is part of the key.
+     */
+    private static String getKey(final List<RagStringContext> sentences) {
+        return DigestUtils.sha256Hex(sentences.stream()
+                .map(sentence -> sentence.context() + "\u0000" + Objects.requireNonNullElse(sentence.hiddenText(), ""))
+                .collect(Collectors.joining("\n")));
+    }
+
+    /**
+     * The vectors of the sentences of a document, in the same order as the sentences.
+     */
+    public record SentenceVectors(List<Vector> vectors) {
+    }
+}
@@ -0,0 +1,64 @@
+package secondbrain.domain.context;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Counts the sentences whose vectors were deferred until the answer was annotated, and how many of them
+ * were eventually vectorized. The difference is the number of embeddings saved by not vectorizing documents
+ * that were filtered out of the final context. Sentences whose vectors were read from the cache are counted
+ * separately, as they were not embedded.
+ */
+@ApplicationScoped
+public class SentenceVectorizationStatistics {
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder embedded = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+
+    @Inject
+    private Logger logger;
+
+    @PreDestroy
+    private void preDestroy() {
+        if (getDeferred() != 0 || getCached() != 0) {
+            logger.info("Deferred " + getDeferred() + " sentence embeddings, calculated " + getEmbedded()
+                    + " while annotating, read " + getCached() + " from the cache, and skipped " + getSkipped());
+        }
+    }
+
+    public void recordDeferred(final int count) {
+        deferred.add(count);
+    }
+
+    public void recordEmbedded(final int count) {
+        embedded.add(count);
+    }
+
+    public void recordCached(final int count) {
+        cached.add(count);
+    }
+
+    public long getDeferred() {
+        return deferred.sum();
+    }
+
+    public long getEmbedded() {
+        return embedded.sum();
+    }
+
+    public long getCached() {
+        return cached.sum();
+    }
+
+    /**
+     * Sentences loaded from the cache may be vectorized without being deferred during this run,
+     * so the count never drops below zero.
+     */
+    public long getSkipped() {
+        return Math.max(0, getDeferred() - getEmbedded() - getCached());
+    }
+}
@@ -0,0 +1,30 @@
+package secondbrain.domain.context;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The dot product using the SIMD instructions exposed by the JDK Vector API. This is the only class that
+ * references the incubator module, so it is compiled in its own execution with --add-modules, and is only
+ * loaded by VectorMath when the module is present at runtime.
+ */
+final class SimdDotProduct implements VectorMath.DotProduct {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public float dotProduct(final float[] a, final float[] b) {
+        final int bound = SPECIES.loopBound(a.length);
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            sum = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), sum);
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+}
@@ -3,37 +3,214 @@ package secondbrain.domain.context;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Stream;
 
 /**
  * Splits a document into individual sentences based on punctuation and line breaks.
+ * <p>
+ * Sentences end at line breaks, at semicolons, and at periods, exclamation marks and question marks that are
+ * followed by whitespace or the end of the document. List markers are removed from the start of each sentence,
+ * markup characters are replaced with spaces, and runs of whitespace are collapsed into a single space.
+ * <p>
+ * Every document passes through here, so the document is scanned once and each sentence is written into a
+ * shared buffer, rather than splitting and rewriting the sentences with a chain of regular expressions.
  */
 @ApplicationScoped
 public class SimpleSentenceSplitter implements SentenceSplitter {
-    private static final String SENTENCE_SPLIT_REGEX = "\\r\\n|\\r|\\n|\\.\\s+|\\.$|;\\s+|;|!\\s+|!$|\\?\\s+|\\?$";
+    /**
+     * List formatting removed from the start of a sentence, in the order they are checked.
+     */
+    private static final String[] LIST_PREFIXES = {"* ", "• ", "◦ ", "- "};
 
     @Override
     public List<String> splitDocument(final String document, final int minWords) {
+        return splitDocumentSpans(document, minWords)
+                .stream()
+                .map(SentenceSpan::sentence)
+                .toList();
+    }
+
+    /**
+     * The span of each sentence runs from its first character to its closing punctuation, including any list
+     * marker and markup, but not the surrounding whitespace.
+     */
+    @Override
+    public List<SentenceSpan> splitDocumentSpans(final String document, final int minWords) {
         if (StringUtils.isBlank(document)) {
             return List.of();
         }
 
-        return Stream.of(document.split(SENTENCE_SPLIT_REGEX))
-                .filter(sentence -> !sentence.isBlank())
-                .filter(sentence -> sentence.split("\\s+").length >= minWords)
-                .map(String::trim)
-                // Remove list formatting
-                .map(sentence -> sentence.replaceFirst("^\\* ", ""))
-                .map(sentence -> sentence.replaceFirst("^• ", ""))
-                .map(sentence -> sentence.replaceFirst("^◦ ", ""))
-                .map(sentence -> sentence.replaceFirst("^- ", ""))
-                // We can get all sorts of markup in the sentences. This regex strips it out.
-                .map(sentence -> sentence.replaceAll("[^A-Za-z0-9.\\-_?!@#$%^&*,;:\\\\/]", " "))
-                .map(sentence -> String.join(" ", Arrays.stream(sentence.split("\\s+")).toList()))
-                // Train again to remove any leading or trailing whitespace
-                .map(String::trim)
-                .toList();
+        final List<SentenceSpan> sentences = new ArrayList<>();
+        final StringBuilder buffer = new StringBuilder();
+        final int length = document.length();
+
+        int start = 0;
+        int index = 0;
+        while (index < length) {
+            final int end = sentenceEnd(document, index);
+            if (end == index) {
+                ++index;
+                continue;
+            }
+
+            addSentence(document, start, index, end, minWords, buffer, sentences);
+            start = end;
+            index = end;
+        }
+        addSentence(document, start, length, length, minWords, buffer, sentences);
+
+        return Collections.unmodifiableList(sentences);
+    }
+
+    /**
+     * Returns the index after the sentence separator starting at the index, or the index itself
+     * if there is no separator there.
+     */
+    private static int sentenceEnd(final String document, final int index) {
+        final char c = document.charAt(index);
+
+        if (c == '\r') {
+            return index + 1 < document.length() && document.charAt(index + 1) == '\n' ? index + 2 : index + 1;
+        }
+
+        if (c == '\n') {
+            return index + 1;
+        }
+
+        if (c == ';') {
+            return skipWhitespace(document, index + 1);
+        }
+
+        if (c == '.' || c == '!' || c == '?') {
+            final int end = skipWhitespace(document, index + 1);
+            if (end != index + 1 || isEndOfInput(document, index + 1)) {
+                return end;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Adds the sentence between start and end, where separatorEnd is the index after the separator that
+     * closed the sentence.
+     */
+    private static void addSentence(final String document,
+                                    final int start,
+                                    final int end,
+                                    final int separatorEnd,
+                                    final int minWords,
+                                    final StringBuilder buffer,
+                                    final List<SentenceSpan> sentences) {
+        if (isBlank(document, start, end) || countWords(document, start, end) < minWords) {
+            return;
+        }
+
+        int first = start;
+        int last = end;
+        while (first < last && document.charAt(first) <= ' ') {
+            ++first;
+        }
+        while (last > first && document.charAt(last - 1) <= ' ') {
+            --last;
+        }
+
+        final int spanStart = first;
+        int spanEnd = separatorEnd;
+        while (spanEnd > last && document.charAt(spanEnd - 1) <= ' ') {
+            --spanEnd;
+        }
+
+        for (final String prefix : LIST_PREFIXES) {
+            if (document.startsWith(prefix, first) && first + prefix.length() <= last) {
+                first += prefix.length();
+            }
+        }
+
+        // We can get all sorts of markup in the sentences, which is replaced by the single space between words
+        buffer.setLength(0);
+        boolean space = false;
+        for (int i = first; i < last; ++i) {
+            final char c = document.charAt(i);
+            if (isRetained(c)) {
+                if (space && !buffer.isEmpty()) {
+                    buffer.append(' ');
+                }
+                buffer.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+
+        sentences.add(new SentenceSpan(buffer.toString(), spanStart, spanEnd));
+    }
+
+    private static boolean isBlank(final String document, final int start, final int end) {
+        for (int i = start; i < end; ) {
+            final int codePoint = document.codePointAt(i);
+            if (!Character.isWhitespace(codePoint)) {
+                return false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return true;
+    }
+
+    /**
+     * Counts the words the same way as splitting on whitespace, where leading whitespace counts as an empty word.
+     */
+    private static int countWords(final String document, final int start, final int end) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = start; i < end; ++i) {
+            final boolean whitespace = isRegexWhitespace(document.charAt(i));
+            if (i == start && whitespace) {
+                ++words;
+            }
+            if (!whitespace && !inWord) {
+                ++words;
+            }
+            inWord = !whitespace;
+        }
+        return words;
+    }
+
+    private static int skipWhitespace(final String document, final int index) {
+        int end = index;
+        while (end < document.length() && isRegexWhitespace(document.charAt(end))) {
+            ++end;
+        }
+        return end;
+    }
+
+    /**
+     * Matches the end of the document, or a line terminator that ends the document.
+     */
+    private static boolean isEndOfInput(final String document, final int index) {
+        final int remaining = document.length() - index;
+        if (remaining == 0) {
+            return true;
+        }
+
+        if (remaining == 1) {
+            final char c = document.charAt(index);
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+
+        return remaining == 2 && document.charAt(index) == '\r' && document.charAt(index + 1) == '\n';
+    }
+
+    private static boolean isRegexWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isRetained(final char c) {
+        return (c >= 'A' && c <= 'Z')
+                || (c >= 'a' && c <= 'z')
+                || (c >= '0' && c <= '9')
+                || ".-_?!@#$%^&*,;:\\/".indexOf(c) != -1;
     }
 }
@@ -4,47 +4,75 @@ import java.util.Arrays;
 import java.util.Objects;
 
 /**
- * Represents a vector of double values backed by a primitive double array
- * to minimize heap usage (avoids boxing each value as a Double object).
+ * Represents a vector backed by a primitive float array to minimize heap usage
+ * (avoids boxing each value as a Double object). The values are normalized to unit length
+ * when the vector is created, so the cosine similarity of two vectors is their dot product.
  *
- * @param value The primitive double array
+ * @param value The normalized primitive float array
  */
-public record Vector(double[] value) {
+public record Vector(float[] value) {
+    private static final double UNIT_TOLERANCE = 1e-6;
 
     public Vector(final Double... value) {
-        this(Arrays.stream(value).mapToDouble(Double::doubleValue).toArray());
+        this(toFloat(Arrays.stream(value).mapToDouble(Double::doubleValue).toArray()));
     }
 
     public Vector(final double[] value) {
-        this.value = Objects.requireNonNull(value);
+        this(toFloat(value));
+    }
+
+    public Vector(final float[] value) {
+        this.value = normalize(Objects.requireNonNull(value));
     }
 
     public int dimension() {
         return value.length;
     }
 
-    public double get(final int index) {
+    public float get(final int index) {
         if (index < 0 || index >= value.length) {
             throw new IndexOutOfBoundsException("Index: " + index + " is out of bound");
         }
         return value[index];
     }
 
+    /**
+     * The dot product of two normalized vectors, which is also their cosine similarity.
+     */
     public double dotProduct(final Vector other) {
-        double dotProduct = 0.0;
+        if (value.length != other.value.length) {
+            throw new IllegalArgumentException("Vectors have different dimensions: " + value.length + " and " + other.value.length);
+        }
+        return VectorMath.dotProduct(value, other.value);
+    }
 
+    /**
+     * Vectors that are already unit length are kept as they are, so a vector read back from a cache is identical
+     * to the one that was written rather than renormalized by a rounding error.
+     */
+    private static float[] normalize(final float[] value) {
+        double sum = 0;
+        for (final float v : value) {
+            sum += (double) v * v;
+        }
+        final double norm = Math.sqrt(sum);
+        if (norm == 0 || Math.abs(norm - 1) < UNIT_TOLERANCE) {
+            return value.clone();
+        }
+
+        final float[] normalized = new float[value.length];
         for (int i = 0; i < value.length; i++) {
-            dotProduct += value[i] * other.value[i];
+            normalized[i] = (float) (value[i] / norm);
         }
-        return dotProduct;
+        return normalized;
     }
 
-    public double norm() {
-        double sum = 0.0;
-        for (final double v : value) {
-            sum += v * v;
+    private static float[] toFloat(final double[] value) {
+        final float[] floatArray = new float[value.length];
+        for (int i = 0; i < value.length; i++) {
+            floatArray[i] = (float) value[i];
         }
-        return Math.sqrt(sum);
+        return floatArray;
     }
 
     @Override
@@ -63,4 +91,4 @@ public record Vector(double[] value) {
     public String toString() {
         return "Vector[value=" + Arrays.toString(value) + "]";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+package secondbrain.domain.context;
+
+import io.vavr.control.Try;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Vector arithmetic that uses the SIMD instructions exposed by the JDK Vector API.
+ * The API is an incubator module that is only available when the JVM is started with
+ * --add-modules jdk.incubator.vector, so the scalar code is used when the module is missing.
+ */
+final class VectorMath {
+    private static final String SIMD_CLASS = "secondbrain.domain.context.SimdDotProduct";
+
+    @Nullable
+    private static final DotProduct SIMD = loadSimd();
+
+    private VectorMath() {
+    }
+
+    static boolean isSimdAvailable() {
+        return SIMD != null;
+    }
+
+    static float dotProduct(final float[] a, final float[] b) {
+        final DotProduct simd = SIMD;
+        return simd == null ? scalarDotProduct(a, b) : simd.dotProduct(a, b);
+    }
+
+    static float scalarDotProduct(final float[] a, final float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * The SIMD class is loaded by name, so nothing else is compiled against the incubator module.
+     */
+    @Nullable
+    private static DotProduct loadSimd() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+
+        return Try.of(() -> (DotProduct) Class.forName(SIMD_CLASS).getDeclaredConstructor().newInstance())
+                .getOrNull();
+    }
+
+    interface DotProduct {
+        float dotProduct(float[] a, float[] b);
+    }
+}
@@ -0,0 +1,77 @@
+package secondbrain.domain.context.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import secondbrain.domain.context.Vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+
+/**
+ * Reads the strings written by {@link VectorSerializer}. Cache entries written before vectors were
+ * encoded hold an object with an array of decimal values, and are still read.
+ */
+public class VectorDeserializer extends StdDeserializer<Vector> {
+    public VectorDeserializer() {
+        super(Vector.class);
+    }
+
+    @Override
+    public Vector deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_STRING) {
+            return decode(p.getText(), p, ctxt);
+        }
+
+        final JsonNode node = p.readValueAsTree();
+        final JsonNode values = node == null ? null : node.get("value");
+        if (values == null || !values.isArray()) {
+            return (Vector) ctxt.handleUnexpectedToken(Vector.class, p);
+        }
+
+        final float[] floats = new float[values.size()];
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = (float) values.get(i).asDouble();
+        }
+        return new Vector(floats);
+    }
+
+    private Vector decode(final String text, final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        final String[] parts = text.split(":", 3);
+        if (parts.length != 3 || !VectorSerializer.VERSION.equals(parts[0])) {
+            return (Vector) ctxt.handleWeirdStringValue(Vector.class, text, "Unsupported vector encoding");
+        }
+
+        final VectorFormat format;
+        try {
+            format = VectorFormat.fromMarker(parts[1]);
+        } catch (final IllegalArgumentException ex) {
+            return (Vector) ctxt.handleWeirdStringValue(Vector.class, text, ex.getMessage());
+        }
+
+        return new Vector(decode(Base64.getDecoder().decode(parts[2]), format));
+    }
+
+    static float[] decode(final byte[] bytes, final VectorFormat format) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        return switch (format) {
+            case FLOAT32 -> {
+                final float[] values = new float[bytes.length / Float.BYTES];
+                buffer.asFloatBuffer().get(values);
+                yield values;
+            }
+            case INT8 -> {
+                final float scale = buffer.getFloat();
+                final float[] values = new float[buffer.remaining()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = buffer.get() * scale;
+                }
+                yield values;
+            }
+        };
+    }
+}
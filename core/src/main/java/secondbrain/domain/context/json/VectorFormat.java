@@ -0,0 +1,45 @@
+package secondbrain.domain.context.json;
+
+import java.util.Arrays;
+
+/**
+ * The binary encodings used to serialize a vector.
+ */
+public enum VectorFormat {
+    /**
+     * Four bytes per dimension, which preserves the vector exactly.
+     */
+    FLOAT32("f32"),
+    /**
+     * One byte per dimension, scaled by the largest value in the vector. Cosine similarities
+     * calculated from the quantized vectors are typically within 0.001 of the original values.
+     */
+    INT8("i8");
+
+    private final String marker;
+
+    VectorFormat(final String marker) {
+        this.marker = marker;
+    }
+
+    public String getMarker() {
+        return marker;
+    }
+
+    public static VectorFormat fromMarker(final String marker) {
+        return Arrays.stream(values())
+                .filter(format -> format.marker.equals(marker))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown vector format " + marker));
+    }
+
+    /**
+     * Parse the configured format, accepting either the enum name or the marker.
+     */
+    public static VectorFormat fromConfig(final String value) {
+        return Arrays.stream(values())
+                .filter(format -> format.name().equalsIgnoreCase(value) || format.marker.equalsIgnoreCase(value))
+                .findFirst()
+                .orElse(FLOAT32);
+    }
+}
@@ -0,0 +1,27 @@
+package secondbrain.domain.context.json;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import secondbrain.domain.context.Vector;
+
+/**
+ * A Jackson module that writes the sentence vectors in cached RAG contexts as compact binary blobs.
+ */
+@ApplicationScoped
+public class VectorJacksonModule extends SimpleModule {
+    /**
+     * Either float32, which is lossless, or int8, which is a quarter of the size.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.cache.vectorformat", defaultValue = "float32")
+    private String vectorFormat;
+
+    @PostConstruct
+    private void init() {
+        addSerializer(Vector.class, new VectorSerializer(VectorFormat.fromConfig(vectorFormat)));
+        addDeserializer(Vector.class, new VectorDeserializer());
+    }
+}
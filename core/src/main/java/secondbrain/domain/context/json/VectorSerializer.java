@@ -0,0 +1,66 @@
+package secondbrain.domain.context.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import secondbrain.domain.context.Vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+
+/**
+ * Writes a vector as a string holding a version marker, the format, and the Base64 encoded values,
+ * like "v1:f32:AAAAPwAAgD8=". Writing each value as a decimal number makes a cached sentence
+ * several times larger than its binary representation.
+ */
+public class VectorSerializer extends StdSerializer<Vector> {
+    /**
+     * The version of the encoding. Change this if the layout of the bytes changes.
+     */
+    public static final String VERSION = "v1";
+
+    private final VectorFormat format;
+
+    public VectorSerializer(final VectorFormat format) {
+        super(Vector.class);
+        this.format = format;
+    }
+
+    @Override
+    public void serialize(final Vector vector, final JsonGenerator gen, final SerializerProvider provider) throws IOException {
+        gen.writeString(VERSION + ":" + format.getMarker() + ":" + Base64.getEncoder().encodeToString(encode(vector.value(), format)));
+    }
+
+    static byte[] encode(final float[] values, final VectorFormat format) {
+        return switch (format) {
+            case FLOAT32 -> encodeFloat32(values);
+            case INT8 -> encodeInt8(values);
+        };
+    }
+
+    private static byte[] encodeFloat32(final float[] values) {
+        final ByteBuffer buffer = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(values);
+        return buffer.array();
+    }
+
+    /**
+     * The scale is written first, followed by one signed byte per value.
+     */
+    private static byte[] encodeInt8(final float[] values) {
+        float max = 0;
+        for (final float value : values) {
+            max = Math.max(max, Math.abs(value));
+        }
+        final float scale = max == 0 ? 1 : max / Byte.MAX_VALUE;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(Float.BYTES + values.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putFloat(scale);
+        for (final float value : values) {
+            buffer.put((byte) Math.round(value / scale));
+        }
+        return buffer.array();
+    }
+}
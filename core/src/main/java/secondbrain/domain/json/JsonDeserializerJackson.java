@@ -37,9 +37,16 @@ public class JsonDeserializerJackson implements JsonDeserializer {
     @Inject
     private Logger logger;
 
+    /**
+     * The mapper is thread safe once it is configured. Creating it is expensive, as the Blackbird module
+     * generates accessor classes for each type, so it is created once and reused.
+     */
+    @Nullable
+    private volatile ObjectMapper objectMapper;
+
     @Override
     public String serialize(final Object object) {
-        return Try.of(this::createObjectMapper)
+        return Try.of(this::getObjectMapper)
                 .mapTry(objectMapper -> objectMapper.writeValueAsString(object))
                 .onFailure(ex -> logger.warning("Failed to serialize object of type " + object.getClass().getSimpleName() + ": " + ex.getMessage()))
                 .getOrElseThrow(ex -> new SerializationFailed(ex));
@@ -60,7 +67,7 @@ public class JsonDeserializerJackson implements JsonDeserializer {
             return Optional.empty();
         }
 
-        return Try.of(this::createObjectMapper)
+        return Try.of(this::getObjectMapper)
                 .mapTry(objectMapper -> objectMapper.readValue(json, clazz))
                 .map(Optional::of)
                 .recover(ex -> Optional.empty())
@@ -70,7 +77,7 @@ public class JsonDeserializerJackson implements JsonDeserializer {
     private <T> T deserializeTimed(final String json, final Class<T> clazz) {
         checkArgument(StringUtils.isNotBlank(json), "JSON string cannot be blank");
 
-        return Try.of(this::createObjectMapper)
+        return Try.of(this::getObjectMapper)
                 .mapTry(objectMapper -> objectMapper.readValue(json, clazz))
                 .onFailure(ex -> logger.warning("Failed to deserialize object of type " + clazz.getSimpleName() + "\n" + json + "\n" + ex.getMessage()))
                 .getOrElseThrow(ex -> new DeserializationFailed(ex));
@@ -80,7 +87,7 @@ public class JsonDeserializerJackson implements JsonDeserializer {
     public <U, V> Map<U, V> deserializeMap(final String json, final Class<U> key, final Class<V> value) {
         checkArgument(StringUtils.isNotBlank(json), "JSON string cannot be blank");
 
-        return Try.of(this::createObjectMapper)
+        return Try.of(this::getObjectMapper)
                 .mapTry(objectMapper -> objectMapper.<Map<U, V>>readValue(
                         json,
                         objectMapper.getTypeFactory().constructMapType(Map.class, key, value)))
@@ -92,7 +99,7 @@ public class JsonDeserializerJackson implements JsonDeserializer {
     public <U, V> Optional<Map<U, V>> tryDeserializeMap(final String json, final Class<U> key, final Class<V> value) {
         checkArgument(StringUtils.isNotBlank(json), "JSON string cannot be blank");
 
-        return Try.of(this::createObjectMapper)
+        return Try.of(this::getObjectMapper)
                 .mapTry(objectMapper -> objectMapper.<Map<U, V>>readValue(
                         json,
                         objectMapper.getTypeFactory().constructMapType(Map.class, key, value)))
@@ -105,7 +112,7 @@ public class JsonDeserializerJackson implements JsonDeserializer {
     public <U> List<U> deserializeCollection(final String json, final Class<U> value) {
         checkArgument(StringUtils.isNotBlank(json), "JSON string cannot be blank");
 
-        return Try.of(this::createObjectMapper)
+        return Try.of(this::getObjectMapper)
                 .mapTry(objectMapper -> objectMapper.<List<U>>readValue(
                         json,
                         objectMapper.getTypeFactory().constructCollectionType(List.class, value)))
@@ -118,7 +125,7 @@ public class JsonDeserializerJackson implements JsonDeserializer {
             return Optional.empty();
         }
 
-        return Try.of(this::createObjectMapper)
+        return Try.of(this::getObjectMapper)
                 .mapTry(objectMapper -> objectMapper.<List<U>>readValue(
                         json,
                         objectMapper.getTypeFactory().constructCollectionType(List.class, value)))
@@ -131,7 +138,7 @@ public class JsonDeserializerJackson implements JsonDeserializer {
     public <T, U> T deserializeGeneric(final String json, final Class<T> container, final Class<U> contained) {
         checkArgument(StringUtils.isNotBlank(json), "JSON string cannot be blank");
 
-        return Try.of(this::createObjectMapper)
+        return Try.of(this::getObjectMapper)
                 .mapTry(objectMapper -> objectMapper.<T>readValue(
                         json,
                         objectMapper.getTypeFactory().constructParametricType(container, contained)))
@@ -145,7 +152,7 @@ public class JsonDeserializerJackson implements JsonDeserializer {
             return Optional.empty();
         }
 
-        return Try.of(this::createObjectMapper)
+        return Try.of(this::getObjectMapper)
                 .mapTry(objectMapper -> objectMapper.<T>readValue(
                         json,
                         objectMapper.getTypeFactory().constructParametricType(container, contained)))
@@ -158,7 +165,7 @@ public class JsonDeserializerJackson implements JsonDeserializer {
     public <T, U, V> T deserializeGeneric(final String json, final Class<T> container, final Class<U> contained, final Class<V> contained2) {
         checkArgument(StringUtils.isNotBlank(json), "JSON string cannot be blank");
 
-        return Try.of(this::createObjectMapper)
+        return Try.of(this::getObjectMapper)
                 .mapTry(objectMapper -> objectMapper.<T>readValue(
                         json,
                         constructParametricType(objectMapper, container, contained, contained2)))
@@ -172,7 +179,7 @@ public class JsonDeserializerJackson implements JsonDeserializer {
             return Optional.empty();
         }
 
-        return Try.of(this::createObjectMapper)
+        return Try.of(this::getObjectMapper)
                 .mapTry(objectMapper -> objectMapper.<T>readValue(
                         json,
                         constructParametricType(objectMapper, container, contained, contained2)))
@@ -186,6 +193,22 @@ public class JsonDeserializerJackson implements JsonDeserializer {
         return objectMapper.getTypeFactory().constructParametricType(container, inner);
     }
 
+    private ObjectMapper getObjectMapper() {
+        final ObjectMapper existing = objectMapper;
+        if (existing != null) {
+            return existing;
+        }
+
+        synchronized (this) {
+            ObjectMapper current = objectMapper;
+            if (current == null) {
+                current = createObjectMapper();
+                objectMapper = current;
+            }
+            return current;
+        }
+    }
+
     private ObjectMapper createObjectMapper() {
         final ObjectMapper objectMapper = new ObjectMapper();
         if (modules != null) {
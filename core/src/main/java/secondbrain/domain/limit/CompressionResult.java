@@ -0,0 +1,18 @@
+package secondbrain.domain.limit;
+
+/**
+ * The result of compressing a document.
+ *
+ * @param document         The compressed document
+ * @param originalTokens   The estimated number of tokens in the original document
+ * @param compressedTokens The estimated number of tokens in the compressed document
+ */
+public record CompressionResult(String document, int originalTokens, int compressedTokens) {
+    public CompressionResult() {
+        this("", 0, 0);
+    }
+
+    public int savedTokens() {
+        return originalTokens - compressedTokens;
+    }
+}
@@ -0,0 +1,16 @@
+package secondbrain.domain.limit;
+
+/**
+ * Defines a service that reduces a document to the parts most relevant to a prompt.
+ */
+public interface DocumentCompressor {
+    /**
+     * Compresses a document to fit within a token budget.
+     *
+     * @param document    The document to compress
+     * @param prompt      The prompt the document is being used to answer
+     * @param tokenBudget The maximum number of tokens in the compressed document
+     * @return The compressed document
+     */
+    CompressionResult compressDocument(String document, String prompt, int tokenBudget);
+}
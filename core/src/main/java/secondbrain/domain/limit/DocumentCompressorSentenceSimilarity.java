@@ -0,0 +1,136 @@
+package secondbrain.domain.limit;
+
+import io.vavr.control.Try;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jspecify.annotations.Nullable;
+import secondbrain.domain.context.RagStringContext;
+import secondbrain.domain.context.SentenceSpan;
+import secondbrain.domain.context.SentenceSplitter;
+import secondbrain.domain.context.SentenceVectorizer;
+import secondbrain.domain.context.SimilarityCalculator;
+import secondbrain.domain.context.Vector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A service that keeps the sentences of a document that are most similar to the prompt. Sentences are ranked
+ * by the similarity of their embeddings to the embedding of the prompt, the highest ranked sentences are kept
+ * until the token budget is spent, and the kept sentences are returned in their original order.
+ * <p>
+ * The cleaned up sentences from the splitter are only used to score the sentences. The compressed document is
+ * made up of the sentences as they were written in the original document, so markup, punctuation and
+ * identifiers are passed to the LLM unchanged.
+ * <p>
+ * Documents that already fit in the budget are returned unchanged without being vectorized. If the prompt
+ * can not be vectorized, the sentences are kept in the order they appear in the document.
+ */
+@ApplicationScoped
+public class DocumentCompressorSentenceSimilarity implements DocumentCompressor {
+    /**
+     * This is an assumption about the number of characters per token.
+     */
+    public static final float DEFAULT_CHARS_PER_TOKEN = 3.5f;
+
+    private static final String SENTENCE_SEPARATOR = "\n";
+
+    @Inject
+    @ConfigProperty(name = "sb.compressor.charsPerToken", defaultValue = DEFAULT_CHARS_PER_TOKEN + "")
+    private Float charsPerToken;
+
+    @Inject
+    private SentenceSplitter sentenceSplitter;
+
+    @Inject
+    private SentenceVectorizer sentenceVectorizer;
+
+    @Inject
+    private SimilarityCalculator similarityCalculator;
+
+    @Override
+    public CompressionResult compressDocument(final String document, final String prompt, final int tokenBudget) {
+        if (StringUtils.isBlank(document) || tokenBudget <= 0) {
+            return new CompressionResult();
+        }
+
+        final int originalTokens = estimateTokens(document);
+        if (originalTokens <= tokenBudget) {
+            return new CompressionResult(document, originalTokens, originalTokens);
+        }
+
+        final List<SentenceSpan> sentences = sentenceSplitter.splitDocumentSpans(document, 1);
+        final double[] scores = scoreSentences(sentences, prompt);
+
+        final List<Integer> kept = new ArrayList<>();
+        int remaining = tokenBudget;
+        for (final int index : rankSentences(scores)) {
+            // Separators are counted with the sentence so the joined document stays within the budget
+            final int tokens = estimateTokens(sentences.get(index).originalText(document) + SENTENCE_SEPARATOR);
+            if (tokens <= remaining) {
+                kept.add(index);
+                remaining -= tokens;
+            }
+        }
+
+        final String compressed = kept.stream()
+                .sorted()
+                .map(index -> sentences.get(index).originalText(document))
+                .collect(Collectors.joining(SENTENCE_SEPARATOR));
+
+        return new CompressionResult(compressed, originalTokens, estimateTokens(compressed));
+    }
+
+    public int estimateTokens(final String text) {
+        return (int) Math.ceil(StringUtils.length(text) / charsPerToken);
+    }
+
+    /**
+     * Scores each sentence by its similarity to the prompt. Every sentence scores zero if the prompt
+     * can not be vectorized, and sentences that can not be vectorized are ranked last.
+     */
+    private double[] scoreSentences(final List<SentenceSpan> sentences, final String prompt) {
+        final double[] scores = new double[sentences.size()];
+
+        final Vector promptVector = StringUtils.isBlank(prompt) ? null : getVector(prompt);
+        if (promptVector == null) {
+            return scores;
+        }
+
+        for (int i = 0; i < sentences.size(); ++i) {
+            final Vector sentenceVector = getVector(sentences.get(i).sentence());
+            scores[i] = sentenceVector == null
+                    ? Double.NEGATIVE_INFINITY
+                    : Try.of(() -> similarityCalculator.calculateSimilarity(promptVector, sentenceVector))
+                    .filter(Objects::nonNull)
+                    .getOrElse(Double.NEGATIVE_INFINITY);
+        }
+
+        return scores;
+    }
+
+    @Nullable
+    private Vector getVector(final String text) {
+        return Try.of(() -> sentenceVectorizer.vectorize(text))
+                .filter(Objects::nonNull)
+                .map(RagStringContext::vector)
+                .filter(vector -> vector != null && vector.dimension() != 0)
+                .getOrNull();
+    }
+
+    /**
+     * Returns the sentence indexes from the highest to the lowest score, with ties kept in document order.
+     */
+    private static List<Integer> rankSentences(final double[] scores) {
+        return IntStream.range(0, scores.length)
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer index) -> scores[index]).reversed())
+                .toList();
+    }
+}
@@ -0,0 +1,20 @@
+package secondbrain.domain.limit;
+
+import secondbrain.domain.context.RagDocumentContext;
+
+import java.util.List;
+
+/**
+ * Defines a service that removes near duplicate documents before they are sent to the LLM.
+ */
+public interface DocumentDeduplicator {
+    /**
+     * Removes documents that are near duplicates of another document in the list.
+     *
+     * @param documents The documents to deduplicate
+     * @param tool      The name of the tool that generated the documents
+     * @param <T>       The type of the source of the documents
+     * @return The documents that were kept, in their original order
+     */
+    <T> List<RagDocumentContext<T>> deduplicate(List<RagDocumentContext<T>> documents, String tool);
+}
@@ -0,0 +1,187 @@
+package secondbrain.domain.limit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import secondbrain.domain.context.RagDocumentContext;
+import secondbrain.domain.list.StringToList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * A service that removes near duplicate documents, like emails that quote each other, ticket comments that
+ * repeat the thread, or messages that are cross posted to several channels.
+ * <p>
+ * Each document is fingerprinted with a 64 bit SimHash of its overlapping word shingles. Documents whose
+ * fingerprints differ by no more than sb.dedup.maxDistance bits are treated as duplicates. The longest document
+ * in each group is kept, with ties broken by the document ID, so the same document is kept regardless of the
+ * order the documents were returned in.
+ */
+@ApplicationScoped
+public class DocumentDeduplicatorSimHash implements DocumentDeduplicator {
+    private static final int SHINGLE_SIZE = 3;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final String ALL_TOOLS = "*";
+
+    /**
+     * A comma separated list of the tools whose documents are deduplicated, or * for all tools.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.dedup.tools", defaultValue = "")
+    private Optional<String> tools;
+
+    /**
+     * The maximum number of bits that can differ between the fingerprints of two duplicate documents.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.dedup.maxDistance", defaultValue = "8")
+    private Integer maxDistance;
+
+    /**
+     * The same estimate of the number of characters per token as the compressor, so their reports agree.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.compressor.charsPerToken", defaultValue = DocumentCompressorSentenceSimilarity.DEFAULT_CHARS_PER_TOKEN + "")
+    private Float charsPerToken;
+
+    @Inject
+    private StringToList stringToList;
+
+    @Inject
+    private Logger logger;
+
+    private final LongAdder removedDocuments = new LongAdder();
+    private final LongAdder avoidedTokens = new LongAdder();
+
+    private final Set<String> enabledTools = new HashSet<>();
+
+    @PostConstruct
+    void init() {
+        enabledTools.addAll(stringToList.convert(tools.map(String::trim).orElse(""))
+                .stream()
+                .map(tool -> tool.toLowerCase(Locale.ROOT))
+                .toList());
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (removedDocuments.sum() != 0) {
+            logger.info("Removed " + removedDocuments.sum() + " near duplicate documents, avoiding an estimated "
+                    + avoidedTokens.sum() + " tokens");
+        }
+    }
+
+    @Override
+    public <T> List<RagDocumentContext<T>> deduplicate(final List<RagDocumentContext<T>> documents, final String tool) {
+        if (documents.size() < 2 || !isEnabled(tool)) {
+            return documents;
+        }
+
+        final long[] fingerprints = documents.stream()
+                .mapToLong(document -> fingerprint(document.document()))
+                .toArray();
+
+        // Representatives are chosen from the longest documents first
+        final List<Integer> candidates = IntStream.range(0, documents.size())
+                .boxed()
+                .sorted(Comparator.comparingInt((Integer index) -> StringUtils.length(documents.get(index).document()))
+                        .reversed()
+                        .thenComparing(index -> StringUtils.defaultString(documents.get(index).id())))
+                .toList();
+
+        final List<Integer> kept = new ArrayList<>();
+        long removedChars = 0;
+        for (final int candidate : candidates) {
+            if (kept.stream().anyMatch(index -> isDuplicate(fingerprints[index], fingerprints[candidate]))) {
+                removedChars += StringUtils.length(documents.get(candidate).document());
+            } else {
+                kept.add(candidate);
+            }
+        }
+
+        if (kept.size() == documents.size()) {
+            return documents;
+        }
+
+        final int removed = documents.size() - kept.size();
+        final int tokens = (int) Math.ceil(removedChars / charsPerToken);
+        removedDocuments.add(removed);
+        avoidedTokens.add(tokens);
+        logger.info("Removed " + removed + " near duplicate documents from " + tool
+                + ", avoiding an estimated " + tokens + " tokens");
+
+        return kept.stream()
+                .sorted()
+                .map(documents::get)
+                .toList();
+    }
+
+    long getAvoidedTokens() {
+        return avoidedTokens.sum();
+    }
+
+    private boolean isEnabled(final String tool) {
+        return enabledTools.contains(ALL_TOOLS) || enabledTools.contains(tool.toLowerCase(Locale.ROOT));
+    }
+
+    private boolean isDuplicate(final long fingerprint1, final long fingerprint2) {
+        return Long.bitCount(fingerprint1 ^ fingerprint2) <= maxDistance;
+    }
+
+    /**
+     * Calculates the SimHash of the document. Each bit of the fingerprint is set if more of the shingle hashes
+     * have that bit set than not, so similar documents have fingerprints that differ in only a few bits.
+     */
+    long fingerprint(final String document) {
+        final String[] words = StringUtils.defaultString(document)
+                .toLowerCase(Locale.ROOT)
+                .split("[^\\p{L}\\p{N}]+");
+
+        final int[] weights = new int[Long.SIZE];
+        final int shingles = Math.max(1, words.length - SHINGLE_SIZE + 1);
+        for (int i = 0; i < shingles; ++i) {
+            final long hash = hashShingle(words, i, Math.min(words.length, i + SHINGLE_SIZE));
+            for (int bit = 0; bit < Long.SIZE; ++bit) {
+                weights[bit] += ((hash >>> bit) & 1L) == 0 ? -1 : 1;
+            }
+        }
+
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; ++bit) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * A 64 bit FNV-1a hash of the words, which is stable across JVMs unlike String.hashCode().
+     */
+    private static long hashShingle(final String[] words, final int start, final int end) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = start; i < end; ++i) {
+            final String word = words[i];
+            for (int j = 0; j < word.length(); ++j) {
+                hash ^= word.charAt(j);
+                hash *= FNV_PRIME;
+            }
+            hash ^= ' ';
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -5,6 +5,7 @@ import secondbrain.domain.context.IndividualContext;
 
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 /**
  * A service that limits the content of a list.
@@ -31,6 +32,19 @@ public interface ListLimiter {
      */
     <T> List<T> limitListContent(List<T> list, Function<T, String> getContext, int limit);
 
+    /**
+     * Limits the content of a list with complex objects to a specified length, using the relevance of each item
+     * to decide which items to keep.
+     *
+     * @param list         The list to limit
+     * @param getContext   A callback to get the string value of the items in the list
+     * @param getRelevance A callback to get the relevance score of the items in the list, where higher is better
+     * @param limit        The maximum length of the list
+     * @param <T>          The type of the items in the list
+     * @return The list with content limited to the specified length, in the original order
+     */
+    <T> List<T> limitListContent(List<T> list, Function<T, String> getContext, ToDoubleFunction<T> getRelevance, int limit);
+
     /**
      * Limits the content of a list with complex objects to a specified fraction of the original length.
      *
@@ -6,6 +6,7 @@ import secondbrain.domain.context.IndividualContext;
 
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 /**
  * An implementation of ListLimiter that cuts off the list at the first element that would exceed the limit.
@@ -47,6 +48,14 @@ public class ListLimiterAtomicCutOff implements ListLimiter {
         return list;
     }
 
+    /**
+     * This implementation ignores the relevance and keeps the items in list order.
+     */
+    @Override
+    public <T> List<T> limitListContent(final List<T> list, final Function<T, String> getContext, final ToDoubleFunction<T> getRelevance, final int limit) {
+        return limitListContent(list, getContext, limit);
+    }
+
     @Override
     public <T> List<T> limitListContentByFraction(List<T> list, Function<T, String> getContext, float limit) {
         final int currentLength = list
@@ -0,0 +1,29 @@
+package secondbrain.domain.limit;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import secondbrain.domain.injection.Preferred;
+
+/**
+ * Produces a ListLimiter instance based on the configuration.
+ */
+@ApplicationScoped
+public class ListLimiterProducer {
+
+    @Inject
+    @ConfigProperty(name = "sb.listlimiter.provider", defaultValue = "relevance")
+    private String listLimiterProvider;
+
+    @Produces
+    @Preferred
+    @ApplicationScoped
+    public ListLimiter produceListLimiter(final ListLimiterAtomicCutOff listLimiterAtomicCutOff, final ListLimiterRelevanceRanked listLimiterRelevanceRanked) {
+        if ("atomic".equalsIgnoreCase(listLimiterProvider)) {
+            return listLimiterAtomicCutOff;
+        }
+
+        return listLimiterRelevanceRanked;
+    }
+}
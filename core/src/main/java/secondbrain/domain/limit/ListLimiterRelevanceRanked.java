@@ -0,0 +1,97 @@
+package secondbrain.domain.limit;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.commons.lang.StringUtils;
+import secondbrain.domain.context.IndividualContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * An implementation of ListLimiter that keeps the most relevant items that fit in the limit. This is a knapsack
+ * problem, which is solved greedily by taking the items with the highest relevance per character first, skipping
+ * any item that no longer fits. If the single most relevant item that fits scores higher than the greedy
+ * selection, it is returned instead, which guarantees at least half of the best possible score.
+ * <p>
+ * Lists without relevance scores, or where every item has the same score, are limited in list order
+ * like {@link ListLimiterAtomicCutOff}.
+ */
+@ApplicationScoped
+public class ListLimiterRelevanceRanked implements ListLimiter {
+    @Inject
+    private ListLimiterAtomicCutOff listLimiterAtomicCutOff;
+
+    @Override
+    public List<String> limitListContent(final List<String> list, final int limit) {
+        return listLimiterAtomicCutOff.limitListContent(list, limit);
+    }
+
+    @Override
+    public <T> List<T> limitListContent(final List<T> list, final Function<T, String> getContext, final int limit) {
+        return listLimiterAtomicCutOff.limitListContent(list, getContext, limit);
+    }
+
+    @Override
+    public <T> List<T> limitListContent(final List<T> list, final Function<T, String> getContext, final ToDoubleFunction<T> getRelevance, final int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        final int[] lengths = list.stream().mapToInt(item -> StringUtils.length(getContext.apply(item))).toArray();
+        if (Arrays.stream(lengths).sum() <= limit) {
+            return list;
+        }
+
+        final double[] scores = list.stream().mapToDouble(getRelevance).toArray();
+        if (Arrays.stream(scores).distinct().count() <= 1) {
+            return listLimiterAtomicCutOff.limitListContent(list, getContext, limit);
+        }
+
+        // Empty items have an infinite density, so they are always kept
+        final List<Integer> byDensity = IntStream.range(0, list.size())
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer index) -> scores[index] / lengths[index]).reversed())
+                .toList();
+
+        final List<Integer> selected = new ArrayList<>();
+        int remaining = limit;
+        double selectedScore = 0;
+        for (final int index : byDensity) {
+            if (lengths[index] <= remaining) {
+                selected.add(index);
+                remaining -= lengths[index];
+                selectedScore += scores[index];
+            }
+        }
+
+        final double greedyScore = selectedScore;
+        final List<Integer> best = IntStream.range(0, list.size())
+                .filter(index -> lengths[index] <= limit)
+                .boxed()
+                .max(Comparator.comparingDouble(index -> scores[index]))
+                .filter(index -> scores[index] > greedyScore)
+                .map(List::of)
+                .orElse(selected);
+
+        return best.stream()
+                .sorted()
+                .map(list::get)
+                .toList();
+    }
+
+    @Override
+    public <T> List<T> limitListContentByFraction(final List<T> list, final Function<T, String> getContext, final float limit) {
+        return listLimiterAtomicCutOff.limitListContentByFraction(list, getContext, limit);
+    }
+
+    @Override
+    public <U> List<IndividualContext<String, U>> limitIndividualContextListContent(final List<IndividualContext<String, U>> list, final int limit) {
+        return listLimiterAtomicCutOff.limitIndividualContextListContent(list, limit);
+    }
+}
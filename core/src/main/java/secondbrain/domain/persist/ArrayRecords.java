@@ -0,0 +1,122 @@
+package secondbrain.domain.persist;
+
+import io.vavr.control.Try;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.jspecify.annotations.Nullable;
+import secondbrain.domain.json.JsonDeserializer;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Arrays are cached as a single NDJSON record, which is a header line holding the number of elements followed
+ * by one JSON document per element. This replaces the older format of a count record plus one record per element,
+ * which took one lookup per element to read.
+ * <p>
+ * Jackson never writes a raw newline inside a JSON document, so each line holds exactly one element, and
+ * elements can be deserialized one at a time as they are consumed. Stores that keep the compressed value read
+ * the record from a decompressing stream, so only the element being consumed is held in memory.
+ */
+final class ArrayRecords {
+    private static final String HEADER_PREFIX = "ndjson:";
+
+    private ArrayRecords() {
+    }
+
+    static <T> String serialize(final T[] array, final JsonDeserializer jsonDeserializer) {
+        return HEADER_PREFIX + array.length + "\n" + Arrays.stream(array)
+                .map(jsonDeserializer::serialize)
+                .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Values written by older versions are a plain count of elements, so they are not array records.
+     */
+    static boolean isArrayRecord(@Nullable final String value) {
+        return value != null && value.startsWith(HEADER_PREFIX);
+    }
+
+    /**
+     * @param value An array record, or just its header line
+     * @return The number of elements written in the header
+     */
+    static int size(final String value) {
+        return NumberUtils.toInt(StringUtils.substringBefore(StringUtils.removeStart(value, HEADER_PREFIX), "\n"), 0);
+    }
+
+    /**
+     * Lazily deserialize the elements of an array record.
+     */
+    static <T> Stream<T> stream(final String value, final Class<T> clazz, final JsonDeserializer jsonDeserializer) {
+        return value.lines()
+                .skip(1)
+                .filter(StringUtils::isNotBlank)
+                .map(line -> jsonDeserializer.deserialize(line, clazz));
+    }
+
+    /**
+     * Lazily decompress and deserialize the elements of an array record. The value is closed once the elements
+     * have been consumed, or when the returned stream is closed.
+     *
+     * @param value The stored value as a stream of UTF-8 bytes
+     * @return The elements, or an empty optional if the value is not an array record
+     */
+    static <T> Optional<Elements<T>> stream(final InputStream value, final Class<T> clazz, final JsonDeserializer jsonDeserializer) {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(value, StandardCharsets.UTF_8));
+        final String header = Try.of(reader::readLine).getOrNull();
+        if (!isArrayRecord(header)) {
+            IOUtils.closeQuietly(reader);
+            return Optional.empty();
+        }
+
+        final Iterator<String> lines = reader.lines().iterator();
+        final Iterator<String> closingLines = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                if (lines.hasNext()) {
+                    return true;
+                }
+                IOUtils.closeQuietly(reader);
+                return false;
+            }
+
+            @Override
+            public String next() {
+                return lines.next();
+            }
+        };
+
+        return Optional.of(new Elements<>(size(header), StreamSupport.stream(Spliterators.spliteratorUnknownSize(closingLines, Spliterator.ORDERED), false)
+                .onClose(() -> IOUtils.closeQuietly(reader))
+                .filter(StringUtils::isNotBlank)
+                .map(line -> jsonDeserializer.deserialize(line, clazz))));
+    }
+
+    static <T> T[] toArray(final String value, final Class<T> clazz, final JsonDeserializer jsonDeserializer) {
+        final List<T> list = stream(value, clazz, jsonDeserializer).toList();
+        return list.toArray(ArrayUtils.newInstance(clazz, list.size()));
+    }
+
+    static <T> CacheResult<Stream<T>> toStream(final CacheResult<T[]> result) {
+        return new CacheResult<Stream<T>>(
+                result.result() == null ? null : Arrays.stream(result.result()),
+                result.exception(),
+                result.fromCache(),
+                result.stale());
+    }
+
+    /**
+     * The lazily read elements of an array record, along with the number of elements from its header.
+     */
+    record Elements<T>(int size, Stream<T> stream) {
+    }
+}
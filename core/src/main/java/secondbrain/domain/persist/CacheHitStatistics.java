@@ -0,0 +1,131 @@
+package secondbrain.domain.persist;
+
+import io.vavr.control.Try;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import secondbrain.domain.exceptionhandling.ExceptionHandler;
+import secondbrain.domain.json.JsonDeserializer;
+import secondbrain.domain.persist.config.LocalStorageCacheDirectory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Counts cache hits and misses for each tool and source, and saves them when the application shuts down.
+ * The cache statistics command reports the counts from the previous run next to the size of each tool's
+ * cached values, which helps tune the TTL of each tool.
+ */
+@ApplicationScoped
+public class CacheHitStatistics {
+    private final Map<CacheSource, LongAdder> hits = new ConcurrentHashMap<>();
+    private final Map<CacheSource, LongAdder> misses = new ConcurrentHashMap<>();
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private ExceptionHandler exceptionHandler;
+
+    @Inject
+    private JsonDeserializer jsonDeserializer;
+
+    @Inject
+    private LocalStorageCacheDirectory localStorageCacheDirectory;
+
+    @Inject
+    @ConfigProperty(name = "sb.cache.statistics", defaultValue = "true")
+    private Boolean enabled;
+
+    /**
+     * Jobs that share a cache directory should each use their own statistics file.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.cache.statisticsfile", defaultValue = "cache-statistics.json")
+    private String statisticsFile;
+
+    @PreDestroy
+    private void preDestroy() {
+        save();
+    }
+
+    /**
+     * Record the result of reading a value from the cache.
+     *
+     * @param hit true if the value was found in the cache
+     */
+    public void record(final String tool, final String source, final boolean hit) {
+        if (enabled) {
+            (hit ? hits : misses).computeIfAbsent(new CacheSource(tool, source), key -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Get the counts recorded during this run.
+     */
+    public List<CacheHitCount> getCurrentRun() {
+        return Stream.concat(hits.keySet().stream(), misses.keySet().stream())
+                .distinct()
+                .map(key -> new CacheHitCount(key.tool(), key.source(), getCount(hits, key), getCount(misses, key)))
+                .sorted(Comparator.comparing(CacheHitCount::tool).thenComparing(CacheHitCount::source))
+                .toList();
+    }
+
+    /**
+     * Get the counts saved by the previous run.
+     */
+    public List<CacheHitCount> getPreviousRun() {
+        if (!Files.exists(getStatisticsPath())) {
+            return List.of();
+        }
+
+        return Try.of(() -> Files.readString(getStatisticsPath()))
+                .map(json -> jsonDeserializer.deserializeCollection(json, CacheHitCount.class))
+                .map(List::copyOf)
+                .onFailure(ex -> logger.warning("Failed to read the cache statistics: " + exceptionHandler.getExceptionMessage(ex)))
+                .getOrElse(List.of());
+    }
+
+    /**
+     * Runs that read nothing from the cache, like the maintenance commands, leave the previous statistics in place.
+     */
+    void save() {
+        final List<CacheHitCount> counts = getCurrentRun();
+        if (!enabled || counts.isEmpty()) {
+            return;
+        }
+
+        Try.run(() -> Files.createDirectories(getStatisticsPath().getParent()))
+                .andThenTry(() -> Files.writeString(getStatisticsPath(), jsonDeserializer.serialize(counts)))
+                .onFailure(ex -> logger.warning("Failed to save the cache statistics: " + exceptionHandler.getExceptionMessage(ex)));
+    }
+
+    private static long getCount(final Map<CacheSource, LongAdder> counts, final CacheSource key) {
+        final LongAdder count = counts.get(key);
+        return count == null ? 0 : count.sum();
+    }
+
+    private Path getStatisticsPath() {
+        return Path.of(localStorageCacheDirectory.getCacheDirectory(), statisticsFile).toAbsolutePath();
+    }
+
+    private record CacheSource(String tool, String source) {
+    }
+
+    /**
+     * The number of cache hits and misses for a tool and source.
+     */
+    public record CacheHitCount(String tool, String source, long hits, long misses) {
+        public float hitPercentage() {
+            return hits + misses > 0 ? (float) hits / (hits + misses) * 100 : 0;
+        }
+    }
+}
@@ -8,7 +8,11 @@ import org.jspecify.annotations.Nullable;
  * @param result    The value returned from the get operation
  * @param exception The exception raised while generating the value
  * @param fromCache True if the value was retrieved from cache, false if it was computed
+ * @param stale     True if the value was retrieved from cache after it expired, and is being refreshed
  * @param <T>       The result type
  */
-public record CacheResult<T>(@Nullable T result, @Nullable Throwable exception, boolean fromCache) {
+public record CacheResult<T>(@Nullable T result, @Nullable Throwable exception, boolean fromCache, boolean stale) {
+    public CacheResult(@Nullable final T result, @Nullable final Throwable exception, final boolean fromCache) {
+        this(result, exception, fromCache, false);
+    }
 }
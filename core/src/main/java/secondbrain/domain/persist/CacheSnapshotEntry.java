@@ -0,0 +1,21 @@
+package secondbrain.domain.persist;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * One cached value in a snapshot archive. Values are saved after redaction, so they are imported as is.
+ *
+ * @param tool       The name of the tool
+ * @param source     A way to identify the source
+ * @param promptHash A way to identify the prompt
+ * @param timestamp  The epoch second the value expires, or null if it never expires
+ * @param created    The epoch second the value was saved
+ * @param value      The cached value
+ */
+public record CacheSnapshotEntry(String tool,
+                                 String source,
+                                 String promptHash,
+                                 @Nullable Long timestamp,
+                                 @Nullable Long created,
+                                 String value) {
+}
@@ -0,0 +1,28 @@
+package secondbrain.domain.persist;
+
+/**
+ * The values cached for a tool and source. Values are counted by age in exclusive buckets: saved in the last hour,
+ * in the last day, in the last week, or earlier. Backends that do not record when a value was saved count it as
+ * unknown.
+ *
+ * @param tool       The name of the tool
+ * @param source     The source the values were generated from
+ * @param count      The number of unexpired values
+ * @param bytes      The size of the values as they are stored, which may be compressed
+ * @param lastHour   Values saved in the last hour
+ * @param lastDay    Values saved more than an hour but less than a day ago
+ * @param lastWeek   Values saved more than a day but less than a week ago
+ * @param older      Values saved more than a week ago
+ * @param unknownAge Values with no record of when they were saved
+ */
+public record CacheUsage(
+        String tool,
+        String source,
+        long count,
+        long bytes,
+        long lastHour,
+        long lastDay,
+        long lastWeek,
+        long older,
+        long unknownAge) {
+}
@@ -3,6 +3,7 @@ package secondbrain.domain.persist;
 import com.azure.core.util.MetricsOptions;
 import com.azure.cosmos.*;
 import com.azure.cosmos.models.*;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.smallrye.common.annotation.Identifier;
 import io.vavr.API;
 import io.vavr.control.Try;
@@ -18,7 +19,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jspecify.annotations.Nullable;
+import reactor.core.Disposable;
 import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import secondbrain.domain.concurrency.SharedVirtualThreadExecutor;
 import secondbrain.domain.encryption.Encryptor;
 import secondbrain.domain.exceptionhandling.ExceptionHandler;
@@ -32,36 +38,54 @@ import secondbrain.domain.zip.Zipper;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.stream.IntStream;
-
-import static com.pivovarit.collectors.ParallelCollectors.Batching.parallelToStream;
+import java.util.stream.Stream;
 
 /**
  * Azure Cosmos DB implementation of LocalStorage for caching API calls and LLM results.
  * This implementation uses a local file cache to potentially speed up reads and reduce Cosmos DB read costs.
+ * Requests are made with the async Cosmos DB client, and only the LocalStorage methods block waiting for them.
  */
 @ApplicationScoped
-public class CosmosLocalStorage implements LocalStorage {
+public class CosmosLocalStorage implements LocalStorage, LocalStorageStatistics {
 
     private static final int FLUSH_WAIT_MINUTES = 10;
-    private static final int BATCH_SIZE = 5;
     private static final String CONTAINER_NAME = "localstoragezipped";
+    /**
+     * The default container when items are partitioned by tool and bucket. The partition key of an existing
+     * container can not be changed, so hierarchical partitioning needs a new container.
+     */
+    private static final String HIERARCHICAL_CONTAINER_NAME = "localstoragehierarchical";
     private static final String DATABASE_NAME = "secondbrain";
     private static final int DEFAULT_TTL_SECONDS = 86400;
     private static final int MAX_FAILURES = 5; // 2 MB
     private static final int SPLIT_ITEM_SIZE_BYTES = 1024 * 1024;
     private static final int LARGE_OBJECT_WARNING_BYTES = 2 * 1024 * 1024;
     private static final int TTL_NO_EXPIRE = -1;
+    /**
+     * Large values are saved as chunks with these suffixes on their prompt hash.
+     */
+    private static final String CHUNK_SUFFIX = "_chunk_";
+    private static final String CHUNKED_SIZE_SUFFIX = "_chunked_size";
 
     private final AtomicInteger totalReads = new AtomicInteger();
     private final AtomicInteger totalCacheHits = new AtomicInteger();
     private final AtomicInteger totalFailures = new AtomicInteger();
+    private final AtomicInteger totalResets = new AtomicInteger();
     private final List<Future<?>> pendingWrites = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicBoolean prefetchStarted = new AtomicBoolean(false);
+    private final Set<PrefetchManifest.CacheKey> pendingPrefetchKeys = ConcurrentHashMap.newKeySet();
+    private final CosmosThrottling throttling = new CosmosThrottling();
+
+    @Nullable
+    private Disposable prefetchSubscription;
 
     @Inject
     private LocalStorageDisableTool localStorageDisableTool;
@@ -84,6 +108,15 @@ public class CosmosLocalStorage implements LocalStorage {
     @Inject
     private LocalStorageCacheDisableRedaction localStorageCacheDisableRedaction;
 
+    @Inject
+    private LocalStorageStaleWhileRevalidateTool localStorageStaleWhileRevalidateTool;
+
+    @Inject
+    private StaleWhileRevalidate staleWhileRevalidate;
+
+    @Inject
+    private NegativeCache negativeCache;
+
     @Inject
     @ConfigProperty(name = "sb.cosmos.endpoint")
     private Optional<String> cosmosEndpoint;
@@ -114,6 +147,21 @@ public class CosmosLocalStorage implements LocalStorage {
     @ConfigProperty(name = "sb.cosmos.gatewayMode", defaultValue = "false")
     private boolean gatewayMode;
 
+    /**
+     * The number of requests, like chunk reads and writes, that a single operation sends to Cosmos DB at once.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.cosmos.concurrency", defaultValue = "16")
+    private Integer concurrency;
+
+    /**
+     * When greater than zero, items are partitioned by tool and by a bucket derived from a hash of the item id,
+     * which spreads busy tools over this many logical partitions. Zero partitions items by tool alone.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.cosmos.partitionbuckets", defaultValue = "0")
+    private Integer partitionBuckets;
+
     @Inject
     private JsonDeserializer jsonDeserializer;
 
@@ -143,14 +191,14 @@ public class CosmosLocalStorage implements LocalStorage {
     @Preferred
     private LocalStorageReadWrite localStorageReadWrite;
 
-    @Inject
-    private SharedVirtualThreadExecutor sharedExecutor;
+    @Nullable
+    private CosmosAsyncClient cosmosClient;
 
     @Nullable
-    private CosmosClient cosmosClient;
+    private CosmosAsyncContainer container;
 
     @Nullable
-    private CosmosContainer container;
+    private volatile Scheduler scheduler;
 
     @Inject
     @Identifier("financialLocationContactRedaction")
@@ -159,6 +207,12 @@ public class CosmosLocalStorage implements LocalStorage {
     @Inject
     private SharedVirtualThreadExecutor sharedVirtualThreadExecutor;
 
+    @Inject
+    private PrefetchManifest prefetchManifest;
+
+    @Inject
+    private CacheHitStatistics cacheHitStatistics;
+
     // This observer forces the container to instantiate the bean at startup
     public void onStartup(@Observes final Startup event) {
         // Initialization logic here
@@ -173,12 +227,98 @@ public class CosmosLocalStorage implements LocalStorage {
             }
         }
         logger.fine("Initialized Cosmos DB local storage");
+
+        prefetch();
+    }
+
+    /**
+     * Copy the keys read by the previous run from Cosmos DB to the local cache in the background. Reads made
+     * before a key has been prefetched go to Cosmos DB as usual.
+     */
+    private void prefetch() {
+        if (!prefetchManifest.isEnabled() || !prefetchStarted.compareAndSet(false, true)) {
+            return;
+        }
+
+        pendingPrefetchKeys.addAll(prefetchManifest.getPreviousKeys());
+        startPrefetch();
+    }
+
+    /**
+     * Prefetch the keys that have not been prefetched yet. Keys that failed are left pending, so a prefetch
+     * restarted after a connection reset retries them with the new client.
+     */
+    private void startPrefetch() {
+        if (prefetchSubscription != null) {
+            prefetchSubscription.dispose();
+        }
+
+        final List<PrefetchManifest.CacheKey> keys = List.copyOf(pendingPrefetchKeys);
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        logger.fine("Prefetching " + keys.size() + " cache keys from Cosmos DB");
+
+        prefetchSubscription = Flux.fromIterable(keys)
+                .flatMap(this::prefetchKey, prefetchManifest.getConcurrency())
+                .filter(Boolean::booleanValue)
+                .count()
+                .subscribe(
+                        count -> logger.fine("Prefetched " + count + " of " + keys.size() + " cache keys from Cosmos DB"),
+                        ex -> logger.warning("Failed to prefetch cache keys: " + exceptionHandler.getExceptionMessage(ex)));
+    }
+
+    /**
+     * Prefetching reads Cosmos DB directly rather than calling getString, and only checks whether the local cache
+     * already has the key, so prefetching is not counted as accesses, hits or misses.
+     */
+    private Mono<Boolean> prefetchKey(final PrefetchManifest.CacheKey key) {
+        final CosmosAsyncContainer prefetchContainer = container;
+        if (prefetchContainer == null
+                || localStorageCacheDisable.isDisabled()
+                || localStorageDisableTool.isToolDisabled(key.tool())
+                || localStorageCacheWriteOnly.isWriteOnly()
+                || localStorageWriteOnlyTool.isToolWriteOnly(key.tool())) {
+            return Mono.just(false);
+        }
+
+        return Mono.fromCallable(() -> localStorageReadWrite.containsString(key.tool(), key.source(), key.promptHash()))
+                .filter(local -> !local)
+                .flatMap(local -> readItem(prefetchContainer, key.tool(), key.source(), key.promptHash()))
+                .publishOn(getScheduler())
+                .map(CosmosItemResponse::getItem)
+                .filter(item -> item.timestamp() == null || item.timestamp() >= Instant.now().getEpochSecond())
+                .map(item -> localStorageReadWrite.putString(key.tool(), key.source(), key.promptHash(), item.timestamp(), item.response()))
+                .map(value -> true)
+                .defaultIfEmpty(false)
+                .doOnNext(found -> {
+                    pendingPrefetchKeys.remove(key);
+                    prefetchManifest.recordPrefetch(key, found);
+                })
+                .onErrorReturn(false);
     }
 
     @PreDestroy
     public void preDestroy() {
+        // A prefetch that has not finished by shutdown is no longer useful
+        if (prefetchSubscription != null) {
+            prefetchSubscription.dispose();
+        }
+
         flush();
+        closeCosmosClient();
 
+        if (totalReads.get() > 0) {
+            logger.info("Cache hits percentage: " + getCacheHitsPercentage() + "%");
+        }
+
+        if (throttling.getTotal() > 0) {
+            logger.warning(throttling.getReport());
+        }
+    }
+
+    private void closeCosmosClient() {
         synchronized (CosmosLocalStorage.class) {
             if (cosmosClient != null) {
                 Try.run(cosmosClient::close)
@@ -187,16 +327,11 @@ public class CosmosLocalStorage implements LocalStorage {
                 container = null;
             }
         }
-
-        if (totalReads.get() > 0) {
-            logger.info("Cache hits percentage: " + getCacheHitsPercentage() + "%");
-        }
     }
 
     public void flush() {
         // Collect and clear pending futures under the lock, then wait outside it.
-        // Waiting inside the lock would deadlock: putStringSync also needs the same lock,
-        // so it can never complete while flush() holds it and blocks on f.get().
+        // Waiting inside the lock would block a connection reset until every write completed.
         final List<Future<?>> toWait;
         synchronized (CosmosLocalStorage.class) {
             pendingWrites.removeIf(Future::isDone);
@@ -214,16 +349,50 @@ public class CosmosLocalStorage implements LocalStorage {
                 .onFailure(ex -> logger.warning("Timed out or failed waiting for all pending writes: " + exceptionHandler.getExceptionMessage(ex)));
     }
 
-    private void resetConnection() {
+    /**
+     * Rebuilds the client once the client that the caller used has failed too many times. Callers that
+     * saw the same failures all call this, but only the first rebuilds the client. The others find that the
+     * client has already been replaced. The shutdown reports are left for preDestroy, and the prefetch is
+     * restarted so keys that failed with the old client are retried.
+     */
+    private void resetConnectionIfFailing(final CosmosAsyncContainer failingContainer) {
+        if (totalFailures.get() <= MAX_FAILURES) {
+            return;
+        }
+
         synchronized (CosmosLocalStorage.class) {
+            if (container != failingContainer || totalFailures.get() <= MAX_FAILURES) {
+                return;
+            }
+
             logger.warning("Resetting Cosmos DB connection after " + totalFailures.get() + " errors");
+            totalResets.incrementAndGet();
             totalFailures.set(0);
             flush();
-            preDestroy();
-            postConstruct();
+            closeCosmosClient();
+            initializeCosmosClient();
+            startPrefetch();
         }
     }
 
+    /**
+     * Failures of requests made with a client that has since been replaced are not counted against the new client.
+     */
+    void recordFailure(final CosmosAsyncContainer failedContainer) {
+        if (failedContainer == container) {
+            totalFailures.incrementAndGet();
+        }
+    }
+
+    @Nullable
+    CosmosAsyncContainer getContainer() {
+        return container;
+    }
+
+    int getTotalResets() {
+        return totalResets.get();
+    }
+
     private float getCacheHitsPercentage() {
         return totalReads.get() > 0 ? (float) totalCacheHits.get() / totalReads.get() * 100 : 0;
     }
@@ -252,150 +421,221 @@ public class CosmosLocalStorage implements LocalStorage {
                 .contentResponseOnWriteEnabled(false);
 
         cosmosClient = (gatewayMode ? builder.gatewayMode() : builder)
-                .buildClient();
+                .buildAsyncClient();
 
-        cosmosClient.createDatabaseIfNotExists(databaseName.orElse(DATABASE_NAME));
+        cosmosClient.createDatabaseIfNotExists(databaseName.orElse(DATABASE_NAME)).block();
 
-        final CosmosDatabase database = cosmosClient.getDatabase(databaseName.orElse(DATABASE_NAME));
+        final CosmosAsyncDatabase database = cosmosClient.getDatabase(databaseName.orElse(DATABASE_NAME));
 
         // Create container if it doesn't exist
         final CosmosContainerProperties containerProperties = new CosmosContainerProperties(
-                containerName.orElse(CONTAINER_NAME),
-                "/tool"
+                getContainerName(),
+                getPartitionKeyDefinition()
         );
 
         // Set TTL on the container to enable automatic deletion of expired items
         containerProperties.setDefaultTimeToLiveInSeconds(DEFAULT_TTL_SECONDS);
 
-        Try.of(() -> database.createContainerIfNotExists(containerProperties))
+        Try.of(() -> database.createContainerIfNotExists(containerProperties).block())
                 .onFailure(ex -> logger.warning("Failed to create container: " + exceptionHandler.getExceptionMessage(ex)));
 
-        container = database.getContainer(containerName.orElse(CONTAINER_NAME));
+        container = database.getContainer(getContainerName());
+    }
+
+    private boolean isHierarchical() {
+        return CosmosPartitioning.isHierarchical(partitionBuckets);
+    }
+
+    private String getContainerName() {
+        final String name = containerName.orElse(CONTAINER_NAME);
+        return isHierarchical() && CONTAINER_NAME.equals(name) ? HIERARCHICAL_CONTAINER_NAME : name;
+    }
+
+    private PartitionKeyDefinition getPartitionKeyDefinition() {
+        return CosmosPartitioning.getPartitionKeyDefinition(partitionBuckets);
     }
 
     private String generateId(final String tool, final String source, final String promptHash) {
         return tool + "_" + source + "_" + promptHash;
     }
 
+    @Nullable
+    private String getBucket(final String id) {
+        return CosmosPartitioning.getBucket(id, partitionBuckets);
+    }
+
+    private PartitionKey getPartitionKey(final String tool, @Nullable final String bucket) {
+        return CosmosPartitioning.getPartitionKey(tool, bucket);
+    }
+
+    private String getLogicalPartition(final String tool, @Nullable final String bucket) {
+        return CosmosPartitioning.getLogicalPartition(tool, bucket);
+    }
+
+    private Mono<CosmosItemResponse<CacheItem>> readItem(final CosmosAsyncContainer readContainer, final String tool, final String source, final String promptHash) {
+        final String id = generateId(tool, source, promptHash);
+        final String bucket = getBucket(id);
+        return readContainer.readItem(id, getPartitionKey(tool, bucket), CacheItem.class)
+                .doOnNext(response -> throttling.record(response.getDiagnostics(), getLogicalPartition(tool, bucket)))
+                .doOnError(CosmosException.class, ex -> throttling.record(ex.getDiagnostics(), getLogicalPartition(tool, bucket)));
+    }
+
+    private Mono<CosmosItemResponse<CacheItem>> upsertItem(final CosmosAsyncContainer writeContainer, final CacheItem item) {
+        return writeContainer.upsertItem(item, getPartitionKey(item.tool(), item.bucket()), new CosmosItemRequestOptions())
+                .doOnNext(response -> throttling.record(response.getDiagnostics(), getLogicalPartition(item.tool(), item.bucket())))
+                .doOnError(CosmosException.class, ex -> throttling.record(ex.getDiagnostics(), getLogicalPartition(item.tool(), item.bucket())));
+    }
+
+    /**
+     * The read is composed as a non-blocking pipeline of the local cache lookup, the Cosmos DB read, and any chunk
+     * reads. The calling thread only blocks once, waiting for the result of the whole pipeline.
+     */
     @Override
     @Nullable
     public CacheResult<String> getString(final String tool, final String source, final String promptHash) {
-        synchronized (CosmosLocalStorage.class) {
-            if (localStorageCacheDisable.isDisabled() || localStorageDisableTool.isToolDisabled(tool) || localStorageCacheWriteOnly.isWriteOnly() || localStorageWriteOnlyTool.isToolWriteOnly(tool) || container == null) {
-                return new CacheResult<String>(null, null, false);
-            }
-
-            if (totalFailures.get() > MAX_FAILURES) {
-                resetConnection();
-            }
+        final CosmosAsyncContainer currentContainer = container;
+        if (localStorageCacheDisable.isDisabled() || localStorageDisableTool.isToolDisabled(tool) || localStorageCacheWriteOnly.isWriteOnly() || localStorageWriteOnlyTool.isToolWriteOnly(tool) || currentContainer == null) {
+            return new CacheResult<String>(null, null, false);
+        }
 
-            totalReads.incrementAndGet();
-
-            final Try<CacheResult<String>> result = Try
-                    // Attempt to get from local cache first
-                    .of(() -> localStorageReadWrite.getString(tool, source, promptHash))
-                    // We only accept the local cache value if it's not blank
-                    .filter(Optional::isPresent)
-                    // Convert to a CacheResult
-                    .map(cache -> new CacheResult<String>(cache.get(), null, true))
-                    // If there was no locally cached value, get from Cosmos DB
-                    .recover(NoSuchElementException.class, ex -> loadFromDatabase(tool, source, promptHash))
-                    // Decrypt and decompress the result if it was from cache
-                    .map(value -> unpack(value, tool, source))
-                    // If the item is not found, return a CacheResult with null
-                    .recoverWith(Exception.class, this::handleError)
-                    // Track failures
-                    .onFailure(ex -> totalFailures.incrementAndGet())
-                    // Log errors
-                    .onFailure(ex -> logger.warning("Failed to get string: " + exceptionHandler.getDetailedExceptionMessage(ex)));
-
-            final CacheResult<String> directResult = result
-                    .mapFailure(
-                            API.Case(API.$(), ex -> new LocalStorageFailure("Failed to get record", ex))
-                    )
-                    .get();
-
-            // If no direct result found, check whether chunked items exist and reassemble
-            if (directResult == null || StringUtils.isBlank(directResult.result())) {
-                return reassembleChunks(tool, source, promptHash);
-            }
+        resetConnectionIfFailing(currentContainer);
 
-            return directResult;
+        // The container is replaced if the connection was reset
+        final CosmosAsyncContainer readContainer = container;
+        if (readContainer == null) {
+            return new CacheResult<String>(null, null, false);
         }
+
+        totalReads.incrementAndGet();
+        prefetchManifest.recordAccess(tool, source, promptHash);
+
+        final CacheResult<String> value = Try.of(() -> getStringAsync(readContainer, tool, source, promptHash).block())
+                // Track failures
+                .onFailure(ex -> recordFailure(readContainer))
+                // Log errors
+                .onFailure(ex -> logger.warning("Failed to get string: " + exceptionHandler.getDetailedExceptionMessage(ex)))
+                .mapFailure(
+                        API.Case(API.$(), ex -> new LocalStorageFailure("Failed to get record", ex))
+                )
+                .get();
+
+        cacheHitStatistics.record(tool, source, value != null && StringUtils.isNotBlank(value.result()));
+        return value;
+    }
+
+    private Mono<CacheResult<String>> getStringAsync(final CosmosAsyncContainer readContainer, final String tool, final String source, final String promptHash) {
+        return readAndUnpack(readContainer, tool, source, promptHash)
+                // If no direct result found, check whether chunked items exist and reassemble
+                .flatMap(result -> StringUtils.isBlank(result.result())
+                        ? reassembleChunks(readContainer, tool, source, promptHash)
+                        : Mono.just(result));
+    }
+
+    /**
+     * Read a single item, trying the local cache first, then decrypt and decompress it.
+     */
+    private Mono<CacheResult<String>> readAndUnpack(final CosmosAsyncContainer readContainer, final String tool, final String source, final String promptHash) {
+        return Mono
+                // Attempt to get from local cache first
+                .fromCallable(() -> localStorageReadWrite.getString(tool, source, promptHash))
+                // We only accept the local cache value if it's not blank
+                .filter(Optional::isPresent)
+                // Track reads of values that were prefetched
+                .doOnNext(cache -> prefetchManifest.recordLocalHit(tool, source, promptHash))
+                // Convert to a CacheResult
+                .map(cache -> new CacheResult<String>(cache.get(), null, true))
+                // If there was no locally cached value, get from Cosmos DB
+                .switchIfEmpty(Mono.defer(() -> loadFromDatabase(readContainer, tool, source, promptHash)))
+                // Decrypt and decompress the result if it was from cache
+                .mapNotNull(value -> unpack(value, tool, source))
+                // A value that could not be unpacked is treated as a miss
+                .defaultIfEmpty(new CacheResult<String>(null, null, false))
+                // If the item is not found, return a CacheResult with null
+                .onErrorResume(this::handleError);
     }
 
-    private Try<CacheResult<String>> handleError(final Exception ex) {
+    private Mono<CacheResult<String>> handleError(final Throwable ex) {
         if (ex instanceof CosmosException clientEx) {
             if (clientEx.getStatusCode() == 404) {
-                return Try.of(() -> new CacheResult<String>(null, null, false));
+                return Mono.just(new CacheResult<String>(null, null, false));
             }
         }
 
-        /*
-        Catch this exception:
-        reactor.core.Exceptions$ReactiveException: java.lang.InterruptedException
-            at reactor.core.Exceptions.propagate(Exceptions.java:410)
-            at reactor.core.publisher.BlockingSingleSubscriber.blockingGet(BlockingSingleSubscriber.java:96)
-            at reactor.core.publisher.Mono.block(Mono.java:1779)
-            at com.azure.cosmos.CosmosContainer.blockItemResponse(CosmosContainer.java:271)
-            at com.azure.cosmos.CosmosContainer.readItem(CosmosContainer.java:629)
-         */
+        // A read interrupted by shutdown is treated as a miss
         if (ex instanceof InterruptedException || Exceptions.unwrap(ex) instanceof InterruptedException) {
-            return Try.of(() -> new CacheResult<String>(null, null, false));
+            return Mono.just(new CacheResult<String>(null, null, false));
         }
 
-        return Try.failure(ex);
+        return Mono.error(ex);
     }
 
     /**
      * Attempts to find and reassemble chunked items for the given promptHash.
      * Chunks are stored with suffix "_chunk_<index>", and the total count is stored under "_chunked_size".
+     * The chunks are read concurrently, and reassembled in order.
      */
-    private CacheResult<String> reassembleChunks(final String tool, final String source, final String promptHash) {
+    private Mono<CacheResult<String>> reassembleChunks(final CosmosAsyncContainer readContainer, final String tool, final String source, final String promptHash) {
         // Look up the total chunk count saved alongside the chunks
-        final CacheResult<String> sizeResult = Try
-                .of(() -> localStorageReadWrite.getString(tool, source, promptHash + "_chunked_size"))
-                .filter(Optional::isPresent)
-                .map(cache -> new CacheResult<String>(cache.get(), null, true))
-                .recover(NoSuchElementException.class, ex -> loadFromDatabase(tool, source, promptHash + "_chunked_size"))
-                .map(value -> unpack(value, tool, source))
-                .recoverWith(CosmosException.class, this::handleError)
-                .getOrNull();
+        return readAndUnpack(readContainer, tool, source, promptHash + CHUNKED_SIZE_SUFFIX)
+                .flatMap(sizeResult -> {
+                    final int total = NumberUtils.toInt(sizeResult.result(), 0);
+                    if (total <= 0) {
+                        return Mono.just(new CacheResult<String>(null, null, false));
+                    }
 
-        if (sizeResult == null || StringUtils.isBlank(sizeResult.result())) {
-            return new CacheResult<String>(null, null, false);
-        }
+                    // The chunks are prefetched by the next run, as the key itself is not an item
+                    prefetchManifest.recordAccess(tool, source, promptHash + CHUNKED_SIZE_SUFFIX);
+                    IntStream.range(0, total).forEach(i -> prefetchManifest.recordAccess(tool, source, promptHash + CHUNK_SUFFIX + i));
 
-        final int total = NumberUtils.toInt(sizeResult.result(), 0);
-        if (total <= 0) {
-            return new CacheResult<String>(null, null, false);
-        }
+                    if (total > 2) {
+                        logger.warning("Reassembling " + total + " chunks for tool " + tool + " source " + source + " prompt " + promptHash + ". Consider reducing the size of cached objects.");
+                    }
 
-        if (total > 2) {
-            logger.warning("Reassembling " + total + " chunks for tool " + tool + " source " + source + " prompt " + promptHash + ". Consider reducing the size of cached objects.");
-        }
+                    return Flux.range(0, total)
+                            .flatMapSequential(i -> readAndUnpack(readContainer, tool, source, promptHash + CHUNK_SUFFIX + i)
+                                            .map(chunk -> new IndexedChunk(i, chunk.result())),
+                                    getConcurrency())
+                            .collectList()
+                            .map(chunks -> {
+                                final StringBuilder sb = new StringBuilder();
+                                for (final IndexedChunk chunk : chunks) {
+                                    if (StringUtils.isBlank(chunk.value())) {
+                                        logger.warning("Missing chunk " + chunk.index() + " of " + total + " for tool " + tool + " source " + source + " prompt " + promptHash);
+                                        return new CacheResult<String>(null, null, false);
+                                    }
+                                    sb.append(chunk.value());
+                                }
+
+                                logger.fine("Reassembled " + total + " chunks for tool " + tool + " source " + source + " prompt " + promptHash);
+                                return new CacheResult<>(sb.toString(), null, true, sizeResult.stale());
+                            });
+                });
+    }
 
-        final StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < total; i++) {
-            final String key = promptHash + "_chunk_" + i;
-            final CacheResult<String> chunk = Try
-                    .of(() -> localStorageReadWrite.getString(tool, source, key))
-                    .filter(Optional::isPresent)
-                    .map(cache -> new CacheResult<String>(cache.get(), null, true))
-                    .recover(NoSuchElementException.class, ex -> loadFromDatabase(tool, source, key))
-                    .map(value -> unpack(value, tool, source))
-                    .recoverWith(CosmosException.class, this::handleError)
-                    .getOrNull();
+    private record IndexedChunk(int index, @Nullable String value) {
+    }
 
-            if (chunk == null || StringUtils.isBlank(chunk.result())) {
-                logger.warning("Missing chunk " + i + " of " + total + " for tool " + tool + " source " + source + " prompt " + promptHash);
-                return new CacheResult<String>(null, null, false);
+    /**
+     * The scheduler wraps the shared executor, so one scheduler is created and reused by every pipeline.
+     */
+    private Scheduler getScheduler() {
+        final Scheduler existing = scheduler;
+        if (existing != null) {
+            return existing;
+        }
+
+        synchronized (this) {
+            Scheduler current = scheduler;
+            if (current == null) {
+                current = Schedulers.fromExecutor(sharedVirtualThreadExecutor.getExecutor());
+                scheduler = current;
             }
-            sb.append(chunk.result());
+            return current;
         }
+    }
 
-        logger.fine("Reassembled " + total + " chunks for tool " + tool + " source " + source + " prompt " + promptHash);
-        return new CacheResult<>(sb.toString(), null, true);
+    private int getConcurrency() {
+        return Math.max(1, concurrency);
     }
 
     @SuppressWarnings("NullAway")
@@ -421,7 +661,7 @@ public class CosmosLocalStorage implements LocalStorage {
                 .getOrNull();
 
 
-        return new CacheResult<String>(original, null, true);
+        return new CacheResult<String>(original, null, true, result.stale());
     }
 
     private String decompressString(final String compressed) {
@@ -488,46 +728,40 @@ public class CosmosLocalStorage implements LocalStorage {
                 .orElseThrow(DecryptionFailed::new);
     }
 
-    private CacheResult<String> loadFromDatabase(final String tool, final String source, final String promptHash) {
-        return Try.withResources(() -> new TimedOperation("load from Cosmos DB for " + tool + " " + source))
-                .of(t -> loadFromDatabaseTimed(tool, source, promptHash))
-                .get();
+    private Mono<CacheResult<String>> loadFromDatabase(final CosmosAsyncContainer readContainer, final String tool, final String source, final String promptHash) {
+        return Mono.using(
+                () -> new TimedOperation("load from Cosmos DB for " + tool + " " + source),
+                t -> readItem(readContainer, tool, source, promptHash)
+                        .doOnError(ex -> {
+                            if (ex instanceof CosmosException && ((CosmosException) ex).getStatusCode() == 404) {
+                                logger.fine("Failed to read item from container: " + exceptionHandler.getExceptionMessage(ex));
+                            } else {
+                                logger.warning("Failed to read item from container: " + exceptionHandler.getExceptionMessage(ex));
+                            }
+                        })
+                        // Saving to the local cache is blocking IO, so it is moved off the Cosmos DB IO threads
+                        .publishOn(getScheduler())
+                        .map(response -> toCacheResult(response.getItem(), tool, source, promptHash)),
+                t -> Try.run(t::close));
     }
 
-    @SuppressWarnings("NullAway")
-    private CacheResult<String> loadFromDatabaseTimed(final String tool, final String source, final String promptHash) {
-        if (container == null) {
-            throw new LocalStorageFailure("Cosmos DB container is not initialized");
-        }
-
-        final String id = generateId(tool, source, promptHash);
-        final PartitionKey partitionKey = new PartitionKey(tool);
-
-        final CosmosItemResponse<CacheItem> response = Try.of(() -> container.readItem(
-                        id,
-                        partitionKey,
-                        CacheItem.class
-                ))
-                .onFailure(ex -> {
-                    if (ex instanceof CosmosException && ((CosmosException) ex).getStatusCode() == 404) {
-                        logger.fine("Failed to read item from container: " + exceptionHandler.getExceptionMessage(ex));
-                    } else {
-                        logger.warning("Failed to read item from container: " + exceptionHandler.getExceptionMessage(ex));
-                    }
-                })
-                .get();
-
+    private CacheResult<String> toCacheResult(final CacheItem item, final String tool, final String source, final String promptHash) {
         // Check if item has expired (if timestamp is set)
-        if (response.getItem().timestamp != null) {
-            if (response.getItem().timestamp < Instant.now().getEpochSecond()) {
+        if (item.timestamp() != null) {
+            if (item.timestamp() < Instant.now().getEpochSecond()) {
+                // Items for stale-while-revalidate tools outlive their timestamp by the grace period.
+                // They are returned as stale, and are not copied to the local cache.
+                if (item.timestamp() + localStorageStaleWhileRevalidateTool.getGracePeriod(tool) >= Instant.now().getEpochSecond()) {
+                    return new CacheResult<String>(item.response(), null, true, true);
+                }
                 return new CacheResult<String>(null, null, false);
             }
         }
 
         // If we are loading this from the remote cache, save it locally too
-        localStorageReadWrite.putString(tool, source, promptHash, response.getItem().timestamp, response.getItem().response());
+        localStorageReadWrite.putString(tool, source, promptHash, item.timestamp(), item.response());
 
-        return new CacheResult<String>(response.getItem().response(), null, true);
+        return new CacheResult<String>(item.response(), null, true);
     }
 
     @Override
@@ -548,6 +782,13 @@ public class CosmosLocalStorage implements LocalStorage {
                 .of(() -> getString(tool, source, promptHash))
                 .filter(result -> result != null && StringUtils.isNotBlank(result.result()))
                 .onSuccess(v -> logger.fine("Cache hit for tool " + tool + " source " + source + " prompt " + promptHash))
+                // an expired value within the grace period is returned while it is regenerated in the background
+                .peek(result -> refreshIfStale(result, tool, source, promptHash, () -> {
+                    final String value = generateValue.generate();
+                    if (StringUtils.isNotBlank(value)) {
+                        putString(tool, source, promptHash, ttlSeconds, value);
+                    }
+                }))
                 .recover(result -> {
                     logger.fine("Cache lookup missed for tool " + tool + " source " + source + " prompt " + promptHash);
                     final CacheResult<String> value = Try.of(generateValue::generate)
@@ -655,13 +896,23 @@ public class CosmosLocalStorage implements LocalStorage {
                         logger.warning("Large cached object loaded (" + (size / 1024 / 1024) + " MB) for tool " + tool + " source " + source + " prompt " + promptHash);
                     }
                 })
-                .mapTry(r -> new CacheResult<T>(deserializer.deserialize(r.result()), null, true))
+                .mapTry(r -> new CacheResult<T>(negativeCache.recordHit(tool, deserializer.deserialize(r.result())), null, true, r.stale()))
+                .peek(result -> refreshIfStale(result, tool, source, promptHash, () -> {
+                    final T value = generateValue.generate();
+                    if (value != null) {
+                        putString(tool, source, promptHash, negativeCache.getTtl(tool, value, ttlSeconds), jsonDeserializer.serialize(value));
+                    }
+                }))
                 .onFailure(DeserializationFailed.class, ex -> logger.warning("Failed to deserialize cached object for tool " + tool + " source " + source + " prompt " + promptHash + ": " + exceptionHandler.getExceptionMessage(ex)))
                 .recoverWith(ex -> Try.of(() -> {
                             logger.fine("Cache lookup missed for tool " + tool + " source " + source + " prompt " + promptHash);
                             logger.fine("Exception: " + exceptionHandler.getExceptionMessage(ex));
                             final CacheResult<T> value = Try.of(generateValue::generate)
                                     .map(v -> new CacheResult<T>(v, null, false))
+                                    // a generator that found nothing may throw EmptyList rather than return an empty list
+                                    .recoverWith(ex2 -> negativeCache.emptyValue(ex2, deserializer)
+                                            .map(v -> Try.success(new CacheResult<T>(v, null, false)))
+                                            .orElseGet(() -> Try.failure(ex2)))
                                     .recover(TimeoutException.class, ex2 -> {
                                         logger.fine("Timeout when generating value from " + tool + ", returning null");
                                         return new CacheResult<T>(null, ex2, false);
@@ -677,7 +928,7 @@ public class CosmosLocalStorage implements LocalStorage {
                                         tool,
                                         source,
                                         promptHash,
-                                        ttlSeconds,
+                                        negativeCache.getTtl(tool, value.result(), ttlSeconds),
                                         jsonDeserializer.serialize(value.result()));
                             }
                             return value;
@@ -722,52 +973,28 @@ public class CosmosLocalStorage implements LocalStorage {
     @Override
     public <T> CacheResult<T[]> getOrPutObjectArray(final String tool, final String source, final String promptHash, final long ttlSeconds, final Class<T> clazz, final Class<T[]> arrayClazz, final GenerateValue<T[]> generateValue) {
         return Try.withResources(() -> new TimedOperation("Cached array result for " + tool + " " + source))
-                .of(t -> getOrPutObjectArrayTimed(tool, source, promptHash, ttlSeconds, clazz, arrayClazz, generateValue))
+                .of(t -> getOrPutObjectArrayTimed(tool, source, promptHash, ttlSeconds, clazz, Try.of(() -> getString(tool, source, promptHash)), generateValue))
                 .get();
     }
 
+    /**
+     * @param cached The lookup of the value, which the stream path has already made
+     */
     @SuppressWarnings("NullAway")
-    private <T> CacheResult<T[]> getOrPutObjectArrayTimed(final String tool, final String source, final String promptHash, final long ttlSeconds, final Class<T> clazz, final Class<T[]> arrayClazz, final GenerateValue<T[]> generateValue) {
+    private <T> CacheResult<T[]> getOrPutObjectArrayTimed(final String tool, final String source, final String promptHash, final long ttlSeconds, final Class<T> clazz, final Try<CacheResult<String>> cached, final GenerateValue<T[]> generateValue) {
         if (localStorageCacheDisable.isDisabled() || container == null) {
             return new CacheResult<T[]>(generateValue.generate(), null, false);
         }
 
         logger.fine("Getting object from cache for tool " + tool + " source " + source + " prompt " + promptHash);
 
-        // Start by trying to load the full result from the local storage.
-        // We assume local storage can save the complete array as a single item. Loading the full array is much more efficient.
-        // The remote storage may not have this capability, so we fall back to loading each item individually.
-        final Try<CacheResult<T[]>> localCacheTry = Try.of(() -> localStorageReadWrite.getString(tool, source, promptHash + "_all"))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .map(encryptor::decrypt)
-                .map(this::decompressString)
-                .map(result -> jsonDeserializer.deserialize(result, arrayClazz))
-                .map(array -> new CacheResult<T[]>(array, null, true));
-
-        if (localCacheTry.isSuccess()) {
-            logger.fine("Local cache hit for tool " + tool + " source " + source + " prompt " + promptHash + " in local cache");
-            return localCacheTry.get();
-        }
-
-        return Try.of(() -> getString(tool, source, promptHash))
+        return cached
                 .filter(result -> result != null && StringUtils.isNotBlank(result.result()))
                 .onSuccess(v -> logger.fine("Remote cache hit for tool " + tool + " source " + source + " prompt " + promptHash))
-                .mapTry(r -> NumberUtils.toInt(r.result(), 0))
-                // The cached result is the number of items in the array.
-                // We then loop over each index to get the individual items.
-                .map(count -> IntStream.range(0, count)
-                        .boxed()
-                        .collect(parallelToStream(index -> getString(tool, source, promptHash + "_" + index), sharedExecutor.getExecutor(), BATCH_SIZE))
-                        .map(r -> jsonDeserializer.deserialize(r.result(), clazz))
-                        .toList()
-                )
-                // The list becomes an array
-                .map(list -> list.toArray(ArrayUtils.newInstance(clazz, list.size())))
-                // Persist the full array in local storage for next time
-                .peek(array -> persistArrayResultLocal(tool, source, promptHash, ttlSeconds, array))
+                .peek(result -> refreshIfStale(result, tool, source, promptHash,
+                        () -> persistArrayResult(tool, source, promptHash, ttlSeconds, generateValue)))
                 // The array is wrapped in a CacheResult
-                .map(array -> new CacheResult<T[]>(array, null, true))
+                .mapTry(r -> new CacheResult<T[]>(negativeCache.recordHit(tool, readArray(tool, source, promptHash, r.result(), clazz)), null, true, r.stale()))
                 .recoverWith(ex -> Try.of(() -> {
                             logger.fine("Cache lookup missed for tool " + tool + " source " + source + " prompt " + promptHash);
                             logger.fine("Exception: " + exceptionHandler.getExceptionMessage(ex));
@@ -793,12 +1020,42 @@ public class CosmosLocalStorage implements LocalStorage {
                 .get();
     }
 
-    private <T> void persistArrayResultLocal(final String tool, final String source, final String promptHash, final long ttlSeconds, final T[] value) {
-        Try.of(() -> jsonDeserializer.serialize(value))
-                .map(zipper::compressString)
-                .map(encryptor::encrypt)
-                .map(result -> localStorageReadWrite.putString(tool, source, promptHash + "_all", getTimestamp(ttlSeconds), result))
-                .onFailure(ex -> logger.warning("Failed to persist full array result to local storage: " + exceptionHandler.getExceptionMessage(ex)));
+    @Override
+    public <T> CacheResult<Stream<T>> getOrPutObjectStream(final String tool, final String source, final String promptHash, final long ttlSeconds, final Class<T> clazz, final Class<T[]> arrayClazz, final GenerateValue<T[]> generateValue) {
+        if (localStorageCacheDisable.isDisabled() || container == null) {
+            return ArrayRecords.toStream(new CacheResult<T[]>(generateValue.generate(), null, false));
+        }
+
+        final CacheResult<String> cached = Try.of(() -> getString(tool, source, promptHash))
+                .onFailure(LocalStorageFailure.class, ex -> logger.warning(exceptionHandler.getExceptionMessage(ex)))
+                .getOrElse(new CacheResult<String>(null, null, false));
+
+        if (ArrayRecords.isArrayRecord(cached.result())) {
+            refreshIfStale(cached, tool, source, promptHash, () -> persistArrayResult(tool, source, promptHash, ttlSeconds, generateValue));
+            negativeCache.recordArrayHit(tool, ArrayRecords.size(cached.result()));
+            return new CacheResult<Stream<T>>(ArrayRecords.stream(cached.result(), clazz, jsonDeserializer), null, true, cached.stale());
+        }
+
+        // Arrays saved in the older format, and misses, are handled as a whole without reading the value again
+        return ArrayRecords.toStream(getOrPutObjectArrayTimed(tool, source, promptHash, ttlSeconds, clazz, Try.success(cached), generateValue));
+    }
+
+    /**
+     * Arrays used to be saved as a count, with each item saved with an index suffix. These are still read until
+     * they expire.
+     */
+    private <T> T[] readArray(final String tool, final String source, final String promptHash, final String value, final Class<T> clazz) {
+        if (ArrayRecords.isArrayRecord(value)) {
+            return ArrayRecords.toArray(value, clazz, jsonDeserializer);
+        }
+
+        final CosmosAsyncContainer readContainer = Objects.requireNonNull(container);
+        final List<T> list = Flux.range(0, NumberUtils.toInt(value, 0))
+                .flatMapSequential(index -> getStringAsync(readContainer, tool, source, promptHash + "_" + index), getConcurrency())
+                .map(r -> jsonDeserializer.deserialize(r.result(), clazz))
+                .collectList()
+                .block();
+        return list.toArray(ArrayUtils.newInstance(clazz, list.size()));
     }
 
     @SuppressWarnings("ReturnValueIgnored")
@@ -816,108 +1073,119 @@ public class CosmosLocalStorage implements LocalStorage {
                 .get();
 
         if (value.result() != null) {
-            // Persist the full array as a single compressed and encrypted item in local storage
-            persistArrayResultLocal(tool, source, promptHash, ttlSeconds, value.result());
+            // Empty arrays are kept for the shorter negative cache TTL
+            final long arrayTtlSeconds = negativeCache.getTtl(tool, value.result(), ttlSeconds);
 
-            // The result associated with the original hash is the count of items
+            // The whole array is saved as one record. putString compresses it, and splits it across
+            // multiple items if it is too large for a single Cosmos item.
             putString(
                     tool,
                     source,
                     promptHash,
-                    ttlSeconds,
-                    value.result().length + "");
-
-            // Serialize and persist each item sequentially to reduce peak memory.
-            // Parallel writes would hold multiple large serialized strings in flight
-            // simultaneously (each item can be ~1MB), risking OOM under load.
-            for (int index = 0; index < value.result().length; index++) {
-                putString(
-                        tool,
-                        source,
-                        promptHash + "_" + index,
-                        ttlSeconds,
-                        jsonDeserializer.serialize(value.result()[index]));
-            }
+                    arrayTtlSeconds,
+                    ArrayRecords.serialize(value.result(), jsonDeserializer));
         }
 
         return value;
     }
 
-    @SuppressWarnings("NullAway")
+    /**
+     * Writes are composed as non-blocking pipelines that run in the background. Compression and encryption run on
+     * the shared executor, and no thread waits for the Cosmos DB round trip.
+     */
     @Override
     public void putString(final String tool, final String source, final String promptHash, final long ttlSeconds, final String value) {
-        final Future<?> future = sharedVirtualThreadExecutor.getExecutor().submit(() -> putStringSync(tool, source, promptHash, ttlSeconds, value));
+        final Future<?> future = putStringAsync(tool, source, promptHash, ttlSeconds, value)
+                .subscribeOn(getScheduler())
+                .toFuture();
         pendingWrites.add(future);
         // Eagerly remove completed futures to avoid unbounded growth
         pendingWrites.removeIf(Future::isDone);
     }
 
-    @SuppressWarnings("NullAway")
-    private void putStringSync(final String tool, final String source, final String promptHash, final long ttlSeconds, final String value) {
-        synchronized (CosmosLocalStorage.class) {
-            if (localStorageCacheDisable.isDisabled() || localStorageDisableTool.isToolDisabled(tool) || localStorageCacheReadOnly.isReadOnly() || localStorageReadOnlyTool.isToolReadOnly(tool) || container == null) {
-                return;
-            }
+    private Mono<Void> putStringAsync(final String tool, final String source, final String promptHash, final long ttlSeconds, final String value) {
+        final CosmosAsyncContainer currentContainer = container;
+        if (localStorageCacheDisable.isDisabled() || localStorageDisableTool.isToolDisabled(tool) || localStorageCacheReadOnly.isReadOnly() || localStorageReadOnlyTool.isToolReadOnly(tool) || currentContainer == null) {
+            return Mono.empty();
+        }
 
-            if (totalFailures.get() > MAX_FAILURES) {
-                resetConnection();
-            }
+        resetConnectionIfFailing(currentContainer);
 
+        // The container is replaced if the connection was reset
+        final CosmosAsyncContainer writeContainer = container;
+        if (writeContainer == null) {
+            return Mono.empty();
+        }
 
-            final String redactedValue = localStorageCacheDisableRedaction.isRedactionDisabled()
-                    ? value
-                    : Objects.requireNonNullElse(sanitizeDocument.sanitize(value), "");
+        return Mono.fromCallable(() -> localStorageCacheDisableRedaction.isRedactionDisabled()
+                        ? value
+                        : Objects.requireNonNullElse(sanitizeDocument.sanitize(value), ""))
+                .flatMap(redactedValue -> {
+                    // If value exceeds SPLIT_ITEM_SIZE_BYTES, split into chunks and persist each separately
+                    final byte[] valueBytes = redactedValue.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+                    if (valueBytes.length > SPLIT_ITEM_SIZE_BYTES) {
+                        return putStringChunked(writeContainer, tool, source, promptHash, ttlSeconds, valueBytes);
+                    }
 
-            // If value exceeds SPLIT_ITEM_SIZE_BYTES, split into chunks and persist each separately
-            final byte[] valueBytes = redactedValue.getBytes(java.nio.charset.StandardCharsets.UTF_8);
-            if (valueBytes.length > SPLIT_ITEM_SIZE_BYTES) {
-                putStringChunked(tool, source, promptHash, ttlSeconds, valueBytes);
-                return;
-            }
+                    return putItem(writeContainer, tool, source, promptHash, ttlSeconds, redactedValue);
+                });
+    }
 
-            final Try<CosmosItemResponse<CacheItem>> result = Try.of(() -> zipper.compressString(redactedValue))
-                    .map(encryptor::encrypt)
-                    .map(encrypted -> localStorageReadWrite.putString(tool, source, promptHash, getTimestamp(ttlSeconds), encrypted))
-                    .map(encrypted -> new CacheItem(
-                            generateId(tool, source, promptHash),
-                            tool,
-                            source,
-                            promptHash,
-                            encrypted,
-                            getTimestamp(ttlSeconds),
-                            sanitizeTtl(ttlSeconds)))
-                    .map(item -> container.upsertItem(item, new PartitionKey(tool), new CosmosItemRequestOptions()))
-                    .onFailure(ex -> totalFailures.incrementAndGet())
-                    .onFailure(ex -> logger.warning("Failed to put string: " + exceptionHandler.getExceptionMessage(ex)));
-
-            result
-                    .mapFailure(
-                            API.Case(API.$(), ex -> new LocalStorageFailure("Failed to create record for tool " + tool, ex))
-                    )
-                    .get();
-        }
-    }
-
-    private void putStringChunked(final String tool, final String source, final String promptHash, final long ttlSeconds, final byte[] valueBytes) {
+    private Mono<Void> putItem(final CosmosAsyncContainer writeContainer, final String tool, final String source, final String promptHash, final long ttlSeconds, final String redactedValue) {
+        return Mono.fromCallable(() -> zipper.compressString(redactedValue))
+                .map(encryptor::encrypt)
+                .map(encrypted -> localStorageReadWrite.putString(tool, source, promptHash, getTimestamp(ttlSeconds), encrypted))
+                .map(encrypted -> new CacheItem(
+                        generateId(tool, source, promptHash),
+                        tool,
+                        source,
+                        promptHash,
+                        encrypted,
+                        getTimestamp(ttlSeconds),
+                        sanitizeTtl(ttlSeconds, tool),
+                        getBucket(generateId(tool, source, promptHash))))
+                .flatMap(item -> upsertItem(writeContainer, item))
+                .doOnError(ex -> recordFailure(writeContainer))
+                .doOnError(ex -> logger.warning("Failed to put string: " + exceptionHandler.getExceptionMessage(ex)))
+                .onErrorMap(ex -> new LocalStorageFailure("Failed to create record for tool " + tool, ex))
+                .then();
+    }
+
+    /**
+     * The chunks are written concurrently, and the chunk count is written last so a reader never finds a count
+     * without its chunks.
+     */
+    private Mono<Void> putStringChunked(final CosmosAsyncContainer writeContainer, final String tool, final String source, final String promptHash, final long ttlSeconds, final byte[] valueBytes) {
         final int totalChunks = (int) Math.ceil((double) valueBytes.length / SPLIT_ITEM_SIZE_BYTES);
         logger.fine("Splitting item of " + valueBytes.length + " bytes into " + totalChunks + " chunks for tool " + tool + " source " + source);
-        // Save the total chunk count so reassembly can look it up directly
-        putStringSync(tool, source, promptHash + "_chunked_size", ttlSeconds, String.valueOf(totalChunks));
-        for (int chunkIndex = 0; chunkIndex < totalChunks; chunkIndex++) {
-            final int start = chunkIndex * SPLIT_ITEM_SIZE_BYTES;
-            final int end = Math.min(start + SPLIT_ITEM_SIZE_BYTES, valueBytes.length);
-            final String chunk = new String(valueBytes, start, end - start, java.nio.charset.StandardCharsets.UTF_8);
-            putStringSync(tool, source, promptHash + "_chunk_" + chunkIndex, ttlSeconds, chunk);
-        }
+        return Flux.range(0, totalChunks)
+                .flatMap(chunkIndex -> {
+                    final int start = chunkIndex * SPLIT_ITEM_SIZE_BYTES;
+                    final int end = Math.min(start + SPLIT_ITEM_SIZE_BYTES, valueBytes.length);
+                    final String chunk = new String(valueBytes, start, end - start, java.nio.charset.StandardCharsets.UTF_8);
+                    return putItem(writeContainer, tool, source, promptHash + CHUNK_SUFFIX + chunkIndex, ttlSeconds, chunk);
+                }, getConcurrency())
+                // Save the total chunk count so reassembly can look it up directly
+                .then(Mono.defer(() -> putItem(writeContainer, tool, source, promptHash + CHUNKED_SIZE_SUFFIX, ttlSeconds, String.valueOf(totalChunks))));
     }
 
-    private Integer sanitizeTtl(final long ttlSeconds) {
+    /**
+     * Cosmos DB removes items once the TTL passes, so items for stale-while-revalidate tools are kept for the
+     * grace period as well.
+     */
+    private Integer sanitizeTtl(final long ttlSeconds, final String tool) {
         if (ttlSeconds > 0) {
-            return (int) ttlSeconds;
+            return (int) (ttlSeconds + localStorageStaleWhileRevalidateTool.getGracePeriod(tool));
         }
         return -1;
     }
 
+    private void refreshIfStale(final CacheResult<?> result, final String tool, final String source, final String promptHash, final Runnable refresh) {
+        if (result.stale()) {
+            staleWhileRevalidate.refresh(tool, generateId(tool, source, promptHash), refresh);
+        }
+    }
+
     @Nullable
     private Long getTimestamp(final Long ttlSeconds) {
         if (ttlSeconds != null && ttlSeconds > 0) {
@@ -931,6 +1199,207 @@ public class CosmosLocalStorage implements LocalStorage {
         putString(tool, source, promptHash, 0, value);
     }
 
+    /**
+     * Items are partitioned by tool, so each tool is reported with a single partition query. The age of an item
+     * is measured from when it was last written. A value that was split into chunks is counted once, by its
+     * "_chunked_size" item, while the size includes all of its chunks.
+     */
+    @SuppressWarnings("NullAway")
+    @Override
+    public List<CacheUsage> getUsage(final List<String> tools) {
+        if (localStorageCacheDisable.isDisabled() || container == null) {
+            return List.of();
+        }
+
+        final List<String> toolNames = tools.isEmpty()
+                ? container.queryItems("SELECT DISTINCT VALUE c.tool FROM c", new CosmosQueryRequestOptions(), String.class).collectList().block()
+                : tools;
+
+        final long now = Instant.now().getEpochSecond();
+        return toolNames.stream()
+                .flatMap(tool -> Try.of(() -> container.queryItems(
+                                        new SqlQuerySpec("""
+                                                SELECT c.source, SUM(CONTAINS(c.promptHash, @chunk) ? 0 : 1) AS count,
+                                                SUM(LENGTH(c.response)) AS bytes,
+                                                SUM(NOT CONTAINS(c.promptHash, @chunk) AND c._ts > @hour ? 1 : 0) AS lastHour,
+                                                SUM(NOT CONTAINS(c.promptHash, @chunk) AND c._ts <= @hour AND c._ts > @day ? 1 : 0) AS lastDay,
+                                                SUM(NOT CONTAINS(c.promptHash, @chunk) AND c._ts <= @day AND c._ts > @week ? 1 : 0) AS lastWeek,
+                                                SUM(NOT CONTAINS(c.promptHash, @chunk) AND c._ts <= @week ? 1 : 0) AS older
+                                                FROM c
+                                                WHERE c.tool = @tool
+                                                AND (NOT IS_NUMBER(c.timestamp) OR c.timestamp > @now)
+                                                GROUP BY c.source""".stripIndent(),
+                                                List.of(
+                                                        new SqlParameter("@tool", tool),
+                                                        new SqlParameter("@chunk", CHUNK_SUFFIX),
+                                                        new SqlParameter("@now", now),
+                                                        new SqlParameter("@hour", now - TimeUnit.HOURS.toSeconds(1)),
+                                                        new SqlParameter("@day", now - TimeUnit.DAYS.toSeconds(1)),
+                                                        new SqlParameter("@week", now - TimeUnit.DAYS.toSeconds(7)))),
+                                        new CosmosQueryRequestOptions().setPartitionKey(new PartitionKey(tool)),
+                                        UsageItem.class)
+                                .map(item -> new CacheUsage(tool, item.source(), item.count(), item.bytes(),
+                                        item.lastHour(), item.lastDay(), item.lastWeek(), item.older(), 0))
+                                .collectList()
+                                .block())
+                        .onFailure(ex -> logger.warning("Failed to get cache usage for " + tool + ": " + exceptionHandler.getExceptionMessage(ex)))
+                        .getOrElse(List.of())
+                        .stream())
+                .sorted(Comparator.comparingLong(CacheUsage::bytes).reversed())
+                .toList();
+    }
+
+    /**
+     * Each deleted item is also removed from the local tier, so purged values are not read back from it.
+     */
+    @SuppressWarnings("NullAway")
+    @Override
+    public long purge(final String tool, @Nullable final String source) {
+        if (localStorageCacheDisable.isDisabled() || localStorageCacheReadOnly.isReadOnly() || container == null) {
+            return 0;
+        }
+
+        final SqlQuerySpec query = source == null
+                ? new SqlQuerySpec("SELECT c.id, c.bucket, c.source, c.promptHash FROM c WHERE c.tool = @tool",
+                List.of(new SqlParameter("@tool", tool)))
+                : new SqlQuerySpec("SELECT c.id, c.bucket, c.source, c.promptHash FROM c WHERE c.tool = @tool AND c.source = @source",
+                List.of(new SqlParameter("@tool", tool), new SqlParameter("@source", source)));
+
+        // With hierarchical partitioning, the tool is a prefix of the partition key
+        final CosmosAsyncContainer purgeContainer = container;
+        final long deleted = Try.of(() -> purgeContainer.queryItems(query, new CosmosQueryRequestOptions().setPartitionKey(new PartitionKey(tool)), ItemKey.class)
+                        .flatMap(key -> purgeContainer.deleteItem(key.id(), getPartitionKey(tool, key.bucket()), new CosmosItemRequestOptions())
+                                .publishOn(getScheduler())
+                                .doOnSuccess(response -> localStorageReadWrite.remove(tool, key.source(), key.promptHash())), getConcurrency())
+                        .count()
+                        .block())
+                .mapFailure(
+                        API.Case(API.$(), ex -> new LocalStorageFailure("Failed to purge cache entries for tool " + tool, ex))
+                )
+                .get();
+
+        logger.info("Purged " + deleted + " cache entries for " + tool + (source == null ? "" : " " + source));
+        return deleted;
+    }
+
+    /**
+     * Cosmos DB reclaims the space used by deleted and expired items itself.
+     */
+    @Override
+    public void compact() {
+        logger.info("Cosmos DB does not need to be compacted");
+    }
+
+    /**
+     * Copy the unexpired items from a container partitioned by tool into this container, which may use
+     * hierarchical partitioning. Items are copied as they are, apart from their bucket and their TTL, so they
+     * do not need to be decrypted. Cosmos DB counts the TTL from the time an item was last written, so each
+     * copy is given the time its source item had left to live, rather than its original TTL.
+     *
+     * @param sourceContainerName The container to copy items from, in the same database
+     * @return The number of items copied
+     */
+    @SuppressWarnings("NullAway")
+    public long migrateFrom(final String sourceContainerName) {
+        if (localStorageCacheDisable.isDisabled() || localStorageCacheReadOnly.isReadOnly() || container == null || cosmosClient == null) {
+            return 0;
+        }
+
+        if (sourceContainerName.equals(getContainerName())) {
+            throw new LocalStorageFailure("The source container must be different to the destination container " + getContainerName());
+        }
+
+        final CosmosAsyncContainer destination = container;
+        final CosmosAsyncContainer source = cosmosClient.getDatabase(databaseName.orElse(DATABASE_NAME)).getContainer(sourceContainerName);
+        final AtomicInteger copied = new AtomicInteger();
+        final long now = Instant.now().getEpochSecond();
+
+        return Try.of(() -> source.read().block().getProperties().getDefaultTimeToLiveInSeconds())
+                .map(sourceTtl -> source.queryItems("SELECT * FROM c", new CosmosQueryRequestOptions(), MigrationItem.class)
+                        .filter(item -> item.timestamp() == null || item.timestamp() >= now)
+                        .map(item -> new CacheItem(
+                                item.id(),
+                                item.tool(),
+                                item.source(),
+                                item.promptHash(),
+                                item.response(),
+                                item.timestamp(),
+                                getRemainingTtl(item.ttl(), sourceTtl, item.lastModified(), now),
+                                getBucket(item.id())))
+                        .filter(item -> item.ttl() != 0)
+                        .flatMap(item -> upsertItem(destination, item), getConcurrency())
+                        .doOnNext(response -> {
+                            if (copied.incrementAndGet() % 1000 == 0) {
+                                logger.info("Copied " + copied.get() + " items from " + sourceContainerName);
+                            }
+                        })
+                        .count()
+                        .block())
+                .onSuccess(count -> logger.info("Copied " + count + " items from " + sourceContainerName + " to " + getContainerName()))
+                .mapFailure(
+                        API.Case(API.$(), ex -> new LocalStorageFailure("Failed to migrate items from " + sourceContainerName, ex))
+                )
+                .get();
+    }
+
+    /**
+     * Work out how long a copied item has left to live, following the rules Cosmos DB uses to expire items.
+     * Items only expire if the container has a default TTL, and an item's own TTL overrides the default.
+     *
+     * @param itemTtl      The TTL of the item, or null to use the container's default
+     * @param containerTtl The default TTL of the container, or null if items in the container never expire
+     * @param lastModified The time the item was last written, in epoch seconds
+     * @param now          The current time, in epoch seconds
+     * @return The number of seconds the item has left to live, TTL_NO_EXPIRE if it never expires, or zero if it
+     * has already expired
+     */
+    static int getRemainingTtl(@Nullable final Integer itemTtl,
+                               @Nullable final Integer containerTtl,
+                               @Nullable final Long lastModified,
+                               final long now) {
+        if (containerTtl == null) {
+            return TTL_NO_EXPIRE;
+        }
+
+        final int ttl = itemTtl == null ? containerTtl : itemTtl;
+        if (ttl <= 0) {
+            return TTL_NO_EXPIRE;
+        }
+
+        if (lastModified == null) {
+            return ttl;
+        }
+
+        return (int) Math.max(0, ttl - Math.max(0, now - lastModified));
+    }
+
+    /**
+     * The key of an item returned by the purge query.
+     */
+    public record ItemKey(String id, @Nullable String bucket, String source, String promptHash) {
+    }
+
+    /**
+     * A row returned by the usage query.
+     */
+    public record UsageItem(String source, long count, long bytes, long lastHour, long lastDay, long lastWeek, long older) {
+    }
+
+    /**
+     * An item read by the migration, which also needs the time the item was last written.
+     */
+    public record MigrationItem(
+            String id,
+            String tool,
+            String source,
+            String promptHash,
+            String response,
+            @Nullable Long timestamp,
+            @Nullable Integer ttl,
+            @JsonProperty("_ts") @Nullable Long lastModified
+    ) {
+    }
+
     // Record to represent the Cosmos DB document
     public record CacheItem(
             String id,
@@ -939,7 +1408,8 @@ public class CosmosLocalStorage implements LocalStorage {
             String promptHash,
             String response,
             Long timestamp,
-            Integer ttl  // Time to live in seconds for Cosmos DB automatic expiration
+            Integer ttl,  // Time to live in seconds for Cosmos DB automatic expiration
+            @Nullable String bucket  // The second level of the partition key, when using hierarchical partitioning
     ) {
     }
 }
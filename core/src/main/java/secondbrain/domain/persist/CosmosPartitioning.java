@@ -0,0 +1,61 @@
+package secondbrain.domain.persist;
+
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.PartitionKeyBuilder;
+import com.azure.cosmos.models.PartitionKeyDefinition;
+import com.azure.cosmos.models.PartitionKeyDefinitionVersion;
+import com.azure.cosmos.models.PartitionKind;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Routes Cosmos DB items to their partitions. Items are partitioned by tool, or with hierarchical partitioning,
+ * by tool and then by a bucket derived from a hash of the item id, which spreads busy tools over many logical
+ * partitions. A bucket count of zero or less partitions items by tool alone.
+ */
+final class CosmosPartitioning {
+    private CosmosPartitioning() {
+    }
+
+    static boolean isHierarchical(final int buckets) {
+        return buckets > 0;
+    }
+
+    static PartitionKeyDefinition getPartitionKeyDefinition(final int buckets) {
+        final PartitionKeyDefinition definition = new PartitionKeyDefinition();
+        if (isHierarchical(buckets)) {
+            definition.setKind(PartitionKind.MULTI_HASH);
+            definition.setVersion(PartitionKeyDefinitionVersion.V2);
+            definition.setPaths(List.of("/tool", "/bucket"));
+        } else {
+            definition.setPaths(List.of("/tool"));
+        }
+        return definition;
+    }
+
+    /**
+     * The bucket is taken from a hash of the id, so reads find an item without knowing anything but its key.
+     *
+     * @return The bucket, or null if items are partitioned by tool alone
+     */
+    @Nullable
+    static String getBucket(final String id, final int buckets) {
+        if (!isHierarchical(buckets)) {
+            return null;
+        }
+
+        return String.valueOf(Integer.parseInt(DigestUtils.sha256Hex(id).substring(0, 6), 16) % buckets);
+    }
+
+    static PartitionKey getPartitionKey(final String tool, @Nullable final String bucket) {
+        return bucket == null
+                ? new PartitionKey(tool)
+                : new PartitionKeyBuilder().add(tool).add(bucket).build();
+    }
+
+    static String getLogicalPartition(final String tool, @Nullable final String bucket) {
+        return bucket == null ? tool : tool + "/" + bucket;
+    }
+}
@@ -0,0 +1,101 @@
+package secondbrain.domain.persist;
+
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.CosmosDiagnosticsContext;
+import com.azure.cosmos.CosmosDiagnosticsRequestInfo;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the operations that Cosmos DB throttled, by logical partition and by physical partition key range.
+ * The SDK retries throttled requests itself, so throttling is read from the diagnostics of each response. Point
+ * operations are retried when they are throttled, so an operation that was retried, or that failed with a 429
+ * status once the retries ran out, is counted as throttled.
+ */
+final class CosmosThrottling {
+    private static final int REPORT_PARTITIONS = 10;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final Map<String, LongAdder> byLogicalPartition = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> byPartitionKeyRange = new ConcurrentHashMap<>();
+
+    /**
+     * Record an operation if it was throttled.
+     *
+     * @param diagnostics      The diagnostics of the response or exception
+     * @param logicalPartition A description of the logical partition the operation used
+     */
+    void record(@Nullable final CosmosDiagnostics diagnostics, final String logicalPartition) {
+        if (diagnostics == null || diagnostics.getDiagnosticsContext() == null) {
+            return;
+        }
+
+        // Most operations are not throttled, so the request info is only collected for those that were
+        final CosmosDiagnosticsContext context = diagnostics.getDiagnosticsContext();
+        if (!isThrottled(context.getRetryCount(), context.getStatusCode())) {
+            return;
+        }
+
+        record(
+                logicalPartition,
+                context.getRetryCount(),
+                context.getStatusCode(),
+                context.getRequestInfo().stream()
+                        .map(CosmosDiagnosticsRequestInfo::getPartitionKeyRangeId)
+                        .toList());
+    }
+
+    /**
+     * Record an operation if it was throttled.
+     *
+     * @param logicalPartition   A description of the logical partition the operation used
+     * @param retryCount         The number of times the SDK retried the operation
+     * @param statusCode         The final status code of the operation
+     * @param partitionKeyRanges The partition key ranges of the requests sent for the operation
+     */
+    void record(final String logicalPartition,
+                final int retryCount,
+                final int statusCode,
+                final List<@Nullable String> partitionKeyRanges) {
+        if (!isThrottled(retryCount, statusCode)) {
+            return;
+        }
+
+        byLogicalPartition.computeIfAbsent(logicalPartition, key -> new LongAdder()).increment();
+        partitionKeyRanges.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(range -> byPartitionKeyRange.computeIfAbsent(range, key -> new LongAdder()).increment());
+    }
+
+    private static boolean isThrottled(final int retryCount, final int statusCode) {
+        return retryCount != 0 || statusCode == TOO_MANY_REQUESTS;
+    }
+
+    long getTotal() {
+        return byLogicalPartition.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Describe the most throttled partitions.
+     */
+    String getReport() {
+        return "Cosmos DB throttled " + getTotal() + " operations. Logical partitions: " + getTop(byLogicalPartition)
+                + ". Partition key ranges: " + getTop(byPartitionKeyRange);
+    }
+
+    private static String getTop(final Map<String, LongAdder> counts) {
+        final List<String> top = counts.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> entry) -> entry.getValue().sum()).reversed())
+                .limit(REPORT_PARTITIONS)
+                .map(entry -> entry.getKey() + "=" + entry.getValue().sum())
+                .toList();
+        return String.join(", ", top);
+    }
+}
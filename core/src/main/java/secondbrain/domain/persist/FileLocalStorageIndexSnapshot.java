@@ -0,0 +1,227 @@
+package secondbrain.domain.persist;
+
+import io.vavr.control.Try;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A compact on-disk copy of the file cache index. Listing a cache directory with hundreds of thousands of
+ * files and reading the attributes of each one is slow, so the index is saved as a snapshot file plus an
+ * append-only journal of puts and deletes. Loading the index at startup is then a single sequential read.
+ * <p>
+ * The snapshot is a best effort. Writes from other processes sharing the cache directory may be lost when the
+ * journal is compacted, so the directory is scanned again once the rescan interval has passed. The header holds
+ * the time of the last full scan, which is carried forward by every snapshot written after it, and a snapshot
+ * whose scan is older than the interval is ignored.
+ */
+class FileLocalStorageIndexSnapshot {
+    static final String SNAPSHOT_FILE_NAME = "index.snapshot";
+    static final String JOURNAL_FILE_NAME = "index.journal";
+    static final String ROTATED_JOURNAL_FILE_NAME = "index.journal.old";
+    private static final String SNAPSHOT_HEADER = "#secondbrain-file-index v1 ";
+    private static final String PUT = "P";
+    private static final String DELETE = "D";
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final Path rotatedJournalPath;
+    private final Duration rescanInterval;
+    private final AtomicInteger journalEntries = new AtomicInteger();
+    private volatile long lastFullScan;
+
+    /**
+     * An entry in the index.
+     *
+     * @param key        The cache key (tool_source_promptHash)
+     * @param timestamp  The expiration timestamp, or 0 if the entry does not expire
+     * @param size       The approximate size of the entry, or -1 if it is not known
+     * @param lastAccess The epoch second the entry was last read or written, or 0 if it is not known
+     */
+    record Entry(String key, long timestamp, long size, long lastAccess) {
+    }
+
+    FileLocalStorageIndexSnapshot(final Path cacheDir, final Duration rescanInterval) {
+        this.snapshotPath = cacheDir.resolve(SNAPSHOT_FILE_NAME);
+        this.journalPath = cacheDir.resolve(JOURNAL_FILE_NAME);
+        this.rotatedJournalPath = cacheDir.resolve(ROTATED_JOURNAL_FILE_NAME);
+        this.rescanInterval = rescanInterval;
+    }
+
+    /**
+     * Load the snapshot and replay the journal. A journal that was rotated by a snapshot that never finished
+     * is replayed first.
+     *
+     * @return The index entries, or empty if there is no usable snapshot and the directory must be scanned
+     */
+    Optional<List<Entry>> load() {
+        if (!Files.exists(snapshotPath)) {
+            return Optional.empty();
+        }
+
+        return Try.of(() -> loadSnapshot())
+                .map(entries -> entries
+                        .map(loaded -> replayJournal(loaded, rotatedJournalPath))
+                        .map(loaded -> replayJournal(loaded, journalPath))
+                        .map(loaded -> List.copyOf(loaded.values())))
+                .getOrElse(Optional.empty());
+    }
+
+    private Optional<Map<String, Entry>> loadSnapshot() throws IOException {
+        final Map<String, Entry> entries = new LinkedHashMap<>();
+
+        try (final Stream<String> lines = Files.lines(snapshotPath, StandardCharsets.UTF_8)) {
+            final Iterator<String> iterator = lines.iterator();
+
+            if (!iterator.hasNext()) {
+                return Optional.empty();
+            }
+
+            final String header = iterator.next();
+            if (!header.startsWith(SNAPSHOT_HEADER)) {
+                return Optional.empty();
+            }
+
+            final long scanned = NumberUtils.toLong(header.substring(SNAPSHOT_HEADER.length()), 0L);
+            if (isStale(scanned)) {
+                return Optional.empty();
+            }
+            lastFullScan = scanned;
+
+            while (iterator.hasNext()) {
+                // timestamp, size, last access, key. The key is last because it is the only field that may contain a tab.
+                final String[] fields = iterator.next().split("\t", 4);
+                if (fields.length == 4) {
+                    final Entry entry = new Entry(
+                            fields[3],
+                            NumberUtils.toLong(fields[0], 0L),
+                            NumberUtils.toLong(fields[1], -1L),
+                            NumberUtils.toLong(fields[2], 0L));
+                    entries.put(entryId(entry.key(), entry.timestamp()), entry);
+                }
+            }
+        }
+
+        return Optional.of(entries);
+    }
+
+    private Map<String, Entry> replayJournal(final Map<String, Entry> entries, final Path path) {
+        if (!Files.exists(path)) {
+            return entries;
+        }
+
+        Try.withResources(() -> Files.lines(path, StandardCharsets.UTF_8))
+                .of(lines -> {
+                    lines.forEach(line -> {
+                        journalEntries.incrementAndGet();
+                        final String[] fields = line.split("\t", 5);
+                        if (PUT.equals(fields[0]) && fields.length == 5) {
+                            final Entry entry = new Entry(
+                                    fields[4],
+                                    NumberUtils.toLong(fields[1], 0L),
+                                    NumberUtils.toLong(fields[2], -1L),
+                                    NumberUtils.toLong(fields[3], 0L));
+                            entries.put(entryId(entry.key(), entry.timestamp()), entry);
+                        } else if (DELETE.equals(fields[0]) && fields.length == 3) {
+                            entries.remove(entryId(fields[2], NumberUtils.toLong(fields[1], 0L)));
+                        }
+                    });
+                    return entries;
+                });
+
+        return entries;
+    }
+
+    /**
+     * Record a new or replaced cache file in the journal.
+     */
+    void appendPut(final Entry entry) {
+        append(PUT + "\t" + entry.timestamp() + "\t" + entry.size() + "\t" + entry.lastAccess() + "\t" + entry.key());
+    }
+
+    /**
+     * Record a deleted cache file in the journal.
+     */
+    void appendDelete(final String key, final long timestamp) {
+        append(DELETE + "\t" + timestamp + "\t" + key);
+    }
+
+    private void append(final String line) {
+        // Each line is a single small write in append mode, so concurrent processes don't interleave partial lines
+        Try.run(() -> Files.writeString(journalPath, line + "\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND))
+                .onSuccess(v -> journalEntries.incrementAndGet());
+    }
+
+    /**
+     * Record that the index was just rebuilt from a full directory scan.
+     */
+    void recordFullScan() {
+        lastFullScan = Instant.now().getEpochSecond();
+    }
+
+    /**
+     * @return true if the directory has not been fully scanned within the rescan interval
+     */
+    boolean isFullScanDue() {
+        return isStale(lastFullScan);
+    }
+
+    private boolean isStale(final long scanned) {
+        return Instant.now().getEpochSecond() - scanned > rescanInterval.toSeconds();
+    }
+
+    /**
+     * @return The number of journal entries written since the last snapshot
+     */
+    int getJournalEntries() {
+        return journalEntries.get();
+    }
+
+    /**
+     * Write a new snapshot and truncate the journal.
+     * <p>
+     * Puts are added to the index before they are journaled, and are not synchronized with this method. So the
+     * journal is moved aside before the entries are read from the index. A put journaled before the move is
+     * already in the entries, and a put journaled after the move goes to a new journal that is kept. The rotated
+     * journal is only deleted once the snapshot is in place.
+     *
+     * @param entries Reads the entries from the index
+     */
+    void write(final Supplier<? extends Collection<Entry>> entries) throws IOException {
+        if (Files.exists(journalPath)) {
+            Files.move(journalPath, rotatedJournalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        journalEntries.set(0);
+
+        final Path tempPath = snapshotPath.resolveSibling(SNAPSHOT_FILE_NAME + ".tmp");
+
+        try (final BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+            writer.write(SNAPSHOT_HEADER + lastFullScan);
+            writer.newLine();
+            for (final Entry entry : entries.get()) {
+                writer.write(entry.timestamp() + "\t" + entry.size() + "\t" + entry.lastAccess() + "\t" + entry.key());
+                writer.newLine();
+            }
+        }
+
+        Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(rotatedJournalPath);
+    }
+
+    private static String entryId(final String key, final long timestamp) {
+        return key + ".cache." + timestamp;
+    }
+}
@@ -9,10 +9,8 @@ import jakarta.enterprise.event.Startup;
 import jakarta.inject.Inject;
 import org.apache.commons.io.output.LockableFileWriter;
 import org.apache.commons.lang3.math.NumberUtils;
-import org.apache.commons.lang3.tuple.Pair;
 import org.jspecify.annotations.Nullable;
 import secondbrain.domain.exceptionhandling.ExceptionHandler;
-import secondbrain.domain.injection.Preferred;
 import secondbrain.domain.persist.config.LocalStorageCacheDirectory;
 import secondbrain.domain.persist.config.LocalStorageMemoryCacheEnabled;
 import secondbrain.domain.persist.config.LocalStorageMemoryCacheFileLimit;
@@ -43,15 +41,17 @@ import java.util.regex.Pattern;
 /**
  * A lot of time can be spent reading and writing local cache files.
  * This implementation uses an optional in-memory cache to speed up reads.
+ * The index of cache files is persisted with {@link FileLocalStorageIndexSnapshot} so startup and cleanup
+ * don't need to list the cache directory.
  */
 @ApplicationScoped
-@Preferred
 public class FileLocalStorageReadWrite implements LocalStorageReadWrite {
     private static final Pattern LOCAL_CACHE_TIMESTAMP = Pattern.compile("(.*?)\\.cache\\.(\\d+)");
-    private static final Set<String> IGNORED_FILES = Set.of("localstoragev2.mv.db", "localstoragev2.trace.db", "lastclean.marker");
     private static final int LARGE_OBJECT_WARNING_BYTES = 2 * 1024 * 1024;
     private static final String MARKER_FILE_NAME = "lastclean.marker";
     private static final Duration CLEANUP_INTERVAL = Duration.ofHours(1);
+    private static final Duration INDEX_RESCAN_INTERVAL = Duration.ofDays(1);
+    private static final int MAX_INDEX_JOURNAL_ENTRIES = 10000;
 
     private static final Map<Path, String> MEMORY_CACHE = new ConcurrentHashMap<>();
     private static final AtomicInteger TOTAL_READS = new AtomicInteger();
@@ -67,9 +67,41 @@ public class FileLocalStorageReadWrite implements LocalStorageReadWrite {
      */
     private static final Map<String, List<CacheFileEntry>> FILE_INDEX = new ConcurrentHashMap<>();
 
-    private record CacheFileEntry(Path path, long timestamp) {
+    /**
+     * The size and last access time are mutable so reads can be tracked without replacing the entry.
+     * They are persisted in the index snapshot and used to decide which files to preload into memory.
+     */
+    private static final class CacheFileEntry {
+        private final String key;
+        private final Path path;
+        private final long timestamp;
+        private volatile long size;
+        private volatile long lastAccess;
+
+        private CacheFileEntry(final String key, final Path path, final long timestamp, final long size, final long lastAccess) {
+            this.key = key;
+            this.path = path;
+            this.timestamp = timestamp;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public long timestamp() {
+            return timestamp;
+        }
+
+        private FileLocalStorageIndexSnapshot.Entry toSnapshotEntry() {
+            return new FileLocalStorageIndexSnapshot.Entry(key, timestamp, size, lastAccess);
+        }
     }
 
+    @Nullable
+    private static volatile FileLocalStorageIndexSnapshot indexSnapshot;
+
     /**
      * In-memory cache of the last cleanup time (epoch seconds) to avoid hitting the filesystem
      * on every getString call just to check the marker file.
@@ -118,7 +150,13 @@ public class FileLocalStorageReadWrite implements LocalStorageReadWrite {
         Try.of(() -> CACHE_LOCK.tryLock(10, TimeUnit.SECONDS))
                 .map(success -> {
                     if (success) {
-                        CACHE_LOCK.unlock();
+                        try {
+                            // Save the index so the next startup doesn't have to scan the directory,
+                            // and so the last access times recorded during this run are retained
+                            writeIndexSnapshot();
+                        } finally {
+                            CACHE_LOCK.unlock();
+                        }
                     }
                     return success;
                 })
@@ -138,21 +176,24 @@ public class FileLocalStorageReadWrite implements LocalStorageReadWrite {
         Try.run(() -> Files.createDirectories(Path.of(cacheDir)))
                 .onFailure(ex -> logger.warning("Failed to create cache directory: " + exceptionHandler.getExceptionMessage(ex)));
 
-        // Build the file index from existing cache files (single directory scan)
-        final List<Path> allFiles = Try.of(() -> Path.of(cacheDir))
-                .mapTry(Files::list)
-                .map(java.util.stream.Stream::toList)
-                .getOrElse(List.of());
-
-        allFiles.forEach(file -> {
-            final Matcher matcher = LOCAL_CACHE_TIMESTAMP.matcher(file.getFileName().toString());
-            if (matcher.matches()) {
-                final String key = matcher.group(1);
-                final long ts = NumberUtils.toLong(matcher.group(2), 0L);
-                FILE_INDEX.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>()))
-                        .add(new CacheFileEntry(file, ts));
-            }
-        });
+        final FileLocalStorageIndexSnapshot snapshot = new FileLocalStorageIndexSnapshot(Path.of(cacheDir), INDEX_RESCAN_INTERVAL);
+        indexSnapshot = snapshot;
+
+        // Build the file index from the snapshot, falling back to a single directory scan
+        final long start = System.currentTimeMillis();
+        final Optional<List<FileLocalStorageIndexSnapshot.Entry>> snapshotEntries = snapshot.load();
+        if (snapshotEntries.isPresent()) {
+            snapshotEntries.get().forEach(entry -> addToIndex(new CacheFileEntry(
+                    entry.key(),
+                    Path.of(cacheDir, entry.key() + ".cache." + entry.timestamp()),
+                    entry.timestamp(),
+                    entry.size(),
+                    entry.lastAccess())));
+            logger.fine("Loaded " + snapshotEntries.get().size() + " cache index entries from snapshot in " + (System.currentTimeMillis() - start) + " ms");
+        } else {
+            scanDirectory(cacheDir, snapshot);
+            logger.fine("Built cache index from directory scan in " + (System.currentTimeMillis() - start) + " ms");
+        }
 
         // Initialize the in-memory cleanup timestamp from the marker file
         final Path markerPath = Path.of(cacheDir, MARKER_FILE_NAME);
@@ -162,12 +203,16 @@ public class FileLocalStorageReadWrite implements LocalStorageReadWrite {
         }
 
         if (!localStorageMemoryCacheEnabled.isMemoryCacheEnabled()) {
+            // Without the preload thread, save the index now if it was rebuilt from a directory scan
+            if (snapshotEntries.isEmpty()) {
+                writeIndexSnapshot();
+            }
             return;
         }
 
         logger.fine("Initializing memory cache from local cache directory " + cacheDir);
 
-        // Preload the most recent cache entries into memory using the already-scanned file list
+        // Preload the most recently accessed cache entries into memory using the index
         final AtomicLong currentCacheSize = new AtomicLong(0L);
         final Thread thread = new Thread(() -> {
             if (CACHE_LOCK.tryLock()) {
@@ -184,21 +229,38 @@ public class FileLocalStorageReadWrite implements LocalStorageReadWrite {
                         We'll accept this, as if the bean is shutdown, this logic can fail without
                         impacting the application's function.
                     */
-                    final List<Pair<Path, BasicFileAttributes>> files = allFiles.stream()
-                            .filter(f -> !IGNORED_FILES.contains(f.getFileName().toString()))
-                            .map(f -> Pair.of(f, Try.of(() -> Files.readAttributes(f, BasicFileAttributes.class)).getOrNull()))
-                            .filter(pair -> pair.getRight() != null)
-                            .sorted((f1, f2) -> f2.getRight().lastAccessTime().compareTo(f1.getRight().lastAccessTime()))
+                    // Entries loaded from a directory scan don't have a size or access time yet
+                    final List<CacheFileEntry> unknown = FILE_INDEX.values().stream()
+                            .flatMap(entries -> copyOf(entries).stream())
+                            .filter(e -> e.size < 0)
+                            .toList();
+
+                    for (final CacheFileEntry entry : unknown) {
+                        final BasicFileAttributes attributes = Try.of(() -> Files.readAttributes(entry.path(), BasicFileAttributes.class)).getOrNull();
+                        if (attributes != null) {
+                            entry.size = attributes.size();
+                            entry.lastAccess = attributes.lastAccessTime().toInstant().getEpochSecond();
+                        }
+                    }
+
+                    if (!unknown.isEmpty()) {
+                        writeIndexSnapshot();
+                    }
+
+                    final List<CacheFileEntry> files = FILE_INDEX.values().stream()
+                            .flatMap(entries -> copyOf(entries).stream())
+                            .filter(e -> e.size >= 0)
+                            .sorted((f1, f2) -> Long.compare(f2.lastAccess, f1.lastAccess))
                             .limit(localStorageMemoryCacheFileLimit.getMemoryCacheFileLimit())
-                            .takeWhile(f -> currentCacheSize.addAndGet(f.getRight().size()) <= localStorageMemoryCacheSizeLimit.getMemoryCacheSizeLimit())
+                            .takeWhile(f -> currentCacheSize.addAndGet(f.size) <= localStorageMemoryCacheSizeLimit.getMemoryCacheSizeLimit())
                             .toList();
 
-                    for (Pair<Path, BasicFileAttributes> f : files) {
+                    for (final CacheFileEntry f : files) {
                         if (SHUTDOWN.get()) {
                             break;
                         }
 
-                        MEMORY_CACHE.computeIfAbsent(f.getLeft(), this::readFileSilentFail);
+                        MEMORY_CACHE.computeIfAbsent(f.path(), this::readFileSilentFail);
                     }
                 } finally {
                     CACHE_LOCK.unlock();
@@ -227,11 +289,103 @@ public class FileLocalStorageReadWrite implements LocalStorageReadWrite {
         final long now = Instant.now().getEpochSecond();
 
         // Find the most recent non-expired entry (timestamp 0 means no expiration)
-        return entries.stream()
+        return copyOf(entries).stream()
                 .filter(e -> e.timestamp() == 0 || e.timestamp() >= now)
                 .max(Comparator.comparingLong(CacheFileEntry::timestamp))
-                .map(CacheFileEntry::path)
-                .map(path -> Try.of(() -> readFile(path)).getOrNull());
+                .map(entry -> {
+                    entry.lastAccess = now;
+                    final String result = Try.of(() -> readFile(entry.path())).getOrNull();
+                    // The index is cross-checked lazily: a file deleted outside this process is dropped on first read
+                    if (result == null && !Files.exists(entry.path())) {
+                        removeFromIndex(entry);
+                    }
+                    return result;
+                });
+    }
+
+    @Override
+    public boolean containsString(final String tool, final String source, final String promptHash) {
+        final List<CacheFileEntry> entries = FILE_INDEX.get(cacheKey(tool, source, promptHash));
+        if (entries == null) {
+            return false;
+        }
+
+        final long now = Instant.now().getEpochSecond();
+        return copyOf(entries).stream()
+                .anyMatch(e -> e.timestamp() == 0 || e.timestamp() >= now);
+    }
+
+    /**
+     * Synchronized lists must be locked while they are iterated.
+     */
+    private static List<CacheFileEntry> copyOf(final List<CacheFileEntry> entries) {
+        synchronized (entries) {
+            return List.copyOf(entries);
+        }
+    }
+
+    /**
+     * Add every cache file in the directory that is not already in the index.
+     */
+    private static void scanDirectory(final String cacheDir, final FileLocalStorageIndexSnapshot snapshot) {
+        Try.of(() -> Path.of(cacheDir))
+                .mapTry(Files::list)
+                .map(java.util.stream.Stream::toList)
+                .getOrElse(List.of())
+                .forEach(file -> {
+                    final Matcher matcher = LOCAL_CACHE_TIMESTAMP.matcher(file.getFileName().toString());
+                    if (matcher.matches() && !isIndexed(matcher.group(1), file)) {
+                        final String key = matcher.group(1);
+                        final long ts = NumberUtils.toLong(matcher.group(2), 0L);
+                        // The size and access time are read lazily by the preload thread
+                        addToIndex(new CacheFileEntry(key, file, ts, -1, 0));
+                    }
+                });
+        snapshot.recordFullScan();
+    }
+
+    private static boolean isIndexed(final String key, final Path file) {
+        final List<CacheFileEntry> entries = FILE_INDEX.get(key);
+        return entries != null && copyOf(entries).stream().anyMatch(e -> e.path().equals(file));
+    }
+
+    private static void addToIndex(final CacheFileEntry entry) {
+        final List<CacheFileEntry> entries = FILE_INDEX.computeIfAbsent(entry.key, k -> Collections.synchronizedList(new ArrayList<>()));
+        synchronized (entries) {
+            entries.removeIf(e -> e.path().equals(entry.path()));
+            entries.add(entry);
+        }
+    }
+
+    private void removeFromIndex(final CacheFileEntry entry) {
+        final List<CacheFileEntry> entries = FILE_INDEX.get(entry.key);
+        if (entries != null) {
+            entries.remove(entry);
+        }
+
+        MEMORY_CACHE.remove(entry.path());
+
+        final FileLocalStorageIndexSnapshot snapshot = indexSnapshot;
+        if (snapshot != null) {
+            snapshot.appendDelete(entry.key, entry.timestamp());
+        }
+    }
+
+    /**
+     * Write the index snapshot. The caller must hold CACHE_LOCK.
+     */
+    private void writeIndexSnapshot() {
+        final FileLocalStorageIndexSnapshot snapshot = indexSnapshot;
+        if (snapshot == null) {
+            return;
+        }
+
+        // The entries are read by the snapshot, after it has rotated the journal
+        Try.run(() -> snapshot.write(() -> FILE_INDEX.values().stream()
+                        .flatMap(e -> copyOf(e).stream())
+                        .map(CacheFileEntry::toSnapshotEntry)
+                        .toList()))
+                .onFailure(ex -> logger.warning("Failed to write cache index snapshot: " + exceptionHandler.getExceptionMessage(ex)));
     }
 
     private String readFile(final Path path) {
@@ -277,9 +431,14 @@ public class FileLocalStorageReadWrite implements LocalStorageReadWrite {
                 .flatMap(path -> Try.withResources(() -> new LockableFileWriter.Builder().setFile(path.toFile()).setAppend(false).get())
                         .of(w -> {
                             w.write(value);
-                            // Update the file index
-                            FILE_INDEX.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>()))
-                                    .add(new CacheFileEntry(path, ts));
+                            // Update the file index and the journal. The length is an approximation of the file
+                            // size, which is good enough to budget the memory cache.
+                            final CacheFileEntry entry = new CacheFileEntry(key, path, ts, value.length(), Instant.now().getEpochSecond());
+                            addToIndex(entry);
+                            final FileLocalStorageIndexSnapshot snapshot = indexSnapshot;
+                            if (snapshot != null) {
+                                snapshot.appendPut(entry.toSnapshotEntry());
+                            }
                             return value;
                         }))
                 .onFailure(ex -> {
@@ -289,9 +448,53 @@ public class FileLocalStorageReadWrite implements LocalStorageReadWrite {
                         logger.warning("Failed to write cache file timestamp: " + exceptionHandler.getExceptionMessage(ex));
                     }
                 });
+
+        compactIndexJournal();
+
         return value;
     }
 
+    /**
+     * Fold a large journal back into the snapshot so it doesn't take long to replay at startup.
+     */
+    private void compactIndexJournal() {
+        final FileLocalStorageIndexSnapshot snapshot = indexSnapshot;
+        if (snapshot == null || snapshot.getJournalEntries() < MAX_INDEX_JOURNAL_ENTRIES) {
+            return;
+        }
+
+        if (!CACHE_LOCK.tryLock()) {
+            return;
+        }
+
+        try {
+            if (snapshot.getJournalEntries() >= MAX_INDEX_JOURNAL_ENTRIES) {
+                writeIndexSnapshot();
+            }
+        } finally {
+            CACHE_LOCK.unlock();
+        }
+    }
+
+    /**
+     * The files are deleted and the deletes journaled, so neither the index nor a rescan brings the value back.
+     */
+    @Override
+    public void remove(final String tool, final String source, final String promptHash) {
+        final List<CacheFileEntry> entries = FILE_INDEX.get(cacheKey(tool, source, promptHash));
+        if (entries == null) {
+            return;
+        }
+
+        for (final CacheFileEntry entry : copyOf(entries)) {
+            Try.run(() -> Files.deleteIfExists(entry.path()))
+                    .onSuccess(v -> removeFromIndex(entry))
+                    .onFailure(ex -> logger.warning("Failed to delete cache file " + entry.path() + ": " + exceptionHandler.getExceptionMessage(ex)));
+        }
+
+        compactIndexJournal();
+    }
+
     @Override
     public void purge() {
         MEMORY_CACHE.clear();
@@ -337,35 +540,41 @@ public class FileLocalStorageReadWrite implements LocalStorageReadWrite {
                     return;
                 }
 
-                // Clear expired cache files
-                Try.of(() -> Path.of(cacheDir))
-                        .mapTry(Files::list)
-                        .map(files -> files
-                                .map(file -> LOCAL_CACHE_TIMESTAMP.matcher(file.getFileName().toString()))
-                                .filter(Matcher::matches)
-                                // Keep files for deletion that have a timestamp that is not 0 (no expiration) and in the past
-                                .filter(matcher -> NumberUtils.toLong(matcher.group(2), 0L) != 0 && NumberUtils.toLong(matcher.group(2), 0L) < now)
-                                .map(matcher -> Path.of(cacheDir, matcher.group(0)))
-                                .toList())
-                        .peek(files -> {
-                            if (!files.isEmpty()) {
-                                logger.fine("Deleting " + files.size() + " expired cache files: " + files);
+                // Files written by other processes may be missing from the index, so they would never expire
+                final FileLocalStorageIndexSnapshot snapshot = indexSnapshot;
+                if (snapshot != null && snapshot.isFullScanDue()) {
+                    scanDirectory(cacheDir, snapshot);
+                }
+
+                // Clear expired cache files. The index is walked instead of listing the directory.
+                // Keep files for deletion that have a timestamp that is not 0 (no expiration) and in the past
+                final List<CacheFileEntry> expired = FILE_INDEX.values().stream()
+                        .flatMap(entries -> copyOf(entries).stream())
+                        .filter(e -> e.timestamp() != 0 && e.timestamp() < now)
+                        .toList();
+
+                if (!expired.isEmpty()) {
+                    logger.fine("Deleting " + expired.size() + " expired cache files");
+                }
+
+                expired.forEach(entry -> Try.run(() -> Files.delete(entry.path()))
+                        .onFailure(ex -> {
+                            // Ignore race conditions when deleting files
+                            if (!(ex instanceof NoSuchFileException)) {
+                                logger.warning("Failed to delete expired cache file " + entry.path() + ": " + exceptionHandler.getExceptionMessage(ex));
                             }
-                        })
-                        .peek(files -> files.forEach(file -> Try.run(() -> Files.delete(file))
-                                .onFailure(ex -> {
-                                    // Ignore race conditions when deleting files
-                                    if (!(ex instanceof NoSuchFileException)) {
-                                        logger.warning("Failed to delete expired cache file " + file + ": " + exceptionHandler.getExceptionMessage(ex));
-                                    }
-                                })));
+                        }));
 
                 // Remove expired entries from the file index
+                expired.forEach(entry -> MEMORY_CACHE.remove(entry.path()));
                 FILE_INDEX.values().forEach(entries ->
                         entries.removeIf(e -> e.timestamp() != 0 && e.timestamp() < now));
                 // Remove any keys that have no remaining entries
                 FILE_INDEX.entrySet().removeIf(e -> e.getValue().isEmpty());
 
+                // The deletes are folded straight into a new snapshot rather than journaled
+                writeIndexSnapshot();
+
                 // Update the marker file and in-memory timestamp
                 lastCleanEpochSecond = Instant.now().getEpochSecond();
                 Files.writeString(markerPath, Instant.ofEpochSecond(lastCleanEpochSecond).toString(),
@@ -7,6 +7,9 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
@@ -21,21 +24,43 @@ import secondbrain.domain.persist.config.LocalStorageCacheDisableRedaction;
 import secondbrain.domain.persist.config.LocalStorageCacheReadOnly;
 import secondbrain.domain.persist.config.LocalStorageCacheWriteOnly;
 import secondbrain.domain.persist.config.LocalStorageDisableTool;
+import secondbrain.domain.persist.config.LocalStorageStaleWhileRevalidateTool;
 import secondbrain.domain.sanitize.SanitizeDocument;
-
+import secondbrain.domain.zip.Zipper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.logging.Logger;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static com.google.common.base.Predicates.instanceOf;
 
@@ -45,15 +70,34 @@ import static com.google.common.base.Predicates.instanceOf;
  * calls and LLM results, which are quite costly, so time spent retrying connections is still worth it.
  */
 @ApplicationScoped
-public class H2LocalStorage implements LocalStorage {
+public class H2LocalStorage implements LocalStorage, LocalStorageMaintenance, LocalStorageStatistics {
 
     private static final int MAX_RETRIES = 15;
     private static final int DELAY = 1000;
     private static final int MAX_FAILURES = 5;
+    private static final int EXPIRY_INITIAL_DELAY_SECONDS = 30;
+    /**
+     * Marks rows whose value is zstd compressed in the response_zipped column. Rows with no codec hold the
+     * value as text in the response column.
+     */
+    private static final String CODEC_ZSTD = "zstd";
+    private static final int SNAPSHOT_BATCH_SIZE = 1000;
+    /**
+     * Shared values are only deleted once they have gone unreferenced for this long. This prevents a value from
+     * being collected between it being saved and the row that references it being inserted.
+     */
+    private static final long UNREFERENCED_VALUE_GRACE_SECONDS = 3600;
 
     private final AtomicInteger totalReads = new AtomicInteger();
     private final AtomicInteger totalCacheHits = new AtomicInteger();
     private final AtomicInteger totalFailures = new AtomicInteger();
+    private final AtomicLong totalExpired = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong compressNanos = new AtomicLong();
+    private final AtomicLong decompressNanos = new AtomicLong();
+    private final AtomicLong dedupedWrites = new AtomicLong();
+    private final AtomicLong dedupedCharacters = new AtomicLong();
 
     @Inject
     private LocalStorageDisableTool localStorageDisableTool;
@@ -70,6 +114,18 @@ public class H2LocalStorage implements LocalStorage {
     @Inject
     private LocalStorageCacheDisableRedaction localStorageCacheDisableRedaction;
 
+    @Inject
+    private LocalStorageStaleWhileRevalidateTool localStorageStaleWhileRevalidateTool;
+
+    @Inject
+    private StaleWhileRevalidate staleWhileRevalidate;
+
+    @Inject
+    private NegativeCache negativeCache;
+
+    @Inject
+    private CacheHitStatistics cacheHitStatistics;
+
     @Inject
     @ConfigProperty(name = "sb.cache.backup")
     private Optional<String> backup;
@@ -82,9 +138,41 @@ public class H2LocalStorage implements LocalStorage {
     @ConfigProperty(name = "sb.h2cache.path")
     private Optional<String> path;
 
+    /**
+     * Set to false to save new values as uncompressed text.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.h2cache.compress", defaultValue = "true")
+    private Boolean compress;
+
+    /**
+     * Set to false to save a copy of the value with every row, instead of sharing identical values between rows.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.h2cache.dedup", defaultValue = "true")
+    private Boolean dedup;
+
+    /**
+     * The number of expired rows deleted while holding the lock.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.h2cache.expirybatchsize", defaultValue = "500")
+    private Integer expiryBatchSize;
+
+    /**
+     * How often expired rows are deleted in the background.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.h2cache.expiryintervalseconds", defaultValue = "3600")
+    private Long expiryIntervalSeconds;
+
     @Inject
     private JsonDeserializer jsonDeserializer;
 
+    @Inject
+    @Identifier("ApacheCommonsZStdZipper")
+    private Zipper zipper;
+
     @Inject
     private ExceptionHandler exceptionHandler;
 
@@ -98,6 +186,9 @@ public class H2LocalStorage implements LocalStorage {
     @Nullable
     private Connection connection;
 
+    @Nullable
+    private ScheduledExecutorService expiryExecutor;
+
     @PostConstruct
     public void postConstruct() {
         logger.fine("Initializing local storage");
@@ -106,7 +197,7 @@ public class H2LocalStorage implements LocalStorage {
                 backupDatabase();
                 this.connection = Try.of(this::getConnection)
                         .onFailure(ex -> logger.warning(exceptionHandler.getExceptionMessage(ex)))
-                        .onSuccess(conn -> deleteExpired())
+                        .onSuccess(conn -> scheduleExpiry())
                         .getOrNull();
             }
         }
@@ -116,6 +207,11 @@ public class H2LocalStorage implements LocalStorage {
     @PreDestroy
     public void preDestroy() {
         synchronized (H2LocalStorage.class) {
+            if (expiryExecutor != null) {
+                expiryExecutor.shutdownNow();
+                expiryExecutor = null;
+            }
+
             if (connection != null) {
                 cleanConnection(connection);
                 connection = null;
@@ -125,6 +221,43 @@ public class H2LocalStorage implements LocalStorage {
         if (totalReads.get() > 0) {
             logger.fine("Cache hits percentage: " + getCacheHitsPercentage() + "%");
         }
+
+        if (totalExpired.get() > 0) {
+            logger.fine("Expired cache entries deleted: " + totalExpired.get());
+        }
+
+        if (dedupedWrites.get() > 0) {
+            logger.info("Cache deduplication: " + dedupedWrites.get() + " writes reused an existing value, saving "
+                    + dedupedCharacters.get() + " characters");
+        }
+
+        if (compressedBytes.get() > 0) {
+            logger.info(String.format(
+                    "Cache compression: %d characters compressed to %d bytes (ratio %.2f), %d ms compressing, %d ms decompressing",
+                    uncompressedBytes.get(),
+                    compressedBytes.get(),
+                    (double) uncompressedBytes.get() / compressedBytes.get(),
+                    TimeUnit.NANOSECONDS.toMillis(compressNanos.get()),
+                    TimeUnit.NANOSECONDS.toMillis(decompressNanos.get())));
+        }
+    }
+
+    /**
+     * Deleting expired rows on a large database can take a long time, so it is done in the background
+     * rather than blocking startup.
+     */
+    private void scheduleExpiry() {
+        if (expiryExecutor != null || isDisabled()) {
+            return;
+        }
+
+        expiryExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("h2-cache-expiry").factory());
+        expiryExecutor.scheduleWithFixedDelay(
+                () -> Try.run(this::runMaintenance)
+                        .onFailure(ex -> logger.warning("Failed to delete expired cache entries: " + exceptionHandler.getExceptionMessage(ex))),
+                EXPIRY_INITIAL_DELAY_SECONDS,
+                Math.max(1, expiryIntervalSeconds),
+                TimeUnit.SECONDS);
     }
 
     private void resetConnection() {
@@ -217,10 +350,23 @@ public class H2LocalStorage implements LocalStorage {
                 prompt_hash VARCHAR(1024) NOT NULL,
                 response CLOB NOT NULL,
                 timestamp TIMESTAMP DEFAULT NULL)\\;
+                ALTER TABLE SECONDBRAIN.LOCAL_STORAGE ADD COLUMN IF NOT EXISTS response_zipped BLOB DEFAULT NULL\\;
+                ALTER TABLE SECONDBRAIN.LOCAL_STORAGE ADD COLUMN IF NOT EXISTS codec VARCHAR(32) DEFAULT NULL\\;
+                ALTER TABLE SECONDBRAIN.LOCAL_STORAGE ALTER COLUMN response SET NULL\\;
+                ALTER TABLE SECONDBRAIN.LOCAL_STORAGE ADD COLUMN IF NOT EXISTS value_hash VARCHAR(64) DEFAULT NULL\\;
+                ALTER TABLE SECONDBRAIN.LOCAL_STORAGE ADD COLUMN IF NOT EXISTS created TIMESTAMP DEFAULT NULL\\;
+                ALTER TABLE SECONDBRAIN.LOCAL_STORAGE ALTER COLUMN created DROP DEFAULT\\;
+                CREATE TABLE IF NOT EXISTS SECONDBRAIN.LOCAL_STORAGE_VALUE
+                (hash VARCHAR(64) PRIMARY KEY,
+                response_zipped BLOB NOT NULL,
+                codec VARCHAR(32) NOT NULL,
+                last_used TIMESTAMP NOT NULL)\\;
+                CREATE INDEX IF NOT EXISTS idx_value_hash ON SECONDBRAIN.LOCAL_STORAGE(value_hash)\\;
                 CREATE INDEX IF NOT EXISTS idx_timestamp ON SECONDBRAIN.LOCAL_STORAGE(timestamp)\\;
                 CREATE INDEX IF NOT EXISTS idx_tool ON SECONDBRAIN.LOCAL_STORAGE(tool)\\;
                 CREATE INDEX IF NOT EXISTS idx_source ON SECONDBRAIN.LOCAL_STORAGE(source)\\;
-                CREATE INDEX IF NOT EXISTS idx_prompt_hash ON SECONDBRAIN.LOCAL_STORAGE(prompt_hash);""".stripIndent().replaceAll("\n", "");
+                CREATE INDEX IF NOT EXISTS idx_prompt_hash ON SECONDBRAIN.LOCAL_STORAGE(prompt_hash)\\;
+                CREATE INDEX IF NOT EXISTS idx_lookup ON SECONDBRAIN.LOCAL_STORAGE(prompt_hash, tool, source);""".stripIndent().replaceAll("\n", "");
     }
 
     /**
@@ -248,30 +394,209 @@ public class H2LocalStorage implements LocalStorage {
         return localStorageCacheWriteOnly.isWriteOnly();
     }
 
+    private void runMaintenance() {
+        if (deleteExpired() + deleteUnreferencedValues() > 0) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Delete expired rows in small batches. Each batch walks the timestamp index from where the last batch
+     * finished, and the lock is released between batches so cache reads and writes are only ever blocked
+     * for the time it takes to delete one batch.
+     *
+     * @return The number of rows that were deleted
+     */
+    long deleteExpired() {
+        final Timestamp cutoff = Timestamp.from(Instant.now());
+        final long start = System.currentTimeMillis();
+
+        Timestamp lastTimestamp = new Timestamp(0);
+        long lastRowId = -1;
+        long deleted = 0;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            final Optional<ExpiryBatch> batch = deleteExpiredBatch(cutoff, lastTimestamp, lastRowId);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            deleted += batch.get().deleted();
+            lastTimestamp = batch.get().lastTimestamp();
+            lastRowId = batch.get().lastRowId();
+        }
+
+        if (deleted > 0) {
+            totalExpired.addAndGet(deleted);
+            logger.fine("Deleted " + deleted + " expired cache entries in " + (System.currentTimeMillis() - start) + " ms");
+        }
+
+        return deleted;
+    }
+
+    /**
+     * The result of deleting one batch of expired rows.
+     *
+     * @param deleted       The number of rows deleted
+     * @param lastTimestamp The timestamp of the last row in the batch
+     * @param lastRowId     The row ID of the last row in the batch
+     */
+    private record ExpiryBatch(int deleted, Timestamp lastTimestamp, long lastRowId) {
+    }
+
+    /**
+     * @return The batch that was deleted, or empty if there are no more expired rows
+     */
     @SuppressWarnings("NullAway")
-    private boolean deleteExpired() {
+    private Optional<ExpiryBatch> deleteExpiredBatch(final Timestamp cutoff, final Timestamp lastTimestamp, final long lastRowId) {
         synchronized (H2LocalStorage.class) {
             if (isDisabled() || connection == null) {
-                return false;
+                return Optional.empty();
             }
 
             if (totalFailures.get() > MAX_FAILURES) {
                 resetConnection();
             }
 
-            final Try<Integer> result = Try
+            final Try<Optional<ExpiryBatch>> result = Try
                     .withResources(() -> connection.prepareStatement("""
-                            DELETE FROM LOCAL_STORAGE
+                            SELECT _ROWID_, timestamp FROM LOCAL_STORAGE
                             WHERE timestamp IS NOT NULL
-                            AND timestamp < CURRENT_TIMESTAMP""".stripIndent()))
-                    .of(PreparedStatement::executeUpdate)
+                            AND timestamp < ?
+                            AND (timestamp > ? OR (timestamp = ? AND _ROWID_ > ?))
+                            ORDER BY timestamp, _ROWID_
+                            LIMIT ?""".stripIndent()))
+                    .of(select -> {
+                        select.setTimestamp(1, cutoff);
+                        select.setTimestamp(2, lastTimestamp);
+                        select.setTimestamp(3, lastTimestamp);
+                        select.setLong(4, lastRowId);
+                        select.setInt(5, Math.max(1, expiryBatchSize));
+
+                        final List<Long> rowIds = new ArrayList<>();
+                        Timestamp batchTimestamp = lastTimestamp;
+                        try (final ResultSet resultSet = select.executeQuery()) {
+                            while (resultSet.next()) {
+                                rowIds.add(resultSet.getLong(1));
+                                batchTimestamp = resultSet.getTimestamp(2);
+                            }
+                        }
+
+                        if (rowIds.isEmpty()) {
+                            return Optional.<ExpiryBatch>empty();
+                        }
+
+                        try (final PreparedStatement delete = connection.prepareStatement(
+                                "DELETE FROM LOCAL_STORAGE WHERE _ROWID_ = ANY(?)")) {
+                            delete.setArray(1, connection.createArrayOf("BIGINT", rowIds.toArray()));
+                            return Optional.of(new ExpiryBatch(delete.executeUpdate(), batchTimestamp, rowIds.getLast()));
+                        }
+                    })
                     .onFailure(ex -> totalFailures.incrementAndGet());
 
             return result
                     .mapFailure(
                             API.Case(API.$(), ex -> new LocalStorageFailure("Failed to delete old records", ex))
                     )
-                    .isSuccess();
+                    .get();
+        }
+    }
+
+    /**
+     * Delete shared values that are no longer referenced by any row, in batches ordered by hash.
+     *
+     * @return The number of values that were deleted
+     */
+    long deleteUnreferencedValues() {
+        final Timestamp cutoff = Timestamp.from(Instant.now().minusSeconds(UNREFERENCED_VALUE_GRACE_SECONDS));
+
+        String lastHash = "";
+        long deleted = 0;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            final Optional<ValueBatch> batch = deleteUnreferencedValuesBatch(cutoff, lastHash);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            deleted += batch.get().deleted();
+            lastHash = batch.get().lastHash();
+        }
+
+        if (deleted > 0) {
+            logger.fine("Deleted " + deleted + " unreferenced cache values");
+        }
+
+        return deleted;
+    }
+
+    /**
+     * The result of deleting one batch of unreferenced values.
+     *
+     * @param deleted  The number of values deleted
+     * @param lastHash The last hash that was checked
+     */
+    private record ValueBatch(int deleted, String lastHash) {
+    }
+
+    @SuppressWarnings("NullAway")
+    private Optional<ValueBatch> deleteUnreferencedValuesBatch(final Timestamp cutoff, final String lastHash) {
+        synchronized (H2LocalStorage.class) {
+            if (isDisabled() || connection == null) {
+                return Optional.empty();
+            }
+
+            final Try<Optional<ValueBatch>> result = Try
+                    .withResources(() -> connection.prepareStatement("""
+                            SELECT v.hash FROM LOCAL_STORAGE_VALUE v
+                            WHERE v.hash > ?
+                            AND v.last_used < ?
+                            AND NOT EXISTS (SELECT 1 FROM LOCAL_STORAGE s WHERE s.value_hash = v.hash)
+                            ORDER BY v.hash
+                            LIMIT ?""".stripIndent()))
+                    .of(select -> {
+                        select.setString(1, lastHash);
+                        select.setTimestamp(2, cutoff);
+                        select.setInt(3, Math.max(1, expiryBatchSize));
+
+                        final List<String> hashes = new ArrayList<>();
+                        try (final ResultSet resultSet = select.executeQuery()) {
+                            while (resultSet.next()) {
+                                hashes.add(resultSet.getString(1));
+                            }
+                        }
+
+                        if (hashes.isEmpty()) {
+                            return Optional.<ValueBatch>empty();
+                        }
+
+                        // The grace period is checked again in case the value was reused since it was selected
+                        try (final PreparedStatement delete = connection.prepareStatement(
+                                "DELETE FROM LOCAL_STORAGE_VALUE WHERE hash = ANY(?) AND last_used < ?")) {
+                            delete.setArray(1, connection.createArrayOf("VARCHAR", hashes.toArray()));
+                            delete.setTimestamp(2, cutoff);
+                            return Optional.of(new ValueBatch(delete.executeUpdate(), hashes.getLast()));
+                        }
+                    })
+                    .onFailure(ex -> totalFailures.incrementAndGet());
+
+            return result
+                    .mapFailure(
+                            API.Case(API.$(), ex -> new LocalStorageFailure("Failed to delete unreferenced values", ex))
+                    )
+                    .get();
+        }
+    }
+
+    private void checkpoint() {
+        synchronized (H2LocalStorage.class) {
+            if (connection == null) {
+                return;
+            }
+
+            Try.withResources(() -> connection.createStatement())
+                    .of(statement -> statement.execute("CHECKPOINT"))
+                    .onFailure(ex -> logger.warning("Failed to checkpoint the cache database: " + exceptionHandler.getExceptionMessage(ex)));
         }
     }
 
@@ -279,10 +604,34 @@ public class H2LocalStorage implements LocalStorage {
      * A best effort to get a cached string from the database. This method will silently fail or immediately return
      * if the cache is disabled or if there was an exception attempting to get the value.
      */
-    @SuppressWarnings("NullAway")
     @Override
     @Nullable
     public CacheResult<String> getString(final String tool, final String source, final String promptHash) {
+        return getValue(tool, source, promptHash, this::decompress, value -> value);
+    }
+
+    /**
+     * Get a cached value as a stream of UTF-8 bytes, which decompresses the value as it is read.
+     */
+    @Nullable
+    private CacheResult<InputStream> getStream(final String tool, final String source, final String promptHash) {
+        return getValue(tool, source, promptHash, zipper::decompressStream,
+                value -> new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Get a cached value, which is either compressed or saved as plain text.
+     *
+     * @param decompress Converts a compressed value, returning null if it can't be decompressed
+     * @param plain      Converts a plain text value
+     */
+    @SuppressWarnings("NullAway")
+    @Nullable
+    private <V> CacheResult<V> getValue(final String tool,
+                                        final String source,
+                                        final String promptHash,
+                                        final Function<byte[], @Nullable V> decompress,
+                                        final Function<String, V> plain) {
         synchronized (H2LocalStorage.class) {
             if (isDisabled(tool) || isWriteOnly() || this.connection == null) {
                 return null;
@@ -294,12 +643,15 @@ public class H2LocalStorage implements LocalStorage {
             }
 
             totalReads.incrementAndGet();
-            final Try<CacheResult<String>> result = Try.withResources(() -> connection.prepareStatement("""
-                            SELECT response FROM LOCAL_STORAGE
-                                            WHERE tool = ?
-                                            AND source = ?
-                                            AND prompt_hash = ?
-                                            AND (timestamp IS NULL OR timestamp > CURRENT_TIMESTAMP)""".stripIndent()))
+            final Try<CacheResult<V>> result = Try.withResources(() -> connection.prepareStatement("""
+                            SELECT s.response, s.timestamp, COALESCE(v.response_zipped, s.response_zipped), COALESCE(v.codec, s.codec), s.value_hash
+                                            FROM LOCAL_STORAGE s
+                                            LEFT JOIN LOCAL_STORAGE_VALUE v ON v.hash = s.value_hash
+                                            WHERE s.tool = ?
+                                            AND s.source = ?
+                                            AND s.prompt_hash = ?
+                                            AND (s.timestamp IS NULL OR s.timestamp > CURRENT_TIMESTAMP)
+                                            ORDER BY s.timestamp DESC NULLS FIRST""".stripIndent()))
                     .of(preparedStatement -> {
                         preparedStatement.setString(1, tool);
                         preparedStatement.setString(2, source);
@@ -307,10 +659,24 @@ public class H2LocalStorage implements LocalStorage {
                         return Try.withResources(preparedStatement::executeQuery)
                                 .of(resultSet -> {
                                     if (resultSet.next()) {
+                                        final V value = CODEC_ZSTD.equals(resultSet.getString(4))
+                                                ? decompressValue(resultSet.getBytes(3), decompress)
+                                                : plainValue(resultSet.getString(1), plain);
+
+                                        if (value == null) {
+                                            // A value that can't be decompressed is a miss. A shared value is
+                                            // removed so the next write saves it again rather than reusing it.
+                                            removeSharedValue(resultSet.getString(5));
+                                            cacheHitStatistics.record(tool, source, false);
+                                            return new CacheResult<V>(null, null, false);
+                                        }
+
                                         totalCacheHits.incrementAndGet();
-                                        return new CacheResult<String>(resultSet.getString(1), null, true);
+                                        cacheHitStatistics.record(tool, source, true);
+                                        return new CacheResult<V>(value, null, true, isStale(tool, resultSet.getTimestamp(2)));
                                     }
-                                    return new CacheResult<String>(null, null, false);
+                                    cacheHitStatistics.record(tool, source, false);
+                                    return new CacheResult<V>(null, null, false);
                                 }).get();
 
                     })
@@ -326,6 +692,356 @@ public class H2LocalStorage implements LocalStorage {
         }
     }
 
+    @Override
+    @SuppressWarnings("NullAway")
+    public List<String> getTools() {
+        synchronized (H2LocalStorage.class) {
+            if (isDisabled() || connection == null) {
+                return List.of();
+            }
+
+            return Try.withResources(() -> connection.prepareStatement("SELECT DISTINCT tool FROM LOCAL_STORAGE ORDER BY tool"))
+                    .of(preparedStatement -> Try.withResources(preparedStatement::executeQuery)
+                            .of(resultSet -> {
+                                final List<String> tools = new ArrayList<>();
+                                while (resultSet.next()) {
+                                    tools.add(resultSet.getString(1));
+                                }
+                                return tools;
+                            })
+                            .get())
+                    .mapFailure(
+                            API.Case(API.$(), ex -> new LocalStorageFailure("Failed to get tools", ex))
+                    )
+                    .get();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("NullAway")
+    public List<String> sampleValues(final String tool, final int count) {
+        synchronized (H2LocalStorage.class) {
+            if (isDisabled() || connection == null) {
+                return List.of();
+            }
+
+            return Try.withResources(() -> connection.prepareStatement("""
+                            SELECT s.response, COALESCE(v.response_zipped, s.response_zipped), COALESCE(v.codec, s.codec)
+                                            FROM LOCAL_STORAGE s
+                                            LEFT JOIN LOCAL_STORAGE_VALUE v ON v.hash = s.value_hash
+                                            WHERE s.tool = ?
+                                            AND (s.timestamp IS NULL OR s.timestamp > CURRENT_TIMESTAMP)
+                                            ORDER BY s._ROWID_ DESC
+                                            LIMIT ?""".stripIndent()))
+                    .of(preparedStatement -> {
+                        preparedStatement.setString(1, tool);
+                        preparedStatement.setInt(2, count);
+                        return Try.withResources(preparedStatement::executeQuery)
+                                .of(resultSet -> {
+                                    final List<String> values = new ArrayList<>();
+                                    while (resultSet.next()) {
+                                        final String value = CODEC_ZSTD.equals(resultSet.getString(3))
+                                                ? Try.of(() -> decompress(resultSet.getBytes(2))).getOrNull()
+                                                : resultSet.getString(1);
+                                        if (StringUtils.isNotEmpty(value)) {
+                                            values.add(value);
+                                        }
+                                    }
+                                    return values;
+                                })
+                                .get();
+                    })
+                    .mapFailure(
+                            API.Case(API.$(), ex -> new LocalStorageFailure("Failed to sample values", ex))
+                    )
+                    .get();
+        }
+    }
+
+    /**
+     * Values shared between rows are counted against every row that references them.
+     */
+    @Override
+    @SuppressWarnings("NullAway")
+    public List<CacheUsage> getUsage(final List<String> tools) {
+        synchronized (H2LocalStorage.class) {
+            if (isDisabled() || connection == null) {
+                return List.of();
+            }
+
+            final Instant now = Instant.now();
+            return Try.withResources(() -> connection.prepareStatement("""
+                            SELECT s.tool, s.source, COUNT(*),
+                                            SUM(COALESCE(OCTET_LENGTH(v.response_zipped), OCTET_LENGTH(s.response_zipped), OCTET_LENGTH(s.response), 0)),
+                                            COUNT(*) FILTER (WHERE s.created > ?),
+                                            COUNT(*) FILTER (WHERE s.created <= ? AND s.created > ?),
+                                            COUNT(*) FILTER (WHERE s.created <= ? AND s.created > ?),
+                                            COUNT(*) FILTER (WHERE s.created <= ?),
+                                            COUNT(*) FILTER (WHERE s.created IS NULL)
+                                            FROM LOCAL_STORAGE s
+                                            LEFT JOIN LOCAL_STORAGE_VALUE v ON v.hash = s.value_hash
+                                            WHERE (? OR s.tool = ANY(?))
+                                            AND (s.timestamp IS NULL OR s.timestamp > CURRENT_TIMESTAMP)
+                                            GROUP BY s.tool, s.source
+                                            ORDER BY 4 DESC""".stripIndent()))
+                    .of(preparedStatement -> {
+                        final Timestamp hour = Timestamp.from(now.minus(Duration.ofHours(1)));
+                        final Timestamp day = Timestamp.from(now.minus(Duration.ofDays(1)));
+                        final Timestamp week = Timestamp.from(now.minus(Duration.ofDays(7)));
+                        preparedStatement.setTimestamp(1, hour);
+                        preparedStatement.setTimestamp(2, hour);
+                        preparedStatement.setTimestamp(3, day);
+                        preparedStatement.setTimestamp(4, day);
+                        preparedStatement.setTimestamp(5, week);
+                        preparedStatement.setTimestamp(6, week);
+                        preparedStatement.setBoolean(7, tools.isEmpty());
+                        preparedStatement.setArray(8, connection.createArrayOf("VARCHAR", tools.toArray()));
+                        return Try.withResources(preparedStatement::executeQuery)
+                                .of(resultSet -> {
+                                    final List<CacheUsage> usage = new ArrayList<>();
+                                    while (resultSet.next()) {
+                                        usage.add(new CacheUsage(
+                                                resultSet.getString(1),
+                                                resultSet.getString(2),
+                                                resultSet.getLong(3),
+                                                resultSet.getLong(4),
+                                                resultSet.getLong(5),
+                                                resultSet.getLong(6),
+                                                resultSet.getLong(7),
+                                                resultSet.getLong(8),
+                                                resultSet.getLong(9)));
+                                    }
+                                    return usage;
+                                })
+                                .get();
+                    })
+                    .mapFailure(
+                            API.Case(API.$(), ex -> new LocalStorageFailure("Failed to get cache usage", ex))
+                    )
+                    .get();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("NullAway")
+    public long purge(final String tool, @Nullable final String source) {
+        synchronized (H2LocalStorage.class) {
+            if (isDisabled() || connection == null || isReadOnly()) {
+                return 0;
+            }
+
+            return Try.withResources(() -> connection.prepareStatement("""
+                            DELETE FROM LOCAL_STORAGE
+                                            WHERE tool = ?
+                                            AND (CAST(? AS VARCHAR) IS NULL OR source = ?)""".stripIndent()))
+                    .of(preparedStatement -> {
+                        preparedStatement.setString(1, tool);
+                        preparedStatement.setString(2, source);
+                        preparedStatement.setString(3, source);
+                        return (long) preparedStatement.executeUpdate();
+                    })
+                    .onSuccess(count -> logger.info("Purged " + count + " cache entries for " + tool + (source == null ? "" : " " + source)))
+                    .mapFailure(
+                            API.Case(API.$(), ex -> new LocalStorageFailure("Failed to purge cache entries", ex))
+                    )
+                    .get();
+        }
+    }
+
+    /**
+     * H2 can only fully compact a database while it is closed, so the database is shut down and reopened.
+     * Other processes sharing the database through the auto server are disconnected.
+     */
+    @Override
+    @SuppressWarnings("NullAway")
+    public void compact() {
+        synchronized (H2LocalStorage.class) {
+            if (isDisabled() || connection == null || isReadOnly()) {
+                return;
+            }
+
+            deleteExpired();
+            deleteUnreferencedValues();
+
+            Try.withResources(() -> connection.createStatement())
+                    .of(statement -> statement.execute("SHUTDOWN COMPACT"))
+                    .mapFailure(
+                            API.Case(API.$(), ex -> new LocalStorageFailure("Failed to compact the cache database", ex))
+                    )
+                    .get();
+
+            cleanConnection(connection);
+            connection = null;
+            postConstruct();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("NullAway")
+    public long exportSnapshot(final Path file, final List<String> tools, @Nullable final Instant createdAfter, @Nullable final Instant createdBefore) {
+        synchronized (H2LocalStorage.class) {
+            if (isDisabled() || connection == null) {
+                return 0;
+            }
+
+            return Try.withResources(
+                            () -> connection.prepareStatement("""
+                                    SELECT s.tool, s.source, s.prompt_hash, s.timestamp, s.created, s.response,
+                                                    COALESCE(v.response_zipped, s.response_zipped), COALESCE(v.codec, s.codec)
+                                                    FROM LOCAL_STORAGE s
+                                                    LEFT JOIN LOCAL_STORAGE_VALUE v ON v.hash = s.value_hash
+                                                    WHERE (? OR s.tool = ANY(?))
+                                                    AND (s.created BETWEEN ? AND ? OR (s.created IS NULL AND ?))
+                                                    AND (s.timestamp IS NULL OR s.timestamp > CURRENT_TIMESTAMP)""".stripIndent()),
+                            () -> new BufferedWriter(new OutputStreamWriter(
+                                    new ZstdCompressorOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8)))
+                    .of((preparedStatement, writer) -> {
+                        preparedStatement.setBoolean(1, tools.isEmpty());
+                        preparedStatement.setArray(2, connection.createArrayOf("VARCHAR", tools.toArray()));
+                        preparedStatement.setTimestamp(3, Timestamp.from(Objects.requireNonNullElse(createdAfter, Instant.EPOCH)));
+                        preparedStatement.setTimestamp(4, Timestamp.from(Objects.requireNonNullElse(createdBefore, Instant.now())));
+                        // Rows saved before the created column existed have no age, so they are only exported without a date range
+                        preparedStatement.setBoolean(5, createdAfter == null && createdBefore == null);
+
+                        long count = 0;
+                        try (final ResultSet resultSet = preparedStatement.executeQuery()) {
+                            while (resultSet.next()) {
+                                final String value = CODEC_ZSTD.equals(resultSet.getString(8))
+                                        ? decompress(resultSet.getBytes(7))
+                                        : resultSet.getString(6);
+                                if (StringUtils.isEmpty(value)) {
+                                    continue;
+                                }
+
+                                writer.write(jsonDeserializer.serialize(new CacheSnapshotEntry(
+                                        resultSet.getString(1),
+                                        resultSet.getString(2),
+                                        resultSet.getString(3),
+                                        toEpochSecond(resultSet.getTimestamp(4)),
+                                        toEpochSecond(resultSet.getTimestamp(5)),
+                                        value)));
+                                writer.newLine();
+                                ++count;
+                            }
+                        }
+                        return count;
+                    })
+                    .onSuccess(count -> logger.info("Exported " + count + " cache values to " + file))
+                    .mapFailure(
+                            API.Case(API.$(), ex -> new LocalStorageFailure("Failed to export cache snapshot", ex))
+                    )
+                    .get();
+        }
+    }
+
+    /**
+     * Snapshots are imported with JDBC batches in a single transaction per batch, rather than through putString.
+     * Values were redacted before they were exported, so they are saved as is.
+     */
+    @Override
+    @SuppressWarnings("NullAway")
+    public long importSnapshot(final Path file) {
+        synchronized (H2LocalStorage.class) {
+            if (isDisabled() || connection == null || localStorageCacheReadOnly.isReadOnly()) {
+                return 0;
+            }
+
+            return Try.withResources(() -> new BufferedReader(new InputStreamReader(
+                            new ZstdCompressorInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8)))
+                    .of(reader -> {
+                        final List<CacheSnapshotEntry> batch = new ArrayList<>();
+                        long count = 0;
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (StringUtils.isBlank(line)) {
+                                continue;
+                            }
+
+                            final CacheSnapshotEntry entry = jsonDeserializer.deserialize(line, CacheSnapshotEntry.class);
+                            if (entry.timestamp() != null && entry.timestamp() < Instant.now().getEpochSecond()) {
+                                continue;
+                            }
+
+                            batch.add(entry);
+                            if (batch.size() >= SNAPSHOT_BATCH_SIZE) {
+                                count += importSnapshotBatch(batch);
+                                batch.clear();
+                            }
+                        }
+                        return count + importSnapshotBatch(batch);
+                    })
+                    .onSuccess(count -> logger.info("Imported " + count + " cache values from " + file))
+                    .mapFailure(
+                            API.Case(API.$(), ex -> new LocalStorageFailure("Failed to import cache snapshot", ex))
+                    )
+                    .get();
+        }
+    }
+
+    @SuppressWarnings("NullAway")
+    private int importSnapshotBatch(final List<CacheSnapshotEntry> batch) throws SQLException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        connection.setAutoCommit(false);
+        try (final PreparedStatement delete = connection.prepareStatement(
+                "DELETE FROM LOCAL_STORAGE WHERE tool = ? AND source = ? AND prompt_hash = ?");
+             final PreparedStatement insert = connection.prepareStatement("""
+                     INSERT INTO LOCAL_STORAGE (tool, source, prompt_hash, response, timestamp, response_zipped, codec, created)
+                     VALUES (?, ?, ?, ?, ?, ?, ?, ?)""".stripIndent())) {
+            for (final CacheSnapshotEntry entry : batch) {
+                delete.setString(1, entry.tool());
+                delete.setString(2, entry.source());
+                delete.setString(3, entry.promptHash());
+                delete.addBatch();
+
+                final byte[] compressedValue = compress(entry.value(), entry.tool());
+                insert.setString(1, entry.tool());
+                insert.setString(2, entry.source());
+                insert.setString(3, entry.promptHash());
+                insert.setString(4, compressedValue == null ? entry.value() : null);
+                insert.setTimestamp(5, entry.timestamp() == null ? null : Timestamp.from(Instant.ofEpochSecond(entry.timestamp())));
+                insert.setBytes(6, compressedValue);
+                insert.setString(7, compressedValue == null ? null : CODEC_ZSTD);
+                insert.setTimestamp(8, entry.created() == null ? null : Timestamp.from(Instant.ofEpochSecond(entry.created())));
+                insert.addBatch();
+            }
+
+            delete.executeBatch();
+            insert.executeBatch();
+            connection.commit();
+            return batch.size();
+        } catch (final SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Nullable
+    private static Long toEpochSecond(@Nullable final Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant().getEpochSecond();
+    }
+
+    /**
+     * Entries for tools with a stale-while-revalidate grace period are saved with an expiry that includes the grace
+     * period. An entry is stale once the time remaining before that expiry is less than the grace period.
+     */
+    private boolean isStale(final String tool, @Nullable final Timestamp timestamp) {
+        final long gracePeriod = localStorageStaleWhileRevalidateTool.getGracePeriod(tool);
+        return gracePeriod > 0
+                && timestamp != null
+                && timestamp.toInstant().minusSeconds(gracePeriod).isBefore(Instant.now());
+    }
+
+    private void refreshIfStale(final CacheResult<?> result, final String tool, final String source, final String promptHash, final Runnable refresh) {
+        if (result.stale()) {
+            staleWhileRevalidate.refresh(tool, tool + "_" + source + "_" + promptHash, refresh);
+        }
+    }
+
     @Override
     public CacheResult<String> getOrPutString(final String tool, final String source, final String promptHash, final long ttlSeconds, final GenerateValue<String> generateValue) {
         if (isDisabled(tool) || connection == null) {
@@ -340,6 +1056,13 @@ public class H2LocalStorage implements LocalStorage {
                 .filter(result -> StringUtils.isNotBlank(result.result()))
                 // cache hit
                 .onSuccess(v -> logger.fine("Cache hit for tool " + tool + " source " + source + " prompt " + promptHash))
+                // an expired value within the grace period is returned while it is regenerated in the background
+                .peek(result -> refreshIfStale(result, tool, source, promptHash, () -> {
+                    final String value = generateValue.generate();
+                    if (StringUtils.isNotBlank(value)) {
+                        putString(tool, source, promptHash, ttlSeconds, value);
+                    }
+                }))
                 // recover from a cache miss by generating the value and saving it
                 .recover(result -> {
                     logger.fine("Cache lookup missed for tool " + tool + " source " + source + " prompt " + promptHash);
@@ -386,21 +1109,14 @@ public class H2LocalStorage implements LocalStorage {
                 .filter(result -> result != null && StringUtils.isNotBlank(result.result()))
                 // a cache hit means we deserialize the result
                 .onSuccess(v -> logger.fine("Cache hit for tool " + tool + " source " + source + " prompt " + promptHash))
-                .mapTry(r -> new CacheResult<T>(deserializer.deserialize(r.result()), null, true))
+                .mapTry(r -> new CacheResult<T>(negativeCache.recordHit(tool, deserializer.deserialize(r.result())), null, true, r.stale()))
+                .peek(result -> refreshIfStale(result, tool, source, promptHash,
+                        () -> generateAndPut(tool, source, promptHash, ttlSeconds, generateValue, deserializer)))
                 // a cache miss means we call the API and then save the result in the cache
                 .recoverWith(ex -> Try.of(() -> {
                             logger.fine("Cache lookup missed for tool " + tool + " source " + source + " prompt " + promptHash);
                             logger.fine("Exception: " + exceptionHandler.getExceptionMessage(ex));
-                            final T value = generateValue.generate();
-                            if (value != null) {
-                                putString(
-                                        tool,
-                                        source,
-                                        promptHash,
-                                        ttlSeconds,
-                                        jsonDeserializer.serialize(value));
-                            }
-                            return new CacheResult<T>(value, null, false);
+                            return new CacheResult<T>(generateAndPut(tool, source, promptHash, ttlSeconds, generateValue, deserializer), null, false);
                         })
                 )
                 /*
@@ -418,6 +1134,30 @@ public class H2LocalStorage implements LocalStorage {
                 .get();
     }
 
+    /**
+     * Generate a value and save it. Empty values are saved with the shorter negative cache TTL.
+     */
+    @Nullable
+    private <T> T generateAndPut(final String tool, final String source, final String promptHash, final long ttlSeconds, final GenerateValue<T> generateValue, final Deserialize<T> deserializer) {
+        final T value = Try.of(generateValue::generate)
+                // a generator that found nothing may throw EmptyList rather than return an empty list
+                .recoverWith(ex -> negativeCache.emptyValue(ex, deserializer)
+                        .map(Try::success)
+                        .orElseGet(() -> Try.failure(ex)))
+                .get();
+
+        if (value != null) {
+            putString(
+                    tool,
+                    source,
+                    promptHash,
+                    negativeCache.getTtl(tool, value, ttlSeconds),
+                    jsonDeserializer.serialize(value));
+        }
+
+        return value;
+    }
+
     @Override
     public <T> CacheResult<T> getOrPutObject(final String tool, final String source, final String promptHash, final Class<T> clazz, final GenerateValue<T> generateValue) {
         return getOrPutObject(tool, source, promptHash, 0, clazz, generateValue);
@@ -465,18 +1205,10 @@ public class H2LocalStorage implements LocalStorage {
         return Try.of(() -> getString(tool, source, promptHash))
                 .filter(result -> result != null && StringUtils.isNotBlank(result.result()))
                 .onSuccess(v -> logger.fine("Cache hit for tool " + tool + " source " + source + " prompt " + promptHash))
-                .mapTry(r -> NumberUtils.toInt(r.result(), 0))
-                // The cached result is the number of items in the array.
-                // We then loop pver each index to get the individual items.
-                .map(count -> IntStream.range(0, count)
-                        .mapToObj(index -> getString(tool, source, promptHash + "_" + index))
-                        .map(r -> jsonDeserializer.deserialize(r.result(), clazz))
-                        .toList()
-                )
-                // The list becomes an array
-                .map(list -> list.toArray(ArrayUtils.newInstance(clazz, list.size())))
+                .peek(result -> refreshIfStale(result, tool, source, promptHash,
+                        () -> persistArrayResult(tool, source, promptHash, ttlSeconds, generateValue)))
                 // The array is wrapped in a CacheResult
-                .map(array -> new CacheResult<T[]>(array, null, true))
+                .mapTry(r -> new CacheResult<T[]>(negativeCache.recordHit(tool, readArray(tool, source, promptHash, r.result(), clazz)), null, true, r.stale()))
                 .recoverWith(ex -> Try.of(() -> {
                             logger.fine("Cache lookup missed for tool " + tool + " source " + source + " prompt " + promptHash);
                             logger.fine("Exception: " + exceptionHandler.getExceptionMessage(ex));
@@ -491,27 +1223,62 @@ public class H2LocalStorage implements LocalStorage {
                 .get();
     }
 
+    @Override
+    public <T> CacheResult<Stream<T>> getOrPutObjectStream(final String tool, final String source, final String promptHash, final long ttlSeconds, final Class<T> clazz, final Class<T[]> arrayClazz, final GenerateValue<T[]> generateValue) {
+        if (isDisabled(tool) || connection == null) {
+            return ArrayRecords.toStream(new CacheResult<T[]>(generateValue.generate(), null, false));
+        }
+
+        // The array is read from the compressed value as the elements are consumed
+        final CacheResult<InputStream> cached = Try.of(() -> getStream(tool, source, promptHash))
+                .onFailure(LocalStorageFailure.class, ex -> logger.warning(exceptionHandler.getExceptionMessage(ex)))
+                .filter(Objects::nonNull)
+                .getOrElse(new CacheResult<InputStream>(null, null, false));
+
+        final Optional<ArrayRecords.Elements<T>> elements = Optional.ofNullable(cached.result())
+                .flatMap(value -> ArrayRecords.stream(value, clazz, jsonDeserializer));
+
+        if (elements.isPresent()) {
+            refreshIfStale(cached, tool, source, promptHash, () -> persistArrayResult(tool, source, promptHash, ttlSeconds, generateValue));
+            negativeCache.recordArrayHit(tool, elements.get().size());
+            return new CacheResult<Stream<T>>(elements.get().stream(), null, true, cached.stale());
+        }
+
+        // Arrays saved in the older format are read as a whole
+        if (cached.fromCache()) {
+            return ArrayRecords.toStream(getOrPutObjectArray(tool, source, promptHash, ttlSeconds, clazz, arrayClazz, generateValue));
+        }
+
+        return ArrayRecords.toStream(persistArrayResult(tool, source, promptHash, ttlSeconds, generateValue));
+    }
+
+    /**
+     * Arrays used to be saved as a count, with each item saved with an index suffix. These are still read until
+     * they expire.
+     */
+    private <T> T[] readArray(final String tool, final String source, final String promptHash, final String value, final Class<T> clazz) {
+        if (ArrayRecords.isArrayRecord(value)) {
+            return ArrayRecords.toArray(value, clazz, jsonDeserializer);
+        }
+
+        final List<T> list = IntStream.range(0, NumberUtils.toInt(value, 0))
+                .mapToObj(index -> getString(tool, source, promptHash + "_" + index))
+                .map(r -> jsonDeserializer.deserialize(r.result(), clazz))
+                .toList();
+        return list.toArray(ArrayUtils.newInstance(clazz, list.size()));
+    }
+
     public <T> CacheResult<T[]> persistArrayResult(final String tool, final String source, final String promptHash, final long ttlSeconds, final GenerateValue<T[]> generateValue) {
         final T[] value = generateValue.generate();
 
-        // The result associated with the original hash is the count of items
+        // The whole array is saved as one record, which is compressed like any other value
         if (value != null) {
             putString(
                     tool,
                     source,
                     promptHash,
-                    ttlSeconds,
-                    value.length + "");
-
-            // each item is persisted with an index suffix
-            for (int i = 0; i < value.length; i++) {
-                putString(
-                        tool,
-                        source,
-                        promptHash + "_" + i,
-                        ttlSeconds,
-                        jsonDeserializer.serialize(value[i]));
-            }
+                    negativeCache.getTtl(tool, value, ttlSeconds),
+                    ArrayRecords.serialize(value, jsonDeserializer));
         }
 
         return new CacheResult<T[]>(value, null, false);
@@ -538,19 +1305,30 @@ public class H2LocalStorage implements LocalStorage {
                     ? response
                     : sanitizeDocument.sanitize(response);
 
+            // Identical values are saved once and shared between rows
+            final String valueHash = Try.of(() -> putSharedValue(redactedValue, tool))
+                    .onFailure(ex -> logger.warning("Failed to save shared cache value: " + exceptionHandler.getExceptionMessage(ex)))
+                    .getOrNull();
+
+            // Values that can't be compressed are saved as text
+            final byte[] compressedValue = valueHash == null ? compress(redactedValue, tool) : null;
+
             final Try<PreparedStatement> result = Try.withResources(() -> connection.prepareStatement("""
-                            INSERT INTO LOCAL_STORAGE (tool, source, prompt_hash, response, timestamp)
-                            VALUES (?, ?, ?, ?, ?)""".stripIndent()))
+                            INSERT INTO LOCAL_STORAGE (tool, source, prompt_hash, response, timestamp, response_zipped, codec, value_hash, created)
+                            VALUES (?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)""".stripIndent()))
                     .of(preparedStatement -> {
                         preparedStatement.setString(1, tool);
                         preparedStatement.setString(2, source);
                         preparedStatement.setString(3, promptHash);
-                        preparedStatement.setString(4, redactedValue);
+                        preparedStatement.setString(4, valueHash == null && compressedValue == null ? redactedValue : null);
+                        preparedStatement.setBytes(6, compressedValue);
+                        preparedStatement.setString(7, compressedValue == null ? null : CODEC_ZSTD);
+                        preparedStatement.setString(8, valueHash);
                         preparedStatement.setTimestamp(5, ttlSeconds == 0
                                 ? null
                                 : Timestamp.from(ZonedDateTime
                                                  .now(ZoneOffset.UTC)
-                                                 .plusSeconds(ttlSeconds)
+                                                 .plusSeconds(ttlSeconds + localStorageStaleWhileRevalidateTool.getGracePeriod(tool))
                                                  .toInstant()));
                         preparedStatement.executeUpdate();
                         return preparedStatement;
@@ -568,6 +1346,106 @@ public class H2LocalStorage implements LocalStorage {
         }
     }
 
+    long getDedupedWrites() {
+        return dedupedWrites.get();
+    }
+
+    /**
+     * Save a value in the shared value table, keyed by its SHA-256 hash. If the value is already saved, its last
+     * used time is updated instead, which avoids compressing and writing it again.
+     *
+     * @return The hash of the value, or null if the value should be saved in the row instead
+     */
+    @Nullable
+    @SuppressWarnings("NullAway")
+    private String putSharedValue(@Nullable final String value, final String tool) throws SQLException {
+        if (!dedup || !compress || StringUtils.isEmpty(value)) {
+            return null;
+        }
+
+        final String hash = DigestUtils.sha256Hex(value);
+
+        try (final PreparedStatement touch = connection.prepareStatement(
+                "UPDATE LOCAL_STORAGE_VALUE SET last_used = CURRENT_TIMESTAMP WHERE hash = ?")) {
+            touch.setString(1, hash);
+            if (touch.executeUpdate() > 0) {
+                dedupedWrites.incrementAndGet();
+                dedupedCharacters.addAndGet(value.length());
+                return hash;
+            }
+        }
+
+        final byte[] compressedValue = compress(value, tool);
+        if (compressedValue == null) {
+            return null;
+        }
+
+        // MERGE rather than INSERT in case another client saved the same value since it was checked
+        try (final PreparedStatement insert = connection.prepareStatement(
+                "MERGE INTO LOCAL_STORAGE_VALUE (hash, response_zipped, codec, last_used) KEY (hash) VALUES (?, ?, ?, CURRENT_TIMESTAMP)")) {
+            insert.setString(1, hash);
+            insert.setBytes(2, compressedValue);
+            insert.setString(3, CODEC_ZSTD);
+            insert.executeUpdate();
+        }
+
+        return hash;
+    }
+
+    @SuppressWarnings("NullAway")
+    private void removeSharedValue(@Nullable final String hash) throws SQLException {
+        if (hash == null) {
+            return;
+        }
+
+        try (final PreparedStatement delete = connection.prepareStatement("DELETE FROM LOCAL_STORAGE_VALUE WHERE hash = ?")) {
+            delete.setString(1, hash);
+            delete.executeUpdate();
+        }
+    }
+
+    private byte @Nullable [] compress(@Nullable final String value, final String tool) {
+        if (!compress || StringUtils.isEmpty(value)) {
+            return null;
+        }
+
+        final long start = System.nanoTime();
+        return Try.of(() -> zipper.compressBytes(value, tool))
+                .onSuccess(compressed -> compressNanos.addAndGet(System.nanoTime() - start))
+                .onSuccess(compressed -> {
+                    if (compressed != null) {
+                        uncompressedBytes.addAndGet(value.length());
+                        compressedBytes.addAndGet(compressed.length);
+                    }
+                })
+                .onFailure(ex -> logger.warning("Failed to compress cache value: " + exceptionHandler.getExceptionMessage(ex)))
+                .getOrNull();
+    }
+
+    @Nullable
+    private static <V> V decompressValue(final byte @Nullable [] value, final Function<byte[], @Nullable V> decompress) {
+        return value == null ? null : decompress.apply(value);
+    }
+
+    @Nullable
+    private static <V> V plainValue(@Nullable final String value, final Function<String, V> plain) {
+        return value == null ? null : plain.apply(value);
+    }
+
+    @Nullable
+    private String decompress(final byte @Nullable [] value) {
+        if (value == null) {
+            return null;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            return zipper.decompressBytes(value);
+        } finally {
+            decompressNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
     @Override
     public void putString(final String tool, final String source, final String promptHash, final String value) {
         putString(tool, source, promptHash, 0, value);
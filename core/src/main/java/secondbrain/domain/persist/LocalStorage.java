@@ -3,6 +3,7 @@ package secondbrain.domain.persist;
 import org.jspecify.annotations.Nullable;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Provides a way to cache results of expensive operations.
@@ -141,6 +142,23 @@ public interface LocalStorage {
      */
     <T> CacheResult<T[]> getOrPutObjectArray(String tool, String source, String promptHash, long ttlSeconds, Class<T> clazz, Class<T[]> arrayClazz, GenerateValue<T[]> generateValue);
 
+    /**
+     * Get the array value associated with a tool, source, and prompt hash as a stream, or save a new value if one
+     * is not found. Implementations that can deserialize the elements lazily do so as the stream is consumed,
+     * so large arrays don't have to be held on the heap all at once.
+     *
+     * @param tool          The name of the tool
+     * @param source        A way to identify the source
+     * @param promptHash    A way to identify the prompt
+     * @param ttlSeconds    The time to live in seconds for the cached value
+     * @param clazz         The class of the array elements
+     * @param generateValue A way to generate a new value
+     * @return The elements of the value, if one was saved, or of the generated value
+     */
+    default <T> CacheResult<Stream<T>> getOrPutObjectStream(String tool, String source, String promptHash, long ttlSeconds, Class<T> clazz, Class<T[]> arrayClazz, GenerateValue<T[]> generateValue) {
+        return ArrayRecords.toStream(getOrPutObjectArray(tool, source, promptHash, ttlSeconds, clazz, arrayClazz, generateValue));
+    }
+
     /**
      * Save a value associated with a tool, source, and prompt hash.
      *
@@ -0,0 +1,45 @@
+package secondbrain.domain.persist;
+
+import org.jspecify.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Maintenance operations for local storage implementations that can enumerate the values they hold.
+ */
+public interface LocalStorageMaintenance {
+    /**
+     * Get the names of the tools that have saved values.
+     */
+    List<String> getTools();
+
+    /**
+     * Get a sample of the most recently saved values for a tool.
+     *
+     * @param tool  The name of the tool
+     * @param count The maximum number of values to return
+     * @return The saved values
+     */
+    List<String> sampleValues(String tool, int count);
+
+    /**
+     * Export unexpired values to a zstd compressed archive of JSON lines.
+     *
+     * @param file          The archive to write
+     * @param tools         The tools to export, or an empty list to export every tool
+     * @param createdAfter  Only export values saved after this time
+     * @param createdBefore Only export values saved before this time
+     * @return The number of values exported
+     */
+    long exportSnapshot(Path file, List<String> tools, @Nullable Instant createdAfter, @Nullable Instant createdBefore);
+
+    /**
+     * Import an archive created by exportSnapshot. Values replace any existing values with the same key.
+     *
+     * @param file The archive to read
+     * @return The number of values imported
+     */
+    long importSnapshot(Path file);
+}
@@ -19,11 +19,48 @@ public class LocalStorageProducer {
     @Produces
     @Preferred
     @ApplicationScoped
-    public LocalStorage produceLocalStorage(final H2LocalStorage h2LocalStorage, final CosmosLocalStorage cosmosLocalStorage) {
+    public LocalStorage produceLocalStorage(final H2LocalStorage h2LocalStorage, final CosmosLocalStorage cosmosLocalStorage, final MVStoreLocalStorage mvStoreLocalStorage) {
         if ("cosmos".equalsIgnoreCase(localStorageProvider)) {
             return cosmosLocalStorage;
         }
 
+        if ("mvstore".equalsIgnoreCase(localStorageProvider)) {
+            return mvStoreLocalStorage;
+        }
+
+        return h2LocalStorage;
+    }
+
+    /**
+     * The statistics and maintenance commands act on the same backend as the cache.
+     */
+    @Produces
+    @Preferred
+    @ApplicationScoped
+    public LocalStorageStatistics produceLocalStorageStatistics(final H2LocalStorage h2LocalStorage, final CosmosLocalStorage cosmosLocalStorage, final MVStoreLocalStorage mvStoreLocalStorage) {
+        if ("cosmos".equalsIgnoreCase(localStorageProvider)) {
+            return cosmosLocalStorage;
+        }
+
+        if ("mvstore".equalsIgnoreCase(localStorageProvider)) {
+            return mvStoreLocalStorage;
+        }
+
+        return h2LocalStorage;
+    }
+
+    /**
+     * Only the H2 local storage can enumerate its values. The maintenance commands fail with a clear
+     * message for the other providers, rather than acting on an H2 database that isn't being used.
+     */
+    @Produces
+    @Preferred
+    @ApplicationScoped
+    public LocalStorageMaintenance produceLocalStorageMaintenance(final H2LocalStorage h2LocalStorage) {
+        if ("cosmos".equalsIgnoreCase(localStorageProvider) || "mvstore".equalsIgnoreCase(localStorageProvider)) {
+            return new UnsupportedLocalStorageMaintenance(localStorageProvider);
+        }
+
         return h2LocalStorage;
     }
 }
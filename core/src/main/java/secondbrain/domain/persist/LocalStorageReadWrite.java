@@ -10,7 +10,19 @@ import java.util.Optional;
 public interface LocalStorageReadWrite {
     Optional<String> getString(String tool, String source, String promptHash);
 
+    /**
+     * Check for an unexpired value without reading it, and without counting the check as a read.
+     */
+    default boolean containsString(final String tool, final String source, final String promptHash) {
+        return getString(tool, source, promptHash).isPresent();
+    }
+
     String putString(String tool, String source, String promptHash, @Nullable Long timestamp, String value);
 
+    /**
+     * Durably delete a single value, so it is not read again after a restart.
+     */
+    void remove(String tool, String source, String promptHash);
+
     void purge();
 }
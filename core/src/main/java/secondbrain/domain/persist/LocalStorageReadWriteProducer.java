@@ -0,0 +1,29 @@
+package secondbrain.domain.persist;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import secondbrain.domain.injection.Preferred;
+
+/**
+ * Produces the LocalStorageReadWrite instance used as the local tier of the cache based on the configuration.
+ */
+@ApplicationScoped
+public class LocalStorageReadWriteProducer {
+
+    @Inject
+    @ConfigProperty(name = "sb.cache.localstore", defaultValue = "file")
+    private String localStore;
+
+    @Produces
+    @Preferred
+    @ApplicationScoped
+    public LocalStorageReadWrite produceLocalStorageReadWrite(final FileLocalStorageReadWrite fileLocalStorageReadWrite, final SegmentLocalStorageReadWrite segmentLocalStorageReadWrite) {
+        if ("segment".equalsIgnoreCase(localStore)) {
+            return segmentLocalStorageReadWrite;
+        }
+
+        return fileLocalStorageReadWrite;
+    }
+}
@@ -0,0 +1,32 @@
+package secondbrain.domain.persist;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Reports the size of the values cached by each tool, and removes them, so the TTLs of individual tools can be tuned.
+ */
+public interface LocalStorageStatistics {
+    /**
+     * Get the size and age of the unexpired values cached for each tool and source.
+     *
+     * @param tools The tools to report, or an empty list to report every tool
+     * @return The usage of each tool and source, largest first
+     */
+    List<CacheUsage> getUsage(List<String> tools);
+
+    /**
+     * Delete the values cached for a tool.
+     *
+     * @param tool   The name of the tool
+     * @param source The source to delete values for, or null to delete every value for the tool
+     * @return The number of values deleted
+     */
+    long purge(String tool, @Nullable String source);
+
+    /**
+     * Reclaim the space used by deleted and expired values.
+     */
+    void compact();
+}
@@ -0,0 +1,617 @@
+package secondbrain.domain.persist;
+
+import io.smallrye.common.annotation.Identifier;
+import io.vavr.control.Try;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.jspecify.annotations.Nullable;
+import secondbrain.domain.exceptionhandling.ExceptionHandler;
+import secondbrain.domain.exceptions.LocalStorageFailure;
+import secondbrain.domain.exceptions.SerializationFailed;
+import secondbrain.domain.json.JsonDeserializer;
+import secondbrain.domain.persist.config.LocalStorageCacheDirectory;
+import secondbrain.domain.persist.config.LocalStorageCacheDisable;
+import secondbrain.domain.persist.config.LocalStorageCacheDisableRedaction;
+import secondbrain.domain.persist.config.LocalStorageCacheReadOnly;
+import secondbrain.domain.persist.config.LocalStorageDisableTool;
+import secondbrain.domain.persist.config.LocalStorageStaleWhileRevalidateTool;
+import secondbrain.domain.sanitize.SanitizeDocument;
+import secondbrain.domain.zip.Zipper;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A cache that saves values directly in an H2 MVStore map, rather than in a table accessed through SQL and JDBC.
+ * The cache is only ever accessed by key, so a concurrent map avoids the cost of parsing statements and
+ * reading CLOBs, and reads do not need to be serialized.
+ * <p>
+ * Each value starts with a header holding the expiry time and the codec, followed by the value itself.
+ * The MVStore file can only be opened by one process at a time. If it is locked, the cache is disabled.
+ */
+@ApplicationScoped
+public class MVStoreLocalStorage implements LocalStorage, LocalStorageStatistics {
+    private static final String MAP_NAME = "localstorage";
+    private static final String DEFAULT_FILE_NAME = "localstorage.mv.db";
+    private static final int EXPIRY_INITIAL_DELAY_SECONDS = 30;
+    private static final int COMPACT_MAX_MILLIS = 60000;
+    private static final byte CODEC_TEXT = 0;
+    private static final byte CODEC_ZSTD = 1;
+    /**
+     * The expiry time is a long, followed by a single byte codec.
+     */
+    private static final int HEADER_LENGTH = Long.BYTES + 1;
+
+    private final AtomicInteger totalReads = new AtomicInteger();
+    private final AtomicInteger totalCacheHits = new AtomicInteger();
+    private final AtomicInteger totalWrites = new AtomicInteger();
+    private final AtomicLong totalExpired = new AtomicLong();
+
+    @Inject
+    private LocalStorageDisableTool localStorageDisableTool;
+
+    @Inject
+    private LocalStorageCacheDisable localStorageCacheDisable;
+
+    @Inject
+    private LocalStorageCacheReadOnly localStorageCacheReadOnly;
+
+    @Inject
+    private LocalStorageCacheDisableRedaction localStorageCacheDisableRedaction;
+
+    @Inject
+    private LocalStorageStaleWhileRevalidateTool localStorageStaleWhileRevalidateTool;
+
+    @Inject
+    private LocalStorageCacheDirectory localStorageCacheDirectory;
+
+    @Inject
+    private StaleWhileRevalidate staleWhileRevalidate;
+
+    @Inject
+    private NegativeCache negativeCache;
+
+    @Inject
+    private CacheHitStatistics cacheHitStatistics;
+
+    @Inject
+    @ConfigProperty(name = "sb.mvstore.path")
+    private Optional<String> path;
+
+    /**
+     * The size of the page cache in MB.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.mvstore.cachesizemb", defaultValue = "64")
+    private Integer cacheSizeMb;
+
+    /**
+     * Memory maps the store file, so pages are cached by the operating system outside the Java heap.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.mvstore.memorymapped", defaultValue = "false")
+    private Boolean memoryMapped;
+
+    @Inject
+    @ConfigProperty(name = "sb.mvstore.compress", defaultValue = "true")
+    private Boolean compress;
+
+    @Inject
+    @ConfigProperty(name = "sb.mvstore.expiryintervalseconds", defaultValue = "3600")
+    private Long expiryIntervalSeconds;
+
+    @Inject
+    private JsonDeserializer jsonDeserializer;
+
+    @Inject
+    @Identifier("ApacheCommonsZStdZipper")
+    private Zipper zipper;
+
+    @Inject
+    private ExceptionHandler exceptionHandler;
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    @Identifier("financialLocationContactRedaction")
+    private SanitizeDocument sanitizeDocument;
+
+    @Nullable
+    private MVStore store;
+
+    @Nullable
+    private MVMap<String, byte[]> map;
+
+    @Nullable
+    private ScheduledExecutorService expiryExecutor;
+
+    @PostConstruct
+    public void postConstruct() {
+        if (localStorageCacheDisable.isDisabled()) {
+            return;
+        }
+
+        this.store = Try.of(this::openStore)
+                .onFailure(ex -> logger.warning("MVStore cache is not available: " + exceptionHandler.getExceptionMessage(ex)))
+                .getOrNull();
+
+        if (store != null) {
+            this.map = store.openMap(MAP_NAME);
+            scheduleExpiry();
+        }
+    }
+
+    private MVStore openStore() throws Exception {
+        final Path file = Path.of(path.orElse(Path.of(localStorageCacheDirectory.getCacheDirectory(), DEFAULT_FILE_NAME).toString()))
+                .toAbsolutePath();
+        Files.createDirectories(file.getParent());
+
+        return new MVStore.Builder()
+                .fileName((memoryMapped ? "nioMapped:" : "") + file)
+                .cacheSize(Math.max(1, cacheSizeMb))
+                .open();
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        if (expiryExecutor != null) {
+            expiryExecutor.shutdownNow();
+            expiryExecutor = null;
+        }
+
+        if (store != null) {
+            Try.run(store::close)
+                    .onFailure(ex -> logger.warning("Failed to close MVStore cache: " + exceptionHandler.getExceptionMessage(ex)));
+            store = null;
+            map = null;
+        }
+
+        if (totalReads.get() > 0) {
+            logger.fine("MVStore cache stats: reads=" + totalReads.get()
+                    + ", hits=" + totalCacheHits.get()
+                    + ", writes=" + totalWrites.get()
+                    + ", expired=" + totalExpired.get());
+        }
+    }
+
+    private void scheduleExpiry() {
+        expiryExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("mvstore-cache-expiry").factory());
+        expiryExecutor.scheduleWithFixedDelay(
+                () -> Try.run(this::deleteExpired)
+                        .onFailure(ex -> logger.warning("Failed to delete expired cache entries: " + exceptionHandler.getExceptionMessage(ex))),
+                EXPIRY_INITIAL_DELAY_SECONDS,
+                Math.max(1, expiryIntervalSeconds),
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Delete expired entries. The map is concurrent, so this does not block reads or writes.
+     *
+     * @return The number of entries that were deleted
+     */
+    long deleteExpired() {
+        final MVMap<String, byte[]> entries = map;
+        if (entries == null) {
+            return 0;
+        }
+
+        final long now = Instant.now().getEpochSecond();
+        long deleted = 0;
+        for (final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            // Only remove the entry if it has not been replaced since it was read
+            if (isExpired(entry.getValue(), now) && entries.remove(entry.getKey(), entry.getValue())) {
+                ++deleted;
+            }
+        }
+
+        totalExpired.addAndGet(deleted);
+        return deleted;
+    }
+
+    /**
+     * The header does not record when a value was saved, so the age of every value is unknown.
+     */
+    @Override
+    public List<CacheUsage> getUsage(final List<String> tools) {
+        final MVMap<String, byte[]> entries = map;
+        if (localStorageCacheDisable.isDisabled() || entries == null) {
+            return List.of();
+        }
+
+        final long now = Instant.now().getEpochSecond();
+        final Map<String, CacheUsage> usage = new HashMap<>();
+        for (final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            final String[] key = entry.getKey().split("\u0000", 3);
+            if (key.length != 3 || isExpired(entry.getValue(), now) || (!tools.isEmpty() && !tools.contains(key[0]))) {
+                continue;
+            }
+
+            usage.merge(
+                    key[0] + "\u0000" + key[1],
+                    new CacheUsage(key[0], key[1], 1, entry.getValue().length, 0, 0, 0, 0, 1),
+                    (a, b) -> new CacheUsage(a.tool(), a.source(), a.count() + 1, a.bytes() + b.bytes(), 0, 0, 0, 0, a.unknownAge() + 1));
+        }
+
+        return usage.values().stream()
+                .sorted(Comparator.comparingLong(CacheUsage::bytes).reversed())
+                .toList();
+    }
+
+    /**
+     * Keys start with the tool and source, and the map is sorted, so only the matching range of keys is read.
+     */
+    @Override
+    public long purge(final String tool, @Nullable final String source) {
+        final MVMap<String, byte[]> entries = map;
+        if (localStorageCacheDisable.isDisabled() || localStorageCacheReadOnly.isReadOnly() || entries == null) {
+            return 0;
+        }
+
+        final String prefix = source == null ? tool + "\u0000" : tool + "\u0000" + source + "\u0000";
+        final List<String> keys = new ArrayList<>();
+        final Iterator<String> iterator = entries.keyIterator(prefix);
+        while (iterator.hasNext()) {
+            final String key = iterator.next();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            keys.add(key);
+        }
+
+        keys.forEach(entries::remove);
+        logger.info("Purged " + keys.size() + " cache entries for " + tool + (source == null ? "" : " " + source));
+        return keys.size();
+    }
+
+    @Override
+    public void compact() {
+        final MVStore mvStore = store;
+        if (localStorageCacheDisable.isDisabled() || localStorageCacheReadOnly.isReadOnly() || mvStore == null) {
+            return;
+        }
+
+        deleteExpired();
+        Try.run(() -> mvStore.compactFile(COMPACT_MAX_MILLIS))
+                .getOrElseThrow(ex -> new LocalStorageFailure("Failed to compact the cache store", ex));
+    }
+
+    private boolean isDisabled(final String tool) {
+        return localStorageCacheDisable.isDisabled() || localStorageDisableTool.isToolDisabled(tool) || map == null;
+    }
+
+    @Override
+    public CacheResult<String> getString(final String tool, final String source, final String promptHash) {
+        return getValue(tool, source, promptHash, this::decode);
+    }
+
+    /**
+     * Get a cached value as a stream of UTF-8 bytes, which decompresses the value as it is read.
+     */
+    private CacheResult<InputStream> getStream(final String tool, final String source, final String promptHash) {
+        return getValue(tool, source, promptHash, this::decodeStream);
+    }
+
+    /**
+     * Get a cached value, where the decoder returns null for a value that can't be decompressed.
+     */
+    private <V> CacheResult<V> getValue(final String tool, final String source, final String promptHash, final Function<byte[], @Nullable V> decoder) {
+        final MVMap<String, byte[]> entries = map;
+        if (isDisabled(tool) || entries == null) {
+            return new CacheResult<V>(null, null, false);
+        }
+
+        totalReads.incrementAndGet();
+
+        return Try.of(() -> Optional.ofNullable(entries.get(getKey(tool, source, promptHash))))
+                .map(entry -> entry
+                        .filter(value -> !isExpired(value, Instant.now().getEpochSecond()))
+                        // A value that can't be decompressed is a miss, and is replaced by the next write
+                        .flatMap(value -> Optional.ofNullable(decoder.apply(value))
+                                .map(decoded -> {
+                                    totalCacheHits.incrementAndGet();
+                                    return new CacheResult<V>(decoded, null, true, isStale(tool, value));
+                                }))
+                        .orElseGet(() -> new CacheResult<V>(null, null, false)))
+                .peek(result -> cacheHitStatistics.record(tool, source, result.fromCache()))
+                .onFailure(ex -> logger.warning(exceptionHandler.getExceptionMessage(ex)))
+                .getOrElseThrow(ex -> new LocalStorageFailure("Failed to get record", ex));
+    }
+
+    @Override
+    public CacheResult<String> getOrPutString(final String tool, final String source, final String promptHash, final long ttlSeconds, final GenerateValue<String> generateValue) {
+        if (isDisabled(tool)) {
+            return new CacheResult<String>(generateValue.generate(), null, false);
+        }
+
+        return Try
+                .of(() -> getString(tool, source, promptHash))
+                // a cache miss means the string is empty, so we throw an exception
+                .filter(result -> StringUtils.isNotBlank(result.result()))
+                // an expired value within the grace period is returned while it is regenerated in the background
+                .peek(result -> refreshIfStale(result, tool, source, promptHash, () -> {
+                    final String value = generateValue.generate();
+                    if (StringUtils.isNotBlank(value)) {
+                        putString(tool, source, promptHash, ttlSeconds, value);
+                    }
+                }))
+                // recover from a cache miss by generating the value and saving it
+                .recover(result -> {
+                    final String value = generateValue.generate();
+                    if (StringUtils.isNotBlank(value)) {
+                        putString(tool, source, promptHash, ttlSeconds, value);
+                    }
+                    return new CacheResult<String>(value, null, false);
+                })
+                .onFailure(LocalStorageFailure.class, ex -> logger.warning(exceptionHandler.getExceptionMessage(ex)))
+                // If there was an error with the local storage, bypass it and generate the value
+                .recover(LocalStorageFailure.class, ex -> new CacheResult<String>(generateValue.generate(), null, false))
+                .get();
+    }
+
+    @Override
+    public CacheResult<String> getOrPutString(final String tool, final String source, final String promptHash, final GenerateValue<String> generateValue) {
+        return getOrPutString(tool, source, promptHash, 0, generateValue);
+    }
+
+    @Override
+    public <T> CacheResult<T> getOrPutObject(final String tool, final String source, final String promptHash, final long ttlSeconds, final Class<T> clazz, final GenerateValue<T> generateValue) {
+        return getOrPutPrivate(tool, source, promptHash, ttlSeconds, generateValue, json -> jsonDeserializer.deserialize(json, clazz));
+    }
+
+    @Override
+    public <T> CacheResult<T> getOrPutObject(final String tool, final String source, final String promptHash, final Class<T> clazz, final GenerateValue<T> generateValue) {
+        return getOrPutObject(tool, source, promptHash, 0, clazz, generateValue);
+    }
+
+    @Override
+    public <T> CacheResult<List<T>> getOrPutList(final String tool, final String source, final String promptHash, final long ttlSeconds, final Class<T> clazz, final GenerateValue<List<T>> generateValue) {
+        return getOrPutPrivate(tool, source, promptHash, ttlSeconds, generateValue, json -> jsonDeserializer.deserializeCollection(json, clazz));
+    }
+
+    @Override
+    public <T> CacheResult<List<T>> getOrPutList(final String tool, final String source, final String promptHash, final Class<T> clazz, final GenerateValue<List<T>> generateValue) {
+        return getOrPutList(tool, source, promptHash, 0, clazz, generateValue);
+    }
+
+    @Override
+    public <T, U> CacheResult<T> getOrPutGeneric(final String tool, final String source, final String promptHash, final long ttlSeconds, final Class<T> container, final Class<U> contained, final GenerateValue<T> generateValue) {
+        return getOrPutPrivate(tool, source, promptHash, ttlSeconds, generateValue, json -> jsonDeserializer.deserializeGeneric(json, container, contained));
+    }
+
+    @Override
+    public <T, U> CacheResult<T> getOrPutGeneric(final String tool, final String source, final String promptHash, final Class<T> container, final Class<U> contained, final GenerateValue<T> generateValue) {
+        return getOrPutGeneric(tool, source, promptHash, 0, container, contained, generateValue);
+    }
+
+    @Override
+    public <T, U, V> CacheResult<T> getOrPutGeneric(final String tool, final String source, final String promptHash, final long ttlSeconds, final Class<T> container, final Class<U> contained, final Class<V> contained2, final GenerateValue<T> generateValue) {
+        return getOrPutPrivate(tool, source, promptHash, ttlSeconds, generateValue, json -> jsonDeserializer.deserializeGeneric(json, container, contained, contained2));
+    }
+
+    @Override
+    public <T, U, V> CacheResult<T> getOrPutGeneric(final String tool, final String source, final String promptHash, final Class<T> container, final Class<U> contained, final Class<V> contained2, final GenerateValue<T> generateValue) {
+        return getOrPutGeneric(tool, source, promptHash, 0, container, contained, contained2, generateValue);
+    }
+
+    @SuppressWarnings("NullAway")
+    private <T> CacheResult<T> getOrPutPrivate(final String tool, final String source, final String promptHash, final long ttlSeconds, final GenerateValue<T> generateValue, final Deserialize<T> deserializer) {
+        if (isDisabled(tool)) {
+            return new CacheResult<T>(generateValue.generate(), null, false);
+        }
+
+        return Try.of(() -> getString(tool, source, promptHash))
+                // a cache miss means the string is empty, so we throw an exception
+                .filter(result -> result != null && StringUtils.isNotBlank(result.result()))
+                // a cache hit means we deserialize the result
+                .mapTry(r -> new CacheResult<T>(negativeCache.recordHit(tool, deserializer.deserialize(r.result())), null, true, r.stale()))
+                .peek(result -> refreshIfStale(result, tool, source, promptHash,
+                        () -> generateAndPut(tool, source, promptHash, ttlSeconds, generateValue, deserializer)))
+                // a cache miss means we call the API and then save the result in the cache
+                .recoverWith(ex -> Try.of(() -> new CacheResult<T>(generateAndPut(tool, source, promptHash, ttlSeconds, generateValue, deserializer), null, false)))
+                .onFailure(LocalStorageFailure.class, ex -> logger.warning(exceptionHandler.getExceptionMessage(ex)))
+                .onFailure(SerializationFailed.class, ex -> logger.warning(exceptionHandler.getExceptionMessage(ex)))
+                .recover(LocalStorageFailure.class, ex -> new CacheResult<T>(generateValue.generate(), null, false))
+                // Gracefully deal with an object that can't be serialized
+                .recover(SerializationFailed.class, ex -> new CacheResult<T>(generateValue.generate(), null, false))
+                .get();
+    }
+
+    /**
+     * Generate a value and save it. Empty values are saved with the shorter negative cache TTL.
+     */
+    @Nullable
+    private <T> T generateAndPut(final String tool, final String source, final String promptHash, final long ttlSeconds, final GenerateValue<T> generateValue, final Deserialize<T> deserializer) {
+        final T value = Try.of(generateValue::generate)
+                // a generator that found nothing may throw EmptyList rather than return an empty list
+                .recoverWith(ex -> negativeCache.emptyValue(ex, deserializer)
+                        .map(Try::success)
+                        .orElseGet(() -> Try.failure(ex)))
+                .get();
+
+        if (value != null) {
+            putString(tool, source, promptHash, negativeCache.getTtl(tool, value, ttlSeconds), jsonDeserializer.serialize(value));
+        }
+
+        return value;
+    }
+
+    @SuppressWarnings("NullAway")
+    @Override
+    public <T> CacheResult<T[]> getOrPutObjectArray(final String tool, final String source, final String promptHash, final long ttlSeconds, final Class<T> clazz, final Class<T[]> arrayClazz, final GenerateValue<T[]> generateValue) {
+        if (isDisabled(tool)) {
+            return new CacheResult<T[]>(generateValue.generate(), null, false);
+        }
+
+        return Try.of(() -> getString(tool, source, promptHash))
+                .filter(result -> result != null && StringUtils.isNotBlank(result.result()))
+                .peek(result -> refreshIfStale(result, tool, source, promptHash,
+                        () -> persistArrayResult(tool, source, promptHash, ttlSeconds, generateValue)))
+                .mapTry(r -> new CacheResult<T[]>(negativeCache.recordHit(tool, ArrayRecords.toArray(r.result(), clazz, jsonDeserializer)), null, true, r.stale()))
+                .recoverWith(ex -> Try.of(() -> persistArrayResult(tool, source, promptHash, ttlSeconds, generateValue)))
+                .onFailure(LocalStorageFailure.class, ex -> logger.warning(exceptionHandler.getExceptionMessage(ex)))
+                .recover(LocalStorageFailure.class, ex -> new CacheResult<T[]>(generateValue.generate(), null, false))
+                .get();
+    }
+
+    @Override
+    public <T> CacheResult<Stream<T>> getOrPutObjectStream(final String tool, final String source, final String promptHash, final long ttlSeconds, final Class<T> clazz, final Class<T[]> arrayClazz, final GenerateValue<T[]> generateValue) {
+        if (isDisabled(tool)) {
+            return ArrayRecords.toStream(new CacheResult<T[]>(generateValue.generate(), null, false));
+        }
+
+        // The array is read from the compressed value as the elements are consumed
+        final CacheResult<InputStream> cached = Try.of(() -> getStream(tool, source, promptHash))
+                .onFailure(LocalStorageFailure.class, ex -> logger.warning(exceptionHandler.getExceptionMessage(ex)))
+                .getOrElse(new CacheResult<InputStream>(null, null, false));
+
+        final Optional<ArrayRecords.Elements<T>> elements = Optional.ofNullable(cached.result())
+                .flatMap(value -> ArrayRecords.stream(value, clazz, jsonDeserializer));
+
+        if (elements.isPresent()) {
+            refreshIfStale(cached, tool, source, promptHash, () -> persistArrayResult(tool, source, promptHash, ttlSeconds, generateValue));
+            negativeCache.recordArrayHit(tool, elements.get().size());
+            return new CacheResult<Stream<T>>(elements.get().stream(), null, true, cached.stale());
+        }
+
+        return ArrayRecords.toStream(persistArrayResult(tool, source, promptHash, ttlSeconds, generateValue));
+    }
+
+    @Override
+    public <T> CacheResult<T[]> persistArrayResult(final String tool, final String source, final String promptHash, final long ttlSeconds, final GenerateValue<T[]> generateValue) {
+        final T[] value = generateValue.generate();
+
+        // The whole array is saved as one record, which is compressed like any other value
+        if (value != null) {
+            putString(tool, source, promptHash, negativeCache.getTtl(tool, value, ttlSeconds), ArrayRecords.serialize(value, jsonDeserializer));
+        }
+
+        return new CacheResult<T[]>(value, null, false);
+    }
+
+    @Override
+    public void putString(final String tool, final String source, final String promptHash, final long ttlSeconds, final String value) {
+        final MVMap<String, byte[]> entries = map;
+        if (isDisabled(tool) || localStorageCacheReadOnly.isReadOnly() || entries == null) {
+            return;
+        }
+
+        final String redactedValue = localStorageCacheDisableRedaction.isRedactionDisabled()
+                ? value
+                : sanitizeDocument.sanitize(value);
+
+        final long expiry = ttlSeconds == 0
+                ? 0
+                : Instant.now().getEpochSecond() + ttlSeconds + localStorageStaleWhileRevalidateTool.getGracePeriod(tool);
+
+        Try.run(() -> entries.put(getKey(tool, source, promptHash), encode(redactedValue, expiry, tool)))
+                .onSuccess(v -> totalWrites.incrementAndGet())
+                .onFailure(ex -> logger.warning(exceptionHandler.getExceptionMessage(ex)))
+                .getOrElseThrow(ex -> new LocalStorageFailure("Failed to create record for tool " + tool, ex));
+    }
+
+    @Override
+    public void putString(final String tool, final String source, final String promptHash, final String value) {
+        putString(tool, source, promptHash, 0, value);
+    }
+
+    /**
+     * MVStore commits in the background. Flushing commits any pending changes immediately.
+     */
+    @Override
+    public void flush() {
+        if (store != null) {
+            Try.run(store::commit)
+                    .onFailure(ex -> logger.warning("Failed to commit MVStore cache: " + exceptionHandler.getExceptionMessage(ex)));
+        }
+    }
+
+    private byte[] encode(final String value, final long expiry, final String tool) {
+        final byte[] compressed = compress && StringUtils.isNotEmpty(value) ? zipper.compressBytes(value, tool) : null;
+        final byte[] payload = compressed == null ? value.getBytes(StandardCharsets.UTF_8) : compressed;
+
+        return ByteBuffer.allocate(HEADER_LENGTH + payload.length)
+                .putLong(expiry)
+                .put(compressed == null ? CODEC_TEXT : CODEC_ZSTD)
+                .put(payload)
+                .array();
+    }
+
+    @Nullable
+    private String decode(final byte[] entry) {
+        final byte[] payload = ArrayUtils.subarray(entry, HEADER_LENGTH, entry.length);
+        return entry[Long.BYTES] == CODEC_ZSTD
+                ? zipper.decompressBytes(payload)
+                : new String(payload, StandardCharsets.UTF_8);
+    }
+
+    @Nullable
+    private InputStream decodeStream(final byte[] entry) {
+        return entry[Long.BYTES] == CODEC_ZSTD
+                ? zipper.decompressStream(ArrayUtils.subarray(entry, HEADER_LENGTH, entry.length))
+                : new ByteArrayInputStream(entry, HEADER_LENGTH, entry.length - HEADER_LENGTH);
+    }
+
+    private static long getExpiry(final byte[] entry) {
+        return ByteBuffer.wrap(entry, 0, Long.BYTES).getLong();
+    }
+
+    private static boolean isExpired(final byte[] entry, final long now) {
+        final long expiry = getExpiry(entry);
+        return expiry != 0 && expiry < now;
+    }
+
+    /**
+     * Entries for tools with a stale-while-revalidate grace period are saved with an expiry that includes the grace
+     * period. An entry is stale once the time remaining before that expiry is less than the grace period.
+     */
+    private boolean isStale(final String tool, final byte[] entry) {
+        final long gracePeriod = localStorageStaleWhileRevalidateTool.getGracePeriod(tool);
+        final long expiry = getExpiry(entry);
+        return gracePeriod > 0 && expiry != 0 && expiry - gracePeriod < Instant.now().getEpochSecond();
+    }
+
+    private void refreshIfStale(final CacheResult<?> result, final String tool, final String source, final String promptHash, final Runnable refresh) {
+        if (result.stale()) {
+            staleWhileRevalidate.refresh(tool, getKey(tool, source, promptHash), refresh);
+        }
+    }
+
+    /**
+     * The parts of the key are separated by a character that can't appear in tool names or hashes.
+     */
+    private static String getKey(final String tool, final String source, final String promptHash) {
+        return tool + "\u0000" + source + "\u0000" + promptHash;
+    }
+}
@@ -30,6 +30,11 @@ public class MockLocalStorageReadWrite implements LocalStorageReadWrite {
         return value;
     }
 
+    @Override
+    public void remove(final String tool, final String source, final String promptHash) {
+        store.remove(buildKey(tool, source, promptHash));
+    }
+
     @Override
     public void purge() {
         store.clear();
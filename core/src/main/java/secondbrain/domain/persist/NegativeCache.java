@@ -0,0 +1,116 @@
+package secondbrain.domain.persist;
+
+import io.vavr.control.Try;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jspecify.annotations.Nullable;
+import secondbrain.domain.exceptions.EmptyList;
+import secondbrain.domain.persist.config.LocalStorageNegativeCacheTtl;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Supports caching empty results. Many entity and tool combinations have no data, and without caching the empty
+ * result every run repeats the same slow API calls. Empty results are saved with a shorter TTL than regular results.
+ */
+@ApplicationScoped
+public class NegativeCache {
+    /**
+     * The JSON saved when a generator signals an empty list with an EmptyList exception.
+     */
+    public static final String EMPTY_JSON_ARRAY = "[]";
+
+    private final Map<String, AtomicInteger> negativeHits = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> negativeWrites = new ConcurrentHashMap<>();
+
+    @Inject
+    private LocalStorageNegativeCacheTtl localStorageNegativeCacheTtl;
+
+    @Inject
+    private Logger logger;
+
+    @PreDestroy
+    private void shutdown() {
+        negativeHits.forEach((tool, count) -> logger.info("Cached empty results served for tool " + tool + ": "
+                + count.get() + ", empty results cached: " + getNegativeWrites(tool)));
+    }
+
+    /**
+     * @return true if the value is an empty collection, map, array, or string
+     */
+    public boolean isEmpty(@Nullable final Object value) {
+        if (value instanceof Collection<?> collection) {
+            return collection.isEmpty();
+        }
+
+        if (value instanceof Map<?, ?> map) {
+            return map.isEmpty();
+        }
+
+        if (value instanceof CharSequence string) {
+            return string.isEmpty();
+        }
+
+        return value != null && value.getClass().isArray() && Array.getLength(value) == 0;
+    }
+
+    /**
+     * @return The TTL to save the value with
+     */
+    public long getTtl(final String tool, @Nullable final Object value, final long ttlSeconds) {
+        if (!isEmpty(value)) {
+            return ttlSeconds;
+        }
+
+        negativeWrites.computeIfAbsent(tool, t -> new AtomicInteger()).incrementAndGet();
+        return localStorageNegativeCacheTtl.getNegativeTtl(ttlSeconds);
+    }
+
+    /**
+     * Count a cache hit if the cached value is empty.
+     */
+    public <T> T recordHit(final String tool, final T value) {
+        if (isEmpty(value)) {
+            negativeHits.computeIfAbsent(tool, t -> new AtomicInteger()).incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Count a cache hit on an array that is streamed, whose size is known before the elements are read.
+     */
+    public void recordArrayHit(final String tool, final int size) {
+        if (size == 0) {
+            negativeHits.computeIfAbsent(tool, t -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    /**
+     * A generator that throws EmptyList has found no data. If the cached type is a collection, an empty
+     * collection of that type is returned so it can be cached.
+     */
+    public <T> Optional<T> emptyValue(final Throwable ex, final Deserialize<T> deserializer) {
+        if (!(ex instanceof EmptyList)) {
+            return Optional.empty();
+        }
+
+        return Try.of(() -> deserializer.deserialize(EMPTY_JSON_ARRAY))
+                .filter(this::isEmpty)
+                .toJavaOptional();
+    }
+
+    public int getNegativeHits(final String tool) {
+        return negativeHits.getOrDefault(tool, new AtomicInteger()).get();
+    }
+
+    public int getNegativeWrites(final String tool) {
+        return negativeWrites.getOrDefault(tool, new AtomicInteger()).get();
+    }
+}
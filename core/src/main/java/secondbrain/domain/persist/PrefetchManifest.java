@@ -0,0 +1,164 @@
+package secondbrain.domain.persist;
+
+import io.vavr.control.Try;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import secondbrain.domain.exceptionhandling.ExceptionHandler;
+import secondbrain.domain.json.JsonDeserializer;
+import secondbrain.domain.persist.config.LocalStorageCacheDirectory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Records the cache keys that are read during a run, and saves them when the application shuts down.
+ * Scheduled jobs tend to read the same keys each time they run, so the next run can use the manifest
+ * to prefetch those keys from the remote cache into the local tier in parallel, rather than one at a time.
+ */
+@ApplicationScoped
+public class PrefetchManifest {
+    private final Set<CacheKey> accessedKeys = ConcurrentHashMap.newKeySet();
+    private final Set<CacheKey> prefetchedKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger totalPrefetched = new AtomicInteger();
+    private final AtomicInteger totalPrefetchMisses = new AtomicInteger();
+    private final AtomicInteger totalPrefetchHits = new AtomicInteger();
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private ExceptionHandler exceptionHandler;
+
+    @Inject
+    private JsonDeserializer jsonDeserializer;
+
+    @Inject
+    private LocalStorageCacheDirectory localStorageCacheDirectory;
+
+    @Inject
+    @ConfigProperty(name = "sb.cache.prefetch", defaultValue = "true")
+    private Boolean enabled;
+
+    /**
+     * Jobs that share a cache directory should each use their own manifest file.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.cache.prefetchmanifest", defaultValue = "prefetch-manifest.json")
+    private String manifestFile;
+
+    @Inject
+    @ConfigProperty(name = "sb.cache.prefetchmaxkeys", defaultValue = "10000")
+    private Integer maxKeys;
+
+    @Inject
+    @ConfigProperty(name = "sb.cache.prefetchconcurrency", defaultValue = "16")
+    private Integer concurrency;
+
+    @PreDestroy
+    private void preDestroy() {
+        if (totalPrefetched.get() > 0) {
+            logger.info("Cache prefetch: " + totalPrefetched.get() + " keys prefetched, "
+                    + totalPrefetchMisses.get() + " keys not found, "
+                    + totalPrefetchHits.get() + " prefetched keys read, hit rate " + getPrefetchHitPercentage() + "%");
+        }
+
+        save();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getConcurrency() {
+        return Math.max(1, concurrency);
+    }
+
+    /**
+     * Record that a key was read in this run.
+     */
+    public void recordAccess(final String tool, final String source, final String promptHash) {
+        if (enabled && accessedKeys.size() < maxKeys) {
+            accessedKeys.add(new CacheKey(tool, source, promptHash));
+        }
+    }
+
+    /**
+     * Record that a key was read from the local tier. Prefetched keys are counted the first time they are read.
+     */
+    public void recordLocalHit(final String tool, final String source, final String promptHash) {
+        if (!prefetchedKeys.isEmpty() && prefetchedKeys.remove(new CacheKey(tool, source, promptHash))) {
+            totalPrefetchHits.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record the result of prefetching a key.
+     *
+     * @param found true if the key was copied to the local tier, and false if the remote cache did not have it
+     */
+    public void recordPrefetch(final CacheKey key, final boolean found) {
+        if (found) {
+            prefetchedKeys.add(key);
+            totalPrefetched.incrementAndGet();
+        } else {
+            totalPrefetchMisses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the keys that were read during the previous run.
+     */
+    public List<CacheKey> getPreviousKeys() {
+        if (!enabled || !Files.exists(getManifestPath())) {
+            return List.of();
+        }
+
+        return Try.of(() -> Files.readString(getManifestPath()))
+                .map(json -> jsonDeserializer.deserializeCollection(json, CacheKey.class))
+                .map(keys -> keys.stream().limit(maxKeys).toList())
+                .onFailure(ex -> logger.warning("Failed to read the prefetch manifest: " + exceptionHandler.getExceptionMessage(ex)))
+                .getOrElse(List.of());
+    }
+
+    public int getTotalPrefetched() {
+        return totalPrefetched.get();
+    }
+
+    public int getTotalPrefetchHits() {
+        return totalPrefetchHits.get();
+    }
+
+    private float getPrefetchHitPercentage() {
+        return totalPrefetched.get() > 0 ? (float) totalPrefetchHits.get() / totalPrefetched.get() * 100 : 0;
+    }
+
+    /**
+     * Runs that read nothing from the cache leave the previous manifest in place.
+     */
+    void save() {
+        if (!enabled || accessedKeys.isEmpty()) {
+            return;
+        }
+
+        Try.run(() -> Files.createDirectories(getManifestPath().getParent()))
+                .andThenTry(() -> Files.writeString(getManifestPath(), jsonDeserializer.serialize(List.copyOf(accessedKeys))))
+                .onFailure(ex -> logger.warning("Failed to save the prefetch manifest: " + exceptionHandler.getExceptionMessage(ex)));
+    }
+
+    private Path getManifestPath() {
+        return Path.of(localStorageCacheDirectory.getCacheDirectory(), manifestFile).toAbsolutePath();
+    }
+
+    /**
+     * A key read from the cache.
+     */
+    public record CacheKey(String tool, String source, String promptHash) {
+    }
+}
@@ -0,0 +1,212 @@
+package secondbrain.domain.persist;
+
+import io.vavr.control.Try;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jspecify.annotations.Nullable;
+import secondbrain.domain.exceptionhandling.ExceptionHandler;
+import secondbrain.domain.persist.config.LocalStorageCacheDirectory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * An alternative to FileLocalStorageReadWrite that appends entries to segment files rather than writing one file
+ * per entry. This avoids the inode and metadata churn of many small files, and makes each write a single append.
+ * <p>
+ * The segment store has a single writer, so the segment directory is locked for the lifetime of the bean.
+ * If another process already holds the lock, this instance behaves as an empty, read-only cache.
+ */
+@ApplicationScoped
+public class SegmentLocalStorageReadWrite implements LocalStorageReadWrite {
+    private static final String SEGMENT_DIRECTORY = "segments";
+    private static final String LOCK_FILE_NAME = "segments.lock";
+    private static final Duration COMPACTION_INTERVAL = Duration.ofHours(1);
+
+    private final AtomicInteger totalReads = new AtomicInteger();
+    private final AtomicInteger totalHits = new AtomicInteger();
+    private final AtomicInteger totalWrites = new AtomicInteger();
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+
+    private volatile long lastCompactionEpochSecond = Instant.now().getEpochSecond();
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private ExceptionHandler exceptionHandler;
+
+    @Inject
+    private LocalStorageCacheDirectory localStorageCacheDirectory;
+
+    @Inject
+    @ConfigProperty(name = "sb.cache.segmentmaxbytes", defaultValue = "67108864")
+    private Long maxSegmentBytes;
+
+    /**
+     * Sealed segments whose live records make up less than this fraction of the file are compacted.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.cache.segmentcompactionratio", defaultValue = "0.5")
+    private Double compactionLiveRatio;
+
+    @Nullable
+    private SegmentStore store;
+
+    @Nullable
+    private FileChannel lockChannel;
+
+    @Nullable
+    private FileLock lock;
+
+    @PostConstruct
+    private void init() {
+        final Path directory = Path.of(localStorageCacheDirectory.getCacheDirectory(), SEGMENT_DIRECTORY);
+        final long start = System.currentTimeMillis();
+
+        this.store = Try.of(() -> acquireLock(directory))
+                .filter(Objects::nonNull)
+                .mapTry(l -> new SegmentStore(directory, maxSegmentBytes, compactionLiveRatio, logger))
+                .onSuccess(s -> logger.fine("Recovered " + s.size() + " entries from " + s.segmentCount()
+                        + " segments in " + (System.currentTimeMillis() - start) + " ms"))
+                .onFailure(ex -> logger.warning("Segment cache is not available: " + exceptionHandler.getExceptionMessage(ex)))
+                .getOrNull();
+    }
+
+    @Nullable
+    private FileLock acquireLock(final Path directory) throws IOException {
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        lock = Try.of(() -> lockChannel.tryLock())
+                .recover(OverlappingFileLockException.class, ex -> null)
+                .get();
+        if (lock == null) {
+            logger.warning("Another process is using the segment cache in " + directory);
+        }
+        return lock;
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (store != null) {
+            logger.info("Segment cache stats: entries=" + store.size()
+                    + ", segments=" + store.segmentCount()
+                    + ", total bytes=" + store.totalBytes()
+                    + ", live bytes=" + store.liveBytes()
+                    + ", reads=" + totalReads.get()
+                    + ", hits=" + totalHits.get()
+                    + ", writes=" + totalWrites.get()
+                    + ", compacted segments=" + store.getCompactedSegments()
+                    + ", truncated bytes=" + store.getTruncatedBytes());
+
+            Try.run(store::close)
+                    .onFailure(ex -> logger.warning("Failed to close segment cache: " + exceptionHandler.getExceptionMessage(ex)));
+        }
+
+        if (lock != null) {
+            Try.run(lock::release);
+        }
+
+        if (lockChannel != null) {
+            Try.run(lockChannel::close);
+        }
+    }
+
+    @Override
+    public Optional<String> getString(final String tool, final String source, final String promptHash) {
+        if (store == null) {
+            return Optional.empty();
+        }
+
+        totalReads.incrementAndGet();
+        compactInBackground();
+
+        final Optional<String> result = store.get(cacheKey(tool, source, promptHash));
+        if (result.isPresent()) {
+            totalHits.incrementAndGet();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean containsString(final String tool, final String source, final String promptHash) {
+        return store != null && store.contains(cacheKey(tool, source, promptHash));
+    }
+
+    @Override
+    public String putString(final String tool, final String source, final String promptHash, @Nullable final Long timestamp, final String value) {
+        if (store == null) {
+            return value;
+        }
+
+        Try.run(() -> store.put(cacheKey(tool, source, promptHash), value, Objects.requireNonNullElse(timestamp, 0L)))
+                .onSuccess(v -> totalWrites.incrementAndGet())
+                .onFailure(ex -> logger.warning("Failed to append to segment cache: " + exceptionHandler.getExceptionMessage(ex)));
+
+        return value;
+    }
+
+    @Override
+    public void remove(final String tool, final String source, final String promptHash) {
+        if (store != null) {
+            Try.run(() -> store.remove(cacheKey(tool, source, promptHash)))
+                    .onFailure(ex -> logger.warning("Failed to remove from segment cache: " + exceptionHandler.getExceptionMessage(ex)));
+        }
+    }
+
+    @Override
+    public void purge() {
+        if (store != null) {
+            Try.run(store::clear)
+                    .onFailure(ex -> logger.warning("Failed to clear segment cache: " + exceptionHandler.getExceptionMessage(ex)));
+        }
+    }
+
+    /**
+     * Compaction happens on a daemon thread so reads and writes are never blocked waiting for it.
+     */
+    private void compactInBackground() {
+        final long now = Instant.now().getEpochSecond();
+        if (store == null || now - lastCompactionEpochSecond < COMPACTION_INTERVAL.toSeconds()) {
+            return;
+        }
+
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+
+        lastCompactionEpochSecond = now;
+        final SegmentStore segmentStore = store;
+        final Thread thread = new Thread(() -> {
+            try {
+                final int removed = segmentStore.compact();
+                if (removed > 0) {
+                    logger.fine("Compacted " + removed + " cache segments");
+                }
+            } finally {
+                compacting.set(false);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static String cacheKey(final String tool, final String source, final String promptHash) {
+        return tool + "_" + source + "_" + promptHash;
+    }
+}
@@ -0,0 +1,652 @@
+package secondbrain.domain.persist;
+
+import io.vavr.control.Try;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.jspecify.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A log-structured key value store. Entries are appended to segment files, and an in-memory hash index maps each
+ * key to the location of its most recent record. Writing an entry is a single append, and reading an entry is a
+ * single positional read.
+ * <p>
+ * Each record is laid out as:
+ * <pre>
+ * int    length of everything after the CRC field plus 4
+ * int    CRC32 of everything after the CRC field
+ * long   expiration timestamp in epoch seconds, or 0 if the record does not expire
+ * int    key length, followed by the UTF-8 key
+ * int    value length, followed by the UTF-8 value
+ * </pre>
+ A value length of -1 marks a tombstone, which deletes the key, and
+ * a value length of -2 marks a clear record, which deletes every key written before it.
+ * <p>
+ * When the store is opened, the segments are replayed in order to rebuild the index. A torn or corrupt record at
+ * the end of the last segment, which is what a crash mid-write leaves behind, is truncated away.
+ * <p>
+ * Compaction copies the live records out of sealed segments that are mostly garbage (superseded or expired
+ * records) and then deletes those segments. Superseded records are left behind in older segments, so deleting a
+ * key, or dropping an expired record, writes a tombstone that stops an older record for the key from coming back
+ * when the segments are replayed. A tombstone is kept until no older segment remains.
+ * <p>
+ * The store assumes a single writer. Callers are expected to hold an exclusive lock on the directory.
+ */
+class SegmentStore implements Closeable {
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.log");
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 256 * 1024 * 1024;
+    private static final int TOMBSTONE = -1;
+    private static final int CLEAR = -2;
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final double compactionLiveRatio;
+    private final Logger logger;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Map<String, Location> tombstones = new ConcurrentHashMap<>();
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final AtomicLong compactedSegments = new AtomicLong();
+    private final AtomicLong truncatedBytes = new AtomicLong();
+
+    @Nullable
+    private volatile Segment activeSegment;
+
+    /**
+     * The location of a record.
+     *
+     * @param segment   The segment ID
+     * @param offset    The offset of the start of the record in the segment
+     * @param length    The total length of the record, including the header
+     * @param timestamp The expiration timestamp, or 0 if the record does not expire
+     */
+    record Location(int segment, long offset, int length, long timestamp) {
+        boolean isExpired(final long now) {
+            return timestamp != 0 && timestamp < now;
+        }
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final AtomicLong size;
+        private final AtomicLong liveBytes = new AtomicLong();
+
+        private Segment(final int id, final Path path, final FileChannel channel, final long size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = new AtomicLong(size);
+        }
+    }
+
+    SegmentStore(final Path directory, final long maxSegmentBytes, final double compactionLiveRatio, final Logger logger) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.compactionLiveRatio = compactionLiveRatio;
+        this.logger = logger;
+
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    private void recover() throws IOException {
+        final List<Integer> ids;
+        try (final Stream<Path> files = Files.list(directory)) {
+            ids = files
+                    .map(file -> SEGMENT_FILE.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> NumberUtils.toInt(matcher.group(1), -1))
+                    .filter(id -> id >= 0)
+                    .sorted()
+                    .toList();
+        }
+
+        int cleared = -1;
+        for (int i = 0; i < ids.size(); i++) {
+            final boolean tail = i == ids.size() - 1;
+            final Segment segment = openSegment(ids.get(i));
+            segments.put(segment.id, segment);
+            if (replay(segment, tail)) {
+                cleared = segment.id;
+            }
+        }
+
+        // Finish a clear that was interrupted before the older segments were deleted
+        if (cleared > 0) {
+            deleteSegmentsBefore(cleared);
+        }
+
+        activeSegment = ids.isEmpty()
+                ? createSegment(0)
+                : segments.get(ids.getLast());
+    }
+
+    /**
+     * Rebuild the index from a segment. Only the tail segment can legitimately end in a partial record, so that is
+     * the only segment that is truncated.
+     *
+     * @return true if the segment holds a clear record
+     */
+    private boolean replay(final Segment segment, final boolean tail) throws IOException {
+        long offset = 0;
+        boolean cleared = false;
+
+        try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path), 64 * 1024))) {
+            while (true) {
+                final Optional<Record> record = Try.of(() -> readRecord(input)).getOrElse(Optional.empty());
+                if (record.isEmpty()) {
+                    break;
+                }
+
+                final Location location = new Location(segment.id, offset, record.get().length(), record.get().timestamp());
+                if (record.get().valueLength() == CLEAR) {
+                    forgetAll();
+                    cleared = true;
+                } else if (record.get().valueLength() == TOMBSTONE) {
+                    tombstone(record.get().key(), location);
+                } else {
+                    index(record.get().key(), location);
+                }
+                offset += record.get().length();
+            }
+        }
+
+        if (offset < segment.size.get()) {
+            if (tail) {
+                logger.warning("Truncating " + (segment.size.get() - offset) + " bytes of incomplete records from the end of " + segment.path);
+                truncatedBytes.addAndGet(segment.size.get() - offset);
+                segment.channel.truncate(offset);
+                segment.size.set(offset);
+            } else {
+                logger.warning("Ignoring corrupt records after offset " + offset + " in " + segment.path);
+            }
+        }
+
+        return cleared;
+    }
+
+    /**
+     * @param valueLength The length of the value, or TOMBSTONE or CLEAR for records without a value
+     */
+    private record Record(String key, @Nullable String value, long timestamp, int length, int valueLength) {
+    }
+
+    /**
+     * @return The next record, or empty at the end of the stream or if the record is incomplete or corrupt
+     */
+    private Optional<Record> readRecord(final DataInputStream input) throws IOException {
+        final int length;
+        try {
+            length = input.readInt();
+        } catch (final EOFException ex) {
+            return Optional.empty();
+        }
+
+        if (length < 4 || length > MAX_RECORD_BYTES) {
+            return Optional.empty();
+        }
+
+        final int crc = input.readInt();
+        final byte[] body = new byte[length - 4];
+        input.readFully(body);
+
+        return decode(body, crc, false);
+    }
+
+    private static Optional<Record> decode(final byte[] body, final int expectedCrc, final boolean readValue) {
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != expectedCrc) {
+            return Optional.empty();
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(body);
+        final long timestamp = buffer.getLong();
+        final byte[] key = new byte[buffer.getInt()];
+        buffer.get(key);
+        final int valueLength = buffer.getInt();
+        final String value = readValue && valueLength >= 0
+                ? new String(body, buffer.position(), valueLength, StandardCharsets.UTF_8)
+                : null;
+
+        return Optional.of(new Record(new String(key, StandardCharsets.UTF_8), value, timestamp, body.length + HEADER_BYTES, valueLength));
+    }
+
+    private static ByteBuffer encode(final String key, final String value, final long timestamp) {
+        return encode(key, value.getBytes(StandardCharsets.UTF_8), 0, timestamp);
+    }
+
+    private static ByteBuffer encodeMarker(final String key, final int marker) {
+        return encode(key, new byte[0], marker, 0);
+    }
+
+    /**
+     * @param marker TOMBSTONE or CLEAR to write a record without a value, or 0 to write the value
+     */
+    private static ByteBuffer encode(final String key, final byte[] valueBytes, final int marker, final long timestamp) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final int bodyLength = 8 + 4 + keyBytes.length + 4 + valueBytes.length;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+        buffer.putInt(bodyLength + 4);
+        buffer.putInt(0);
+        buffer.putLong(timestamp);
+        buffer.putInt(keyBytes.length);
+        buffer.put(keyBytes);
+        buffer.putInt(marker == 0 ? valueBytes.length : marker);
+        buffer.put(valueBytes);
+
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+
+        return buffer.flip();
+    }
+
+    private void index(final String key, final Location location) {
+        final Location previous = index.put(key, location);
+        segments.get(location.segment()).liveBytes.addAndGet(location.length());
+        if (previous != null) {
+            release(previous);
+        }
+
+        final Location tombstone = tombstones.remove(key);
+        if (tombstone != null) {
+            release(tombstone);
+        }
+    }
+
+    /**
+     * Tombstones count as live bytes, as they are needed until the records they delete are gone.
+     */
+    private void tombstone(final String key, final Location location) {
+        final Location previous = index.remove(key);
+        if (previous != null) {
+            release(previous);
+        }
+
+        final Location previousTombstone = tombstones.put(key, location);
+        segments.get(location.segment()).liveBytes.addAndGet(location.length());
+        if (previousTombstone != null) {
+            release(previousTombstone);
+        }
+    }
+
+    private void forgetAll() {
+        index.clear();
+        tombstones.clear();
+        segments.values().forEach(segment -> segment.liveBytes.set(0));
+    }
+
+    private void release(final Location location) {
+        final Segment segment = segments.get(location.segment());
+        if (segment != null) {
+            segment.liveBytes.addAndGet(-location.length());
+        }
+    }
+
+    private Segment openSegment(final int id) throws IOException {
+        final Path path = directory.resolve(segmentFileName(id));
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(id, path, channel, channel.size());
+    }
+
+    private Segment createSegment(final int id) throws IOException {
+        final Segment segment = openSegment(id);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static String segmentFileName(final int id) {
+        return String.format("segment-%08d.log", id);
+    }
+
+    /**
+     * Get a value, or empty if there is no value or it has expired.
+     */
+    Optional<String> get(final String key) {
+        final long now = Instant.now().getEpochSecond();
+
+        // A compaction may move the record between the index lookup and the read, so try again once if that happens
+        for (int attempt = 0; attempt < 2; attempt++) {
+            final Location location = index.get(key);
+            if (location == null || location.isExpired(now)) {
+                return Optional.empty();
+            }
+
+            final Optional<String> value = Try.of(() -> read(location))
+                    .getOrElse(Optional.empty());
+
+            if (value.isPresent() || location.equals(index.get(key))) {
+                return value;
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Check for an unexpired value without reading it.
+     */
+    boolean contains(final String key) {
+        final Location location = index.get(key);
+        return location != null && !location.isExpired(Instant.now().getEpochSecond());
+    }
+
+    private Optional<String> read(final Location location) throws IOException {
+        final Segment segment = segments.get(location.segment());
+        if (segment == null) {
+            return Optional.empty();
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(location.length());
+        while (buffer.hasRemaining()) {
+            if (segment.channel.read(buffer, location.offset() + buffer.position()) < 0) {
+                return Optional.empty();
+            }
+        }
+
+        final int crc = buffer.getInt(4);
+        final byte[] body = Arrays.copyOfRange(buffer.array(), HEADER_BYTES, location.length());
+        return decode(body, crc, true).map(Record::value);
+    }
+
+    /**
+     * Append a value.
+     *
+     * @param timestamp The expiration timestamp in epoch seconds, or 0 if the value does not expire
+     */
+    void put(final String key, final String value, final long timestamp) throws IOException {
+        append(key, encode(key, value, timestamp), timestamp, null);
+    }
+
+    /**
+     * Delete a key by writing a tombstone. Does nothing if the key has no value.
+     */
+    void remove(final String key) throws IOException {
+        writeLock.lock();
+        try {
+            if (index.containsKey(key)) {
+                tombstone(key, write(encodeMarker(key, TOMBSTONE), 0));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Delete every key. A clear record is written to a new segment before the older segments are deleted, so the
+     * keys stay deleted if the process stops before the older segments are gone.
+     */
+    void clear() throws IOException {
+        compactionLock.lock();
+        try {
+            writeLock.lock();
+            try {
+                final Segment segment = createSegment(Objects.requireNonNull(activeSegment).id + 1);
+                activeSegment = segment;
+                write(encodeMarker("", CLEAR), 0);
+                segment.channel.force(false);
+                forgetAll();
+                deleteSegmentsBefore(segment.id);
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private void deleteSegmentsBefore(final int id) throws IOException {
+        for (final Segment segment : List.copyOf(segments.values())) {
+            if (segment.id < id) {
+                segments.remove(segment.id);
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            }
+        }
+    }
+
+    /**
+     * Append an encoded record. If an expected location is supplied, the record is a copy made by compaction, and
+     * it is only written if the key still points to that location. Writing a copy of a value that has since been
+     * replaced would bring the old value back when the segments are replayed.
+     *
+     * @return true if the record was written
+     */
+    private boolean append(final String key, final ByteBuffer record, final long timestamp, @Nullable final Location expected) throws IOException {
+        writeLock.lock();
+        try {
+            if (expected != null && !expected.equals(index.get(key))) {
+                return false;
+            }
+
+            index(key, write(record, timestamp));
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Copy a tombstone made by compaction, if the key has not been written or deleted again since.
+     */
+    private void appendTombstone(final String key, final ByteBuffer record, final Location expected) throws IOException {
+        writeLock.lock();
+        try {
+            if (expected.equals(tombstones.get(key))) {
+                tombstone(key, write(record, 0));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Write a record to the active segment, starting a new segment if the active one is full. The caller must hold
+     * the write lock.
+     */
+    private Location write(final ByteBuffer record, final long timestamp) throws IOException {
+        Segment segment = Objects.requireNonNull(activeSegment);
+        if (segment.size.get() > 0 && segment.size.get() + record.remaining() > maxSegmentBytes) {
+            segment.channel.force(false);
+            segment = createSegment(segment.id + 1);
+            activeSegment = segment;
+        }
+
+        final long offset = segment.size.get();
+        final int length = record.remaining();
+        while (record.hasRemaining()) {
+            segment.channel.write(record, offset + record.position());
+        }
+        segment.size.addAndGet(length);
+
+        return new Location(segment.id, offset, length, timestamp);
+    }
+
+    /**
+     * Drop expired entries from the index, then rewrite the live records of any sealed segment whose live bytes
+     * have fallen below the configured ratio, and delete the old segment.
+     *
+     * @return The number of segments that were removed
+     */
+    int compact() {
+        if (!compactionLock.tryLock()) {
+            return 0;
+        }
+
+        try {
+            final long now = Instant.now().getEpochSecond();
+
+            // An older record for an expired key may still be in another segment, so a tombstone is written
+            for (final Map.Entry<String, Location> entry : List.copyOf(index.entrySet())) {
+                if (entry.getValue().isExpired(now)) {
+                    Try.run(() -> removeExpired(entry.getKey(), entry.getValue()))
+                            .onFailure(ex -> logger.warning("Failed to remove expired key: " + ex.getMessage()));
+                }
+            }
+
+            final Segment active = Objects.requireNonNull(activeSegment);
+            final List<Segment> candidates = segments.values().stream()
+                    .filter(segment -> segment.id != active.id)
+                    .filter(segment -> segment.size.get() == 0
+                            || (double) segment.liveBytes.get() / segment.size.get() < compactionLiveRatio)
+                    .sorted(Comparator.comparingInt(segment -> segment.id))
+                    .toList();
+
+            int removed = 0;
+            for (final Segment segment : candidates) {
+                if (Try.run(() -> compactSegment(segment)).onFailure(ex -> logger.warning("Failed to compact " + segment.path + ": " + ex.getMessage())).isSuccess()) {
+                    removed++;
+                }
+            }
+
+            compactedSegments.addAndGet(removed);
+            return removed;
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Copy a record to the active segment, if the key still points to it.
+     *
+     * @return true if the record was copied
+     */
+    boolean copy(final String key, final Location expected) throws IOException {
+        final Segment segment = segments.get(expected.segment());
+        if (segment == null) {
+            return false;
+        }
+
+        return append(key, readRecord(segment, expected), expected.timestamp(), expected);
+    }
+
+    private void removeExpired(final String key, final Location expected) throws IOException {
+        writeLock.lock();
+        try {
+            if (expected.equals(index.get(key))) {
+                tombstone(key, write(encodeMarker(key, TOMBSTONE), 0));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void compactSegment(final Segment segment) throws IOException {
+        final List<Map.Entry<String, Location>> live = index.entrySet().stream()
+                .filter(entry -> entry.getValue().segment() == segment.id)
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue()))
+                .toList();
+
+        for (final Map.Entry<String, Location> entry : live) {
+            copy(entry.getKey(), entry.getValue());
+        }
+
+        // A tombstone is only needed while an older segment may hold a record for its key
+        final boolean olderSegments = segments.keySet().stream().anyMatch(id -> id < segment.id);
+        final List<Map.Entry<String, Location>> liveTombstones = tombstones.entrySet().stream()
+                .filter(entry -> entry.getValue().segment() == segment.id)
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue()))
+                .toList();
+
+        for (final Map.Entry<String, Location> entry : liveTombstones) {
+            if (olderSegments) {
+                appendTombstone(entry.getKey(), readRecord(segment, entry.getValue()), entry.getValue());
+            } else if (tombstones.remove(entry.getKey(), entry.getValue())) {
+                release(entry.getValue());
+            }
+        }
+
+        // Make sure the copies are durable before the originals go away
+        writeLock.lock();
+        try {
+            Objects.requireNonNull(activeSegment).channel.force(false);
+        } finally {
+            writeLock.unlock();
+        }
+
+        segments.remove(segment.id);
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+    }
+
+    private static ByteBuffer readRecord(final Segment segment, final Location location) throws IOException {
+        final ByteBuffer record = ByteBuffer.allocate(location.length());
+        while (record.hasRemaining()) {
+            if (segment.channel.read(record, location.offset() + record.position()) < 0) {
+                throw new EOFException("Unexpected end of segment " + segment.path);
+            }
+        }
+        return record.flip();
+    }
+
+    Optional<Location> getLocation(final String key) {
+        return Optional.ofNullable(index.get(key));
+    }
+
+    /**
+     * @return The keys that have a value, including expired values that have not been compacted yet
+     */
+    Set<String> keys() {
+        return Set.copyOf(index.keySet());
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    long totalBytes() {
+        return segments.values().stream().mapToLong(segment -> segment.size.get()).sum();
+    }
+
+    long liveBytes() {
+        return segments.values().stream().mapToLong(segment -> segment.liveBytes.get()).sum();
+    }
+
+    long getCompactedSegments() {
+        return compactedSegments.get();
+    }
+
+    long getTruncatedBytes() {
+        return truncatedBytes.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            for (final Segment segment : segments.values()) {
+                Try.run(() -> segment.channel.force(false));
+                segment.channel.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
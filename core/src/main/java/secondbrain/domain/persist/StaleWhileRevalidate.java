@@ -0,0 +1,79 @@
+package secondbrain.domain.persist;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import secondbrain.domain.concurrency.SharedVirtualThreadExecutor;
+import secondbrain.domain.exceptionhandling.ExceptionHandler;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Refreshes stale cache entries in the background. Only one refresh runs at a time for any given key, so a burst of
+ * requests for an expired entry results in a single call to the external API.
+ */
+@ApplicationScoped
+public class StaleWhileRevalidate {
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> staleServes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> refreshes = new ConcurrentHashMap<>();
+
+    @Inject
+    private SharedVirtualThreadExecutor sharedVirtualThreadExecutor;
+
+    @Inject
+    private ExceptionHandler exceptionHandler;
+
+    @Inject
+    private Logger logger;
+
+    @PreDestroy
+    private void shutdown() {
+        staleServes.forEach((tool, count) -> logger.info("Stale cache entries served for tool " + tool + ": "
+                + count.get() + ", background refreshes: " + getRefreshes(tool)));
+    }
+
+    /**
+     * Record that a stale value was returned, and refresh it unless a refresh of the same key is already running.
+     *
+     * @param tool    The name of the tool
+     * @param key     A key identifying the cache entry
+     * @param refresh Generates and saves a new value
+     */
+    public void refresh(final String tool, final String key, final Runnable refresh) {
+        staleServes.computeIfAbsent(tool, t -> new AtomicInteger()).incrementAndGet();
+
+        if (!refreshing.add(key)) {
+            return;
+        }
+
+        logger.fine("Refreshing stale cache entry for tool " + tool + " key " + key);
+        refreshes.computeIfAbsent(tool, t -> new AtomicInteger()).incrementAndGet();
+
+        sharedVirtualThreadExecutor.getExecutor().submit(() -> {
+            try {
+                refresh.run();
+            } catch (final Exception ex) {
+                logger.warning("Failed to refresh stale cache entry for tool " + tool + ": " + exceptionHandler.getExceptionMessage(ex));
+            } finally {
+                refreshing.remove(key);
+            }
+        });
+    }
+
+    public int getStaleServes(final String tool) {
+        return staleServes.getOrDefault(tool, new AtomicInteger()).get();
+    }
+
+    public int getRefreshes(final String tool) {
+        return refreshes.getOrDefault(tool, new AtomicInteger()).get();
+    }
+
+    public boolean isRefreshing(final String key) {
+        return refreshing.contains(key);
+    }
+}
@@ -0,0 +1,45 @@
+package secondbrain.domain.persist;
+
+import org.jspecify.annotations.Nullable;
+import secondbrain.domain.exceptions.LocalStorageFailure;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The maintenance operations of a local storage provider that can not enumerate the values it holds.
+ * Every operation fails with a message naming the provider.
+ */
+class UnsupportedLocalStorageMaintenance implements LocalStorageMaintenance {
+    private final String provider;
+
+    UnsupportedLocalStorageMaintenance(final String provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public List<String> getTools() {
+        throw unsupported("listing tools");
+    }
+
+    @Override
+    public List<String> sampleValues(final String tool, final int count) {
+        throw unsupported("sampling values");
+    }
+
+    @Override
+    public long exportSnapshot(final Path file, final List<String> tools, @Nullable final Instant createdAfter, @Nullable final Instant createdBefore) {
+        throw unsupported("exporting snapshots");
+    }
+
+    @Override
+    public long importSnapshot(final Path file) {
+        throw unsupported("importing snapshots");
+    }
+
+    private LocalStorageFailure unsupported(final String operation) {
+        return new LocalStorageFailure("The " + provider + " local storage provider does not support " + operation
+                + ". Set sb.localstorage.provider to h2 to use this command.");
+    }
+}
@@ -0,0 +1,35 @@
+package secondbrain.domain.persist.config;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Optional;
+
+/**
+ * The time to live of cached empty results. Empty results are cheap to regenerate once the data exists,
+ * so they are kept for less time than regular results.
+ */
+@ApplicationScoped
+public class LocalStorageNegativeCacheTtl {
+    private static final long DEFAULT_NEGATIVE_TTL_SECONDS = 3600;
+
+    @Inject
+    @ConfigProperty(name = "sb.cache.negativettl")
+    private Optional<String> negativeTtl;
+
+    public long getNegativeTtl() {
+        return Math.max(1, NumberUtils.toLong(negativeTtl.orElse(DEFAULT_NEGATIVE_TTL_SECONDS + ""), DEFAULT_NEGATIVE_TTL_SECONDS));
+    }
+
+    /**
+     * @param ttlSeconds The TTL of a regular result, where 0 or less means the result does not expire
+     * @return The TTL to use for an empty result
+     */
+    public long getNegativeTtl(final long ttlSeconds) {
+        return ttlSeconds > 0
+                ? Math.min(ttlSeconds, getNegativeTtl())
+                : getNegativeTtl();
+    }
+}
@@ -0,0 +1,44 @@
+package secondbrain.domain.persist.config;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Tools that can return expired cache entries while the entry is refreshed in the background.
+ * The setting is a comma separated list of tool names and grace periods in seconds, for example
+ * "ZenDeskOrganization:3600,SlackSearch:600". A tool with no grace period uses one day.
+ */
+@ApplicationScoped
+public class LocalStorageStaleWhileRevalidateTool {
+    private static final long DEFAULT_GRACE_SECONDS = 86400;
+
+    @Inject
+    @ConfigProperty(name = "sb.cache.stalewhilerevalidatetool")
+    private Optional<String> staleWhileRevalidateTool;
+
+    /**
+     * @return The number of seconds after expiry that an entry can still be served, or 0 if stale entries are
+     * never served for the tool
+     */
+    public long getGracePeriod(final String toolName) {
+        if (StringUtils.isBlank(toolName) || staleWhileRevalidateTool.isEmpty()) {
+            return 0;
+        }
+
+        return Arrays.stream(staleWhileRevalidateTool.get().split(","))
+                .map(String::trim)
+                .filter(entry -> toolName.equals(StringUtils.substringBefore(entry, ":")))
+                .map(entry -> entry.contains(":")
+                        ? NumberUtils.toLong(StringUtils.substringAfter(entry, ":"), DEFAULT_GRACE_SECONDS)
+                        : DEFAULT_GRACE_SECONDS)
+                .map(grace -> Math.max(0, grace))
+                .findFirst()
+                .orElse(0L);
+    }
+}
@@ -1,5 +1,9 @@
 package secondbrain.domain.zip;
 
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdInputStream;
 import io.smallrye.common.annotation.Identifier;
 import io.vavr.control.Try;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -12,24 +16,30 @@ import secondbrain.domain.persist.TimedOperation;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.Optional;
 import java.util.logging.Logger;
 
 /**
  * A Zipper implementation that uses Apache Commons Compress to perform ZStd compression and decompression.
  * The compressed data is encoded in Base64 to ensure safe string representation.
+ * Values compressed for a tool with a trained dictionary record the dictionary id in the zstd frame header.
  */
 @ApplicationScoped
 @Identifier("ApacheCommonsZStdZipper")
 public class ApacheCommonsZStdZipper implements Zipper {
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
-    private static final int ZSTD_COMPRESSION_LEVEL = 1;
+    static final int ZSTD_COMPRESSION_LEVEL = 1;
 
     @Inject
     private Logger logger;
 
+    @Inject
+    private ZstdDictionaries zstdDictionaries;
+
     @Override
     public String compressString(final String data) {
         return Try.withResources(() -> new TimedOperation("text compression"))
@@ -39,6 +49,35 @@ public class ApacheCommonsZStdZipper implements Zipper {
 
     @Nullable
     private String compressStringTimed(final String data) {
+        final byte[] compressed = compressBytesTimed(data);
+        return compressed == null ? null : Base64.getEncoder().encodeToString(compressed);
+    }
+
+    @Override
+    public byte @Nullable [] compressBytes(final String data) {
+        return Try.withResources(() -> new TimedOperation("binary compression"))
+                .of(t -> compressBytesTimed(data))
+                .get();
+    }
+
+    @Override
+    public byte @Nullable [] compressBytes(final String data, final String tool) {
+        if (StringUtils.isEmpty(data)) {
+            return null;
+        }
+
+        final Optional<ZstdDictCompress> dictionary = zstdDictionaries.getCompressDictionary(tool);
+        if (dictionary.isEmpty()) {
+            return compressBytes(data);
+        }
+
+        return Try.withResources(() -> new TimedOperation("dictionary compression"))
+                .of(t -> Zstd.compress(data.getBytes(DEFAULT_CHARSET), dictionary.get()))
+                .onFailure(ex -> logger.warning("Failed to compress data with dictionary: " + ex.getMessage()))
+                .get();
+    }
+
+    private byte @Nullable [] compressBytesTimed(final String data) {
         if (StringUtils.isEmpty(data)) {
             return null;
         }
@@ -48,7 +87,6 @@ public class ApacheCommonsZStdZipper implements Zipper {
                         .of(zcos -> writeStream(zcos, bos, data))
                         .get())
                 .map(ByteArrayOutputStream::toByteArray)
-                .map(bytes -> Base64.getEncoder().encodeToString(bytes))
                 .onFailure(ex -> logger.warning("Failed to compress data: " + ex.getMessage()))
                 .get();
     }
@@ -66,7 +104,27 @@ public class ApacheCommonsZStdZipper implements Zipper {
             return null;
         }
 
-        final byte[] decoded = Base64.getDecoder().decode(compressedData);
+        return decompressBytesTimed(Base64.getDecoder().decode(compressedData));
+    }
+
+    @Override
+    @Nullable
+    public String decompressBytes(final byte[] compressedData) {
+        return Try.withResources(() -> new TimedOperation("binary decompression"))
+                .of(t -> decompressBytesTimed(compressedData))
+                .get();
+    }
+
+    @Nullable
+    private String decompressBytesTimed(final byte @Nullable [] decoded) {
+        if (decoded == null || decoded.length == 0) {
+            return null;
+        }
+
+        final long dictionaryId = Zstd.getDictIdFromFrame(decoded);
+        if (dictionaryId != 0) {
+            return decompressWithDictionary(decoded, dictionaryId);
+        }
 
         final byte[] uncompressed = Try.withResources(() -> new ByteArrayInputStream(decoded), ByteArrayOutputStream::new)
                 .of((bis, bos) -> Try.withResources(() -> new ZstdCompressorInputStream(bis))
@@ -79,6 +137,60 @@ public class ApacheCommonsZStdZipper implements Zipper {
         return new String(uncompressed, DEFAULT_CHARSET);
     }
 
+    /**
+     * Values are decompressed as they are read, which zstd supports with or without a dictionary.
+     */
+    @Override
+    @Nullable
+    public InputStream decompressStream(final byte[] compressedData) {
+        if (compressedData.length == 0) {
+            return null;
+        }
+
+        final long dictionaryId = Zstd.getDictIdFromFrame(compressedData);
+        if (dictionaryId == 0) {
+            return Try.of(() -> new ZstdInputStream(new ByteArrayInputStream(compressedData))).get();
+        }
+
+        final Optional<ZstdDictDecompress> dictionary = zstdDictionaries.getDecompressDictionary(dictionaryId);
+        if (dictionary.isEmpty()) {
+            logger.warning("The zstd dictionary " + dictionaryId + " was not found, so the cached value will be ignored");
+            return null;
+        }
+
+        return Try.of(() -> new ZstdInputStream(new ByteArrayInputStream(compressedData)).setDict(dictionary.get())).get();
+    }
+
+    /**
+     * A value compressed with a dictionary that has since been deleted can't be read. It is treated as a cache
+     * miss, so the value is generated and saved again.
+     */
+    @Nullable
+    private String decompressWithDictionary(final byte[] decoded, final long dictionaryId) {
+        final Optional<ZstdDictDecompress> maybeDictionary = zstdDictionaries.getDecompressDictionary(dictionaryId);
+        if (maybeDictionary.isEmpty()) {
+            logger.warning("The zstd dictionary " + dictionaryId + " was not found, so the cached value will be ignored");
+            return null;
+        }
+
+        final ZstdDictDecompress dictionary = maybeDictionary.get();
+
+        // Frames compressed in a single call record their size, so they can be decompressed without streaming
+        final long size = Zstd.getFrameContentSize(decoded);
+        if (size > 0 && size <= Integer.MAX_VALUE) {
+            return new String(Zstd.decompress(decoded, dictionary, (int) size), DEFAULT_CHARSET);
+        }
+
+        final byte[] uncompressed = Try.withResources(() -> new ZstdInputStream(new ByteArrayInputStream(decoded)).setDict(dictionary), ByteArrayOutputStream::new)
+                .of((zis, bos) -> {
+                    zis.transferTo(bos);
+                    return bos.toByteArray();
+                })
+                .get();
+
+        return new String(uncompressed, DEFAULT_CHARSET);
+    }
+
     private ByteArrayOutputStream writeStream(final ZstdCompressorOutputStream zcos, final ByteArrayOutputStream bos, final String data) throws Exception {
         zcos.write(data.getBytes(DEFAULT_CHARSET));
         return bos;
@@ -1,7 +1,48 @@
 package secondbrain.domain.zip;
 
+import org.jspecify.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
 public interface Zipper {
     String compressString(String data);
 
     String decompressString(String compressedData);
+
+    /**
+     * Compress a string to raw bytes, for storage that supports binary values.
+     */
+    default byte @Nullable [] compressBytes(final String data) {
+        final String compressed = compressString(data);
+        return compressed == null ? null : Base64.getDecoder().decode(compressed);
+    }
+
+    /**
+     * Compress a string to raw bytes, using any compression settings specific to the tool that saved the value.
+     * Values compressed this way must still be readable with decompressBytes.
+     */
+    default byte @Nullable [] compressBytes(final String data, final String tool) {
+        return compressBytes(data);
+    }
+
+    /**
+     * Decompress raw bytes created by compressBytes.
+     */
+    @Nullable
+    default String decompressBytes(final byte[] compressedData) {
+        return decompressString(Base64.getEncoder().encodeToString(compressedData));
+    }
+
+    /**
+     * Decompress raw bytes created by compressBytes as a stream of UTF-8 bytes, so a large value can be read
+     * without holding all of it in memory.
+     */
+    @Nullable
+    default InputStream decompressStream(final byte[] compressedData) {
+        final String value = decompressBytes(compressedData);
+        return value == null ? null : new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -0,0 +1,166 @@
+package secondbrain.domain.zip;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import io.vavr.control.Try;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jspecify.annotations.Nullable;
+import secondbrain.domain.exceptionhandling.ExceptionHandler;
+import secondbrain.domain.persist.config.LocalStorageCacheDirectory;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Manages zstd dictionaries trained from sample values of each tool. Small values with a shared structure,
+ * like JSON tickets or messages, compress much better with a dictionary than on their own.
+ * <p>
+ * Dictionaries are saved as files named after the tool and the dictionary id. zstd writes the dictionary id
+ * into the header of each frame, so values are decompressed with the dictionary they were compressed with,
+ * even after a tool's dictionary has been retrained. Old dictionaries must therefore be kept as long as
+ * values compressed with them are cached.
+ * <p>
+ * Decompression only uses the id, never the tool. Deduplicated values are shared between tools, so a value
+ * compressed with one tool's dictionary is often read by another tool.
+ */
+@ApplicationScoped
+public class ZstdDictionaries {
+    private static final String DICTIONARY_DIRECTORY = "zstd-dictionaries";
+    private static final String DICTIONARY_EXTENSION = ".dict";
+
+    private final Map<String, ZstdDictCompress> compressDictionaries = new ConcurrentHashMap<>();
+    private final Map<Long, ZstdDictDecompress> decompressDictionaries = new ConcurrentHashMap<>();
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private ExceptionHandler exceptionHandler;
+
+    @Inject
+    private LocalStorageCacheDirectory localStorageCacheDirectory;
+
+    /**
+     * Set to false to compress new values without a dictionary. Existing dictionaries are still loaded so
+     * values compressed with them can be read.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.zstd.dictionaries", defaultValue = "true")
+    private Boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "sb.zstd.dictionarysize", defaultValue = "16384")
+    private Integer dictionarySize;
+
+    @PostConstruct
+    private void init() {
+        Try.withResources(() -> Files.list(getDirectory()))
+                .of(files -> files
+                        .filter(file -> file.getFileName().toString().endsWith(DICTIONARY_EXTENSION))
+                        // Load the newest files last so they become the active dictionary for their tool
+                        .sorted(Comparator.comparingLong(file -> file.toFile().lastModified()))
+                        .toList())
+                .onSuccess(files -> files.forEach(this::load))
+                .onFailure(ex -> logger.fine("No zstd dictionaries were loaded: " + exceptionHandler.getExceptionMessage(ex)));
+    }
+
+    /**
+     * Get the dictionary used to compress new values for a tool.
+     */
+    public Optional<ZstdDictCompress> getCompressDictionary(final String tool) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(compressDictionaries.get(getFileTool(tool)));
+    }
+
+    /**
+     * Get the dictionary that a value was compressed with. Dictionaries trained by another process sharing the
+     * cache directory since this one started are loaded from their file.
+     *
+     * @param dictionaryId The dictionary id read from the frame header
+     */
+    public Optional<ZstdDictDecompress> getDecompressDictionary(final long dictionaryId) {
+        return Optional.ofNullable(decompressDictionaries.computeIfAbsent(dictionaryId, this::loadDecompressDictionary));
+    }
+
+    @Nullable
+    private ZstdDictDecompress loadDecompressDictionary(final long dictionaryId) {
+        final String suffix = "-" + dictionaryId + DICTIONARY_EXTENSION;
+        return Try.withResources(() -> Files.list(getDirectory()))
+                .of(files -> files
+                        .filter(file -> file.getFileName().toString().endsWith(suffix))
+                        .findFirst())
+                .mapTry(file -> file.isPresent() ? new ZstdDictDecompress(Files.readAllBytes(file.get())) : null)
+                .onFailure(ex -> logger.fine("Failed to load zstd dictionary " + dictionaryId + ": " + exceptionHandler.getExceptionMessage(ex)))
+                .getOrNull();
+    }
+
+    /**
+     * Train a new dictionary for a tool, save it, and use it to compress new values for the tool.
+     *
+     * @param tool    The name of the tool
+     * @param samples Sample values saved by the tool
+     * @return The id of the new dictionary
+     */
+    public long train(final String tool, final List<String> samples) {
+        final List<byte[]> sampleBytes = samples.stream()
+                .map(sample -> sample.getBytes(StandardCharsets.UTF_8))
+                .toList();
+
+        // The trainer needs a buffer big enough to hold all the samples
+        final int sampleBufferSize = Math.max(1, sampleBytes.stream().mapToInt(bytes -> bytes.length).sum());
+        final ZstdDictTrainer trainer = new ZstdDictTrainer(sampleBufferSize, dictionarySize);
+        sampleBytes.forEach(trainer::addSample);
+
+        final byte[] dictionary = trainer.trainSamples();
+        final long dictionaryId = Zstd.getDictIdFromDict(dictionary);
+
+        final Path file = Try.run(() -> Files.createDirectories(getDirectory()))
+                .mapTry(v -> Files.write(
+                        getDirectory().resolve(getFileTool(tool) + "-" + dictionaryId + DICTIONARY_EXTENSION),
+                        dictionary))
+                .get();
+
+        load(file);
+
+        logger.info("Trained zstd dictionary " + dictionaryId + " for " + tool + " from " + samples.size() + " samples");
+
+        return dictionaryId;
+    }
+
+    private void load(final Path file) {
+        Try.of(() -> Files.readAllBytes(file))
+                .onSuccess(dictionary -> {
+                    final String fileName = file.getFileName().toString();
+                    final String tool = fileName.substring(0, Math.max(0, fileName.lastIndexOf('-')));
+                    decompressDictionaries.put(Zstd.getDictIdFromDict(dictionary), new ZstdDictDecompress(dictionary));
+                    compressDictionaries.put(tool, new ZstdDictCompress(dictionary, ApacheCommonsZStdZipper.ZSTD_COMPRESSION_LEVEL));
+                })
+                .onFailure(ex -> logger.warning("Failed to load zstd dictionary " + file + ": " + exceptionHandler.getExceptionMessage(ex)));
+    }
+
+    private Path getDirectory() {
+        return Path.of(localStorageCacheDirectory.getCacheDirectory(), DICTIONARY_DIRECTORY);
+    }
+
+    /**
+     * Tool names are used in file names, and the dash separates the tool from the dictionary id.
+     */
+    private static String getFileTool(final String tool) {
+        return tool.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+}
@@ -20,6 +20,9 @@ import secondbrain.domain.exceptions.*;
 import secondbrain.domain.httpclient.TimeoutHttpClientCaller;
 import secondbrain.domain.injection.Preferred;
 import secondbrain.domain.json.JsonDeserializerJackson;
+import secondbrain.domain.limit.CompressionResult;
+import secondbrain.domain.limit.DocumentCompressor;
+import secondbrain.domain.limit.DocumentDeduplicator;
 import secondbrain.domain.limit.ListLimiter;
 import secondbrain.domain.list.StringToList;
 import secondbrain.domain.mutex.Semaphore;
@@ -38,12 +41,14 @@ import secondbrain.infrastructure.azure.api.PromptTextGenerator;
 import secondbrain.infrastructure.llm.LlmClient;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.google.common.base.Preconditions.*;
 
@@ -74,6 +79,11 @@ public class AzureClient implements LlmClient {
      * This is the default model.
      */
     private static final String DEFAULT_MODEL = "Phi-4";
+    /**
+     * The metadata holding the rating assigned to a document by the rating tool, from 0 to 10.
+     */
+    private static final String FILTER_RATING_META = "FilterRating";
+    private static final int MAX_RATING = 10;
     private static final int DEFAULT_CACHE_TTL_DAYS = 365;
     private static final int API_CALL_TIMEOUT_SECONDS_DEFAULT = 60 * 10; // I've seen "Time to last byte" take at least 8 minutes, so we need a large buffer.
     private static final long TIMEOUT_API_CALL_DELAY_SECONDS_DEFAULT = 30;
@@ -149,6 +159,14 @@ public class AzureClient implements LlmClient {
     @ConfigProperty(name = "sb.azurellm.disableToolWriteCache", defaultValue = "")
     private Optional<String> disableToolWriteCache;
 
+    /**
+     * When enabled, documents that do not fit in the context window keep the sentences most similar to the prompt,
+     * rather than being cut off at the end.
+     */
+    @Inject
+    @ConfigProperty(name = "sb.azurellm.compressContext", defaultValue = "false")
+    private Boolean compressContext;
+
     @Inject
     @ConfigProperty(name = "sb.azurellm.lock", defaultValue = "sb_azure.lock")
     private String lockFile;
@@ -181,8 +199,15 @@ public class AzureClient implements LlmClient {
     private Logger logger;
 
     @Inject
+    @Preferred
     private ListLimiter listLimiter;
 
+    @Inject
+    private DocumentCompressor documentCompressor;
+
+    @Inject
+    private DocumentDeduplicator documentDeduplicator;
+
     @Inject
     @Preferred
     private LocalStorage localStorage;
@@ -260,24 +285,32 @@ public class AzureClient implements LlmClient {
 
         final int maxChars = getMaxChars(modelContextWindow);
 
+        // Near duplicate documents are not sent to the LLM, but are still returned for annotations and links
+        final List<RagDocumentContext<T>> llmDocs = documentDeduplicator.deduplicate(ragDocs.getIndividualContexts(), tool);
+
         // No individual context can be longer than the maxChars.
         // This ensures we always have at least some context available.
-        final List<RagDocumentContext<T>> trimmedItems = ragDocs.getIndividualContexts().stream()
+        final List<RagDocumentContext<T>> trimmedItems = llmDocs.stream()
                 .map(ragDoc -> ragDoc.updateDocument(ragDoc.document().substring(0, Math.min(maxChars, ragDoc.document().length()))))
                 .toList();
 
-        // Limit the total size of the context messages to maxChars
+        // Limit the total size of the context messages to maxChars, keeping the highest rated documents
         final List<RagDocumentContext<T>> trimmedList = listLimiter.limitListContent(trimmedItems,
                 RagDocumentContext::document,
+                this::getRelevance,
                 maxChars);
 
         final List<CacheResult<String>> responses = ragDocs.getPrompts()
                 .stream()
                 .map(prompt -> {
+                    final List<RagDocumentContext<T>> promptContext = Boolean.TRUE.equals(compressContext)
+                            ? compressDocuments(llmDocs, prompt, getContextTokens(modelContextWindow, ragDocs.instructions(), prompt))
+                            : trimmedList;
+
                     final List<AzureRequestMessage> messages = new ArrayList<>();
                     messages.add(new AzureRequestMessage("system", ragDocs.instructions()));
 
-                    messages.addAll(trimmedList.stream()
+                    messages.addAll(promptContext.stream()
                             .map(ragDoc -> new AzureRequestMessage(
                                     "user",
                                     ragDoc.contextLabel() + ": " + ragDoc.document()))
@@ -504,6 +537,57 @@ public class AzureClient implements LlmClient {
                 .getOrElse(maxInputTokens);
     }
 
+    /**
+     * Compresses the documents to share the context window. Documents are compressed from the smallest to the
+     * largest, so any budget left over by the small documents is shared with the larger ones.
+     */
+    private <T> List<RagDocumentContext<T>> compressDocuments(final List<RagDocumentContext<T>> ragDocs,
+                                                               final String prompt,
+                                                               final int contextTokens) {
+        final List<Integer> smallestFirst = IntStream.range(0, ragDocs.size())
+                .boxed()
+                .sorted(Comparator.comparingInt(index -> StringUtils.length(ragDocs.get(index).document())))
+                .toList();
+
+        final List<RagDocumentContext<T>> compressed = new ArrayList<>(ragDocs);
+        int remainingTokens = contextTokens;
+        int savedTokens = 0;
+        for (int i = 0; i < smallestFirst.size(); ++i) {
+            final int index = smallestFirst.get(i);
+            final int budget = remainingTokens / (smallestFirst.size() - i);
+            final CompressionResult result = documentCompressor.compressDocument(ragDocs.get(index).document(), prompt, budget);
+            compressed.set(index, ragDocs.get(index).updateDocument(result.document()));
+            remainingTokens -= result.compressedTokens();
+            savedTokens += result.savedTokens();
+        }
+
+        if (savedTokens != 0) {
+            logger.info("Compressed the context by an estimated " + savedTokens + " tokens");
+        }
+
+        // The token estimate of the compressor may differ from our own, so make sure the context still fits
+        return listLimiter.limitListContent(compressed, RagDocumentContext::document, this::getRelevance, getMaxChars(contextTokens));
+    }
+
+    /**
+     * The system instructions and the prompt are sent with the documents, so they share the context window.
+     */
+    private int getContextTokens(final int modelContextWindow, final String instructions, final String prompt) {
+        return Math.max(0, modelContextWindow - estimateTokens(instructions) - estimateTokens(prompt));
+    }
+
+    private int estimateTokens(final String text) {
+        return (int) Math.ceil(StringUtils.length(text) / DEFAULT_CHARS_PER_INPUT_TOKENS);
+    }
+
+    /**
+     * Documents that were rated by the rating tool are ranked by their rating. Unrated documents are given the
+     * highest rating, as they were never filtered.
+     */
+    private double getRelevance(final RagDocumentContext<?> ragDoc) {
+        return ragDoc.getMetadata().getIntValueByName(FILTER_RATING_META, MAX_RATING);
+    }
+
     private int getMaxChars(final Integer modelContextWindow) {
         return (int) (modelContextWindow * DEFAULT_CHARS_PER_INPUT_TOKENS);
     }
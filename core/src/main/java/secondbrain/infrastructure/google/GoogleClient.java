@@ -12,10 +12,12 @@ import org.apache.commons.lang3.math.NumberUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import secondbrain.domain.constants.Constants;
 import secondbrain.domain.web.ClientConstructor;
+import secondbrain.domain.context.RagDocumentContext;
 import secondbrain.domain.context.RagMultiDocumentContext;
 import secondbrain.domain.exceptions.Timeout;
 import secondbrain.domain.httpclient.TimeoutHttpClientCaller;
 import secondbrain.domain.injection.Preferred;
+import secondbrain.domain.limit.DocumentDeduplicator;
 import secondbrain.domain.persist.LocalStorage;
 import secondbrain.infrastructure.google.api.*;
 import secondbrain.infrastructure.llm.LlmClient;
@@ -84,6 +86,9 @@ public class GoogleClient implements LlmClient {
     @Inject
     private ClientConstructor clientConstructor;
 
+    @Inject
+    private DocumentDeduplicator documentDeduplicator;
+
     @Override
     public String call(final String prompt, final Map<String, String> environmentSettings) {
         checkArgument(StringUtils.isNotBlank(prompt));
@@ -118,8 +123,11 @@ public class GoogleClient implements LlmClient {
         final String resolvedUrl = environmentSettings.getOrDefault(URL_OVERRIDE_ENV, this.url.orElse(""));
         final String resolvedModel = environmentSettings.getOrDefault(MODEL_OVERRIDE_ENV, this.model.orElse(DEFAULT_MODEL));
 
+        // Near duplicate documents are not sent to the LLM, but are still returned for annotations and links
+        final List<RagDocumentContext<T>> llmDocs = documentDeduplicator.deduplicate(ragDocs.getIndividualContexts(), tool);
+
         final List<String> responses = ragDocs.getPrompts().stream().map(prompt -> {
-            final List<GoogleRequestContentsParts> parts = ragDocs.getIndividualContexts().stream()
+            final List<GoogleRequestContentsParts> parts = llmDocs.stream()
                     .map(ragDoc -> new GoogleRequestContentsParts(ragDoc.contextLabel() + ": " + ragDoc.document()))
                     .collect(Collectors.toCollection(ArrayList::new));
 
@@ -21,6 +21,7 @@ import secondbrain.domain.exceptions.FailedOllama;
 import secondbrain.domain.exceptions.InvalidResponse;
 import secondbrain.domain.exceptions.MissingResponse;
 import secondbrain.domain.injection.Preferred;
+import secondbrain.domain.limit.DocumentDeduplicator;
 import secondbrain.domain.persist.LocalStorage;
 import secondbrain.domain.prompt.PromptBuilder;
 import secondbrain.domain.prompt.PromptBuilderSelector;
@@ -87,6 +88,9 @@ public class OllamaClient implements LlmClient {
     @Inject
     private TimeoutService timeoutService;
 
+    @Inject
+    private DocumentDeduplicator documentDeduplicator;
+
     private synchronized OllamaResponse callOllama(final Client client, final OllamaGenerateBody body) {
         return callOllama(client, body, 0);
     }
@@ -121,8 +125,12 @@ public class OllamaClient implements LlmClient {
         final Integer contextWindow = modelConfig.getCalculatedContextWindow(environmentSettings);
         final String resolvedUri = environmentSettings.getOrDefault(LlmClient.URL_OVERRIDE_ENV, uri);
 
+        // Near duplicate documents are not sent to the LLM, but are still returned for annotations and links
+        final RagMultiDocumentContext<T> llmDoc = ragDoc.updateIndividualContexts(
+                documentDeduplicator.deduplicate(ragDoc.getIndividualContexts(), tool));
+
         final List<String> responses = ragDoc.getPrompts().stream().map(prompt -> {
-            final String fullPrompt = getPromptFromDocument(ragDoc, prompt);
+            final String fullPrompt = getPromptFromDocument(llmDoc, prompt);
 
             final String promptHash = DigestUtils.sha256Hex(fullPrompt + model + contextWindow + resolvedUri);
 
@@ -132,7 +140,7 @@ public class OllamaClient implements LlmClient {
                             promptHash,
                             NumberUtils.toInt(ttlDays, DEFAULT_CACHE_TTL_DAYS) * 24 * 60 * 60L,
                             () -> {
-                                final RagMultiDocumentContext<T> response = callOllama(ragDoc, prompt, model, contextWindow, resolvedUri);
+                                final RagMultiDocumentContext<T> response = callOllama(llmDoc, prompt, model, contextWindow, resolvedUri);
                                 final String responseText = response.getResponse();
 
                                 // Don't cache errors
@@ -140,7 +148,7 @@ public class OllamaClient implements LlmClient {
                             }).result())
                     .filter(Objects::nonNull)
                     .onFailure(ex -> logger.warning("Ollama cache failure: " + ex.getMessage()))
-                    .map(result -> valueOrDefaultOnError(result, result, () -> callOllama(ragDoc, prompt, model, contextWindow, resolvedUri).getResponse()))
+                    .map(result -> valueOrDefaultOnError(result, result, () -> callOllama(llmDoc, prompt, model, contextWindow, resolvedUri).getResponse()))
                     .get();
         }).toList();
 
@@ -0,0 +1,100 @@
+package secondbrain.domain.concurrency;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+public class ResourcePoolTest {
+
+    @Test
+    public void testReuse() throws Exception {
+        final List<TestResource> created = new CopyOnWriteArrayList<>();
+        try (final ResourcePool<TestResource> pool = new ResourcePool<>(2, () -> add(created, new TestResource()))) {
+            for (int i = 0; i < 5; i++) {
+                try (final PooledResource<TestResource> resource = pool.lend()) {
+                    Assertions.assertNotNull(resource.get());
+                }
+            }
+
+            Assertions.assertEquals(1, pool.getCreated());
+            Assertions.assertEquals(5, pool.getBorrowed());
+            Assertions.assertEquals(0, pool.getWaits());
+        }
+
+        Assertions.assertTrue(created.getFirst().closed);
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        final AtomicInteger inUse = new AtomicInteger();
+        final AtomicInteger maxInUse = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        try (final ResourcePool<TestResource> pool = new ResourcePool<>(2, TestResource::new);
+             final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final List<Future<Object>> futures = IntStream.range(0, 8)
+                    .mapToObj(i -> executor.submit(() -> {
+                        start.await();
+                        try (final PooledResource<TestResource> resource = pool.lend()) {
+                            maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+                            Thread.sleep(50);
+                            inUse.decrementAndGet();
+                        }
+                        return null;
+                    }))
+                    .toList();
+
+            start.countDown();
+            for (final Future<Object> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+
+            Assertions.assertEquals(2, maxInUse.get());
+            Assertions.assertEquals(2, pool.getCreated());
+            Assertions.assertEquals(8, pool.getBorrowed());
+            Assertions.assertTrue(pool.getWaits() >= 6);
+            Assertions.assertTrue(pool.getMaxWaitMillis() > 0);
+        }
+    }
+
+    @Test
+    public void testFactoryFailure() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        try (final ResourcePool<TestResource> pool = new ResourcePool<>(1, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Failed to create resource");
+            }
+            return new TestResource();
+        })) {
+            Assertions.assertThrows(IllegalStateException.class, pool::lend);
+
+            // The failed attempt must not hold on to the only permit
+            try (final PooledResource<TestResource> resource = pool.lend()) {
+                Assertions.assertNotNull(resource.get());
+            }
+        }
+    }
+
+    private static TestResource add(final List<TestResource> created, final TestResource resource) {
+        created.add(resource);
+        return resource;
+    }
+
+    private static class TestResource implements AutoCloseable {
+        private boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -2,9 +2,7 @@ package secondbrain.domain.context;
 
 import org.junit.jupiter.api.Test;
 
-import java.util.List;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -20,8 +18,8 @@ class RagMultiDocumentContextTest {
         SentenceVectorizer sentenceVectorizer = new MockSentenceVectorizer();
 
         // Create individual contexts
-        final RagStringContext doc1 = new RagStringContext("This is a test document", new Vector(1d));
-        final RagStringContext doc2 = new RagStringContext("It contains multiple sentences", new Vector(2d));
+        final RagStringContext doc1 = new RagStringContext("This is a test document", new Vector(1d, 0d));
+        final RagStringContext doc2 = new RagStringContext("It contains multiple sentences", new Vector(0d, 1d));
 
         RagDocumentContext<String> context1 = new RagDocumentContext<>("test", "document", "This is a test document.", List.of(doc1), "doc1");
         RagDocumentContext<String> context2 = new RagDocumentContext<>("test", "document", "It contains multiple sentences.", List.of(doc2), "doc2");
@@ -69,12 +67,78 @@ class RagMultiDocumentContextTest {
         assertEquals(1, annotatedDocument.annotationCoverage());
     }
 
+    @Test
+    void testResponseSentencesAreVectorizedOnce() {
+        final CountingSentenceVectorizer sentenceVectorizer = new CountingSentenceVectorizer();
+
+        final RagDocumentContext<String> context1 = new RagDocumentContext<>("test", "document", "This is a test document.",
+                List.of(new RagStringContext("This is a test document", new Vector(1d, 0d))), "doc1");
+        final RagDocumentContext<String> context2 = new RagDocumentContext<>("test", "document", "It contains multiple sentences.",
+                List.of(new RagStringContext("It contains multiple sentences", new Vector(0d, 1d))), "doc2");
+        final RagDocumentContext<String> context3 = new RagDocumentContext<>("test", "document", "An unrelated sentence.",
+                List.of(new RagStringContext("An unrelated sentence", new Vector(-1d, -1d))), "doc3");
+
+        final RagMultiDocumentContext<String> multiContext = new RagMultiDocumentContext<String>(
+                null,
+                null,
+                List.of(context1, context2, context3),
+                null,
+                null,
+                null,
+                List.of("This is a test document after processing. It contains multiple sentences after processing."));
+
+        final Set<RagSentenceAndOriginal> annotations = multiContext.generateAnnotations(
+                0.8f, 3, new MockSentenceSplitter(), new CosineSimilarityCalculator(), sentenceVectorizer);
+
+        assertEquals(2, annotations.size());
+        // The splitter returns three response sentences, which are compared to three contexts
+        assertEquals(3, sentenceVectorizer.count);
+    }
+
+    @Test
+    void testDeferredVectorization() {
+        final HiddenTextSentenceVectorizer sentenceVectorizer = new HiddenTextSentenceVectorizer();
+
+        final RagDocumentContext<String> context = new RagDocumentContext<>("test", "document", "This is a test document.",
+                List.of(RagStringContext.deferred("This is a test document", "entity")), "doc1");
+        final RagMultiDocumentContext<String> multiContext = new RagMultiDocumentContext<String>(
+                null,
+                null,
+                List.of(context),
+                null,
+                null,
+                null,
+                List.of("This is a test document after processing."));
+
+        assertEquals(1, multiContext.countUnvectorizedSentences());
+        assertTrue(sentenceVectorizer.hiddenText.isEmpty());
+
+        final Set<RagSentenceAndOriginal> annotations = multiContext.generateAnnotations(
+                0.8f, 3, new MockSentenceSplitter(), new CosineSimilarityCalculator(), sentenceVectorizer);
+
+        // The context sentence was vectorized with its hidden text when the annotations were generated
+        assertEquals(List.of("entity"), sentenceVectorizer.hiddenText);
+        assertTrue(annotations.stream().anyMatch(e -> e.originalContext().equals("This is a test document")));
+
+        final RagMultiDocumentContext<String> vectorized = multiContext.vectorizeSentences(sentenceVectorizer);
+        assertEquals(0, vectorized.countUnvectorizedSentences());
+        assertEquals(1, multiContext.countUnvectorizedSentences());
+        assertEquals(vectorized, vectorized.vectorizeSentences(sentenceVectorizer));
+    }
+
     // Mock classes for dependencies
     static class MockSentenceSplitter implements SentenceSplitter {
         @Override
         public List<String> splitDocument(String document, int minWords) {
             return List.of("This is a test document after processing", "This is a test document after processing", "It contains multiple sentences after processing");
         }
+
+        @Override
+        public List<SentenceSpan> splitDocumentSpans(String document, int minWords) {
+            return splitDocument(document, minWords).stream()
+                    .map(sentence -> new SentenceSpan(sentence, 0, document.length()))
+                    .toList();
+        }
     }
 
     static class MockSimilarityCalculator implements SimilarityCalculator {
@@ -112,11 +176,11 @@ class RagMultiDocumentContextTest {
         @Override
         public RagStringContext vectorize(final String sentence) {
             if (sentence.equals("This is a test document after processing")) {
-                return new RagStringContext(sentence, new Vector(1d));  // Mock vector
+                return new RagStringContext(sentence, new Vector(1d, 0d));  // Mock vector
             }
 
             if (sentence.equals("It contains multiple sentences after processing")) {
-                return new RagStringContext(sentence, new Vector(2d));  // Mock vector
+                return new RagStringContext(sentence, new Vector(0d, 1d));  // Mock vector
             }
 
             return new RagStringContext(sentence, new Vector());  // Mock vector
@@ -134,4 +198,24 @@ class RagMultiDocumentContextTest {
                     .toList();
         }
     }
-}
\ No newline at end of file
+
+    static class HiddenTextSentenceVectorizer extends MockSentenceVectorizer {
+        private final List<String> hiddenText = new ArrayList<>();
+
+        @Override
+        public RagStringContext vectorize(final String text, final String hiddenText) {
+            this.hiddenText.add(hiddenText);
+            return new RagStringContext(text, new Vector(1d, 0d));
+        }
+    }
+
+    static class CountingSentenceVectorizer extends MockSentenceVectorizer {
+        private int count;
+
+        @Override
+        public RagStringContext vectorize(final String sentence) {
+            count++;
+            return super.vectorize(sentence);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package secondbrain.domain.context;
+
+import io.smallrye.config.inject.ConfigExtension;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import secondbrain.domain.concurrency.SharedVirtualThreadExecutor;
+import secondbrain.domain.exceptionhandling.LoggingExceptionHandler;
+import secondbrain.domain.injection.Preferred;
+import secondbrain.domain.json.JsonDeserializerJackson;
+import secondbrain.domain.logger.Loggers;
+import secondbrain.domain.persist.H2LocalStorage;
+import secondbrain.domain.persist.LocalStorage;
+import secondbrain.domain.sanitize.FinancialLocationContactRedaction;
+import secondbrain.domain.test.TestConfigUtil;
+import secondbrain.domain.zip.ApacheCommonsZStdZipper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+@SuppressWarnings("NullAway")
+@EnableAutoWeld
+@AddExtensions(ConfigExtension.class)
+@AddBeanClasses(SentenceVectorCache.class)
+@AddBeanClasses(SentenceVectorizationStatistics.class)
+@AddBeanClasses(H2LocalStorage.class)
+@AddBeanClasses(Loggers.class)
+@AddBeanClasses(LoggingExceptionHandler.class)
+@AddBeanClasses(JsonDeserializerJackson.class)
+@AddBeanClasses(FinancialLocationContactRedaction.class)
+@AddBeanClasses(ApacheCommonsZStdZipper.class)
+@AddBeanClasses(SharedVirtualThreadExecutor.class)
+class SentenceVectorCacheTest {
+
+    @Inject
+    private SentenceVectorCache sentenceVectorCache;
+
+    @Inject
+    private SentenceVectorizationStatistics sentenceVectorizationStatistics;
+
+    @Produces
+    @Preferred
+    public LocalStorage produceLocalStorage(final H2LocalStorage h2LocalStorage) {
+        return h2LocalStorage;
+    }
+
+    /**
+     * <a href="https://github.com/weld/weld-testing/issues/81#issuecomment-1564002983">...</a>
+     */
+    @BeforeEach
+    void updateConfig() {
+        TestConfigUtil.registerConfig(Map.of(
+                "sb.infrastructure.mock", "true",
+                "sb.cache.disable", "false"));
+    }
+
+    @Test
+    void testCachedDocumentIsNotEmbeddedAgain() {
+        final CountingSentenceVectorizer sentenceVectorizer = new CountingSentenceVectorizer(0);
+        final RagDocumentContext<Void> document = deferredDocument(3);
+
+        final RagDocumentContext<Void> first = sentenceVectorCache.vectorizeSentences(document, sentenceVectorizer);
+        Assertions.assertEquals(0, first.countUnvectorizedSentences());
+        Assertions.assertEquals(3, sentenceVectorizer.count.get());
+
+        // The document read from the tool's cache again still has deferred sentences
+        final long cached = sentenceVectorizationStatistics.getCached();
+        final RagDocumentContext<Void> second = sentenceVectorCache.vectorizeSentences(document, sentenceVectorizer);
+        Assertions.assertEquals(0, second.countUnvectorizedSentences());
+        Assertions.assertEquals(3, sentenceVectorizer.count.get());
+        Assertions.assertEquals(cached + 3, sentenceVectorizationStatistics.getCached());
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertArrayEquals(first.sentences().get(i).vector().value(), second.sentences().get(i).vector().value());
+        }
+    }
+
+    @Test
+    void testHiddenTextIsPartOfTheKey() {
+        final CountingSentenceVectorizer sentenceVectorizer = new CountingSentenceVectorizer(0);
+        final String sentence = "A sentence " + UUID.randomUUID();
+        final RagDocumentContext<Void> first = new RagDocumentContext<>("test", "document", sentence,
+                List.of(RagStringContext.deferred(sentence, "first entity")), "doc1");
+        final RagDocumentContext<Void> second = new RagDocumentContext<>("test", "document", sentence,
+                List.of(RagStringContext.deferred(sentence, "second entity")), "doc1");
+
+        sentenceVectorCache.vectorizeSentences(first, sentenceVectorizer);
+        sentenceVectorCache.vectorizeSentences(second, sentenceVectorizer);
+
+        Assertions.assertEquals(2, sentenceVectorizer.count.get());
+    }
+
+    @Test
+    void testFailedVectorsAreNotCached() {
+        final AtomicInteger count = new AtomicInteger();
+        final SentenceVectorizer sentenceVectorizer = new RagMultiDocumentContextTest.MockSentenceVectorizer() {
+            @Override
+            public RagStringContext vectorize(final String text, final String hiddenText) {
+                count.incrementAndGet();
+                return null;
+            }
+        };
+        final RagDocumentContext<Void> document = deferredDocument(2);
+
+        Assertions.assertEquals(2, sentenceVectorCache.vectorizeSentences(document, sentenceVectorizer).countUnvectorizedSentences());
+        Assertions.assertEquals(2, count.get());
+
+        // The sentences are embedded once per call, and tried again on the next call
+        sentenceVectorCache.vectorizeSentences(document, sentenceVectorizer);
+        Assertions.assertEquals(4, count.get());
+    }
+
+    @Test
+    void testMultiDocumentContext() {
+        final CountingSentenceVectorizer sentenceVectorizer = new CountingSentenceVectorizer(0);
+        final RagMultiDocumentContext<Void> context = new RagMultiDocumentContext<>(
+                "prompt", "instructions", List.of(deferredDocument(2), deferredDocument(3)));
+
+        final RagMultiDocumentContext<Void> vectorized = sentenceVectorCache.vectorizeSentences(context, sentenceVectorizer);
+
+        Assertions.assertEquals(0, vectorized.countUnvectorizedSentences());
+        Assertions.assertEquals(5, context.countUnvectorizedSentences());
+        Assertions.assertSame(vectorized, sentenceVectorCache.vectorizeSentences(vectorized, sentenceVectorizer));
+    }
+
+    @Test
+    void testDocumentsKeepTheirOrder() {
+        final CountingSentenceVectorizer sentenceVectorizer = new CountingSentenceVectorizer(100);
+        final List<RagDocumentContext<Void>> documents = IntStream.range(0, 20)
+                .mapToObj(i -> deferredDocument(1 + i % 3))
+                .toList();
+
+        final RagMultiDocumentContext<Void> vectorized = sentenceVectorCache.vectorizeSentences(
+                new RagMultiDocumentContext<>("prompt", "instructions", documents), sentenceVectorizer);
+
+        Assertions.assertEquals(
+                documents.stream().map(RagDocumentContext::id).toList(),
+                vectorized.getIndividualContexts().stream().map(RagDocumentContext::id).toList());
+        Assertions.assertEquals(0, vectorized.countUnvectorizedSentences());
+    }
+
+    @Test
+    @Disabled("Benchmark, can be enabled for manual testing")
+    void benchmark() {
+        /*
+            A tool returns 100 documents of 20 sentences, which are read from the tool's cache on every run after
+            the first. Embedding a sentence is simulated as busy work.
+         */
+        // Warm up the local storage and the JIT, so the cold run only measures the cache writes
+        sentenceVectorCache.vectorizeSentences(
+                new RagMultiDocumentContext<>("prompt", "instructions", IntStream.range(0, 100)
+                        .mapToObj(i -> deferredDocument(20))
+                        .toList()),
+                new CountingSentenceVectorizer(0));
+
+        for (final long workMicros : List.of(250L, 2_000L)) {
+            final RagMultiDocumentContext<Void> context = new RagMultiDocumentContext<>("prompt", "instructions",
+                    IntStream.range(0, 100)
+                            .mapToObj(i -> deferredDocument(20))
+                            .toList());
+
+            for (final String run : List.of("cold", "cached")) {
+                final CountingSentenceVectorizer direct = new CountingSentenceVectorizer(workMicros);
+                final long directStart = System.nanoTime();
+                context.vectorizeSentences(direct);
+                final long directNanos = System.nanoTime() - directStart;
+
+                final CountingSentenceVectorizer viaCache = new CountingSentenceVectorizer(workMicros);
+                final long cacheStart = System.nanoTime();
+                sentenceVectorCache.vectorizeSentences(context, viaCache);
+                final long cacheNanos = System.nanoTime() - cacheStart;
+
+                System.out.println(workMicros + " us " + run + " run: without the vector cache " + direct.count.get()
+                        + " embeddings in " + directNanos / 1_000_000 + " ms, with the vector cache "
+                        + viaCache.count.get() + " embeddings in " + cacheNanos / 1_000_000 + " ms");
+            }
+        }
+    }
+
+    private static RagDocumentContext<Void> deferredDocument(final int sentences) {
+        final String id = UUID.randomUUID().toString();
+        return new RagDocumentContext<>("test", "document", "A document " + id,
+                IntStream.range(0, sentences)
+                        .mapToObj(i -> RagStringContext.deferred("Sentence " + i + " of " + id, "entity"))
+                        .toList(),
+                id);
+    }
+
+    /**
+     * Returns a vector derived from the text, and optionally spins for a while to simulate the cost of the model.
+     */
+    private static class CountingSentenceVectorizer extends RagMultiDocumentContextTest.MockSentenceVectorizer {
+        private final AtomicInteger count = new AtomicInteger();
+        private final long workMicros;
+
+        CountingSentenceVectorizer(final long workMicros) {
+            this.workMicros = workMicros;
+        }
+
+        @Override
+        public RagStringContext vectorize(final String text, final String hiddenText) {
+            count.incrementAndGet();
+            final long end = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(workMicros);
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            final int hash = (text + hiddenText).hashCode();
+            return new RagStringContext(text, new Vector((double) (hash & 0xFF), (double) ((hash >> 8) & 0xFF), 1d));
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package secondbrain.domain.context;
 
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -82,4 +87,120 @@ class SimpleSentenceSplitterTest {
 
         assertTrue(sentences.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSplitDocumentSpans() {
+        final SimpleSentenceSplitter splitter = new SimpleSentenceSplitter();
+
+        final String document = "  * The **first** item.\n- Second (item); third!  ";
+        final List<SentenceSpan> spans = splitter.splitDocumentSpans(document, 1);
+
+        assertEquals(List.of("* The **first** item.", "- Second (item);", "third!"),
+                spans.stream().map(span -> span.originalText(document)).toList());
+        assertEquals(splitter.splitDocument(document, 1), spans.stream().map(SentenceSpan::sentence).toList());
+    }
+
+    @Test
+    void testEquivalentToRegexSplitter() {
+        final SimpleSentenceSplitter splitter = new SimpleSentenceSplitter();
+
+        final List<String> documents = List.of(
+                "This is a test document. It contains multiple sentences! Does it work? Yes, it does.",
+                "Line one\r\nLine two\rLine three\nLine four",
+                "A; B;C ;  D.E. F!G! H?I? J",
+                "  Leading whitespace. Trailing whitespace   ",
+                "* - • Nested list markers. *No space. *  Two spaces.",
+                "<p>Some <b>markup</b> &amp; entities</p>. café résumé naïve.",
+                "Emoji 😀 in a sentence. Ends with a line separator.\u2028",
+                "Ends with a next line.\u0085",
+                "Tabs\tand\u000Bvertical\ftabs. Non\u00A0breaking\u2003spaces.",
+                "Ends with a period.",
+                "...",
+                "日本語の文です。 Another sentence.");
+
+        for (final String document : documents) {
+            for (int minWords = 0; minWords < 5; ++minWords) {
+                assertEquals(regexSplitDocument(document, minWords), splitter.splitDocument(document, minWords), document);
+            }
+        }
+    }
+
+    @Test
+    void testEquivalentToRegexSplitterRandom() {
+        final SimpleSentenceSplitter splitter = new SimpleSentenceSplitter();
+        final String[] tokens = {"a", "Bc", "12", " ", "  ", "\t", "\n", "\r", "\r\n", ".", "!", "?", ";", "*", "* ",
+                "• ", "◦ ", "- ", "-", "<", ">", "é", "\u0085", "\u2028", "\u00A0", "\u2003", "😀", "\u000B", "\f", "\u0001"};
+        final Random random = new Random(0);
+
+        for (int i = 0; i < 100_000; ++i) {
+            final StringBuilder document = new StringBuilder();
+            final int length = random.nextInt(30);
+            for (int j = 0; j < length; ++j) {
+                document.append(tokens[random.nextInt(tokens.length)]);
+            }
+
+            final int minWords = random.nextInt(4);
+            assertEquals(regexSplitDocument(document.toString(), minWords),
+                    splitter.splitDocument(document.toString(), minWords),
+                    document.toString());
+
+            // Spans never start or end with whitespace
+            for (final SentenceSpan span : splitter.splitDocumentSpans(document.toString(), minWords)) {
+                final String original = span.originalText(document.toString());
+                assertTrue(original.isEmpty() || (original.charAt(0) > ' ' && original.charAt(original.length() - 1) > ' '),
+                        document.toString());
+            }
+        }
+    }
+
+    @Test
+    @Disabled("Benchmark, can be enabled for manual testing")
+    void benchmarkSplitDocument() {
+        final SimpleSentenceSplitter splitter = new SimpleSentenceSplitter();
+        final String document = String.join(" ", Collections.nCopies(200,
+                "* This is a <b>longer</b> sentence with an example filename of example.png. Does it work? Yes; it does!\n"));
+
+        for (int i = 0; i < 200; ++i) {
+            regexSplitDocument(document, 3);
+            splitter.splitDocument(document, 3);
+        }
+
+        final int iterations = 2_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            regexSplitDocument(document, 3);
+        }
+        final long regexNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            splitter.splitDocument(document, 3);
+        }
+        final long scannerNanos = System.nanoTime() - start;
+
+        System.out.println("Regex splitter: " + regexNanos / iterations / 1000 + "us per document");
+        System.out.println("Single pass splitter: " + scannerNanos / iterations / 1000 + "us per document");
+    }
+
+    /**
+     * The original regular expression based implementation, which the single pass splitter must match.
+     */
+    private static List<String> regexSplitDocument(final String document, final int minWords) {
+        if (document == null || document.isBlank()) {
+            return List.of();
+        }
+
+        return Stream.of(document.split("\\r\\n|\\r|\\n|\\.\\s+|\\.$|;\\s+|;|!\\s+|!$|\\?\\s+|\\?$"))
+                .filter(sentence -> !sentence.isBlank())
+                .filter(sentence -> sentence.split("\\s+").length >= minWords)
+                .map(String::trim)
+                .map(sentence -> sentence.replaceFirst("^\\* ", ""))
+                .map(sentence -> sentence.replaceFirst("^• ", ""))
+                .map(sentence -> sentence.replaceFirst("^◦ ", ""))
+                .map(sentence -> sentence.replaceFirst("^- ", ""))
+                .map(sentence -> sentence.replaceAll("[^A-Za-z0-9.\\-_?!@#$%^&*,;:\\\\/]", " "))
+                .map(sentence -> String.join(" ", Arrays.stream(sentence.split("\\s+")).toList()))
+                .map(String::trim)
+                .toList();
+    }
+}
@@ -0,0 +1,66 @@
+package secondbrain.domain.context;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class VectorTest {
+
+    @Test
+    void testNormalized() {
+        final Vector vector = new Vector(3d, 4d);
+        Assertions.assertEquals(0.6f, vector.get(0), 0.0001f);
+        Assertions.assertEquals(0.8f, vector.get(1), 0.0001f);
+        Assertions.assertEquals(1, vector.dotProduct(vector), 0.0001);
+    }
+
+    @Test
+    void testZeroVector() {
+        final Vector vector = new Vector(0d, 0d);
+        Assertions.assertEquals(0, vector.dotProduct(new Vector(1d, 0d)));
+    }
+
+    @Test
+    void testCosineSimilarity() {
+        final CosineSimilarityCalculator calculator = new CosineSimilarityCalculator();
+        Assertions.assertEquals(1, calculator.calculateSimilarity(new Vector(1d, 2d), new Vector(2d, 4d)), 0.0001);
+        Assertions.assertEquals(0, calculator.calculateSimilarity(new Vector(1d, 0d), new Vector(0d, 1d)), 0.0001);
+        Assertions.assertEquals(-1, calculator.calculateSimilarity(new Vector(1d, 1d), new Vector(-1d, -1d)), 0.0001);
+    }
+
+    @Test
+    void testSimdMatchesScalar() {
+        final Random random = new Random(42);
+        // 384 is the dimension of the sentence embeddings, and 389 leaves a tail after the SIMD loop
+        for (final int dimension : new int[]{1, 7, 384, 389}) {
+            final float[] a = new float[dimension];
+            final float[] b = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                a[i] = random.nextFloat() * 2 - 1;
+                b[i] = random.nextFloat() * 2 - 1;
+            }
+
+            Assertions.assertEquals(VectorMath.scalarDotProduct(a, b), VectorMath.dotProduct(a, b), 0.0001f);
+        }
+    }
+
+    @Test
+    void testNormalizedVectorIsUnchanged() {
+        final Random random = new Random(42);
+        for (int n = 0; n < 100; n++) {
+            final float[] values = new float[384];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextFloat() * 2 - 1;
+            }
+
+            final Vector vector = new Vector(values);
+            Assertions.assertArrayEquals(vector.value(), new Vector(vector.value()).value());
+        }
+    }
+
+    @Test
+    void testDifferentDimensions() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Vector(1d).dotProduct(new Vector(1d, 0d)));
+    }
+}
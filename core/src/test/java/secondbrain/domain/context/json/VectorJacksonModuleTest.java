@@ -0,0 +1,91 @@
+package secondbrain.domain.context.json;
+
+import io.smallrye.config.inject.ConfigExtension;
+import jakarta.inject.Inject;
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import secondbrain.domain.context.RagStringContext;
+import secondbrain.domain.context.Vector;
+import secondbrain.domain.json.JsonDeserializerJackson;
+import secondbrain.domain.logger.Loggers;
+import secondbrain.domain.test.TestConfigUtil;
+
+import java.util.Map;
+import java.util.Random;
+
+@SuppressWarnings("NullAway")
+@EnableAutoWeld
+@AddExtensions(ConfigExtension.class)
+@AddBeanClasses(VectorJacksonModule.class)
+@AddBeanClasses(JsonDeserializerJackson.class)
+@AddBeanClasses(Loggers.class)
+public class VectorJacksonModuleTest {
+    @Inject
+    private JsonDeserializerJackson jsonDeserializer;
+
+    @Test
+    public void testFloat32() {
+        TestConfigUtil.registerConfig(Map.of("sb.cache.vectorformat", "float32"));
+        final RagStringContext context = new RagStringContext("A sentence", randomVector(384));
+
+        final String json = jsonDeserializer.serialize(context);
+        Assertions.assertTrue(json.contains("\"v1:f32:"));
+
+        final RagStringContext result = jsonDeserializer.deserialize(json, RagStringContext.class);
+        Assertions.assertEquals("A sentence", result.context());
+        Assertions.assertArrayEquals(context.vector().value(), result.vector().value(), 0.000001f);
+    }
+
+    @Test
+    public void testInt8() {
+        TestConfigUtil.registerConfig(Map.of("sb.cache.vectorformat", "int8"));
+        final RagStringContext context = new RagStringContext("A sentence", randomVector(384));
+
+        final String json = jsonDeserializer.serialize(context);
+        Assertions.assertTrue(json.contains("\"v1:i8:"));
+
+        final RagStringContext result = jsonDeserializer.deserialize(json, RagStringContext.class);
+        Assertions.assertEquals(384, result.vector().dimension());
+        Assertions.assertEquals(1, context.vector().dotProduct(result.vector()), 0.001);
+    }
+
+    @Test
+    public void testSmallerThanDecimals() {
+        TestConfigUtil.registerConfig(Map.of("sb.cache.vectorformat", "float32"));
+        final RagStringContext context = new RagStringContext("A sentence", randomVector(384));
+
+        final String decimals = new JsonDeserializerJackson().serialize(context);
+        final String encoded = jsonDeserializer.serialize(context);
+        Assertions.assertTrue(encoded.length() * 2 < decimals.length(), encoded.length() + " vs " + decimals.length());
+    }
+
+    @Test
+    public void testReadLegacyVector() {
+        TestConfigUtil.registerConfig(Map.of());
+        final String json = "{\"context\":\"A sentence\",\"vector\":{\"value\":[3.0,4.0]}}";
+
+        final RagStringContext result = jsonDeserializer.deserialize(json, RagStringContext.class);
+        Assertions.assertEquals(0.6f, result.vector().get(0), 0.0001f);
+        Assertions.assertEquals(0.8f, result.vector().get(1), 0.0001f);
+    }
+
+    @Test
+    public void testUnknownVersion() {
+        TestConfigUtil.registerConfig(Map.of());
+        final String json = "{\"context\":\"A sentence\",\"vector\":\"v9:f32:AAAAAA==\"}";
+
+        Assertions.assertTrue(jsonDeserializer.tryDeserialize(json, RagStringContext.class).isEmpty());
+    }
+
+    private static Vector randomVector(final int dimension) {
+        final Random random = new Random(dimension);
+        final float[] values = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return new Vector(values);
+    }
+}
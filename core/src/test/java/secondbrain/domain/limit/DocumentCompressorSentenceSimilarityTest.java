@@ -0,0 +1,128 @@
+package secondbrain.domain.limit;
+
+import io.smallrye.config.inject.ConfigExtension;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import secondbrain.domain.context.CosineSimilarityCalculator;
+import secondbrain.domain.context.RagStringContext;
+import secondbrain.domain.context.SentenceVectorizer;
+import secondbrain.domain.context.SimpleSentenceSplitter;
+import secondbrain.domain.context.Vector;
+import secondbrain.domain.test.TestConfigUtil;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SuppressWarnings("NullAway")
+@EnableAutoWeld
+@AddExtensions(ConfigExtension.class)
+@AddBeanClasses(DocumentCompressorSentenceSimilarity.class)
+@AddBeanClasses(SimpleSentenceSplitter.class)
+@AddBeanClasses(CosineSimilarityCalculator.class)
+@AddBeanClasses(DocumentCompressorSentenceSimilarityTest.TopicSentenceVectorizer.class)
+class DocumentCompressorSentenceSimilarityTest {
+    private static final String DOCUMENT = "The customer asked about their invoice. "
+            + "The weather was sunny on the day of the call. "
+            + "They were charged twice on the invoice for March. "
+            + "The account manager mentioned a holiday. "
+            + "A refund for the invoice was promised.";
+
+    @Inject
+    private DocumentCompressorSentenceSimilarity documentCompressor;
+
+    @BeforeEach
+    void registerConfig() {
+        TestConfigUtil.registerConfig(Map.of("sb.compressor.charsPerToken", "1"));
+    }
+
+    @Test
+    void testKeepsRelevantSentencesInOrder() {
+        final CompressionResult result = documentCompressor.compressDocument(DOCUMENT, "What happened with the invoice?", 140);
+
+        assertEquals("The customer asked about their invoice.\n"
+                + "They were charged twice on the invoice for March.\n"
+                + "A refund for the invoice was promised.", result.document());
+        assertTrue(result.compressedTokens() <= 140);
+        assertEquals(DOCUMENT.length(), result.originalTokens());
+        assertTrue(result.savedTokens() > 0);
+    }
+
+    @Test
+    void testBudgetLimitsSentences() {
+        final CompressionResult result = documentCompressor.compressDocument(DOCUMENT, "What happened with the invoice?", 60);
+
+        assertEquals(1, result.document().lines().count());
+        assertTrue(result.document().contains("invoice"));
+        assertTrue(result.compressedTokens() <= 60);
+    }
+
+    @Test
+    void testDocumentWithinBudgetIsUnchanged() {
+        final CompressionResult result = documentCompressor.compressDocument(DOCUMENT, "What happened with the invoice?", 1000);
+
+        assertEquals(DOCUMENT, result.document());
+        assertEquals(0, result.savedTokens());
+    }
+
+    @Test
+    void testBlankPromptKeepsDocumentOrder() {
+        final CompressionResult result = documentCompressor.compressDocument(DOCUMENT, "", 90);
+
+        assertEquals("The customer asked about their invoice.\n"
+                + "The weather was sunny on the day of the call.", result.document());
+    }
+
+    @Test
+    void testKeepsOriginalText() {
+        final String document = "* The invoice **#INV-42** was paid (in full) by <b>ACME</b>.\n"
+                + "- The weather was sunny on the day of the call; nothing else happened.\n"
+                + "The invoice total was $1,234.56!";
+
+        final CompressionResult result = documentCompressor.compressDocument(document, "What happened with the invoice?", 100);
+
+        assertEquals("* The invoice **#INV-42** was paid (in full) by <b>ACME</b>.\n"
+                + "The invoice total was $1,234.56!", result.document());
+    }
+
+    @Test
+    void testEmptyDocument() {
+        assertEquals("", documentCompressor.compressDocument("", "prompt", 100).document());
+        assertEquals("", documentCompressor.compressDocument(DOCUMENT, "prompt", 0).document());
+    }
+
+    /**
+     * Places text mentioning an invoice on one axis and everything else on another.
+     */
+    @ApplicationScoped
+    static class TopicSentenceVectorizer implements SentenceVectorizer {
+        @Override
+        public RagStringContext vectorize(final String text, final String hiddenText) {
+            return vectorize(text);
+        }
+
+        @Override
+        public List<RagStringContext> vectorize(final List<String> text, final String hiddenText) {
+            return vectorize(text);
+        }
+
+        @Override
+        public RagStringContext vectorize(final String text) {
+            return text.contains("invoice")
+                    ? new RagStringContext(text, new Vector(1d, 0.1d))
+                    : new RagStringContext(text, new Vector(0.1d, 1d));
+        }
+
+        @Override
+        public List<RagStringContext> vectorize(final List<String> text) {
+            return text.stream().map(this::vectorize).toList();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package secondbrain.domain.limit;
+
+import io.smallrye.config.inject.ConfigExtension;
+import jakarta.inject.Inject;
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.Test;
+import secondbrain.domain.context.RagDocumentContext;
+import secondbrain.domain.list.TrimmedCommaSeparatedStringToList;
+import secondbrain.domain.logger.Loggers;
+import secondbrain.domain.test.TestConfigUtil;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SuppressWarnings("NullAway")
+@EnableAutoWeld
+@AddExtensions(ConfigExtension.class)
+@AddBeanClasses(DocumentDeduplicatorSimHash.class)
+@AddBeanClasses(TrimmedCommaSeparatedStringToList.class)
+@AddBeanClasses(Loggers.class)
+class DocumentDeduplicatorSimHashTest {
+    private static final String EMAIL = "Hi team, the customer reported that the deployment to their production environment "
+            + "failed after upgrading to the latest release. The error mentions a missing database migration and the "
+            + "rollback did not complete. They would like a call tomorrow morning to discuss a workaround and the "
+            + "timeline for a fix. Please let me know who can attend. Thanks, Alex";
+
+    private static final String OTHER = "The quarterly business review went well. The customer is happy with the new "
+            + "dashboard features and plans to expand the licence to two more teams next quarter. They asked for "
+            + "training material for the new users and a summary of the roadmap for the rest of the year.";
+
+    @Inject
+    private DocumentDeduplicatorSimHash documentDeduplicator;
+
+    @Test
+    void testRemovesNearDuplicates() {
+        TestConfigUtil.registerConfig(Map.of("sb.dedup.tools", "ZenDesk, Salesforce"));
+
+        final List<RagDocumentContext<Void>> documents = List.of(
+                document("1", EMAIL),
+                document("2", OTHER),
+                document("3", "Re: " + EMAIL + " Thanks"),
+                document("4", EMAIL));
+
+        final List<RagDocumentContext<Void>> result = documentDeduplicator.deduplicate(documents, "salesforce");
+
+        // The longest of the near duplicates is kept, and the documents stay in their original order
+        assertEquals(List.of("2", "3"), result.stream().map(RagDocumentContext::id).toList());
+    }
+
+    @Test
+    void testAvoidedTokensUseCompressorEstimate() {
+        TestConfigUtil.registerConfig(Map.of(
+                "sb.dedup.tools", "ZENDESK",
+                "sb.compressor.charsPerToken", "2"));
+
+        documentDeduplicator.deduplicate(List.of(document("1", EMAIL), document("2", EMAIL)), "ZenDesk");
+
+        assertEquals((EMAIL.length() + 1) / 2, documentDeduplicator.getAvoidedTokens());
+    }
+
+    @Test
+    void testRepresentativeIsDeterministic() {
+        TestConfigUtil.registerConfig(Map.of("sb.dedup.tools", "*"));
+
+        final List<RagDocumentContext<Void>> documents = List.of(
+                document("b", EMAIL),
+                document("a", EMAIL),
+                document("c", EMAIL));
+
+        assertEquals(List.of("a"), documentDeduplicator.deduplicate(documents, "Slack").stream().map(RagDocumentContext::id).toList());
+        assertEquals(List.of("a"), documentDeduplicator.deduplicate(documents.reversed(), "Slack").stream().map(RagDocumentContext::id).toList());
+    }
+
+    @Test
+    void testDistinctDocumentsAreKept() {
+        TestConfigUtil.registerConfig(Map.of("sb.dedup.tools", "*"));
+
+        final List<RagDocumentContext<Void>> documents = List.of(document("1", EMAIL), document("2", OTHER));
+
+        assertSame(documents, documentDeduplicator.deduplicate(documents, "Slack"));
+    }
+
+    @Test
+    void testDisabledTool() {
+        TestConfigUtil.registerConfig(Map.of("sb.dedup.tools", "ZenDesk"));
+
+        final List<RagDocumentContext<Void>> documents = List.of(document("1", EMAIL), document("2", EMAIL));
+
+        assertSame(documents, documentDeduplicator.deduplicate(documents, "Slack"));
+    }
+
+    @Test
+    void testFingerprintIgnoresCaseAndPunctuation() {
+        TestConfigUtil.registerConfig(Map.of());
+
+        assertEquals(documentDeduplicator.fingerprint(EMAIL), documentDeduplicator.fingerprint(EMAIL.toUpperCase().replace(",", " ")));
+        assertTrue(Long.bitCount(documentDeduplicator.fingerprint(EMAIL) ^ documentDeduplicator.fingerprint(OTHER)) > 8);
+    }
+
+    private static RagDocumentContext<Void> document(final String id, final String document) {
+        return new RagDocumentContext<>("test", "document", document, List.of(), id);
+    }
+}
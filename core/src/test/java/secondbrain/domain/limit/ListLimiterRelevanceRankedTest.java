@@ -0,0 +1,69 @@
+package secondbrain.domain.limit;
+
+import jakarta.inject.Inject;
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@EnableAutoWeld
+@AddBeanClasses(ListLimiterRelevanceRanked.class)
+public class ListLimiterRelevanceRankedTest {
+    @Inject
+    private ListLimiterRelevanceRanked listLimiter;
+
+    @Test
+    public void testKeepsMostRelevantInOrder() {
+        final Map<String, Double> scores = Map.of("aaaa", 1d, "bbbb", 8d, "cccc", 2d, "dddd", 9d);
+        final List<String> list = List.of("aaaa", "bbbb", "cccc", "dddd");
+
+        final List<String> result = listLimiter.limitListContent(list, Function.identity(), scores::get, 8);
+
+        assertEquals(List.of("bbbb", "dddd"), result);
+    }
+
+    @Test
+    public void testSkipsItemsThatDoNotFit() {
+        final Map<String, Double> scores = Map.of("aaaaaaaa", 10d, "bb", 4d, "cc", 1d, "dd", 3d);
+        final List<String> list = List.of("aaaaaaaa", "bb", "cc", "dd");
+
+        // The long item has the highest score but the lowest density, so the shorter items fill the budget
+        final List<String> result = listLimiter.limitListContent(list, Function.identity(), scores::get, 6);
+
+        assertEquals(List.of("bb", "cc", "dd"), result);
+    }
+
+    @Test
+    public void testSingleItemBeatsGreedySelection() {
+        final Map<String, Double> scores = Map.of("a", 2d, "bbbbbbbbbb", 10d);
+        final List<String> list = List.of("a", "bbbbbbbbbb");
+
+        // Greedily taking the denser short item leaves no room for the item worth five times as much
+        final List<String> result = listLimiter.limitListContent(list, Function.identity(), scores::get, 10);
+
+        assertEquals(List.of("bbbbbbbbbb"), result);
+    }
+
+    @Test
+    public void testEqualScoresKeepListOrder() {
+        final List<String> list = List.of("aaaaaa", "bb", "cc");
+
+        final List<String> result = listLimiter.limitListContent(list, Function.identity(), item -> 1d, 7);
+
+        assertEquals(List.of("aaaaaa"), result);
+    }
+
+    @Test
+    public void testWithinLimit() {
+        final List<String> list = List.of("aa", "bb");
+
+        assertSame(list, listLimiter.limitListContent(list, Function.identity(), item -> item.equals("aa") ? 1d : 2d, 4));
+        assertEquals(List.of(), listLimiter.limitListContent(list, Function.identity(), item -> 1d, 0));
+    }
+}
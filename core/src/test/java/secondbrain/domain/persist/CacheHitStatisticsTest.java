@@ -0,0 +1,57 @@
+package secondbrain.domain.persist;
+
+import io.smallrye.config.inject.ConfigExtension;
+import jakarta.inject.Inject;
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import secondbrain.domain.exceptionhandling.LoggingExceptionHandler;
+import secondbrain.domain.json.JsonDeserializerJackson;
+import secondbrain.domain.logger.Loggers;
+import secondbrain.domain.test.TestConfigUtil;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+@SuppressWarnings("NullAway")
+@EnableAutoWeld
+@AddExtensions(ConfigExtension.class)
+@AddBeanClasses(CacheHitStatistics.class)
+@AddBeanClasses(Loggers.class)
+@AddBeanClasses(LoggingExceptionHandler.class)
+@AddBeanClasses(JsonDeserializerJackson.class)
+public class CacheHitStatisticsTest {
+    @Inject
+    private CacheHitStatistics cacheHitStatistics;
+
+    @TempDir
+    private Path cacheDir;
+
+    @BeforeEach
+    public void setUp() {
+        TestConfigUtil.registerConfig(Map.of("sb.cache.localdir", cacheDir.toString()));
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        Assertions.assertTrue(cacheHitStatistics.getPreviousRun().isEmpty());
+
+        cacheHitStatistics.record("tool", "source", true);
+        cacheHitStatistics.record("tool", "source", true);
+        cacheHitStatistics.record("tool", "source", true);
+        cacheHitStatistics.record("tool", "source", false);
+        cacheHitStatistics.record("tool", "other", false);
+        cacheHitStatistics.save();
+
+        final List<CacheHitStatistics.CacheHitCount> counts = cacheHitStatistics.getPreviousRun();
+        Assertions.assertEquals(2, counts.size());
+        Assertions.assertEquals(new CacheHitStatistics.CacheHitCount("tool", "other", 0, 1), counts.get(0));
+        Assertions.assertEquals(new CacheHitStatistics.CacheHitCount("tool", "source", 3, 1), counts.get(1));
+        Assertions.assertEquals(75, counts.get(1).hitPercentage(), 0.01);
+    }
+}
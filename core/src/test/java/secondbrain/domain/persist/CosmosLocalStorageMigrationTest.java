@@ -0,0 +1,59 @@
+package secondbrain.domain.persist;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests how items copied between containers keep the time they had left to live.
+ */
+@SuppressWarnings("NullAway")
+class CosmosLocalStorageMigrationTest {
+    private static final long NOW = 1_800_000_000L;
+
+    @Test
+    void testRemainingTtl() {
+        // Written an hour ago with a TTL of a day
+        assertEquals(86400 - 3600, CosmosLocalStorage.getRemainingTtl(86400, 86400, NOW - 3600, NOW));
+    }
+
+    @Test
+    void testContainerDefaultTtl() {
+        assertEquals(7200 - 60, CosmosLocalStorage.getRemainingTtl(null, 7200, NOW - 60, NOW));
+    }
+
+    @Test
+    void testExpiredItem() {
+        assertEquals(0, CosmosLocalStorage.getRemainingTtl(60, 86400, NOW - 61, NOW));
+        assertEquals(0, CosmosLocalStorage.getRemainingTtl(60, 86400, NOW - 60, NOW));
+    }
+
+    @Test
+    void testItemsThatNeverExpire() {
+        assertEquals(-1, CosmosLocalStorage.getRemainingTtl(-1, 86400, NOW - 1_000_000, NOW));
+        assertEquals(-1, CosmosLocalStorage.getRemainingTtl(null, -1, NOW - 1_000_000, NOW));
+        // The item's TTL is ignored when the container has no default TTL
+        assertEquals(-1, CosmosLocalStorage.getRemainingTtl(60, null, NOW - 1_000_000, NOW));
+    }
+
+    @Test
+    void testUnknownLastModified() {
+        assertEquals(60, CosmosLocalStorage.getRemainingTtl(60, 86400, null, NOW));
+    }
+
+    @Test
+    void testMigrationItemReadsLastModified() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        final CosmosLocalStorage.MigrationItem item = objectMapper.readValue("""
+                {"id": "tool_source_hash", "tool": "tool", "source": "source", "promptHash": "hash",
+                 "response": "response", "timestamp": 1800086400, "ttl": 86400, "_ts": 1799996400,
+                 "_etag": "\\"0000\\"", "_rid": "abc"}""", CosmosLocalStorage.MigrationItem.class);
+
+        assertEquals(1799996400L, item.lastModified());
+        assertEquals(86400 - 3600, CosmosLocalStorage.getRemainingTtl(item.ttl(), 86400, item.lastModified(), NOW));
+    }
+}
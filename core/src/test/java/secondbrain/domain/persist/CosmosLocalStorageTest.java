@@ -1,5 +1,6 @@
 package secondbrain.domain.persist;
 
+import com.azure.cosmos.CosmosAsyncContainer;
 import io.smallrye.config.inject.ConfigExtension;
 import io.vavr.control.Try;
 import jakarta.inject.Inject;
@@ -24,14 +25,18 @@ import secondbrain.domain.zip.ApacheCommonsZStdZipper;
 import secondbrain.domain.zip.ApacheCompressZipper;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 @SuppressWarnings("NullAway")
 @EnableAutoWeld
 @AddExtensions(ConfigExtension.class)
 @AddBeanClasses(CosmosLocalStorage.class)
 @AddBeanClasses(FileLocalStorageReadWrite.class)
+@AddBeanClasses(SegmentLocalStorageReadWrite.class)
+@AddBeanClasses(LocalStorageReadWriteProducer.class)
 @AddBeanClasses(Loggers.class)
 @AddBeanClasses(LoggingExceptionHandler.class)
 @AddBeanClasses(JsonDeserializerJackson.class)
@@ -241,6 +246,95 @@ public class CosmosLocalStorageTest {
                 .result());
     }
 
+    @Test
+    public void testChunkedValue() {
+        // Letters only, so the redaction leaves the value alone. The words are numbered so that
+        // chunks reassembled in the wrong order produce a different value.
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 3 * 1024 * 1024; ++i) {
+            builder.append(toLetters(i)).append(' ');
+        }
+        final String value = builder.toString();
+        final String promptHash = UUID.randomUUID().toString();
+
+        cosmosLocalStorage.putString(CosmosLocalStorageTest.class.getSimpleName(), "testChunkedValue", promptHash, 60, value);
+        cosmosLocalStorage.flush();
+
+        final CacheResult<String> result = cosmosLocalStorage.getString(
+                CosmosLocalStorageTest.class.getSimpleName(),
+                "testChunkedValue",
+                promptHash);
+
+        Assertions.assertTrue(result.fromCache());
+        Assertions.assertEquals(value.length(), result.result().length());
+        Assertions.assertEquals(value, result.result());
+    }
+
+    @Test
+    public void testUsageCountsChunkedValueOnce() {
+        final String tool = CosmosLocalStorageTest.class.getSimpleName() + "Usage" + UUID.randomUUID();
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 3 * 1024 * 1024; ++i) {
+            builder.append(toLetters(i)).append(' ');
+        }
+
+        cosmosLocalStorage.putString(tool, "chunked", UUID.randomUUID().toString(), 60, builder.toString());
+        cosmosLocalStorage.putString(tool, "chunked", UUID.randomUUID().toString(), 60, "small value");
+        cosmosLocalStorage.flush();
+
+        final List<CacheUsage> usage = cosmosLocalStorage.getUsage(List.of(tool));
+
+        Assertions.assertEquals(1, usage.size());
+        Assertions.assertEquals(2, usage.getFirst().count());
+        Assertions.assertEquals(2, usage.getFirst().lastHour());
+    }
+
+    @Test
+    public void testResetConnectionOnce() throws InterruptedException {
+        final CosmosAsyncContainer failing = cosmosLocalStorage.getContainer();
+        final int resets = cosmosLocalStorage.getTotalResets();
+        for (int i = 0; i < 10; ++i) {
+            cosmosLocalStorage.recordFailure(failing);
+        }
+
+        // Every caller sees the failures, but only one rebuilds the client
+        final List<Thread> threads = IntStream.range(0, 8)
+                .mapToObj(i -> Thread.ofVirtual().start(() -> cosmosLocalStorage.getString(
+                        CosmosLocalStorageTest.class.getSimpleName(),
+                        "testResetConnectionOnce",
+                        UUID.randomUUID().toString())))
+                .toList();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(resets + 1, cosmosLocalStorage.getTotalResets());
+        final CosmosAsyncContainer replacement = cosmosLocalStorage.getContainer();
+        Assertions.assertNotSame(failing, replacement);
+
+        // Late failures from the old client do not count against the new one
+        for (int i = 0; i < 10; ++i) {
+            cosmosLocalStorage.recordFailure(failing);
+        }
+        Assertions.assertNull(cosmosLocalStorage.getString(
+                        CosmosLocalStorageTest.class.getSimpleName(),
+                        "testResetConnectionOnce",
+                        UUID.randomUUID().toString())
+                .result());
+        Assertions.assertEquals(resets + 1, cosmosLocalStorage.getTotalResets());
+        Assertions.assertSame(replacement, cosmosLocalStorage.getContainer());
+    }
+
+    private static String toLetters(final int number) {
+        final StringBuilder letters = new StringBuilder();
+        int remaining = number;
+        do {
+            letters.append((char) ('a' + remaining % 26));
+            remaining /= 26;
+        } while (remaining > 0);
+        return letters.reverse().toString();
+    }
+
     record TestObject(String value) {
     }
 }
@@ -0,0 +1,66 @@
+package secondbrain.domain.persist;
+
+import com.azure.cosmos.models.PartitionKey;
+import com.azure.cosmos.models.PartitionKeyBuilder;
+import com.azure.cosmos.models.PartitionKeyDefinition;
+import com.azure.cosmos.models.PartitionKind;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("NullAway")
+class CosmosPartitioningTest {
+
+    @Test
+    void testPartitionByTool() {
+        assertFalse(CosmosPartitioning.isHierarchical(0));
+        assertNull(CosmosPartitioning.getBucket("tool_source_hash", 0));
+        assertEquals(new PartitionKey("tool"), CosmosPartitioning.getPartitionKey("tool", null));
+        assertEquals("tool", CosmosPartitioning.getLogicalPartition("tool", null));
+
+        final PartitionKeyDefinition definition = CosmosPartitioning.getPartitionKeyDefinition(0);
+        assertEquals(List.of("/tool"), definition.getPaths());
+        assertNotEquals(PartitionKind.MULTI_HASH, definition.getKind());
+    }
+
+    @Test
+    void testHierarchicalPartitionKeyDefinition() {
+        final PartitionKeyDefinition definition = CosmosPartitioning.getPartitionKeyDefinition(16);
+        assertEquals(List.of("/tool", "/bucket"), definition.getPaths());
+        assertEquals(PartitionKind.MULTI_HASH, definition.getKind());
+    }
+
+    @Test
+    void testHierarchicalRouting() {
+        final String id = "tool_source_hash";
+        final String bucket = CosmosPartitioning.getBucket(id, 16);
+
+        // Reads and writes must route the same id to the same bucket
+        assertNotNull(bucket);
+        assertEquals(bucket, CosmosPartitioning.getBucket(id, 16));
+        assertEquals(new PartitionKeyBuilder().add("tool").add(bucket).build(), CosmosPartitioning.getPartitionKey("tool", bucket));
+        assertEquals("tool/" + bucket, CosmosPartitioning.getLogicalPartition("tool", bucket));
+    }
+
+    @Test
+    void testBucketsAreSpread() {
+        final int buckets = 8;
+        final Map<String, Integer> counts = new HashMap<>();
+        IntStream.range(0, 8000)
+                .mapToObj(i -> CosmosPartitioning.getBucket("tool_source_" + UUID.randomUUID(), buckets))
+                .forEach(bucket -> counts.merge(bucket, 1, Integer::sum));
+
+        assertEquals(buckets, counts.size());
+        counts.forEach((bucket, count) -> {
+            final int value = Integer.parseInt(bucket);
+            assertTrue(value >= 0 && value < buckets, "Bucket " + bucket + " is out of range");
+            assertTrue(count > 500 && count < 1500, "Bucket " + bucket + " has " + count + " items");
+        });
+    }
+}
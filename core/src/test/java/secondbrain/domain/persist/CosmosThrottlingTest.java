@@ -0,0 +1,42 @@
+package secondbrain.domain.persist;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("NullAway")
+class CosmosThrottlingTest {
+
+    @Test
+    void testOperationsThatWereNotThrottled() {
+        final CosmosThrottling throttling = new CosmosThrottling();
+        throttling.record("tool", 0, 200, List.of("0"));
+        throttling.record("tool", 0, 404, List.of("0"));
+        throttling.record(null, "tool");
+
+        assertEquals(0, throttling.getTotal());
+    }
+
+    @Test
+    void testThrottledOperations() {
+        final CosmosThrottling throttling = new CosmosThrottling();
+        // Retried and then succeeded
+        throttling.record("tool/1", 2, 200, List.of("0", "0", "1"));
+        // Failed once the retries ran out
+        throttling.record("tool/1", 0, 429, List.of("1"));
+        throttling.record("tool/2", 1, 201, Arrays.asList("2", null));
+
+        assertEquals(3, throttling.getTotal());
+
+        final String report = throttling.getReport();
+        assertTrue(report.startsWith("Cosmos DB throttled 3 operations."), report);
+        // The most throttled partitions are listed first, and a range is counted once per operation
+        assertTrue(report.contains("Logical partitions: tool/1=2, tool/2=1."), report);
+        assertTrue(report.contains("Partition key ranges: 1=2"), report);
+        assertTrue(report.contains("0=1"), report);
+        assertTrue(report.contains("2=1"), report);
+    }
+}
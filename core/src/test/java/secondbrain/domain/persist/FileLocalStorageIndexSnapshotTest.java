@@ -0,0 +1,143 @@
+package secondbrain.domain.persist;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("NullAway")
+class FileLocalStorageIndexSnapshotTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void testNoSnapshot() {
+        final FileLocalStorageIndexSnapshot snapshot = new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1));
+        assertTrue(snapshot.load().isEmpty());
+    }
+
+    @Test
+    void testWriteAndLoad() throws Exception {
+        final FileLocalStorageIndexSnapshot snapshot = new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1));
+        snapshot.recordFullScan();
+        snapshot.write(() -> List.of(
+                new FileLocalStorageIndexSnapshot.Entry("tool_source_hash1", 0, 10, 100),
+                new FileLocalStorageIndexSnapshot.Entry("tool_source with\ttab_hash2", 12345, 20, 200)));
+
+        final Optional<List<FileLocalStorageIndexSnapshot.Entry>> loaded = new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1)).load();
+
+        assertTrue(loaded.isPresent());
+        assertEquals(2, loaded.get().size());
+        assertTrue(loaded.get().contains(new FileLocalStorageIndexSnapshot.Entry("tool_source_hash1", 0, 10, 100)));
+        assertTrue(loaded.get().contains(new FileLocalStorageIndexSnapshot.Entry("tool_source with\ttab_hash2", 12345, 20, 200)));
+    }
+
+    @Test
+    void testJournalReplay() throws Exception {
+        final FileLocalStorageIndexSnapshot snapshot = new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1));
+        snapshot.recordFullScan();
+        snapshot.write(() -> List.of(new FileLocalStorageIndexSnapshot.Entry("key1", 0, 10, 100)));
+
+        snapshot.appendPut(new FileLocalStorageIndexSnapshot.Entry("key2", 5, 20, 200));
+        snapshot.appendPut(new FileLocalStorageIndexSnapshot.Entry("key3", 0, 30, 300));
+        snapshot.appendDelete("key1", 0);
+        assertEquals(3, snapshot.getJournalEntries());
+
+        final FileLocalStorageIndexSnapshot reloaded = new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1));
+        final List<FileLocalStorageIndexSnapshot.Entry> loaded = reloaded.load().orElseThrow();
+
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.stream().anyMatch(e -> e.key().equals("key2") && e.timestamp() == 5));
+        assertTrue(loaded.stream().anyMatch(e -> e.key().equals("key3")));
+        assertEquals(3, reloaded.getJournalEntries());
+
+        // Writing a new snapshot folds the journal away
+        reloaded.write(() -> loaded);
+        assertEquals(0, reloaded.getJournalEntries());
+        assertFalse(Files.exists(cacheDir.resolve(FileLocalStorageIndexSnapshot.JOURNAL_FILE_NAME)));
+        assertEquals(2, new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1)).load().orElseThrow().size());
+    }
+
+    @Test
+    void testPutDuringSnapshotIsKept() throws Exception {
+        final FileLocalStorageIndexSnapshot snapshot = new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1));
+        snapshot.recordFullScan();
+        snapshot.appendPut(new FileLocalStorageIndexSnapshot.Entry("key1", 0, 10, 100));
+
+        // A put that lands while the snapshot is reading the index is missing from the entries, but is journaled
+        snapshot.write(() -> {
+            snapshot.appendPut(new FileLocalStorageIndexSnapshot.Entry("key2", 0, 20, 200));
+            return List.of(new FileLocalStorageIndexSnapshot.Entry("key1", 0, 10, 100));
+        });
+
+        assertEquals(1, snapshot.getJournalEntries());
+        assertFalse(Files.exists(cacheDir.resolve(FileLocalStorageIndexSnapshot.ROTATED_JOURNAL_FILE_NAME)));
+        final List<FileLocalStorageIndexSnapshot.Entry> loaded = new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1)).load().orElseThrow();
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.stream().anyMatch(e -> e.key().equals("key2")));
+    }
+
+    @Test
+    void testRotatedJournalReplayed() throws Exception {
+        final FileLocalStorageIndexSnapshot snapshot = new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1));
+        snapshot.recordFullScan();
+        snapshot.write(() -> List.of(new FileLocalStorageIndexSnapshot.Entry("key1", 0, 10, 100)));
+
+        // A snapshot that stopped after rotating the journal leaves the rotated journal behind
+        Files.writeString(cacheDir.resolve(FileLocalStorageIndexSnapshot.ROTATED_JOURNAL_FILE_NAME), "P\t0\t20\t200\tkey2\n");
+        snapshot.appendDelete("key1", 0);
+
+        final List<FileLocalStorageIndexSnapshot.Entry> loaded = new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1)).load().orElseThrow();
+        assertEquals(List.of(new FileLocalStorageIndexSnapshot.Entry("key2", 0, 20, 200)), loaded);
+    }
+
+    @Test
+    void testStaleSnapshotIgnored() throws Exception {
+        Files.writeString(
+                cacheDir.resolve(FileLocalStorageIndexSnapshot.SNAPSHOT_FILE_NAME),
+                "#secondbrain-file-index v1 " + Instant.now().minus(Duration.ofDays(2)).getEpochSecond() + "\n0\t10\t100\tkey1\n");
+
+        assertTrue(new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1)).load().isEmpty());
+    }
+
+    @Test
+    void testScanTimeIsCarriedForward() throws Exception {
+        final FileLocalStorageIndexSnapshot snapshot = new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1));
+        assertTrue(snapshot.isFullScanDue());
+
+        // The directory was scanned two days ago, and the index has been saved since
+        final long scanned = Instant.now().minus(Duration.ofDays(2)).getEpochSecond();
+        Files.writeString(
+                cacheDir.resolve(FileLocalStorageIndexSnapshot.SNAPSHOT_FILE_NAME),
+                "#secondbrain-file-index v1 " + scanned + "\n0\t10\t100\tkey1\n");
+        final FileLocalStorageIndexSnapshot reloaded = new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(3));
+        assertTrue(reloaded.load().isPresent());
+        assertFalse(reloaded.isFullScanDue());
+
+        // Writing the snapshot again doesn't make the old scan look recent
+        reloaded.write(() -> List.of(new FileLocalStorageIndexSnapshot.Entry("key1", 0, 10, 100)));
+        assertEquals("#secondbrain-file-index v1 " + scanned,
+                Files.readAllLines(cacheDir.resolve(FileLocalStorageIndexSnapshot.SNAPSHOT_FILE_NAME)).getFirst());
+        assertTrue(new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1)).load().isEmpty());
+
+        reloaded.recordFullScan();
+        assertFalse(reloaded.isFullScanDue());
+        reloaded.write(() -> List.of(new FileLocalStorageIndexSnapshot.Entry("key1", 0, 10, 100)));
+        assertTrue(new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1)).load().isPresent());
+    }
+
+    @Test
+    void testCorruptSnapshotIgnored() throws Exception {
+        Files.writeString(cacheDir.resolve(FileLocalStorageIndexSnapshot.SNAPSHOT_FILE_NAME), "not a snapshot\n");
+
+        assertTrue(new FileLocalStorageIndexSnapshot(cacheDir, Duration.ofDays(1)).load().isEmpty());
+    }
+}
@@ -11,11 +11,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import secondbrain.domain.exceptionhandling.ExceptionHandler;
 import secondbrain.domain.exceptionhandling.LoggingExceptionHandler;
-import secondbrain.domain.injection.Preferred;
 import secondbrain.domain.json.JsonDeserializerJackson;
 import secondbrain.domain.logger.Loggers;
 import secondbrain.domain.test.TestConfigUtil;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Optional;
@@ -31,7 +32,6 @@ import java.util.UUID;
 public class FileLocalStorageReadWriteTest {
 
     @Inject
-    @Preferred
     FileLocalStorageReadWrite fileLocalStorage;
 
     @BeforeEach
@@ -67,6 +67,39 @@ public class FileLocalStorageReadWriteTest {
         ));
     }
 
+    @Test
+    public void testContains() {
+        final String randomValue = UUID.randomUUID().toString();
+        Assertions.assertFalse(fileLocalStorage.containsString(
+                FileLocalStorageReadWriteTest.class.getSimpleName(),
+                "testcontains",
+                randomValue));
+
+        fileLocalStorage.putString(
+                FileLocalStorageReadWriteTest.class.getSimpleName(),
+                "testcontains",
+                randomValue,
+                0L,
+                randomValue
+        );
+        Assertions.assertTrue(fileLocalStorage.containsString(
+                FileLocalStorageReadWriteTest.class.getSimpleName(),
+                "testcontains",
+                randomValue));
+
+        fileLocalStorage.putString(
+                FileLocalStorageReadWriteTest.class.getSimpleName(),
+                "testcontains",
+                randomValue + "expired",
+                Instant.now().getEpochSecond() - 10,
+                randomValue
+        );
+        Assertions.assertFalse(fileLocalStorage.containsString(
+                FileLocalStorageReadWriteTest.class.getSimpleName(),
+                "testcontains",
+                randomValue + "expired"));
+    }
+
     @Test
     public void testTTL() {
         final String randomValue = UUID.randomUUID().toString();
@@ -91,5 +124,18 @@ public class FileLocalStorageReadWriteTest {
                 randomValue
         ).isEmpty());
     }
-}
 
+    @Test
+    public void testRemove() {
+        final String randomValue = UUID.randomUUID().toString();
+        final String tool = FileLocalStorageReadWriteTest.class.getSimpleName();
+        fileLocalStorage.putString(tool, "testremove", randomValue, 0L, randomValue);
+        fileLocalStorage.putString(tool, "testremove", randomValue + "kept", 0L, randomValue);
+
+        fileLocalStorage.remove(tool, "testremove", randomValue);
+
+        Assertions.assertTrue(fileLocalStorage.getString(tool, "testremove", randomValue).isEmpty());
+        Assertions.assertFalse(Files.exists(Path.of("testlocalcache", tool + "_testremove_" + randomValue + ".cache.0")));
+        Assertions.assertEquals(Optional.of(randomValue), fileLocalStorage.getString(tool, "testremove", randomValue + "kept"));
+    }
+}
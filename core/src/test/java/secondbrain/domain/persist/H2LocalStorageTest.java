@@ -3,20 +3,34 @@ package secondbrain.domain.persist;
 import io.smallrye.config.inject.ConfigExtension;
 import io.vavr.control.Try;
 import jakarta.inject.Inject;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
 import org.jboss.weld.junit5.auto.AddBeanClasses;
 import org.jboss.weld.junit5.auto.AddExtensions;
 import org.jboss.weld.junit5.auto.EnableAutoWeld;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import secondbrain.domain.exceptionhandling.LoggingExceptionHandler;
+import secondbrain.domain.exceptions.EmptyList;
 import secondbrain.domain.json.JsonDeserializerJackson;
 import secondbrain.domain.logger.Loggers;
 import secondbrain.domain.sanitize.FinancialLocationContactRedaction;
 import secondbrain.domain.test.TestConfigUtil;
+import secondbrain.domain.zip.ApacheCommonsZStdZipper;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @SuppressWarnings("NullAway")
 @EnableAutoWeld
@@ -26,11 +40,16 @@ import java.util.UUID;
 @AddBeanClasses(LoggingExceptionHandler.class)
 @AddBeanClasses(JsonDeserializerJackson.class)
 @AddBeanClasses(FinancialLocationContactRedaction.class)
+@AddBeanClasses(ApacheCommonsZStdZipper.class)
 public class H2LocalStorageTest {
+    private static final String STALE_TOOL = H2LocalStorageTest.class.getSimpleName() + "Stale";
 
     @Inject
     H2LocalStorage h2LocalStorage;
 
+    @Inject
+    NegativeCache negativeCache;
+
     /**
      * <a href="https://github.com/weld/weld-testing/issues/81#issuecomment-1564002983">...</a>
      */
@@ -38,7 +57,9 @@ public class H2LocalStorageTest {
     void updateConfig() {
         TestConfigUtil.registerConfig(Map.of(
                 "sb.infrastructure.mock", "true",
-                "sb.cache.disable", "false"));
+                "sb.cache.disable", "false",
+                "sb.cache.stalewhilerevalidatetool", STALE_TOOL + ":60",
+                "sb.h2cache.expirybatchsize", "2"));
     }
 
     @Test
@@ -69,6 +90,19 @@ public class H2LocalStorageTest {
         Assertions.assertTrue(randomValue.equals(result) || result.contains("{{{REDACTED-PHONE}}}"));
     }
 
+    @Test
+    public void testSaveLargeValue() {
+        final String key = UUID.randomUUID().toString();
+        final String value = "SecondBrain caches compressible text. ".repeat(10_000);
+        h2LocalStorage.putString(H2LocalStorageTest.class.getSimpleName(), "test", key, value);
+
+        Assertions.assertEquals(value, h2LocalStorage.getString(
+                        H2LocalStorageTest.class.getSimpleName(),
+                        "test",
+                        key)
+                .result());
+    }
+
     @Test
     public void testSaveObject() {
         final String randomValue = UUID.randomUUID().toString();
@@ -81,6 +115,66 @@ public class H2LocalStorageTest {
                 .result().value());
     }
 
+    @Test
+    public void testSaveObjectArray() {
+        final String tool = H2LocalStorageTest.class.getSimpleName() + "Array";
+        final String key = UUID.randomUUID().toString();
+        final TestObject[] array = new TestObject[]{new TestObject("A"), new TestObject("line\nbreak"), new TestObject("C")};
+
+        Assertions.assertArrayEquals(array, h2LocalStorage.getOrPutObjectArray(tool, "test", key, 3600, TestObject.class, TestObject[].class, () -> array)
+                .result());
+
+        // The whole array is saved as a single record
+        Assertions.assertTrue(ArrayRecords.isArrayRecord(h2LocalStorage.getString(tool, "test", key).result()));
+        Assertions.assertNull(h2LocalStorage.getString(tool, "test", key + "_0").result());
+
+        final CacheResult<TestObject[]> cached = h2LocalStorage.getOrPutObjectArray(tool, "test", key, 3600, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{new TestObject("should not be called")});
+        Assertions.assertTrue(cached.fromCache());
+        Assertions.assertArrayEquals(array, cached.result());
+
+        final CacheResult<Stream<TestObject>> stream = h2LocalStorage.getOrPutObjectStream(tool, "test", key, 3600, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{new TestObject("should not be called")});
+        Assertions.assertTrue(stream.fromCache());
+        Assertions.assertEquals(List.of(array), stream.result().toList());
+    }
+
+    @Test
+    public void testStreamLargeArray() {
+        final String tool = H2LocalStorageTest.class.getSimpleName() + "LargeArray";
+        final String key = UUID.randomUUID().toString();
+        final TestObject[] array = IntStream.range(0, 10_000)
+                .mapToObj(i -> new TestObject("Element " + i))
+                .toArray(TestObject[]::new);
+        h2LocalStorage.getOrPutObjectArray(tool, "test", key, 3600, TestObject.class, TestObject[].class, () -> array);
+
+        // Elements are read as they are consumed, so only the first few are decompressed and deserialized
+        final CacheResult<Stream<TestObject>> stream = h2LocalStorage.getOrPutObjectStream(tool, "test", key, 3600, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{new TestObject("should not be called")});
+        Assertions.assertTrue(stream.fromCache());
+        try (final Stream<TestObject> elements = stream.result()) {
+            Assertions.assertEquals(List.of(array[0], array[1], array[2]), elements.limit(3).toList());
+        }
+
+        final CacheResult<Stream<TestObject>> all = h2LocalStorage.getOrPutObjectStream(tool, "test", key, 3600, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{new TestObject("should not be called")});
+        Assertions.assertEquals(List.of(array), all.result().toList());
+    }
+
+    @Test
+    public void testReadLegacyArray() {
+        final String tool = H2LocalStorageTest.class.getSimpleName() + "LegacyArray";
+        final String key = UUID.randomUUID().toString();
+        h2LocalStorage.putString(tool, "test", key, "2");
+        h2LocalStorage.putString(tool, "test", key + "_0", "{\"value\":\"A\"}");
+        h2LocalStorage.putString(tool, "test", key + "_1", "{\"value\":\"B\"}");
+
+        final CacheResult<Stream<TestObject>> stream = h2LocalStorage.getOrPutObjectStream(tool, "test", key, 3600, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{new TestObject("should not be called")});
+        Assertions.assertTrue(stream.fromCache());
+        Assertions.assertEquals(List.of(new TestObject("A"), new TestObject("B")), stream.result().toList());
+    }
+
     @Test
     public void testTTL() {
         final String randomValue = UUID.randomUUID().toString();
@@ -107,6 +201,197 @@ public class H2LocalStorageTest {
                 .result());
     }
 
+    @Test
+    public void testStaleWhileRevalidate() {
+        final String key = UUID.randomUUID().toString();
+        Assertions.assertEquals("original", h2LocalStorage.getOrPutString(STALE_TOOL, "test", key, 1, () -> "original")
+                .result());
+
+        Try.run(() -> Thread.sleep(2000));
+
+        // The expired value is returned immediately, and refreshed in the background
+        final CacheResult<String> stale = h2LocalStorage.getOrPutString(STALE_TOOL, "test", key, 10, () -> "refreshed");
+        Assertions.assertEquals("original", stale.result());
+        Assertions.assertTrue(stale.fromCache());
+        Assertions.assertTrue(stale.stale());
+
+        Try.run(() -> Thread.sleep(1000));
+
+        final CacheResult<String> refreshed = h2LocalStorage.getString(STALE_TOOL, "test", key);
+        Assertions.assertEquals("refreshed", refreshed.result());
+        Assertions.assertFalse(refreshed.stale());
+    }
+
+    @Test
+    public void testNegativeCache() {
+        final String tool = H2LocalStorageTest.class.getSimpleName() + "Negative";
+        final String key = UUID.randomUUID().toString();
+        final int hits = negativeCache.getNegativeHits(tool);
+
+        Assertions.assertTrue(h2LocalStorage.getOrPutList(tool, "test", key, 3600, TestObject.class, List::of)
+                .result().isEmpty());
+
+        final CacheResult<List<TestObject>> cached = h2LocalStorage.getOrPutList(tool, "test", key, 3600, TestObject.class,
+                () -> List.of(new TestObject("should not be called")));
+        Assertions.assertTrue(cached.fromCache());
+        Assertions.assertTrue(cached.result().isEmpty());
+        Assertions.assertEquals(hits + 1, negativeCache.getNegativeHits(tool));
+    }
+
+    @Test
+    public void testStaleArray() {
+        final String key = UUID.randomUUID().toString();
+        final TestObject[] original = new TestObject[]{new TestObject("original")};
+        h2LocalStorage.getOrPutObjectArray(STALE_TOOL, "test", key, 1, TestObject.class, TestObject[].class, () -> original);
+
+        Try.run(() -> Thread.sleep(2000));
+
+        final CacheResult<TestObject[]> array = h2LocalStorage.getOrPutObjectArray(STALE_TOOL, "test", key, 10, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{new TestObject("refreshed")});
+        Assertions.assertArrayEquals(original, array.result());
+        Assertions.assertTrue(array.stale());
+
+        final String streamKey = UUID.randomUUID().toString();
+        h2LocalStorage.getOrPutObjectStream(STALE_TOOL, "test", streamKey, 1, TestObject.class, TestObject[].class, () -> original);
+
+        Try.run(() -> Thread.sleep(2000));
+
+        final CacheResult<Stream<TestObject>> stream = h2LocalStorage.getOrPutObjectStream(STALE_TOOL, "test", streamKey, 10, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{new TestObject("refreshed")});
+        Assertions.assertTrue(stream.stale());
+        try (final Stream<TestObject> elements = stream.result()) {
+            Assertions.assertEquals(List.of(original), elements.toList());
+        }
+    }
+
+    @Test
+    public void testNegativeCacheStream() {
+        final String tool = H2LocalStorageTest.class.getSimpleName() + "NegativeStream";
+        final String key = UUID.randomUUID().toString();
+        final int hits = negativeCache.getNegativeHits(tool);
+
+        h2LocalStorage.getOrPutObjectStream(tool, "test", key, 3600, TestObject.class, TestObject[].class, () -> new TestObject[]{});
+
+        final CacheResult<Stream<TestObject>> cached = h2LocalStorage.getOrPutObjectStream(tool, "test", key, 3600, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{new TestObject("should not be called")});
+        Assertions.assertTrue(cached.fromCache());
+        try (final Stream<TestObject> elements = cached.result()) {
+            Assertions.assertEquals(0, elements.count());
+        }
+        Assertions.assertEquals(hits + 1, negativeCache.getNegativeHits(tool));
+    }
+
+    @Test
+    public void testNegativeCacheEmptyListException() {
+        final String tool = H2LocalStorageTest.class.getSimpleName() + "Negative";
+        final String key = UUID.randomUUID().toString();
+
+        final CacheResult<List<TestObject>> generated = h2LocalStorage.getOrPutList(tool, "test", key, 3600, TestObject.class, () -> {
+            throw new EmptyList("No results");
+        });
+        Assertions.assertFalse(generated.fromCache());
+        Assertions.assertTrue(generated.result().isEmpty());
+
+        final CacheResult<List<TestObject>> cached = h2LocalStorage.getOrPutList(tool, "test", key, 3600, TestObject.class,
+                () -> List.of(new TestObject("should not be called")));
+        Assertions.assertTrue(cached.fromCache());
+        Assertions.assertTrue(cached.result().isEmpty());
+    }
+
+    @Test
+    public void testDedup() {
+        final String tool = H2LocalStorageTest.class.getSimpleName() + "Dedup";
+        final String value = "shared " + UUID.randomUUID();
+        final String first = UUID.randomUUID().toString();
+        final String second = UUID.randomUUID().toString();
+        final long dedupedWrites = h2LocalStorage.getDedupedWrites();
+
+        h2LocalStorage.putString(tool, "test", first, value);
+        h2LocalStorage.putString(tool, "test", second, value);
+
+        Assertions.assertEquals(dedupedWrites + 1, h2LocalStorage.getDedupedWrites());
+        Assertions.assertEquals(value, h2LocalStorage.getString(tool, "test", first).result());
+        Assertions.assertEquals(value, h2LocalStorage.getString(tool, "test", second).result());
+
+        // Values that are still referenced, or were used recently, are never collected
+        h2LocalStorage.deleteUnreferencedValues();
+        Assertions.assertEquals(value, h2LocalStorage.getString(tool, "test", second).result());
+    }
+
+    @Test
+    public void testSnapshot(@TempDir final Path tempDir) {
+        final String tool = H2LocalStorageTest.class.getSimpleName() + "Snapshot" + UUID.randomUUID();
+        final String key = UUID.randomUUID().toString();
+        final Path snapshot = tempDir.resolve("snapshot.zst");
+        h2LocalStorage.putString(tool, "test", key, "original");
+
+        Assertions.assertEquals(1, h2LocalStorage.exportSnapshot(snapshot, List.of(tool), null, null));
+        Assertions.assertEquals(0, h2LocalStorage.exportSnapshot(tempDir.resolve("empty.zst"), List.of(tool), Instant.now().plusSeconds(60), null));
+
+        h2LocalStorage.putString(tool, "test", key, "changed");
+        Assertions.assertEquals(1, h2LocalStorage.importSnapshot(snapshot));
+        Assertions.assertEquals("original", h2LocalStorage.getString(tool, "test", key).result());
+    }
+
+    @Test
+    public void testUsageAndPurge() {
+        final String tool = H2LocalStorageTest.class.getSimpleName() + "Usage" + UUID.randomUUID();
+        h2LocalStorage.putString(tool, "first", "a", "value");
+        h2LocalStorage.putString(tool, "first", "b", "value");
+        h2LocalStorage.putString(tool, "second", "a", "value");
+
+        final List<CacheUsage> usage = h2LocalStorage.getUsage(List.of(tool));
+        Assertions.assertEquals(2, usage.size());
+        final CacheUsage first = usage.stream().filter(row -> row.source().equals("first")).findFirst().orElseThrow();
+        Assertions.assertEquals(2, first.count());
+        Assertions.assertEquals(2, first.lastHour());
+        Assertions.assertTrue(first.bytes() > 0);
+
+        Assertions.assertEquals(2, h2LocalStorage.purge(tool, "first"));
+        Assertions.assertNull(h2LocalStorage.getString(tool, "first", "a").result());
+        Assertions.assertEquals("value", h2LocalStorage.getString(tool, "second", "a").result());
+
+        Assertions.assertEquals(1, h2LocalStorage.purge(tool, null));
+        Assertions.assertTrue(h2LocalStorage.getUsage(List.of(tool)).isEmpty());
+    }
+
+    @Test
+    public void testUnknownAge(@TempDir final Path tempDir) throws IOException {
+        final String tool = H2LocalStorageTest.class.getSimpleName() + "Age" + UUID.randomUUID();
+        h2LocalStorage.putString(tool, "test", "new", "value");
+
+        // A value exported from a cache that didn't record when values were saved
+        final Path snapshot = tempDir.resolve("snapshot.zst");
+        try (final Writer writer = new OutputStreamWriter(new ZstdCompressorOutputStream(Files.newOutputStream(snapshot)), StandardCharsets.UTF_8)) {
+            writer.write("{\"tool\":\"" + tool + "\",\"source\":\"test\",\"promptHash\":\"old\",\"value\":\"value\"}\n");
+        }
+        Assertions.assertEquals(1, h2LocalStorage.importSnapshot(snapshot));
+
+        final CacheUsage usage = h2LocalStorage.getUsage(List.of(tool)).getFirst();
+        Assertions.assertEquals(2, usage.count());
+        Assertions.assertEquals(1, usage.lastHour());
+        Assertions.assertEquals(1, usage.unknownAge());
+
+        // Values of unknown age are only exported when no date range is given
+        Assertions.assertEquals(2, h2LocalStorage.exportSnapshot(tempDir.resolve("all.zst"), List.of(tool), null, null));
+        Assertions.assertEquals(1, h2LocalStorage.exportSnapshot(tempDir.resolve("recent.zst"), List.of(tool), Instant.now().minusSeconds(3600), null));
+    }
+
+    @Test
+    public void testDeleteExpired() {
+        final String tool = H2LocalStorageTest.class.getSimpleName() + "Expiry";
+        final List<String> keys = IntStream.range(0, 5).mapToObj(i -> UUID.randomUUID().toString()).toList();
+        keys.forEach(key -> h2LocalStorage.putString(tool, "test", key, 1, key));
+        h2LocalStorage.putString(tool, "test", "noexpiry", "value");
+
+        Try.run(() -> Thread.sleep(2000));
+
+        // Deleted in batches of 2, so this crosses several batch boundaries
+        Assertions.assertTrue(h2LocalStorage.deleteExpired() >= keys.size());
+        Assertions.assertEquals(0, h2LocalStorage.deleteExpired());
+        Assertions.assertEquals("value", h2LocalStorage.getString(tool, "test", "noexpiry").result());
+    }
+
     record TestObject(String value) {
     }
 }
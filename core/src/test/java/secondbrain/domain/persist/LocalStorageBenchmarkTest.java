@@ -0,0 +1,90 @@
+package secondbrain.domain.persist;
+
+import io.smallrye.config.inject.ConfigExtension;
+import jakarta.inject.Inject;
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import secondbrain.domain.exceptionhandling.LoggingExceptionHandler;
+import secondbrain.domain.json.JsonDeserializerJackson;
+import secondbrain.domain.logger.Loggers;
+import secondbrain.domain.sanitize.FinancialLocationContactRedaction;
+import secondbrain.domain.test.TestConfigUtil;
+import secondbrain.domain.zip.ApacheCommonsZStdZipper;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the JDBC and MVStore cache backends. Redaction is disabled so the timings only include the cache.
+ */
+@SuppressWarnings("NullAway")
+@EnableAutoWeld
+@AddExtensions(ConfigExtension.class)
+@AddBeanClasses(H2LocalStorage.class)
+@AddBeanClasses(MVStoreLocalStorage.class)
+@AddBeanClasses(Loggers.class)
+@AddBeanClasses(LoggingExceptionHandler.class)
+@AddBeanClasses(JsonDeserializerJackson.class)
+@AddBeanClasses(FinancialLocationContactRedaction.class)
+@AddBeanClasses(ApacheCommonsZStdZipper.class)
+public class LocalStorageBenchmarkTest {
+    private static final int ENTRIES = 5_000;
+    private static final String VALUE = "{\"id\":1234,\"subject\":\"A cached ticket\",\"status\":\"open\",\"comments\":[\"first\",\"second\"]}";
+
+    @Inject
+    H2LocalStorage h2LocalStorage;
+
+    @Inject
+    MVStoreLocalStorage mvStoreLocalStorage;
+
+    @TempDir
+    private Path cacheDir;
+
+    @BeforeEach
+    void updateConfig() {
+        TestConfigUtil.registerConfig(Map.of(
+                "sb.cache.disable", "false",
+                "sb.cache.disableredaction", "true",
+                "sb.cache.localdir", cacheDir.toString(),
+                "sb.h2cache.path", cacheDir.resolve("benchmark").toString()));
+    }
+
+    @Test
+    @Disabled("Benchmark, can be enabled for manual testing")
+    public void benchmark() {
+        benchmark("H2 JDBC", h2LocalStorage);
+        benchmark("MVStore", mvStoreLocalStorage);
+    }
+
+    private void benchmark(final String name, final LocalStorage localStorage) {
+        final String tool = LocalStorageBenchmarkTest.class.getSimpleName();
+        final List<String> keys = IntStream.range(0, ENTRIES).mapToObj(i -> UUID.randomUUID().toString()).toList();
+
+        final long putStart = System.nanoTime();
+        keys.forEach(key -> localStorage.putString(tool, "benchmark", key, VALUE));
+        final long putNanos = System.nanoTime() - putStart;
+
+        final long getStart = System.nanoTime();
+        keys.forEach(key -> Assertions.assertEquals(VALUE, localStorage.getString(tool, "benchmark", key).result()));
+        final long getNanos = System.nanoTime() - getStart;
+
+        final long parallelGetStart = System.nanoTime();
+        keys.parallelStream().forEach(key -> localStorage.getString(tool, "benchmark", key));
+        final long parallelGetNanos = System.nanoTime() - parallelGetStart;
+
+        System.out.printf("%s: put %.1f us/op, get %.1f us/op, parallel get %.1f us/op%n",
+                name,
+                putNanos / 1000.0 / ENTRIES,
+                getNanos / 1000.0 / ENTRIES,
+                parallelGetNanos / 1000.0 / ENTRIES);
+    }
+}
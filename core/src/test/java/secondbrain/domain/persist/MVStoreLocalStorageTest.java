@@ -0,0 +1,157 @@
+package secondbrain.domain.persist;
+
+import io.smallrye.config.inject.ConfigExtension;
+import io.vavr.control.Try;
+import jakarta.inject.Inject;
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import secondbrain.domain.exceptionhandling.LoggingExceptionHandler;
+import secondbrain.domain.json.JsonDeserializerJackson;
+import secondbrain.domain.logger.Loggers;
+import secondbrain.domain.sanitize.FinancialLocationContactRedaction;
+import secondbrain.domain.test.TestConfigUtil;
+import secondbrain.domain.zip.ApacheCommonsZStdZipper;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+@SuppressWarnings("NullAway")
+@EnableAutoWeld
+@AddExtensions(ConfigExtension.class)
+@AddBeanClasses(MVStoreLocalStorage.class)
+@AddBeanClasses(Loggers.class)
+@AddBeanClasses(LoggingExceptionHandler.class)
+@AddBeanClasses(JsonDeserializerJackson.class)
+@AddBeanClasses(FinancialLocationContactRedaction.class)
+@AddBeanClasses(ApacheCommonsZStdZipper.class)
+public class MVStoreLocalStorageTest {
+    private static final String TOOL = MVStoreLocalStorageTest.class.getSimpleName();
+
+    @Inject
+    MVStoreLocalStorage mvStoreLocalStorage;
+
+    @TempDir
+    private Path cacheDir;
+
+    @BeforeEach
+    void updateConfig() {
+        TestConfigUtil.registerConfig(Map.of(
+                "sb.cache.disable", "false",
+                "sb.cache.localdir", cacheDir.toString()));
+    }
+
+    @Test
+    public void testSave() {
+        final String key = UUID.randomUUID().toString();
+        Assertions.assertNull(mvStoreLocalStorage.getString(TOOL, "test", key).result());
+
+        Assertions.assertEquals("value", mvStoreLocalStorage.getOrPutString(TOOL, "test", key, () -> "value").result());
+
+        final CacheResult<String> result = mvStoreLocalStorage.getString(TOOL, "test", key);
+        Assertions.assertEquals("value", result.result());
+        Assertions.assertTrue(result.fromCache());
+    }
+
+    @Test
+    public void testSaveLargeValue() {
+        final String key = UUID.randomUUID().toString();
+        final String value = "SecondBrain caches compressible text. ".repeat(10_000);
+        mvStoreLocalStorage.putString(TOOL, "test", key, value);
+
+        Assertions.assertEquals(value, mvStoreLocalStorage.getString(TOOL, "test", key).result());
+    }
+
+    @Test
+    public void testSaveObjectAndList() {
+        final String key = UUID.randomUUID().toString();
+        mvStoreLocalStorage.getOrPutObject(TOOL, "test", key, TestObject.class, () -> new TestObject("value"));
+        final CacheResult<TestObject> object = mvStoreLocalStorage.getOrPutObject(TOOL, "test", key, TestObject.class, () -> new TestObject("changed"));
+        Assertions.assertEquals("value", object.result().value());
+        Assertions.assertTrue(object.fromCache());
+
+        final String listKey = UUID.randomUUID().toString();
+        mvStoreLocalStorage.getOrPutList(TOOL, "test", listKey, TestObject.class, () -> List.of(new TestObject("a"), new TestObject("b")));
+        final CacheResult<List<TestObject>> list = mvStoreLocalStorage.getOrPutList(TOOL, "test", listKey, TestObject.class, List::of);
+        Assertions.assertEquals(2, list.result().size());
+        Assertions.assertTrue(list.fromCache());
+    }
+
+    @Test
+    public void testSaveArray() {
+        final String key = UUID.randomUUID().toString();
+        mvStoreLocalStorage.getOrPutObjectArray(TOOL, "test", key, 0, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{new TestObject("a"), new TestObject("b")});
+
+        final CacheResult<TestObject[]> result = mvStoreLocalStorage.getOrPutObjectArray(TOOL, "test", key, 0, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{});
+        Assertions.assertTrue(result.fromCache());
+        Assertions.assertEquals("b", result.result()[1].value());
+    }
+
+    @Test
+    public void testStreamArray() {
+        final String key = UUID.randomUUID().toString();
+        final TestObject[] array = IntStream.range(0, 10_000)
+                .mapToObj(i -> new TestObject("Element " + i))
+                .toArray(TestObject[]::new);
+        mvStoreLocalStorage.getOrPutObjectArray(TOOL, "test", key, 0, TestObject.class, TestObject[].class, () -> array);
+
+        final CacheResult<Stream<TestObject>> stream = mvStoreLocalStorage.getOrPutObjectStream(TOOL, "test", key, 0, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{});
+        Assertions.assertTrue(stream.fromCache());
+        try (final Stream<TestObject> elements = stream.result()) {
+            Assertions.assertEquals(List.of(array[0], array[1]), elements.limit(2).toList());
+        }
+
+        Assertions.assertEquals(List.of(array), mvStoreLocalStorage.getOrPutObjectStream(TOOL, "test", key, 0, TestObject.class, TestObject[].class,
+                () -> new TestObject[]{}).result().toList());
+    }
+
+    @Test
+    public void testExpiry() {
+        final String key = UUID.randomUUID().toString();
+        mvStoreLocalStorage.putString(TOOL, "test", key, 1, "value");
+        mvStoreLocalStorage.putString(TOOL, "test", "noexpiry", "value");
+        Assertions.assertEquals("value", mvStoreLocalStorage.getString(TOOL, "test", key).result());
+
+        Try.run(() -> Thread.sleep(2000));
+
+        Assertions.assertNull(mvStoreLocalStorage.getString(TOOL, "test", key).result());
+        Assertions.assertTrue(mvStoreLocalStorage.deleteExpired() >= 1);
+        Assertions.assertEquals("value", mvStoreLocalStorage.getString(TOOL, "test", "noexpiry").result());
+    }
+
+    @Test
+    public void testUsageAndPurge() {
+        mvStoreLocalStorage.putString(TOOL, "first", "a", "value");
+        mvStoreLocalStorage.putString(TOOL, "first", "b", "value");
+        mvStoreLocalStorage.putString(TOOL, "second", "a", "value");
+
+        final List<CacheUsage> usage = mvStoreLocalStorage.getUsage(List.of(TOOL));
+        Assertions.assertEquals(2, usage.size());
+        final CacheUsage first = usage.stream().filter(row -> row.source().equals("first")).findFirst().orElseThrow();
+        Assertions.assertEquals(2, first.count());
+        Assertions.assertEquals(2, first.unknownAge());
+        Assertions.assertTrue(first.bytes() > 0);
+
+        Assertions.assertEquals(2, mvStoreLocalStorage.purge(TOOL, "first"));
+        Assertions.assertNull(mvStoreLocalStorage.getString(TOOL, "first", "a").result());
+        Assertions.assertEquals("value", mvStoreLocalStorage.getString(TOOL, "second", "a").result());
+
+        Assertions.assertEquals(1, mvStoreLocalStorage.purge(TOOL, null));
+        mvStoreLocalStorage.compact();
+        Assertions.assertTrue(mvStoreLocalStorage.getUsage(List.of()).isEmpty());
+    }
+
+    record TestObject(String value) {
+    }
+}
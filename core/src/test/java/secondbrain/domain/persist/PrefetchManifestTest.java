@@ -0,0 +1,68 @@
+package secondbrain.domain.persist;
+
+import io.smallrye.config.inject.ConfigExtension;
+import jakarta.inject.Inject;
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import secondbrain.domain.exceptionhandling.LoggingExceptionHandler;
+import secondbrain.domain.json.JsonDeserializerJackson;
+import secondbrain.domain.logger.Loggers;
+import secondbrain.domain.test.TestConfigUtil;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+@SuppressWarnings("NullAway")
+@EnableAutoWeld
+@AddExtensions(ConfigExtension.class)
+@AddBeanClasses(PrefetchManifest.class)
+@AddBeanClasses(Loggers.class)
+@AddBeanClasses(LoggingExceptionHandler.class)
+@AddBeanClasses(JsonDeserializerJackson.class)
+public class PrefetchManifestTest {
+    @Inject
+    private PrefetchManifest prefetchManifest;
+
+    @TempDir
+    private Path cacheDir;
+
+    @BeforeEach
+    public void setUp() {
+        TestConfigUtil.registerConfig(Map.of(
+                "sb.cache.localdir", cacheDir.toString(),
+                "sb.cache.prefetchmaxkeys", "2"));
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        Assertions.assertTrue(prefetchManifest.getPreviousKeys().isEmpty());
+
+        prefetchManifest.recordAccess("tool", "source", "hash1");
+        prefetchManifest.recordAccess("tool", "source", "hash1");
+        prefetchManifest.recordAccess("tool", "source", "hash2");
+        // Ignored because the manifest is full
+        prefetchManifest.recordAccess("tool", "source", "hash3");
+        prefetchManifest.save();
+
+        Assertions.assertEquals(2, prefetchManifest.getPreviousKeys().size());
+        Assertions.assertTrue(prefetchManifest.getPreviousKeys().contains(new PrefetchManifest.CacheKey("tool", "source", "hash1")));
+    }
+
+    @Test
+    public void testPrefetchHits() {
+        prefetchManifest.recordPrefetch(new PrefetchManifest.CacheKey("tool", "source", "hash1"), true);
+        prefetchManifest.recordPrefetch(new PrefetchManifest.CacheKey("tool", "source", "hash2"), false);
+
+        prefetchManifest.recordLocalHit("tool", "source", "hash1");
+        prefetchManifest.recordLocalHit("tool", "source", "hash1");
+        prefetchManifest.recordLocalHit("tool", "source", "hash2");
+
+        Assertions.assertEquals(1, prefetchManifest.getTotalPrefetched());
+        Assertions.assertEquals(1, prefetchManifest.getTotalPrefetchHits());
+    }
+}
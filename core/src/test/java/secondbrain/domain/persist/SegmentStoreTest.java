@@ -0,0 +1,250 @@
+package secondbrain.domain.persist;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentStoreTest {
+    private static final Logger LOGGER = Logger.getLogger(SegmentStoreTest.class.getName());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testPutAndGet() throws IOException {
+        try (final SegmentStore store = new SegmentStore(tempDir, 1024 * 1024, 0.5, LOGGER)) {
+            store.put("key", "value", 0);
+            store.put("unicode", "välüe ✓", 0);
+
+            assertEquals("value", store.get("key").orElseThrow());
+            assertEquals("välüe ✓", store.get("unicode").orElseThrow());
+            assertTrue(store.get("missing").isEmpty());
+        }
+    }
+
+    @Test
+    void testOverwrite() throws IOException {
+        try (final SegmentStore store = new SegmentStore(tempDir, 1024 * 1024, 0.5, LOGGER)) {
+            store.put("key", "first", 0);
+            store.put("key", "second", 0);
+
+            assertEquals("second", store.get("key").orElseThrow());
+            assertEquals(1, store.size());
+            assertTrue(store.liveBytes() < store.totalBytes());
+        }
+    }
+
+    @Test
+    void testExpired() throws IOException {
+        try (final SegmentStore store = new SegmentStore(tempDir, 1024 * 1024, 0.5, LOGGER)) {
+            store.put("expired", "value", Instant.now().getEpochSecond() - 10);
+            store.put("current", "value", Instant.now().getEpochSecond() + 3600);
+
+            assertTrue(store.get("expired").isEmpty());
+            assertEquals("value", store.get("current").orElseThrow());
+            assertFalse(store.contains("expired"));
+            assertTrue(store.contains("current"));
+            assertFalse(store.contains("missing"));
+        }
+    }
+
+    @Test
+    void testRecovery() throws IOException {
+        try (final SegmentStore store = new SegmentStore(tempDir, 64, 0.5, LOGGER)) {
+            for (int i = 0; i < 10; i++) {
+                store.put("key" + i, "value" + i, 0);
+            }
+            store.put("key0", "updated", 0);
+            assertTrue(store.segmentCount() > 1);
+        }
+
+        try (final SegmentStore store = new SegmentStore(tempDir, 64, 0.5, LOGGER)) {
+            assertEquals(10, store.size());
+            assertEquals("updated", store.get("key0").orElseThrow());
+            assertEquals("value9", store.get("key9").orElseThrow());
+
+            store.put("key10", "value10", 0);
+            assertEquals("value10", store.get("key10").orElseThrow());
+        }
+    }
+
+    @Test
+    void testTornWriteIsTruncated() throws IOException {
+        try (final SegmentStore store = new SegmentStore(tempDir, 1024 * 1024, 0.5, LOGGER)) {
+            store.put("key1", "value1", 0);
+            store.put("key2", "value2", 0);
+        }
+
+        // Simulate a crash part way through writing a record
+        final Path segment = tempDir.resolve("segment-00000000.log");
+        final long validSize = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (final SegmentStore store = new SegmentStore(tempDir, 1024 * 1024, 0.5, LOGGER)) {
+            assertEquals(2, store.size());
+            assertEquals(7, store.getTruncatedBytes());
+            assertEquals(validSize, Files.size(segment));
+
+            store.put("key3", "value3", 0);
+            assertEquals("value1", store.get("key1").orElseThrow());
+            assertEquals("value3", store.get("key3").orElseThrow());
+        }
+
+        try (final SegmentStore store = new SegmentStore(tempDir, 1024 * 1024, 0.5, LOGGER)) {
+            assertEquals(3, store.size());
+            assertEquals(0, store.getTruncatedBytes());
+        }
+    }
+
+    @Test
+    void testCompaction() throws IOException {
+        try (final SegmentStore store = new SegmentStore(tempDir, 128, 0.5, LOGGER)) {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 5; i++) {
+                    store.put("key" + i, "value" + round + "_" + i, 0);
+                }
+            }
+            store.put("expired", "value", Instant.now().getEpochSecond() - 10);
+
+            final int segmentsBefore = store.segmentCount();
+            final long bytesBefore = store.totalBytes();
+
+            assertTrue(store.compact() > 0);
+            assertTrue(store.segmentCount() < segmentsBefore);
+            assertTrue(store.totalBytes() < bytesBefore);
+            assertEquals(5, store.size());
+
+            for (int i = 0; i < 5; i++) {
+                assertEquals("value4_" + i, store.get("key" + i).orElseThrow());
+            }
+        }
+
+        try (final SegmentStore store = new SegmentStore(tempDir, 128, 0.5, LOGGER)) {
+            for (int i = 0; i < 5; i++) {
+                assertEquals("value4_" + i, store.get("key" + i).orElseThrow());
+            }
+        }
+    }
+
+    @Test
+    void testCompactionCopyDoesNotReplaceNewerValue() throws IOException {
+        try (final SegmentStore store = new SegmentStore(tempDir, 1024 * 1024, 0.5, LOGGER)) {
+            store.put("key", "first", 0);
+            final SegmentStore.Location location = store.getLocation("key").orElseThrow();
+
+            // A write lands after compaction has read the record, but before the copy is written
+            store.put("key", "second", 0);
+
+            assertFalse(store.copy("key", location));
+            assertEquals("second", store.get("key").orElseThrow());
+        }
+
+        try (final SegmentStore store = new SegmentStore(tempDir, 1024 * 1024, 0.5, LOGGER)) {
+            assertEquals("second", store.get("key").orElseThrow());
+        }
+    }
+
+    @Test
+    void testRemove() throws IOException {
+        try (final SegmentStore store = new SegmentStore(tempDir, 64, 0.5, LOGGER)) {
+            store.put("key", "first", 0);
+            store.put("other", "value", 0);
+            store.put("key", "second", 0);
+            store.remove("key");
+
+            assertTrue(store.get("key").isEmpty());
+        }
+
+        try (final SegmentStore store = new SegmentStore(tempDir, 64, 0.5, LOGGER)) {
+            assertTrue(store.get("key").isEmpty());
+            assertEquals("value", store.get("other").orElseThrow());
+
+            store.put("key", "third", 0);
+            assertEquals("third", store.get("key").orElseThrow());
+        }
+
+        try (final SegmentStore store = new SegmentStore(tempDir, 64, 0.5, LOGGER)) {
+            assertEquals("third", store.get("key").orElseThrow());
+        }
+    }
+
+    @Test
+    void testExpiredValueDoesNotBringBackOlderValue() throws IOException {
+        try (final SegmentStore store = new SegmentStore(tempDir, 100, 0.5, LOGGER)) {
+            // The first segment stays mostly live, so it is not compacted
+            store.put("k", "v1", 0);
+            store.put("a", "v1", 0);
+            store.put("b", "v1", 0);
+            store.put("c", "v1", 0);
+            // The newer value fills a segment of its own, which compaction deletes once the value expires
+            store.put("k", "x".repeat(60), Instant.now().getEpochSecond() - 10);
+            store.put("d", "v1", 0);
+
+            assertTrue(store.compact() > 0);
+            assertTrue(store.get("k").isEmpty());
+        }
+
+        try (final SegmentStore store = new SegmentStore(tempDir, 100, 0.5, LOGGER)) {
+            assertTrue(store.get("k").isEmpty());
+            assertEquals("v1", store.get("a").orElseThrow());
+            assertEquals("v1", store.get("d").orElseThrow());
+        }
+    }
+
+    @Test
+    void testTombstonesAreDroppedWithTheOldestSegment() throws IOException {
+        try (final SegmentStore store = new SegmentStore(tempDir, 64, 1.0, LOGGER)) {
+            store.put("key", "value", 0);
+            store.remove("key");
+            for (int i = 0; i < 5; i++) {
+                store.put("other" + i, "value", 0);
+            }
+
+            // Every sealed segment is compacted, so nothing older than the tombstone remains
+            store.compact();
+            store.compact();
+        }
+
+        try (final SegmentStore store = new SegmentStore(tempDir, 64, 1.0, LOGGER)) {
+            assertTrue(store.get("key").isEmpty());
+            assertEquals(5, store.size());
+        }
+    }
+
+    @Test
+    void testClear() throws IOException {
+        final Path saved = Files.createTempDirectory("segments");
+        try (final SegmentStore store = new SegmentStore(tempDir, 64, 0.5, LOGGER)) {
+            for (int i = 0; i < 10; i++) {
+                store.put("key" + i, "value" + i, 0);
+            }
+            Files.copy(tempDir.resolve("segment-00000000.log"), saved.resolve("segment-00000000.log"));
+
+            store.clear();
+
+            assertEquals(0, store.size());
+            assertEquals(1, store.segmentCount());
+            assertTrue(store.get("key0").isEmpty());
+        }
+
+        // The process stopped before the older segments were deleted
+        Files.copy(saved.resolve("segment-00000000.log"), tempDir.resolve("segment-00000000.log"));
+
+        try (final SegmentStore store = new SegmentStore(tempDir, 64, 0.5, LOGGER)) {
+            assertEquals(0, store.size());
+            assertEquals(1, store.segmentCount());
+            assertFalse(Files.exists(tempDir.resolve("segment-00000000.log")));
+
+            store.put("key0", "new", 0);
+            assertEquals("new", store.get("key0").orElseThrow());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package secondbrain.domain.vector;
+
+import io.smallrye.config.inject.ConfigExtension;
+import jakarta.inject.Inject;
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import secondbrain.domain.context.JdlSentenceVectorizer;
+import secondbrain.domain.logger.Loggers;
+import secondbrain.domain.test.TestConfigUtil;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@EnableAutoWeld
+@AddExtensions(ConfigExtension.class)
+@AddBeanClasses(JdlSentenceVectorizer.class)
+@AddBeanClasses(Loggers.class)
+public class OnnxSentenceVectorizerTest {
+
+    @Inject
+    private JdlSentenceVectorizer jdlSentenceVectorizer;
+
+    @BeforeAll
+    static void registerConfig() {
+        TestConfigUtil.registerConfig(Map.of(
+                "sb.vectorizer.engine", "onnxruntime",
+                "sb.vectorizer.modelpath", "/tmp/" + UUID.randomUUID(),
+                "sb.vectorizer.quantized", "true"
+        ));
+    }
+
+    @Test
+    public void testMissingModelDegradesGracefully() {
+        // The ONNX engine never falls back to downloading the PyTorch model
+        assertNull(jdlSentenceVectorizer.vectorize("This is a test sentence."));
+        assertTrue(jdlSentenceVectorizer.vectorize(List.of("This is a test sentence."), "hidden").isEmpty());
+    }
+}
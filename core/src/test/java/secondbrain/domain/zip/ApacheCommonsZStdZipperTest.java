@@ -2,12 +2,28 @@ package secondbrain.domain.zip;
 
 import io.smallrye.common.annotation.Identifier;
 import io.smallrye.config.inject.ConfigExtension;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictTrainer;
 import jakarta.inject.Inject;
 import org.jboss.weld.junit5.auto.AddBeanClasses;
 import org.jboss.weld.junit5.auto.AddExtensions;
 import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import secondbrain.domain.exceptionhandling.LoggingExceptionHandler;
 import secondbrain.domain.logger.Loggers;
+import secondbrain.domain.test.TestConfigUtil;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -16,11 +32,23 @@ import static org.junit.jupiter.api.Assertions.*;
 @AddExtensions(ConfigExtension.class)
 @AddBeanClasses(ApacheCommonsZStdZipper.class)
 @AddBeanClasses(Loggers.class)
+@AddBeanClasses(LoggingExceptionHandler.class)
 class ApacheCommonsZStdZipperTest {
     @Inject
     @Identifier("ApacheCommonsZStdZipper")
     private ApacheCommonsZStdZipper zipper;
 
+    @Inject
+    private ZstdDictionaries zstdDictionaries;
+
+    @TempDir
+    private Path cacheDir;
+
+    @BeforeEach
+    void setUp() {
+        TestConfigUtil.registerConfig(Map.of("sb.cache.localdir", cacheDir.toString()));
+    }
+
     @Test
     void compressAndDecompressString_roundTrip() {
         String original = "Hello, SecondBrain!";
@@ -40,6 +68,101 @@ class ApacheCommonsZStdZipperTest {
         assertEquals(original, decompressed);
     }
 
+    @Test
+    void compressAndDecompressBytes_roundTrip() {
+        String original = "SecondBrain ".repeat(10_000);
+        byte[] compressed = zipper.compressBytes(original);
+        assertNotNull(compressed);
+        assertTrue(compressed.length < original.length());
+        assertEquals(original, zipper.decompressBytes(compressed));
+        // The binary and Base64 forms hold the same data
+        assertEquals(original, zipper.decompressString(Base64.getEncoder().encodeToString(compressed)));
+    }
+
+    @Test
+    void compressAndDecompressBytes_dictionary() {
+        final List<String> samples = IntStream.range(0, 500)
+                .mapToObj(i -> "{\"id\":" + i + ",\"subject\":\"Ticket " + i + "\",\"status\":\"open\",\"priority\":\"normal\",\"requester\":{\"name\":\"User " + i + "\"}}")
+                .toList();
+        final long dictionaryId = zstdDictionaries.train("DictionaryTool", samples);
+
+        final String original = "{\"id\":1000,\"subject\":\"Ticket 1000\",\"status\":\"open\",\"priority\":\"normal\",\"requester\":{\"name\":\"User 1000\"}}";
+        final byte[] withDictionary = zipper.compressBytes(original, "DictionaryTool");
+        final byte[] withoutDictionary = zipper.compressBytes(original, "OtherTool");
+
+        assertNotNull(withDictionary);
+        assertNotNull(withoutDictionary);
+        assertEquals(dictionaryId, Zstd.getDictIdFromFrame(withDictionary));
+        assertEquals(0, Zstd.getDictIdFromFrame(withoutDictionary));
+        assertTrue(withDictionary.length < withoutDictionary.length);
+        assertEquals(original, zipper.decompressBytes(withDictionary));
+        assertEquals(original, zipper.decompressBytes(withoutDictionary));
+    }
+
+    @Test
+    void decompressStream_roundTrip() throws Exception {
+        final String original = "SecondBrain ".repeat(10_000);
+        final byte[] compressed = zipper.compressBytes(original);
+
+        assertNotNull(compressed);
+        try (final InputStream stream = zipper.decompressStream(compressed)) {
+            assertNotNull(stream);
+            assertEquals(original, new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void decompressStream_dictionary() throws Exception {
+        final List<String> samples = IntStream.range(0, 500)
+                .mapToObj(i -> "{\"id\":" + i + ",\"subject\":\"Ticket " + i + "\",\"status\":\"open\"}")
+                .toList();
+        zstdDictionaries.train("StreamTool", samples);
+
+        final String original = "{\"id\":1000,\"subject\":\"Ticket 1000\",\"status\":\"open\"}";
+        try (final InputStream stream = zipper.decompressStream(zipper.compressBytes(original, "StreamTool"))) {
+            assertNotNull(stream);
+            assertEquals(original, new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        // A value compressed with a dictionary that no longer exists can't be streamed either
+        final byte[] missing = Zstd.compress(original.getBytes(StandardCharsets.UTF_8),
+                new ZstdDictCompress(trainDictionary("missing"), ApacheCommonsZStdZipper.ZSTD_COMPRESSION_LEVEL));
+        assertNull(zipper.decompressStream(missing));
+    }
+
+    @Test
+    void decompressBytes_missingDictionary() {
+        // A dictionary that was never saved, like one that was deleted after values were compressed with it
+        final byte[] dictionary = trainDictionary("missing");
+        final byte[] compressed = Zstd.compress("{\"status\":\"open\"}".getBytes(StandardCharsets.UTF_8),
+                new ZstdDictCompress(dictionary, ApacheCommonsZStdZipper.ZSTD_COMPRESSION_LEVEL));
+
+        assertNull(zipper.decompressBytes(compressed));
+    }
+
+    @Test
+    void decompressBytes_dictionaryFromAnotherProcess() throws Exception {
+        // Another process sharing the cache directory trained and saved this dictionary after this one started
+        final byte[] dictionary = trainDictionary("shared");
+        final long dictionaryId = Zstd.getDictIdFromDict(dictionary);
+        final Path directory = Files.createDirectories(cacheDir.resolve("zstd-dictionaries"));
+        Files.write(directory.resolve("OtherTool-" + dictionaryId + ".dict"), dictionary);
+
+        final String original = "{\"id\":1,\"status\":\"shared\"}";
+        final byte[] compressed = Zstd.compress(original.getBytes(StandardCharsets.UTF_8),
+                new ZstdDictCompress(dictionary, ApacheCommonsZStdZipper.ZSTD_COMPRESSION_LEVEL));
+
+        assertEquals(original, zipper.decompressBytes(compressed));
+    }
+
+    private static byte[] trainDictionary(final String status) {
+        final ZstdDictTrainer trainer = new ZstdDictTrainer(1024 * 1024, 16384);
+        IntStream.range(0, 500)
+                .mapToObj(i -> "{\"id\":" + i + ",\"subject\":\"Ticket " + i + "\",\"status\":\"" + status + "\"}")
+                .forEach(sample -> trainer.addSample(sample.getBytes(StandardCharsets.UTF_8)));
+        return trainer.trainSamples();
+    }
+
     @Test
     void compressString_emptyOrNull() {
         assertNull(zipper.compressString(""));
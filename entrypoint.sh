@@ -27,9 +27,15 @@ ollama pull "${INPUT_MODEL}"
 # List the available models
 ollama list
 
+# Seed the cache from a snapshot so the first run on a new runner can reuse earlier results
+if [ -n "${SB_CACHE_SNAPSHOT}" ] && [ -f "${SB_CACHE_SNAPSHOT}" ]; then
+  java --add-modules jdk.incubator.vector -jar /usr/local/bin/secondbrain-cli.jar --import-cache "${SB_CACHE_SNAPSHOT}"
+fi
+
 # Run SecondBrain CLI. Note the context window needs to be be reasonably small,
 # as the hosted GitHub runners only have around 18GB of memory free.
 java \
+  --add-modules jdk.incubator.vector \
   -Dstdout.encoding=UTF-8 \
   -Dsb.ollama.url=http://127.0.0.1:11434 \
   -Dsb.ollama.toolmodel=llama3.2:3b \
@@ -53,6 +53,9 @@ public class PromptHandlerOllama implements PromptHandler {
     @Inject
     private SentenceVectorizer sentenceVectorizer;
 
+    @Inject
+    private SentenceVectorCache sentenceVectorCache;
+
     @Inject
     private Logger logger;
 
@@ -151,7 +154,10 @@ public class PromptHandlerOllama implements PromptHandler {
                     document.generateIntermediateResults());
         }
 
-        final AnnotationResult<? extends RagMultiDocumentContext<?>> result = document.annotateDocumentContext(
+        // Only the sentences of the documents in the final context are vectorized
+        final RagMultiDocumentContext<?> vectorized = sentenceVectorCache.vectorizeSentences(document, sentenceVectorizer);
+
+        final AnnotationResult<? extends RagMultiDocumentContext<?>> result = vectorized.annotateDocumentContext(
                 parsedMinSimilarity,
                 parsedMinWords,
                 sentenceSplitter,
@@ -23,8 +23,12 @@ import secondbrain.domain.encryption.JasyptEncryptor;
 import secondbrain.domain.exceptionhandling.LoggingExceptionHandler;
 import secondbrain.domain.injection.Preferred;
 import secondbrain.domain.json.JsonDeserializerJackson;
+import secondbrain.domain.limit.DocumentDeduplicatorSimHash;
 import secondbrain.domain.limit.DocumentTrimmerExactKeywords;
 import secondbrain.domain.limit.ListLimiterAtomicCutOff;
+import secondbrain.domain.limit.ListLimiterProducer;
+import secondbrain.domain.limit.ListLimiterRelevanceRanked;
+import secondbrain.domain.list.TrimmedCommaSeparatedStringToList;
 import secondbrain.domain.logger.Loggers;
 import secondbrain.domain.persist.H2LocalStorage;
 import secondbrain.domain.prompt.PromptBuilderSelector;
@@ -96,6 +100,10 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 @AddBeanClasses(OllamaClient.class)
 @AddBeanClasses(DebugToolArgsKeyValue.class)
 @AddBeanClasses(ListLimiterAtomicCutOff.class)
+@AddBeanClasses(ListLimiterRelevanceRanked.class)
+@AddBeanClasses(ListLimiterProducer.class)
+@AddBeanClasses(DocumentDeduplicatorSimHash.class)
+@AddBeanClasses(TrimmedCommaSeparatedStringToList.class)
 @AddBeanClasses(SimpleSentenceSplitter.class)
 @AddBeanClasses(JdlSentenceVectorizer.class)
 @AddBeanClasses(CosineSimilarityCalculator.class)
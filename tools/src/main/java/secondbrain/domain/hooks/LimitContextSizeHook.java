@@ -4,6 +4,7 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import secondbrain.domain.context.RagDocumentContext;
+import secondbrain.domain.injection.Preferred;
 import secondbrain.domain.limit.ListLimiter;
 
 import java.util.List;
@@ -19,6 +20,7 @@ public class LimitContextSizeHook implements PreProcessingHook {
     private Integer maxSize;
 
     @Inject
+    @Preferred
     private ListLimiter limiter;
 
     @Override
@@ -8,8 +8,9 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jspecify.annotations.Nullable;
 import secondbrain.domain.config.LocalConfigKeywordsEntity;
 import secondbrain.domain.context.RagDocumentContext;
+import secondbrain.domain.context.RagStringContext;
 import secondbrain.domain.context.SentenceSplitter;
-import secondbrain.domain.context.SentenceVectorizer;
+import secondbrain.domain.context.SentenceVectorizationStatistics;
 import secondbrain.domain.data.IdData;
 import secondbrain.domain.data.TextData;
 import secondbrain.domain.data.UrlData;
@@ -18,15 +19,21 @@ import secondbrain.domain.limit.DocumentTrimmer;
 import secondbrain.domain.limit.TrimResult;
 import secondbrain.domain.tooldefs.MetaObjectResults;
 
+import java.util.List;
 import java.util.logging.Logger;
 
+/**
+ * Splits documents into sentences. The sentences are only used to annotate the answer, and many documents are
+ * filtered out before the answer is generated, so the sentences are vectorized later by
+ * {@link secondbrain.domain.context.RagMultiDocumentContext#vectorizeSentences}.
+ */
 @ApplicationScoped
 public class SentenceVectorizerDataToRagDoc implements DataToRagDoc {
     @Inject
     private SentenceSplitter sentenceSplitter;
 
     @Inject
-    private SentenceVectorizer sentenceVectorizer;
+    private SentenceVectorizationStatistics sentenceVectorizationStatistics;
 
     @Inject
     private DocumentTrimmer documentTrimmer;
@@ -76,16 +83,15 @@ public class SentenceVectorizerDataToRagDoc implements DataToRagDoc {
                         toolName,
                         contextLabel,
                         trimmedConversationResult.document(),
-                        disableAnnotations ? null : sentenceVectorizer.vectorize(sentences, parsedArgs.getEntity()),
+                        deferVectorization(sentences, parsedArgs.getEntity()),
                         task.generateId(),
                         task,
                         meta,
                         null,
                         "[" + task.generateLinkText() + "](" + task.generateUrl() + ")",
                         trimmedConversationResult.keywordMatches()))
-                .onFailure(throwable -> logger.severe("Failed to vectorize sentences: " + ExceptionUtils.getRootCauseMessage(throwable)))
-                // Proceed without vectors if vectorization fails
-                // This will always happen on older macs as they are no loner supported
+                .onFailure(throwable -> logger.severe("Failed to split sentences: " + ExceptionUtils.getRootCauseMessage(throwable)))
+                // Proceed without sentences if splitting fails
                 .recover(InternalFailure.class, e -> new RagDocumentContext<>(
                         toolName,
                         contextLabel,
@@ -123,12 +129,19 @@ public class SentenceVectorizerDataToRagDoc implements DataToRagDoc {
                         toolName,
                         contextLabel,
                         task.generateText(),
-                        sentenceVectorizer.vectorize(sentences, parsedArgs.getEntity()),
+                        deferVectorization(sentences, parsedArgs.getEntity()),
                         null,
                         null,
                         null,
                         trimmedConversationResult.keywordMatches()))
-                .onFailure(throwable -> System.err.println("Failed to vectorize sentences: " + ExceptionUtils.getRootCauseMessage(throwable)))
+                .onFailure(throwable -> System.err.println("Failed to split sentences: " + ExceptionUtils.getRootCauseMessage(throwable)))
                 .get();
     }
+
+    private List<RagStringContext> deferVectorization(final List<String> sentences, final String entity) {
+        sentenceVectorizationStatistics.recordDeferred(sentences.size());
+        return sentences.stream()
+                .map(sentence -> RagStringContext.deferred(sentence, entity))
+                .toList();
+    }
 }
@@ -132,7 +132,8 @@ public class PlanHatClientLive implements PlanHatClient {
         // This result may be too large to cache remotely, but it can be cached locally.
         // If we do get a local cache hit, it will save us from making multiple API calls.
         // If we get a cache miss, we will go to the external cache for each page of results.
-        final Conversation[] conversations = localStorage.getOrPutObjectArray(
+        // A cache hit is read one conversation at a time as it is filtered, rather than as one large array.
+        final Stream<Conversation> conversations = localStorage.getOrPutObjectStream(
                         PlanHatClientLive.class.getSimpleName(),
                         source,
                         DigestUtils.sha256Hex(company + url + start + end),
@@ -142,14 +143,18 @@ public class PlanHatClientLive implements PlanHatClient {
                         () -> getConversationsApi(client, company, url, token, ttlSeconds, startDate, endDate, 0, maxOffset))
                 .result();
 
+        if (conversations == null) {
+            return List.of();
+        }
+
         // Do one last filter to ensure we only return conversations before the end date.
         // We don't do this earlier as we need to work all the way back to the start date,
         // and then trim any of the later results that are after the end date.
-        return conversations == null
-                ? List.of()
-                : Stream.of(conversations)
-                .filter(c -> StringUtils.isNotBlank(c.getDate()) && dateParser.parseDateOrDefault(c.getDate()).isBefore(endDate))
-                .toList();
+        try (conversations) {
+            return conversations
+                    .filter(c -> StringUtils.isNotBlank(c.getDate()) && dateParser.parseDateOrDefault(c.getDate()).isBefore(endDate))
+                    .toList();
+        }
     }
 
     @Override
@@ -0,0 +1,61 @@
+package secondbrain.domain.hooks;
+
+import io.smallrye.config.inject.ConfigExtension;
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import secondbrain.domain.context.CosineSimilarityCalculator;
+import secondbrain.domain.context.JdlSentenceVectorizer;
+import secondbrain.domain.context.RagDocumentContext;
+import secondbrain.domain.context.SimpleSentenceSplitter;
+import secondbrain.domain.limit.ListLimiter;
+import secondbrain.domain.list.TrimmedCommaSeparatedStringToList;
+import secondbrain.domain.logger.Loggers;
+import secondbrain.domain.test.TestConfigUtil;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LimitContextSizeHookTest {
+
+    /**
+     * <a href="https://github.com/weld/weld-testing/issues/81#issuecomment-1564002983">...</a>
+     */
+    @BeforeEach
+    void updateConfig() {
+        TestConfigUtil.registerConfig(Map.of("sb.limitcontextsize.chars", "10"));
+    }
+
+    /**
+     * The cli and web apps discover every bean in a package, so every ListLimiter implementation is a bean.
+     * This boots a container that scans the limit package the same way, which fails if the hook's
+     * limiter is ambiguous.
+     */
+    @Test
+    void testProcessWithDiscoveredLimiters() {
+        final Weld weld = new Weld()
+                .disableDiscovery()
+                .addPackages(true, ListLimiter.class)
+                .addBeanClasses(
+                        LimitContextSizeHook.class,
+                        Loggers.class,
+                        SimpleSentenceSplitter.class,
+                        JdlSentenceVectorizer.class,
+                        CosineSimilarityCalculator.class,
+                        TrimmedCommaSeparatedStringToList.class)
+                .addExtension(new ConfigExtension());
+
+        try (final WeldContainer container = weld.initialize()) {
+            final LimitContextSizeHook hook = container.select(LimitContextSizeHook.class).get();
+
+            final List<RagDocumentContext<Void>> result = hook.process("TestTool", List.of(
+                    new RagDocumentContext<>("tool1", "label1", "This document is longer than the limit", List.of())));
+
+            assertEquals(1, result.size());
+            assertEquals(10, result.getFirst().document().length());
+        }
+    }
+}
@@ -30,6 +30,8 @@ import secondbrain.domain.injection.Preferred;
 import secondbrain.domain.json.JsonDeserializerJackson;
 import secondbrain.domain.limit.DocumentTrimmerExactKeywords;
 import secondbrain.domain.limit.ListLimiterAtomicCutOff;
+import secondbrain.domain.limit.ListLimiterProducer;
+import secondbrain.domain.limit.ListLimiterRelevanceRanked;
 import secondbrain.domain.list.TrimmedCommaSeparatedStringToList;
 import secondbrain.domain.logger.Loggers;
 import secondbrain.domain.mutex.MockMutex;
@@ -116,6 +118,8 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 @AddBeanClasses(MockLocalStorageReadWrite.class)
 @AddBeanClasses(CompletableFutureTimeoutService.class)
 @AddBeanClasses(ListLimiterAtomicCutOff.class)
+@AddBeanClasses(ListLimiterRelevanceRanked.class)
+@AddBeanClasses(ListLimiterProducer.class)
 @AddBeanClasses(GetFirstDigits.class)
 @AddBeanClasses(ApacheCommonsZStdZipper.class)
 @AddBeanClasses(TrimmedCommaSeparatedStringToList.class)
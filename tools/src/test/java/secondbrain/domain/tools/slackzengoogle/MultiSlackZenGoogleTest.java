@@ -30,6 +30,8 @@ import secondbrain.domain.json.JsonDeserializerJackson;
 import secondbrain.domain.keyword.RakeKeywordExtractor;
 import secondbrain.domain.limit.DocumentTrimmerExactKeywords;
 import secondbrain.domain.limit.ListLimiterAtomicCutOff;
+import secondbrain.domain.limit.ListLimiterProducer;
+import secondbrain.domain.limit.ListLimiterRelevanceRanked;
 import secondbrain.domain.list.TrimmedCommaSeparatedStringToList;
 import secondbrain.domain.logger.Loggers;
 import secondbrain.domain.mutex.MockMutex;
@@ -145,6 +147,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 @AddBeanClasses(MockLocalStorageReadWrite.class)
 @AddBeanClasses(CompletableFutureTimeoutService.class)
 @AddBeanClasses(ListLimiterAtomicCutOff.class)
+@AddBeanClasses(ListLimiterRelevanceRanked.class)
+@AddBeanClasses(ListLimiterProducer.class)
 @AddBeanClasses(GetFirstDigits.class)
 @AddBeanClasses(ApacheCommonsZStdZipper.class)
 @AddBeanClasses(ApacheCompressZipper.class)